@@ -18,6 +18,7 @@ package com.zaxxer.hikari;
 
 import com.codahale.metrics.health.HealthCheckRegistry;
 import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.pool.HikariPoolGroup;
 import com.zaxxer.hikari.util.PropertyElf;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,6 +76,15 @@ public class HikariConfig implements HikariConfigMXBean
    // Properties NOT changeable at runtime
    //
    private long initializationFailTimeout;
+   private long slowQueryThreshold;
+   private long longTransactionThreshold;
+   private long poolStatsWindow;
+   private int slowQuerySampling;
+   private int connectionCreationConcurrency;
+   private int connectionCreationRate;
+   private int prewarmConnections;
+   private int preparedStatementCacheSize;
+   private int statementMetricsSize;
    private String connectionInitSql;
    private String connectionTestQuery;
    private String dataSourceClassName;
@@ -89,14 +99,26 @@ public class HikariConfig implements HikariConfigMXBean
    private boolean isIsolateInternalQueries;
    private boolean isRegisterMbeans;
    private boolean isAllowPoolSuspension;
+   private boolean isVirtualThreadMode;
+   private boolean isFairBorrowing;
+   private boolean isStripedBorrowing;
+   private boolean isAdaptivePoolSizing;
+   private boolean isBackgroundValidation;
+   private boolean isLazyStateReset;
+   private boolean isSharedTimeoutExecutor;
+   private boolean isLatencyHistograms;
+   private boolean isSlowQueryStackTraces;
    private DataSource dataSource;
    private Properties dataSourceProperties;
    private ThreadFactory threadFactory;
    private ScheduledExecutorService scheduledExecutor;
+   private HikariPoolGroup poolGroup;
    private MetricsTrackerFactory metricsTrackerFactory;
    private Object metricRegistry;
    private Object healthCheckRegistry;
    private Properties healthCheckProperties;
+   private Properties tagLeaseLimits;
+   private Properties hostJdbcUrls;
 
    private volatile boolean sealed;
 
@@ -113,6 +135,8 @@ public class HikariConfig implements HikariConfigMXBean
    {
       dataSourceProperties = new Properties();
       healthCheckProperties = new Properties();
+      tagLeaseLimits = new Properties();
+      hostJdbcUrls = new Properties();
 
       minIdle = -1;
       maxPoolSize = -1;
@@ -121,6 +145,9 @@ public class HikariConfig implements HikariConfigMXBean
       validationTimeout = VALIDATION_TIMEOUT;
       idleTimeout = IDLE_TIMEOUT;
       initializationFailTimeout = 1;
+      connectionCreationConcurrency = 1;
+      slowQuerySampling = 1;
+      poolStatsWindow = SECONDS.toMillis(1);
       isAutoCommit = true;
 
       String systemProp = System.getProperty("hikaricp.configurationFile");
@@ -522,6 +549,43 @@ public class HikariConfig implements HikariConfigMXBean
       this.jdbcUrl = jdbcUrl;
    }
 
+   /**
+    * Get the jdbcUrls of the hosts the pool spreads its connections over, mapped to their weights.
+    *
+    * @return the host jdbcUrls and their weights
+    */
+   public Properties getHostJdbcUrls()
+   {
+      return hostJdbcUrls;
+   }
+
+   public void setHostJdbcUrls(Properties hostJdbcUrls)
+   {
+      checkIfSealed();
+      this.hostJdbcUrls.putAll(hostJdbcUrls);
+   }
+
+   /**
+    * Add a host, for example a read replica, to spread the connections of the pool over.  Once hosts
+    * are added, connections are opened on the hosts rather than on the {@link #setJdbcUrl(String) jdbcUrl},
+    * which may then be omitted.  Each new connection goes to the available host with the fewest
+    * connections relative to its weight, adjusted by how long the host takes to open a connection;
+    * a host failing to open one is skipped for a while, and the housekeeper moves idle connections
+    * back onto it once it recovers.  Hosts are only supported with a driver-based configuration, not
+    * with a dataSourceClassName or DataSource.
+    *
+    * @param jdbcUrl the jdbcUrl of the host
+    * @param weight the relative share of the connections the host should receive
+    */
+   public void addHostJdbcUrl(String jdbcUrl, int weight)
+   {
+      checkIfSealed();
+      if (weight < 1) {
+         throw new IllegalArgumentException("weight of host " + jdbcUrl + " cannot be less than 1");
+      }
+      hostJdbcUrls.setProperty(jdbcUrl, String.valueOf(weight));
+   }
+
    /**
     * Get the default auto-commit behavior of connections in the pool.
     *
@@ -566,6 +630,475 @@ public class HikariConfig implements HikariConfigMXBean
       this.isAllowPoolSuspension = isAllowPoolSuspension;
    }
 
+   /**
+    * Determine whether the pool is tuned for borrowers running on virtual threads.
+    *
+    * @return {@code true} if virtual-thread mode is enabled, {@code false} if not
+    */
+   public boolean isVirtualThreadMode()
+   {
+      return isVirtualThreadMode;
+   }
+
+   /**
+    * Configure the pool for borrowers running on virtual threads.  In this mode the
+    * connection bag uses a shared stack of recently returned connections instead of
+    * per-thread lists, and waiting borrowers park on a lock condition so that each
+    * returned connection wakes exactly one of them.  Defaults to {@code false}.
+    *
+    * @param isVirtualThreadMode {@code true} to enable virtual-thread mode
+    */
+   public void setVirtualThreadMode(boolean isVirtualThreadMode)
+   {
+      checkIfSealed();
+      this.isVirtualThreadMode = isVirtualThreadMode;
+   }
+
+   /**
+    * Determine whether connections are handed to waiting borrowers in strict FIFO order.
+    *
+    * @return {@code true} if fair borrowing is enabled, {@code false} if not
+    */
+   public boolean isFairBorrowing()
+   {
+      return isFairBorrowing;
+   }
+
+   /**
+    * Configure whether connections are handed to waiting borrowers in strict FIFO order.  When
+    * enabled, a returned connection is assigned directly to the longest-waiting borrower and new
+    * borrowers queue behind existing waiters instead of "barging" ahead of them.  This trades a
+    * little throughput for flat acquisition latency when the pool is saturated.  Defaults to
+    * {@code false}.
+    *
+    * @param isFairBorrowing {@code true} to enable strict FIFO handoff
+    */
+   public void setFairBorrowing(boolean isFairBorrowing)
+   {
+      checkIfSealed();
+      this.isFairBorrowing = isFairBorrowing;
+   }
+
+   /**
+    * Determine whether borrowers scan the pool from per-thread stripes.
+    *
+    * @return {@code true} if striped borrowing is enabled, {@code false} if not
+    */
+   public boolean isStripedBorrowing()
+   {
+      return isStripedBorrowing;
+   }
+
+   /**
+    * Configure whether a borrower that finds no connection in its own thread-local list starts scanning
+    * the pool at a per-thread "home stripe" rather than at the first connection.  This reduces CAS
+    * contention on hosts with many cores and large pools, at the cost of a less predictable choice of
+    * connection.  Defaults to {@code false}.
+    *
+    * @param isStripedBorrowing {@code true} to enable striped borrowing
+    */
+   public void setStripedBorrowing(boolean isStripedBorrowing)
+   {
+      checkIfSealed();
+      this.isStripedBorrowing = isStripedBorrowing;
+   }
+
+   /**
+    * Determine whether the pool size is adapted to the observed load.
+    *
+    * @return {@code true} if adaptive pool sizing is enabled, {@code false} if not
+    */
+   public boolean isAdaptivePoolSizing()
+   {
+      return isAdaptivePoolSizing;
+   }
+
+   /**
+    * Configure whether the housekeeper continuously resizes the pool between {@code minimumIdle} and
+    * {@code maximumPoolSize}, based on the observed borrow rate, connection usage time and wait time.
+    * The pool grows promptly under load and shrinks gradually once the load has stayed lower for a
+    * while; idle connections above the computed target are retired once they have been idle for a
+    * housekeeping period, rather than for {@code idleTimeout}.  The current target is available from
+    * {@link HikariPoolMXBean}.  Defaults to {@code false}.
+    *
+    * @param isAdaptivePoolSizing {@code true} to enable adaptive pool sizing
+    */
+   public void setAdaptivePoolSizing(boolean isAdaptivePoolSizing)
+   {
+      checkIfSealed();
+      this.isAdaptivePoolSizing = isAdaptivePoolSizing;
+   }
+
+   /**
+    * Determine whether idle connections are validated in the background.
+    *
+    * @return {@code true} if background validation is enabled, {@code false} if not
+    */
+   public boolean isBackgroundValidation()
+   {
+      return isBackgroundValidation;
+   }
+
+   /**
+    * Configure whether idle connections are validated by a background task shortly before they have
+    * been idle for the alive bypass window ({@code com.zaxxer.hikari.aliveBypassWindowMs}), so that
+    * {@code getConnection()} almost never has to validate a connection itself.  A connection is
+    * reserved, and so unavailable to borrowers, while it is being validated.  As every idle connection
+    * is validated about once per bypass window, the window should usually be raised from its default
+    * of 500ms when this is enabled.  Defaults to {@code false}.
+    *
+    * @param isBackgroundValidation {@code true} to enable background validation
+    */
+   public void setBackgroundValidation(boolean isBackgroundValidation)
+   {
+      checkIfSealed();
+      this.isBackgroundValidation = isBackgroundValidation;
+   }
+
+   /**
+    * Determine whether the reset of connection state on return is deferred to the next borrower.
+    *
+    * @return {@code true} if state reset is lazy, {@code false} if not
+    */
+   public boolean isLazyStateReset()
+   {
+      return isLazyStateReset;
+   }
+
+   /**
+    * Configure whether the connection state that a borrower changed (read-only, transaction isolation,
+    * catalog and schema) is restored when the connection is returned, or only when the next borrower
+    * first uses it.  Deferring the reset takes it off the closing thread, and skips it entirely for each
+    * state that the next borrower sets itself, which saves a round trip per state for applications that
+    * set e.g. the isolation or schema on every borrow.  Auto-commit and the network timeout are always
+    * restored on return.  Defaults to {@code false}.
+    *
+    * @param isLazyStateReset {@code true} to defer connection state reset to the next borrower
+    */
+   public void setLazyStateReset(boolean isLazyStateReset)
+   {
+      checkIfSealed();
+      this.isLazyStateReset = isLazyStateReset;
+   }
+
+   /**
+    * Determine whether the pool uses the JVM-wide executor for network timeouts and aborts.
+    *
+    * @return {@code true} if the shared executor is used, {@code false} if the pool has its own
+    */
+   public boolean isSharedTimeoutExecutor()
+   {
+      return isSharedTimeoutExecutor;
+   }
+
+   /**
+    * Configure whether the executor that drivers use for {@code Connection.setNetworkTimeout()}, and the
+    * one passed to {@code Connection.abort()} at shutdown, are the JVM-wide executor shared by all pools
+    * rather than executors of this pool's own.  With many pools in one JVM this saves an executor and its
+    * idle threads per pool.  In {@link #setVirtualThreadMode(boolean) virtual-thread mode} the shared
+    * executor runs its tasks on virtual threads.  The configured thread factory is not used by the
+    * shared executor.  Defaults to {@code false}.
+    *
+    * @param isSharedTimeoutExecutor {@code true} to use the JVM-wide executor
+    */
+   public void setSharedTimeoutExecutor(boolean isSharedTimeoutExecutor)
+   {
+      checkIfSealed();
+      this.isSharedTimeoutExecutor = isSharedTimeoutExecutor;
+   }
+
+   /**
+    * Determine whether the pool records connection acquire, usage and creation times in its own histograms.
+    *
+    * @return {@code true} if latency histograms are recorded, {@code false} if not
+    */
+   public boolean isLatencyHistograms()
+   {
+      return isLatencyHistograms;
+   }
+
+   /**
+    * Configure whether the pool records connection acquire, usage and creation times in lock-free
+    * histograms of its own, whether or not a metrics registry is configured.  Their 50th, 99th and
+    * 99.9th percentiles over the last housekeeping period are exposed through {@link HikariPoolMXBean},
+    * and the Micrometer and Prometheus trackers export them as cumulative histogram buckets, which
+    * unlike summaries can be aggregated across pools and instances.  Defaults to {@code false}.
+    *
+    * @param isLatencyHistograms {@code true} to record latency histograms
+    */
+   public void setLatencyHistograms(boolean isLatencyHistograms)
+   {
+      checkIfSealed();
+      this.isLatencyHistograms = isLatencyHistograms;
+   }
+
+   /**
+    * Get the time pool statistics are cached for.
+    *
+    * @return the pool statistics window in milliseconds
+    */
+   public long getPoolStatsWindow()
+   {
+      return poolStatsWindow;
+   }
+
+   /**
+    * Set the time in milliseconds the pool statistics read by metrics trackers and
+    * {@link HikariPoolMXBean#getPoolStatsSnapshot()} are cached for.  The statistics are taken in one scan
+    * of the pool, so that however many gauges a scrape reads, the pool is scanned at most once per window
+    * and the values agree with each other.  Defaults to 1000, 0 scans the pool on every read.
+    *
+    * @param poolStatsWindowMs the pool statistics window in milliseconds
+    */
+   public void setPoolStatsWindow(long poolStatsWindowMs)
+   {
+      checkIfSealed();
+      if (poolStatsWindowMs < 0) {
+         throw new IllegalArgumentException("poolStatsWindow cannot be negative");
+      }
+      this.poolStatsWindow = poolStatsWindowMs;
+   }
+
+   /**
+    * Get the number of threads that may create connections concurrently.
+    *
+    * @return the connection creation concurrency
+    */
+   public int getConnectionCreationConcurrency()
+   {
+      return connectionCreationConcurrency;
+   }
+
+   /**
+    * Set the number of threads that may create connections concurrently, for example when the pool
+    * refills after a mass eviction or a database failover.  Defaults to 1.
+    *
+    * @param connectionCreationConcurrency the maximum number of concurrent connection attempts
+    */
+   public void setConnectionCreationConcurrency(int connectionCreationConcurrency)
+   {
+      checkIfSealed();
+      if (connectionCreationConcurrency < 1) {
+         throw new IllegalArgumentException("connectionCreationConcurrency cannot be less than 1");
+      }
+      this.connectionCreationConcurrency = connectionCreationConcurrency;
+   }
+
+   /**
+    * Get the maximum rate of connection creation.
+    *
+    * @return the maximum number of connections created per second, or 0 if unlimited
+    */
+   public int getConnectionCreationRate()
+   {
+      return connectionCreationRate;
+   }
+
+   /**
+    * Limit the rate at which new connections are created, so that a pool refilling after a failover
+    * does not hit the database with a connection storm.  The limit is a token bucket that, after a
+    * quiet period, starts at a third of the rate and ramps up to the full rate over one second.
+    * Defaults to 0, which means unlimited.
+    *
+    * @param connectionCreationRate the maximum number of connections created per second
+    */
+   public void setConnectionCreationRate(int connectionCreationRate)
+   {
+      checkIfSealed();
+      if (connectionCreationRate < 0) {
+         throw new IllegalArgumentException("connectionCreationRate cannot be negative");
+      }
+      this.connectionCreationRate = connectionCreationRate;
+   }
+
+   /**
+    * Get the number of connections created before the pool is reported as started.
+    *
+    * @return the number of connections to pre-warm
+    */
+   public int getPrewarmConnections()
+   {
+      return prewarmConnections;
+   }
+
+   /**
+    * Set the number of connections the pool creates, in parallel, before the {@link HikariDataSource}
+    * constructor (or first {@code getConnection()} call) returns.  Pre-warming waits at most
+    * {@code connectionTimeout} or {@code initializationFailTimeout}, whichever is larger, and is
+    * capped at {@code maximumPoolSize}.  Defaults to 0.
+    *
+    * @param prewarmConnections the number of connections to create at startup
+    */
+   public void setPrewarmConnections(int prewarmConnections)
+   {
+      checkIfSealed();
+      if (prewarmConnections < 0) {
+         throw new IllegalArgumentException("prewarmConnections cannot be negative");
+      }
+      this.prewarmConnections = prewarmConnections;
+   }
+
+   /**
+    * Get the number of prepared statements cached per connection.
+    *
+    * @return the prepared statement cache size, or 0 if caching is disabled
+    */
+   public int getPreparedStatementCacheSize()
+   {
+      return preparedStatementCacheSize;
+   }
+
+   /**
+    * Set the number of prepared statements cached per physical connection.  When enabled, closing a
+    * {@link java.sql.PreparedStatement} clears its parameters and keeps the driver statement for the
+    * next borrower that prepares the same SQL with the same result set options, rather than closing it,
+    * and the least recently used statement is closed when the cache is full.  Statement settings such as
+    * the fetch size or query timeout are not reset.  Defaults to 0, which disables the cache.
+    *
+    * @param preparedStatementCacheSize the maximum number of statements cached per connection
+    */
+   public void setPreparedStatementCacheSize(int preparedStatementCacheSize)
+   {
+      checkIfSealed();
+      if (preparedStatementCacheSize < 0) {
+         throw new IllegalArgumentException("preparedStatementCacheSize cannot be negative");
+      }
+      this.preparedStatementCacheSize = preparedStatementCacheSize;
+   }
+
+   /**
+    * Get the number of SQL fingerprints statement metrics are kept for.
+    *
+    * @return the number of fingerprints, 0 if statement metrics are disabled
+    */
+   public int getStatementMetricsSize()
+   {
+      return statementMetricsSize;
+   }
+
+   /**
+    * Set the number of SQL fingerprints for which the statement proxies record execution latency, update
+    * counts and rows fetched, see {@link com.zaxxer.hikari.metrics.StatementMetrics}.  A fingerprint is the
+    * SQL with its literals replaced by {@code ?}, and when the table is full the fingerprint with the least
+    * total execution time makes room for a new one.  In HA mode the latency of the twin is recorded
+    * separately.  Defaults to 0, which disables statement metrics.
+    *
+    * @param statementMetricsSize the maximum number of fingerprints
+    */
+   public void setStatementMetricsSize(int statementMetricsSize)
+   {
+      checkIfSealed();
+      if (statementMetricsSize < 0) {
+         throw new IllegalArgumentException("statementMetricsSize cannot be negative");
+      }
+      this.statementMetricsSize = statementMetricsSize;
+   }
+
+   /**
+    * Get the time an execution may take before it is reported as slow.
+    *
+    * @return the slow query threshold in milliseconds, 0 if the detection is disabled
+    */
+   public long getSlowQueryThreshold()
+   {
+      return slowQueryThreshold;
+   }
+
+   /**
+    * Set the time in milliseconds a statement execution may take before it is reported as slow.  Like
+    * leak detection, a timer is armed when the execution starts and cancelled when the driver returns;
+    * a timer that fires logs a warning with the SQL fingerprint and the elapsed time, and records a
+    * metric and a {@code com.zaxxer.hikari.SlowQuery} Flight Recorder event.  Only the primary database
+    * is timed.  Defaults to 0, which disables the detection.
+    *
+    * @param slowQueryThresholdMs the slow query threshold in milliseconds
+    */
+   public void setSlowQueryThreshold(long slowQueryThresholdMs)
+   {
+      checkIfSealed();
+      if (slowQueryThresholdMs < 0) {
+         throw new IllegalArgumentException("slowQueryThreshold cannot be negative");
+      }
+      this.slowQueryThreshold = slowQueryThresholdMs;
+   }
+
+   /**
+    * Get the time a transaction may stay open before it is reported as long.
+    *
+    * @return the long transaction threshold in milliseconds, 0 if the detection is disabled
+    */
+   public long getLongTransactionThreshold()
+   {
+      return longTransactionThreshold;
+   }
+
+   /**
+    * Set the time in milliseconds a transaction may stay open before it is reported as long.  The timer
+    * is armed by the first statement that dirties the commit state of a connection that is not in
+    * auto-commit mode, and cancelled when the transaction is committed or rolled back.  The report names
+    * the fingerprint of the last SQL executed in the transaction.  Defaults to 0, which disables the
+    * detection.
+    *
+    * @param longTransactionThresholdMs the long transaction threshold in milliseconds
+    */
+   public void setLongTransactionThreshold(long longTransactionThresholdMs)
+   {
+      checkIfSealed();
+      if (longTransactionThresholdMs < 0) {
+         throw new IllegalArgumentException("longTransactionThreshold cannot be negative");
+      }
+      this.longTransactionThreshold = longTransactionThresholdMs;
+   }
+
+   /**
+    * Get the sampling of the slow query and long transaction detection.
+    *
+    * @return one in how many executions and transactions are timed
+    */
+   public int getSlowQuerySampling()
+   {
+      return slowQuerySampling;
+   }
+
+   /**
+    * Set the sampling of the slow query and long transaction detection, to cap its overhead on pools
+    * executing many short statements: only one in {@code slowQuerySampling} executions and transactions,
+    * chosen at random, arms a timer.  Defaults to 1, which times every one of them.
+    *
+    * @param slowQuerySampling one in how many executions and transactions are timed
+    */
+   public void setSlowQuerySampling(int slowQuerySampling)
+   {
+      checkIfSealed();
+      if (slowQuerySampling < 1) {
+         throw new IllegalArgumentException("slowQuerySampling cannot be less than 1");
+      }
+      this.slowQuerySampling = slowQuerySampling;
+   }
+
+   /**
+    * Determine whether slow query and long transaction reports include a stack trace.
+    *
+    * @return {@code true} if the stack of the executing thread is captured
+    */
+   public boolean isSlowQueryStackTraces()
+   {
+      return isSlowQueryStackTraces;
+   }
+
+   /**
+    * Set whether slow query and long transaction reports include the stack of the thread that executes
+    * the statement or holds the transaction.  The stack is captured when the timer fires, not when it is
+    * armed, so executions that finish in time cost nothing extra.  Defaults to {@code false}.
+    *
+    * @param isSlowQueryStackTraces {@code true} to capture the stack of the executing thread
+    */
+   public void setSlowQueryStackTraces(boolean isSlowQueryStackTraces)
+   {
+      checkIfSealed();
+      this.isSlowQueryStackTraces = isSlowQueryStackTraces;
+   }
+
    /**
     * Get the pool initialization failure timeout.  See {@code #setInitializationFailTimeout(long)}
     * for details.
@@ -736,6 +1269,42 @@ public class HikariConfig implements HikariConfigMXBean
       healthCheckProperties.setProperty(key, value);
    }
 
+   /**
+    * Get the per-tag lease limits, mapping a tag name to the maximum number of connections
+    * that borrowers using that tag may hold at the same time.
+    *
+    * @return the lease limits, keyed by tag
+    */
+   public Properties getTagLeaseLimits()
+   {
+      return tagLeaseLimits;
+   }
+
+   public void setTagLeaseLimits(Properties tagLeaseLimits)
+   {
+      checkIfSealed();
+      tagLeaseLimits.stringPropertyNames().forEach(tag -> validateTagLeaseLimit(tag, tagLeaseLimits.getProperty(tag)));
+      this.tagLeaseLimits.putAll(tagLeaseLimits);
+   }
+
+   /**
+    * Limit the number of connections that borrowers acquiring with the specified tag may hold
+    * concurrently.  A tagged borrower waits (within its connection timeout) for one of the tag's
+    * own connections to be returned once the limit is reached, even if the pool has idle
+    * connections.  Tags without a limit are only used for metrics.
+    *
+    * @param tag the tag passed to {@code HikariDataSource#getConnection(String, int)}
+    * @param maxLeases the maximum number of concurrently borrowed connections for the tag
+    */
+   public void addTagLeaseLimit(String tag, int maxLeases)
+   {
+      checkIfSealed();
+      if (maxLeases < 1) {
+         throw new IllegalArgumentException("maxLeases of tag " + tag + " cannot be less than 1");
+      }
+      tagLeaseLimits.setProperty(tag, String.valueOf(maxLeases));
+   }
+
    /**
     * Determine whether the Connections in the pool are in read-only mode.
     *
@@ -845,6 +1414,31 @@ public class HikariConfig implements HikariConfigMXBean
       this.scheduledExecutor = executor;
    }
 
+   /**
+    * Get the group the pool belongs to.
+    *
+    * @return the pool group, or null if the pool is not part of a group
+    */
+   public HikariPoolGroup getPoolGroup()
+   {
+      return poolGroup;
+   }
+
+   /**
+    * Make the pool part of a group of pools that share their housekeeping scheduler, connection closer
+    * and timeout executor, and a maximum on their total number of connections.  A housekeeping
+    * executor set with {@link #setScheduledExecutor(ScheduledExecutorService)} takes precedence over
+    * the one of the group, as does a metrics tracker factory or registry set on this configuration.
+    *
+    * @param poolGroup the pool group
+    * @see HikariPoolGroup
+    */
+   public void setPoolGroup(HikariPoolGroup poolGroup)
+   {
+      checkIfSealed();
+      this.poolGroup = poolGroup;
+   }
+
    public String getTransactionIsolation()
    {
       return transactionIsolationName;
@@ -928,6 +1522,9 @@ public class HikariConfig implements HikariConfigMXBean
          }
       }
 
+      other.dataSourceProperties = (Properties) dataSourceProperties.clone();
+      other.hostJdbcUrls = (Properties) hostJdbcUrls.clone();
+      other.tagLeaseLimits = (Properties) tagLeaseLimits.clone();
       other.sealed = false;
    }
 
@@ -992,7 +1589,7 @@ public class HikariConfig implements HikariConfigMXBean
             LOGGER.warn("{} - using dataSourceClassName and ignoring jdbcUrl.", poolName);
          }
       }
-      else if (jdbcUrl != null || dataSourceJndiName != null) {
+      else if (jdbcUrl != null || dataSourceJndiName != null || !hostJdbcUrls.isEmpty()) {
          // ok
       }
       else if (driverClassName != null) {
@@ -1004,13 +1601,35 @@ public class HikariConfig implements HikariConfigMXBean
          throw new IllegalArgumentException("dataSource or dataSourceClassName or jdbcUrl is required.");
       }
 
+      if (!hostJdbcUrls.isEmpty() && (dataSource != null || dataSourceClassName != null)) {
+         LOGGER.warn("{} - using {} and ignoring hostJdbcUrls.", poolName, dataSource != null ? "dataSource" : "dataSourceClassName");
+      }
+
       validateNumerics();
 
+      // the limits may also have been changed through getTagLeaseLimits()
+      tagLeaseLimits.stringPropertyNames().forEach(tag -> validateTagLeaseLimit(tag, tagLeaseLimits.getProperty(tag)));
+
       if (LOGGER.isDebugEnabled() || unitTest) {
          logConfiguration();
       }
    }
 
+   private void validateTagLeaseLimit(final String tag, final String maxLeases)
+   {
+      final int limit;
+      try {
+         limit = Integer.parseInt(maxLeases.trim());
+      }
+      catch (NumberFormatException e) {
+         throw new IllegalArgumentException("maxLeases of tag " + tag + " is not a number: " + maxLeases);
+      }
+
+      if (limit < 1) {
+         throw new IllegalArgumentException("maxLeases of tag " + tag + " cannot be less than 1");
+      }
+   }
+
    private void validateNumerics()
    {
       if (maxLifetime != 0 && maxLifetime < SECONDS.toMillis(30)) {
@@ -1043,6 +1662,11 @@ public class HikariConfig implements HikariConfigMXBean
          minIdle = maxPoolSize;
       }
 
+      if (prewarmConnections > maxPoolSize) {
+         LOGGER.warn("{} - prewarmConnections is more than maximumPoolSize, setting to {}.", poolName, maxPoolSize);
+         prewarmConnections = maxPoolSize;
+      }
+
       if (idleTimeout + SECONDS.toMillis(1) > maxLifetime && maxLifetime > 0 && minIdle < maxPoolSize) {
          LOGGER.warn("{} - idleTimeout is close to or more than maxLifetime, disabling it.", poolName);
          idleTimeout = 0;
@@ -1073,6 +1697,11 @@ public class HikariConfig implements HikariConfigMXBean
                dsProps.setProperty("password", "<masked>");
                value = dsProps;
             }
+            else if ("hostJdbcUrls".equals(prop)) {
+               Properties hosts = new Properties();
+               hostJdbcUrls.forEach((url, weight) -> hosts.put(url.toString().replaceAll("([?&;]password=)[^&#;]*(.*)", "$1<masked>$2"), weight));
+               value = hosts;
+            }
 
             if ("initializationFailTimeout".equals(prop) && initializationFailTimeout == Long.MAX_VALUE) {
                value = "infinite";
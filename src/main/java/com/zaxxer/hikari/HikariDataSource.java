@@ -28,6 +28,7 @@ import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.zaxxer.hikari.pool.HikariPool.POOL_NORMAL;
@@ -92,40 +93,58 @@ public class HikariDataSource extends HikariConfig implements DataSource, Closea
    @Override
    public Connection getConnection() throws SQLException
    {
-      if (isClosed()) {
-         throw new SQLException("HikariDataSource " + this + " has been closed.");
-      }
+      return getPool().getConnection();
+   }
 
-      if (fastPathPool != null) {
-         return fastPathPool.getConnection();
-      }
+   /**
+    * Obtain a connection on behalf of a tagged borrower.  The priority decides the order in which
+    * waiting borrowers are served when the pool is exhausted, and the tag is subject to the lease
+    * limit configured with {@link #addTagLeaseLimit(String, int)} and is reported to the metrics
+    * tracker.
+    *
+    * @param tag the borrower's tag, or null
+    * @param priority one of the {@link com.zaxxer.hikari.util.ConcurrentBag} <code>PRIORITY_*</code> constants
+    * @return a connection from the pool
+    * @throws SQLException if no connection became available within the connection timeout
+    */
+   public Connection getConnection(final String tag, final int priority) throws SQLException
+   {
+      return getPool().getConnection(getConnectionTimeout(), tag, priority);
+   }
 
-      // See http://en.wikipedia.org/wiki/Double-checked_locking#Usage_in_Java
-      HikariPool result = pool;
-      if (result == null) {
-         synchronized (this) {
-            result = pool;
-            if (result == null) {
-               validate();
-               LOGGER.info("{} - Starting...", getPoolName());
-               try {
-                  pool = result = new HikariPool(this);
-                  this.seal();
-               }
-               catch (PoolInitializationException pie) {
-                  if (pie.getCause() instanceof SQLException) {
-                     throw (SQLException) pie.getCause();
-                  }
-                  else {
-                     throw pie;
-                  }
-               }
-               LOGGER.info("{} - Start completed.", getPoolName());
-            }
-         }
-      }
+   /**
+    * Obtain a connection in the hinted state, for example in a tenant's schema.  With
+    * {@link HikariConfig#setLazyStateReset(boolean) lazy state reset} the pool prefers an idle
+    * connection that is already in that state, so that switching schemas back and forth costs no
+    * round trips when the pool holds a connection for each; without it the state is simply set
+    * on whichever connection is borrowed.
+    *
+    * @param hint the state the connection should be in
+    * @return a connection from the pool, in the hinted state
+    * @throws SQLException if no connection became available within the connection timeout, or setting the state failed
+    */
+   public Connection getConnection(final StateHint hint) throws SQLException
+   {
+      return getPool().getConnection(getConnectionTimeout(), hint);
+   }
 
-      return result.getConnection();
+   /**
+    * Obtain a connection without blocking the calling thread.  The returned future is completed
+    * with a connection, or exceptionally with a {@link SQLException} if none became available
+    * within the connection timeout.  The pool itself is started, if necessary, by the calling thread.
+    *
+    * @return a future that is completed with a connection from the pool
+    */
+   public CompletableFuture<Connection> getConnectionAsync()
+   {
+      try {
+         return getPool().getConnectionAsync();
+      }
+      catch (SQLException e) {
+         final CompletableFuture<Connection> result = new CompletableFuture<>();
+         result.completeExceptionally(e);
+         return result;
+      }
    }
 
    /** {@inheritDoc} */
@@ -368,6 +387,50 @@ public class HikariDataSource extends HikariConfig implements DataSource, Closea
       return isShutdown.get();
    }
 
+   /**
+    * Get the running pool, lazily starting it on first use.
+    *
+    * @return the pool
+    * @throws SQLException if this DataSource has been closed or the pool fails to start
+    */
+   private HikariPool getPool() throws SQLException
+   {
+      if (isClosed()) {
+         throw new SQLException("HikariDataSource " + this + " has been closed.");
+      }
+
+      if (fastPathPool != null) {
+         return fastPathPool;
+      }
+
+      // See http://en.wikipedia.org/wiki/Double-checked_locking#Usage_in_Java
+      HikariPool result = pool;
+      if (result == null) {
+         synchronized (this) {
+            result = pool;
+            if (result == null) {
+               validate();
+               LOGGER.info("{} - Starting...", getPoolName());
+               try {
+                  pool = result = new HikariPool(this);
+                  this.seal();
+               }
+               catch (PoolInitializationException pie) {
+                  if (pie.getCause() instanceof SQLException) {
+                     throw (SQLException) pie.getCause();
+                  }
+                  else {
+                     throw pie;
+                  }
+               }
+               LOGGER.info("{} - Start completed.", getPoolName());
+            }
+         }
+      }
+
+      return result;
+   }
+
    /** {@inheritDoc} */
    @Override
    public String toString()
@@ -18,6 +18,8 @@ package com.zaxxer.hikari;
 
 import javax.sql.DataSource;
 
+import com.zaxxer.hikari.metrics.PoolStatsSnapshot;
+
 /**
  * The javax.management MBean for a Hikari pool instance.
  *
@@ -65,6 +67,55 @@ public interface HikariPoolMXBean
     */
    int getThreadsAwaitingConnection();
 
+   /**
+    * Get the connection counts, waiting threads and size limits of the pool, taken in a single scan of the
+    * pool so that they agree with each other.  The snapshot is shared with the metrics trackers and cached
+    * for {@link HikariConfig#setPoolStatsWindow(long)}.
+    *
+    * @return the pool statistics
+    */
+   PoolStatsSnapshot getPoolStatsSnapshot();
+
+   /**
+    * Get the pool size currently targeted by the adaptive sizing controller, see
+    * {@link HikariConfig#setAdaptivePoolSizing(boolean)}.
+    *
+    * @return the target number of connections, or -1 if adaptive pool sizing is disabled
+    */
+   int getTargetConnections();
+
+   /**
+    * Get a description of the adaptive sizing controller's most recent decision, including the borrow
+    * rate, usage time and wait time estimates it was based on.
+    *
+    * @return the last sizing decision, or {@code null} if adaptive pool sizing is disabled
+    */
+   String getSizingDecision();
+
+   /**
+    * Get the 50th, 99th and 99.9th percentiles of the time taken to acquire a connection over the last
+    * housekeeping period, see {@link HikariConfig#setLatencyHistograms(boolean)}.
+    *
+    * @return the percentiles in nanoseconds, or {@code null} if latency histograms are disabled
+    */
+   long[] getConnectionAcquireNanosPercentiles();
+
+   /**
+    * Get the 50th, 99th and 99.9th percentiles of the time connections were held by borrowers over the
+    * last housekeeping period, see {@link HikariConfig#setLatencyHistograms(boolean)}.
+    *
+    * @return the percentiles in milliseconds, or {@code null} if latency histograms are disabled
+    */
+   long[] getConnectionUsageMillisPercentiles();
+
+   /**
+    * Get the 50th, 99th and 99.9th percentiles of the time taken to open a connection over the last
+    * housekeeping period, see {@link HikariConfig#setLatencyHistograms(boolean)}.
+    *
+    * @return the percentiles in milliseconds, or {@code null} if latency histograms are disabled
+    */
+   long[] getConnectionCreationMillisPercentiles();
+
    /**
     * Evict currently idle connections from the pool, and mark active (in-use) connections for eviction when they are
     * returned to the pool.
@@ -0,0 +1,445 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari;
+
+import static com.zaxxer.hikari.util.ClockSource.coarseTime;
+import static com.zaxxer.hikari.util.UtilityElf.createThreadPoolExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.Closeable;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A DataSource routing each connection request to the pool of a tenant.  The pool of a tenant is
+ * configured from a template when the tenant is first seen, and started by its first connection
+ * request.  At most {@code maxActiveTenants} pools are kept: when a new tenant exceeds the bound,
+ * the least recently used pool without borrowed connections or waiting threads is closed in the
+ * background, and is simply created again should the tenant return.  Looking up a known tenant takes
+ * no lock.
+ * <p>
+ * A pool is fenced before it is checked for eviction: {@link #getConnection(String)} does not enter
+ * a pool being evicted, and a pool is not evicted while a {@code getConnection} call is in it.
+ * <p>
+ * Tenant pools sharing a {@link com.zaxxer.hikari.pool.HikariPoolGroup}, set on the template, also
+ * share their threads and a maximum total number of connections.
+ *
+ * @author Brett Wooldridge
+ */
+public class HikariRoutingDataSource implements DataSource, Closeable
+{
+   private static final Logger LOGGER = LoggerFactory.getLogger(HikariRoutingDataSource.class);
+
+   private final HikariConfig template;
+   private final int maxActiveTenants;
+   private final BiConsumer<String, HikariConfig> tenantConfigurer;
+   private final Map<String, Tenant> tenants;
+   private final ReentrantLock evictionLock;
+   private final ThreadPoolExecutor closeTenantExecutor;
+
+   private volatile Supplier<String> tenantResolver;
+   private volatile boolean isShutdown;
+
+   /**
+    * Construct a routing DataSource.  The template is copied, and may be modified afterwards without
+    * affecting this DataSource.
+    *
+    * @param template the configuration the tenant pools are created from
+    * @param maxActiveTenants the maximum number of tenant pools kept open
+    * @param tenantConfigurer applies the configuration of a tenant, such as its jdbcUrl, to a copy of the template
+    */
+   public HikariRoutingDataSource(final HikariConfig template, final int maxActiveTenants, final BiConsumer<String, HikariConfig> tenantConfigurer)
+   {
+      if (maxActiveTenants < 1) {
+         throw new IllegalArgumentException("maxActiveTenants cannot be less than 1");
+      }
+
+      this.template = new HikariConfig();
+      template.copyStateTo(this.template);
+      this.maxActiveTenants = maxActiveTenants;
+      this.tenantConfigurer = tenantConfigurer;
+      this.tenants = new ConcurrentHashMap<>();
+      this.evictionLock = new ReentrantLock();
+      this.closeTenantExecutor = createThreadPoolExecutor(maxActiveTenants, (template.getPoolName() != null ? template.getPoolName() : "HikariPool") + " tenant closer",
+                                                          template.getThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+   }
+
+   /**
+    * Set the resolver of the current tenant, used by {@link #getConnection()}; typically it reads a
+    * thread-local set by the application for the request being served.
+    *
+    * @param tenantResolver supplies the key of the current tenant
+    */
+   public void setTenantResolver(final Supplier<String> tenantResolver)
+   {
+      this.tenantResolver = tenantResolver;
+   }
+
+   /**
+    * Obtain a connection from the pool of a tenant, creating the pool if necessary.
+    *
+    * @param tenant the key of the tenant
+    * @return a connection from the pool of the tenant
+    * @throws SQLException if no connection became available within the connection timeout, or the pool failed to start
+    */
+   public Connection getConnection(final String tenant) throws SQLException
+   {
+      for (;;) {
+         final Tenant entry = getTenant(tenant);
+         if (!entry.enter()) {
+            continue;   // the pool is being evicted, look the tenant up again
+         }
+
+         try {
+            return entry.dataSource.getConnection();
+         }
+         finally {
+            entry.exit();
+         }
+      }
+   }
+
+   /**
+    * Get the DataSource of a tenant, creating it if necessary.  The pool of a new tenant is started
+    * by its first connection request.  A DataSource evicted later on is closed, so callers should
+    * not hold on to it; unlike {@link #getConnection(String)}, connection requests made directly on
+    * the returned DataSource do not hold off its eviction.
+    *
+    * @param tenant the key of the tenant
+    * @return the DataSource of the tenant
+    * @throws SQLException if this DataSource has been closed
+    */
+   public HikariDataSource getDataSource(final String tenant) throws SQLException
+   {
+      return getTenant(tenant).dataSource;
+   }
+
+   /**
+    * Get the number of tenant pools currently kept.
+    *
+    * @return the number of tenant pools
+    */
+   public int getActiveTenants()
+   {
+      return tenants.size();
+   }
+
+   // ***********************************************************************
+   //                          DataSource methods
+   // ***********************************************************************
+
+   /** {@inheritDoc} */
+   @Override
+   public Connection getConnection() throws SQLException
+   {
+      final Supplier<String> resolver = tenantResolver;
+      if (resolver == null) {
+         throw new SQLException("No tenant resolver configured, use getConnection(String tenant)");
+      }
+
+      return getConnection(resolver.get());
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public Connection getConnection(String username, String password) throws SQLException
+   {
+      throw new SQLFeatureNotSupportedException();
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public PrintWriter getLogWriter() throws SQLException
+   {
+      return null;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void setLogWriter(PrintWriter out) throws SQLException
+   {
+      // the tenant pools are independent, there is no single log writer
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void setLoginTimeout(int seconds) throws SQLException
+   {
+      // the tenant pools are independent, there is no single login timeout
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public int getLoginTimeout() throws SQLException
+   {
+      return 0;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException
+   {
+      throw new SQLFeatureNotSupportedException();
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   @SuppressWarnings("unchecked")
+   public <T> T unwrap(Class<T> iface) throws SQLException
+   {
+      if (iface.isInstance(this)) {
+         return (T) this;
+      }
+
+      throw new SQLException("HikariRoutingDataSource is not an instance of " + iface);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public boolean isWrapperFor(Class<?> iface) throws SQLException
+   {
+      return iface.isInstance(this);
+   }
+
+   /**
+    * Shutdown the DataSource and the pools of all tenants.
+    */
+   @Override
+   public void close()
+   {
+      isShutdown = true;
+
+      evictionLock.lock();
+      try {
+         tenants.values().forEach(entry -> entry.dataSource.close());
+         tenants.clear();
+      }
+      finally {
+         evictionLock.unlock();
+      }
+
+      closeTenantExecutor.shutdown();
+      try {
+         closeTenantExecutor.awaitTermination(10L, SECONDS);
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+    * Determine whether the HikariRoutingDataSource has been closed.
+    *
+    * @return true if the HikariRoutingDataSource has been closed, false otherwise
+    */
+   public boolean isClosed()
+   {
+      return isShutdown;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public String toString()
+   {
+      return "HikariRoutingDataSource (" + template.getPoolName() + ", " + tenants.size() + " tenants)";
+   }
+
+   // ***********************************************************************
+   //                          Private methods
+   // ***********************************************************************
+
+   /**
+    * Look a tenant up, registering it if it is seen for the first time.
+    *
+    * @param tenant the key of the tenant
+    * @return the tenant entry
+    * @throws SQLException if this DataSource has been closed
+    */
+   private Tenant getTenant(final String tenant) throws SQLException
+   {
+      if (isShutdown) {
+         throw new SQLException("HikariRoutingDataSource " + this + " has been closed.");
+      }
+
+      Tenant entry = tenants.get(tenant);
+      if (entry == null) {
+         entry = addTenant(tenant);
+      }
+
+      entry.lastAccess = coarseTime();
+      return entry;
+   }
+
+   /**
+    * Register a tenant seen for the first time, then evict the least recently used idle pools
+    * exceeding maxActiveTenants.  The pool itself is not started here.
+    *
+    * @param tenant the key of the tenant
+    * @return the tenant entry, created by this thread or a concurrent one
+    */
+   private Tenant addTenant(final String tenant)
+   {
+      final HikariDataSource dataSource = new HikariDataSource();
+      template.copyStateTo(dataSource);
+      dataSource.setPoolName((template.getPoolName() != null ? template.getPoolName() : "HikariPool") + "-" + tenant);
+      tenantConfigurer.accept(tenant, dataSource);
+
+      final Tenant entry = new Tenant(dataSource);
+      final Tenant existing = tenants.putIfAbsent(tenant, entry);
+      if (existing != null) {
+         return existing;
+      }
+
+      if (isShutdown && tenants.remove(tenant, entry)) {
+         dataSource.close();   // raced with close(), getConnection() will find the pool closed
+      }
+
+      evictIdleTenants(tenant);
+      return entry;
+   }
+
+   private void evictIdleTenants(final String added)
+   {
+      final List<Tenant> evicted = new ArrayList<>();
+      evictionLock.lock();
+      try {
+         while (tenants.size() > maxActiveTenants) {
+            String lruTenant = null;
+            Tenant lru = null;
+            for (Map.Entry<String, Tenant> candidate : tenants.entrySet()) {
+               final Tenant entry = candidate.getValue();
+               if (!candidate.getKey().equals(added) && entry.isIdle() && (lru == null || entry.lastAccess - lru.lastAccess < 0)) {
+                  lruTenant = candidate.getKey();
+                  lru = entry;
+               }
+            }
+
+            if (lru == null) {
+               LOGGER.debug("{} - No idle tenant pool to evict, keeping {} tenant pools", this, tenants.size());
+               break;
+            }
+
+            if (!lru.fence()) {
+               continue;   // a connection request entered the pool since, pick again
+            }
+
+            if (tenants.remove(lruTenant, lru)) {
+               LOGGER.debug("{} - Evicting the pool of tenant {}", this, lruTenant);
+               evicted.add(lru);
+            }
+         }
+      }
+      finally {
+         evictionLock.unlock();
+      }
+
+      // a fenced pool is not entered again, closing it can wait for its connections off the request thread
+      for (Tenant entry : evicted) {
+         try {
+            closeTenantExecutor.execute(entry.dataSource::close);
+         }
+         catch (RejectedExecutionException e) {
+            entry.dataSource.close();   // raced with close(), or too many evictions pending
+         }
+      }
+   }
+
+   private static final class Tenant
+   {
+      private final HikariDataSource dataSource;
+      private final AtomicInteger borrowers;   // getConnection calls in the pool, -1 once fenced for eviction
+      private volatile long lastAccess;
+
+      Tenant(final HikariDataSource dataSource)
+      {
+         this.dataSource = dataSource;
+         this.borrowers = new AtomicInteger();
+         this.lastAccess = coarseTime();
+      }
+
+      /**
+       * @return true if a connection request may enter the pool, false if the pool is being evicted
+       */
+      boolean enter()
+      {
+         for (;;) {
+            final int count = borrowers.get();
+            if (count < 0) {
+               return false;
+            }
+            if (borrowers.compareAndSet(count, count + 1)) {
+               return true;
+            }
+         }
+      }
+
+      void exit()
+      {
+         borrowers.decrementAndGet();
+      }
+
+      /**
+       * Fence the pool against new connection requests, if none is in it and it is still idle.
+       *
+       * @return true if the pool was fenced and may be closed
+       */
+      boolean fence()
+      {
+         if (!borrowers.compareAndSet(0, -1)) {
+            return false;
+         }
+
+         if (isIdle()) {
+            return true;
+         }
+
+         borrowers.set(0);
+         return false;
+      }
+
+      /**
+       * @return true if no connection request is in the pool, and the pool has not been started or has
+       *         no borrowed connections nor waiting threads
+       */
+      boolean isIdle()
+      {
+         if (borrowers.get() > 0) {
+            return false;
+         }
+
+         final HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+         return pool == null || (pool.getActiveConnections() == 0 && pool.getThreadsAwaitingConnection() == 0);
+      }
+   }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari;
+
+/**
+ * The connection state a borrower needs, passed to {@link HikariDataSource#getConnection(StateHint)}.
+ * The pool prefers an idle connection that is already in this state, and puts the connection it
+ * hands out into this state.  Attributes that are not set are left as they are.  Instances are
+ * immutable; the {@code with*} methods return a copy.
+ *
+ * @author Brett Wooldridge
+ */
+public final class StateHint
+{
+   private final String schema;
+   private final String catalog;
+   private final Boolean readOnly;
+   private final Integer transactionIsolation;
+
+   private StateHint(final String schema, final String catalog, final Boolean readOnly, final Integer transactionIsolation)
+   {
+      this.schema = schema;
+      this.catalog = catalog;
+      this.readOnly = readOnly;
+      this.transactionIsolation = transactionIsolation;
+   }
+
+   /**
+    * Create a hint for the given schema.
+    *
+    * @param schema the schema
+    * @return the hint
+    */
+   public static StateHint schema(final String schema)
+   {
+      return new StateHint(schema, null, null, null);
+   }
+
+   /**
+    * Create a hint for the given catalog.
+    *
+    * @param catalog the catalog
+    * @return the hint
+    */
+   public static StateHint catalog(final String catalog)
+   {
+      return new StateHint(null, catalog, null, null);
+   }
+
+   /**
+    * Return a copy of this hint with the schema set.
+    *
+    * @param schema the schema
+    * @return a copy of this hint with the schema set
+    */
+   public StateHint withSchema(final String schema)
+   {
+      return new StateHint(schema, catalog, readOnly, transactionIsolation);
+   }
+
+   /**
+    * Return a copy of this hint with the catalog set.
+    *
+    * @param catalog the catalog
+    * @return a copy of this hint with the catalog set
+    */
+   public StateHint withCatalog(final String catalog)
+   {
+      return new StateHint(schema, catalog, readOnly, transactionIsolation);
+   }
+
+   /**
+    * Return a copy of this hint with the read-only state set.
+    *
+    * @param readOnly the read-only state
+    * @return a copy of this hint with the read-only state set
+    */
+   public StateHint withReadOnly(final boolean readOnly)
+   {
+      return new StateHint(schema, catalog, readOnly, transactionIsolation);
+   }
+
+   /**
+    * Return a copy of this hint with the transaction isolation set.
+    *
+    * @param transactionIsolation one of the {@link java.sql.Connection} {@code TRANSACTION_*} constants
+    * @return a copy of this hint with the transaction isolation set
+    */
+   public StateHint withTransactionIsolation(final int transactionIsolation)
+   {
+      return new StateHint(schema, catalog, readOnly, transactionIsolation);
+   }
+
+   /**
+    * Get the hinted schema.
+    *
+    * @return the schema, or {@code null} if the schema is not part of this hint
+    */
+   public String getSchema()
+   {
+      return schema;
+   }
+
+   /**
+    * Get the hinted catalog.
+    *
+    * @return the catalog, or {@code null} if the catalog is not part of this hint
+    */
+   public String getCatalog()
+   {
+      return catalog;
+   }
+
+   /**
+    * Get the hinted read-only state.
+    *
+    * @return the read-only state, or {@code null} if it is not part of this hint
+    */
+   public Boolean getReadOnly()
+   {
+      return readOnly;
+   }
+
+   /**
+    * Get the hinted transaction isolation.
+    *
+    * @return the transaction isolation, or {@code null} if it is not part of this hint
+    */
+   public Integer getTransactionIsolation()
+   {
+      return transactionIsolation;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public String toString()
+   {
+      return "StateHint{schema=" + schema + ", catalog=" + catalog + ", readOnly=" + readOnly + ", transactionIsolation=" + transactionIsolation + "}";
+   }
+}
@@ -29,6 +29,90 @@ public interface IMetricsTracker extends AutoCloseable
 
    default void recordConnectionTimeout() {}
 
+   /**
+    * Record the acquisition time of a connection borrowed with a tag.  Trackers that do not break
+    * metrics down by tag simply record the untagged metric.
+    *
+    * @param tag the tag of the borrower, or null if the connection was borrowed without a tag
+    * @param elapsedAcquiredNanos the time taken to acquire the connection
+    */
+   default void recordConnectionAcquiredNanos(final String tag, final long elapsedAcquiredNanos)
+   {
+      recordConnectionAcquiredNanos(elapsedAcquiredNanos);
+   }
+
+   default void recordConnectionUsageMillis(final String tag, final long elapsedBorrowedMillis)
+   {
+      recordConnectionUsageMillis(elapsedBorrowedMillis);
+   }
+
+   default void recordConnectionTimeout(final String tag)
+   {
+      recordConnectionTimeout();
+   }
+
+   /**
+    * Record the creation time of a connection opened on one of the hosts of a multi-host pool.
+    * Trackers that do not break metrics down by host simply record the untagged metric.
+    *
+    * @param host the host the connection was opened on, or null if the pool has a single jdbcUrl or DataSource
+    * @param connectionCreatedMillis the time taken to open the connection
+    */
+   default void recordConnectionCreatedMillis(final String host, final long connectionCreatedMillis)
+   {
+      recordConnectionCreatedMillis(connectionCreatedMillis);
+   }
+
+   /**
+    * Record that the pool evicted its connections because one of them reported that the database
+    * itself failed (for example it was shut down or restarted).
+    *
+    * @param evictedConnections the number of connections closed or marked for eviction
+    */
+   default void recordServerFailureEviction(final int evictedConnections) {}
+
+   /**
+    * Record a lookup in a connection's prepared statement cache.
+    *
+    * @param hit true if a cached statement was found, false if the statement had to be prepared
+    */
+   default void recordStatementCacheAccess(final boolean hit) {}
+
+   /**
+    * Record that a prepared statement was closed to make room in a full statement cache.
+    */
+   default void recordStatementCacheEviction() {}
+
+   /**
+    * Record a statement execution still running when the pool's slow query threshold elapsed.
+    */
+   default void recordSlowQuery() {}
+
+   /**
+    * Record a transaction still open when the pool's long transaction threshold elapsed.
+    */
+   default void recordLongTransaction() {}
+
+   /**
+    * Offer the latency histograms of a pool configured with {@code HikariConfig#setLatencyHistograms(boolean)}
+    * to the tracker, for trackers that export them as histogram buckets.  Called once, after the
+    * tracker is created.
+    *
+    * @param acquireNanos the histogram of connection acquire times, in nanoseconds
+    * @param usageMillis the histogram of connection usage times, in milliseconds
+    * @param creationMillis the histogram of connection creation times, in milliseconds
+    */
+   default void registerLatencyHistograms(LatencyHistogram acquireNanos, LatencyHistogram usageMillis, LatencyHistogram creationMillis) {}
+
+   /**
+    * Offer the statement metrics of a pool configured with {@code HikariConfig#setStatementMetricsSize(int)}
+    * to the tracker, for trackers that export them per SQL fingerprint.  Called once, after the tracker
+    * is created.
+    *
+    * @param statementMetrics the statement metrics of the pool
+    */
+   default void registerStatementMetrics(StatementMetrics statementMetrics) {}
+
    @Override
    default void close() {}
 }
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free log-linear histogram of latencies.  Each power of two is split into 16 linear
+ * sub-buckets, so a recorded value is reported within 6.25% of its true value, for values up to
+ * 2<sup>36</sup> (68 seconds in nanoseconds); larger values are counted in the last bucket.
+ * <p>
+ * Recording increments one counter in one of several stripes, chosen by the recording thread,
+ * and allocates nothing.  Readers take {@link Snapshot snapshots}, which have the same bucket
+ * layout for every histogram and can therefore be merged, for example across pools or instances.
+ *
+ * @author Brett Wooldridge
+ */
+public final class LatencyHistogram
+{
+   private static final int SUB_BUCKET_BITS = 4;
+   private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+   private static final int MAX_EXPONENT = 36;
+   private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + 1;
+
+   private static final int STRIPES = Integer.highestOneBit(Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+   private final AtomicLongArray[] stripes;
+   private final LongAdder sum;
+
+   private Snapshot previous;
+
+   public LatencyHistogram()
+   {
+      this.stripes = new AtomicLongArray[STRIPES];
+      for (int i = 0; i < STRIPES; i++) {
+         stripes[i] = new AtomicLongArray(BUCKETS);
+      }
+      this.sum = new LongAdder();
+      this.previous = new Snapshot(new long[BUCKETS], 0);
+   }
+
+   /**
+    * Record a value.
+    *
+    * @param value the value, negative values are recorded as zero
+    */
+   public void record(final long value)
+   {
+      final long v = Math.max(0L, value);
+      stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)].getAndIncrement(indexOf(v));
+      sum.add(v);
+   }
+
+   /**
+    * Take a snapshot of all values recorded so far.
+    *
+    * @return the snapshot
+    */
+   public Snapshot snapshot()
+   {
+      final long[] counts = new long[BUCKETS];
+      for (AtomicLongArray stripe : stripes) {
+         for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += stripe.get(i);
+         }
+      }
+
+      return new Snapshot(counts, sum.sum());
+   }
+
+   /**
+    * Take a snapshot of the values recorded since the previous call of this method, or since the
+    * histogram was created.  Meant for a single periodic reader, such as a pool's housekeeper.
+    *
+    * @return the snapshot of the interval
+    */
+   public synchronized Snapshot intervalSnapshot()
+   {
+      final Snapshot current = snapshot();
+      final long[] counts = new long[BUCKETS];
+      for (int i = 0; i < BUCKETS; i++) {
+         counts[i] = current.counts[i] - previous.counts[i];
+      }
+
+      final Snapshot interval = new Snapshot(counts, current.sum - previous.sum);
+      previous = current;
+      return interval;
+   }
+
+   /**
+    * Get the bounds {@code 2^n - 1} for each {@code n} in a range of exponents.  These are bucket
+    * boundaries, so {@link Snapshot#getCountAtOrBelow(long)} is exact for them, which makes them
+    * suitable as the upper bounds of exported histogram buckets.
+    *
+    * @param minExponent the smallest exponent, at least 1
+    * @param maxExponent the largest exponent, at most 36
+    * @return the bounds, in ascending order
+    */
+   public static long[] powerOfTwoBounds(final int minExponent, final int maxExponent)
+   {
+      final long[] bounds = new long[maxExponent - minExponent + 1];
+      for (int i = 0; i < bounds.length; i++) {
+         bounds[i] = (1L << (minExponent + i)) - 1;
+      }
+      return bounds;
+   }
+
+   static int indexOf(final long value)
+   {
+      if (value < SUB_BUCKETS) {
+         return (int) value;
+      }
+
+      final int exponent = 63 - Long.numberOfLeadingZeros(value);
+      if (exponent >= MAX_EXPONENT) {
+         return BUCKETS - 1;
+      }
+
+      final int block = exponent - SUB_BUCKET_BITS + 1;
+      return (block << SUB_BUCKET_BITS) + (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+   }
+
+   static long lowerBoundOf(final int index)
+   {
+      final int block = index >>> SUB_BUCKET_BITS;
+      if (block == 0) {
+         return index;
+      }
+
+      return (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << (block - 1);
+   }
+
+   static long upperBoundOf(final int index)
+   {
+      return (index == BUCKETS - 1 ? Long.MAX_VALUE : lowerBoundOf(index + 1) - 1);
+   }
+
+   /**
+    * An immutable view of the counts of a histogram.
+    */
+   public static final class Snapshot
+   {
+      private final long[] counts;
+      private final long sum;
+      private final long count;
+
+      Snapshot(final long[] counts, final long sum)
+      {
+         this.counts = counts;
+         this.sum = sum;
+
+         long total = 0;
+         for (long c : counts) {
+            total += c;
+         }
+         this.count = total;
+      }
+
+      /**
+       * Get the number of recorded values.
+       *
+       * @return the number of values
+       */
+      public long getCount()
+      {
+         return count;
+      }
+
+      /**
+       * Get the sum of the recorded values.
+       *
+       * @return the sum of the values
+       */
+      public long getSum()
+      {
+         return sum;
+      }
+
+      /**
+       * Get the value below which the specified percentage of the recorded values fall.
+       *
+       * @param percentile the percentile, between 0 and 100
+       * @return the highest value of the bucket holding the percentile (the lowest for values beyond
+       *         the range of the histogram), or 0 if nothing was recorded
+       */
+      public long getValueAtPercentile(final double percentile)
+      {
+         if (count == 0) {
+            return 0L;
+         }
+
+         final long rank = Math.max(1L, (long) Math.ceil(count * Math.min(100.0, percentile) / 100.0));
+         long seen = 0;
+         for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+               return (i == BUCKETS - 1 ? lowerBoundOf(i) : upperBoundOf(i));
+            }
+         }
+
+         return lowerBoundOf(BUCKETS - 1);
+      }
+
+      /**
+       * Get the number of recorded values less than or equal to the specified value, as exported in
+       * the cumulative buckets of Prometheus-style histograms.  Values are counted per bucket, so
+       * the count is exact when the value is a bucket boundary and otherwise includes the whole
+       * bucket holding it.
+       *
+       * @param value the upper bound
+       * @return the number of values at or below the upper bound
+       */
+      public long getCountAtOrBelow(final long value)
+      {
+         final int last = indexOf(Math.max(0L, value));
+         long total = 0;
+         for (int i = 0; i <= last; i++) {
+            total += counts[i];
+         }
+         return total;
+      }
+
+      /**
+       * Merge this snapshot with another.
+       *
+       * @param other the other snapshot
+       * @return a snapshot holding the values of both
+       */
+      public Snapshot merge(final Snapshot other)
+      {
+         final long[] merged = new long[counts.length];
+         for (int i = 0; i < merged.length; i++) {
+            merged[i] = counts[i] + other.counts[i];
+         }
+         return new Snapshot(merged, sum + other.sum);
+      }
+   }
+}
@@ -22,6 +22,9 @@ import static com.zaxxer.hikari.util.ClockSource.plusMillis;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * The statistics of a pool polled by the metrics trackers.  The statistics are loaded as one
+ * {@link PoolStatsSnapshot}, at most once per window however many gauges read them, so that a scrape
+ * reading every gauge of a pool costs one scan of the pool and returns values that agree with each other.
  *
  * @author Brett Wooldridge
  */
@@ -30,6 +33,8 @@ public abstract class PoolStats
    private final AtomicLong reloadAt;
    private final long timeoutMs;
 
+   private volatile PoolStatsSnapshot snapshot;
+
    protected volatile int totalConnections;
    protected volatile int idleConnections;
    protected volatile int activeConnections;
@@ -40,69 +45,79 @@ public abstract class PoolStats
    public PoolStats(final long timeoutMs)
    {
       this.timeoutMs = timeoutMs;
-      this.reloadAt = new AtomicLong();
+      this.reloadAt = new AtomicLong(currentTime());
    }
 
-   public int getTotalConnections()
+   /**
+    * Get the statistics, loading them if the snapshot is older than the window this instance was created
+    * with.  While one thread loads them, others get the previous snapshot.
+    *
+    * @return the snapshot
+    */
+   public PoolStatsSnapshot getSnapshot()
    {
-      if (shouldLoad()) {
-         update();
+      PoolStatsSnapshot current = snapshot;
+      if (shouldLoad() || current == null) {
+         current = load();
+         snapshot = current;
       }
 
-      return totalConnections;
+      return current;
    }
 
-   public int getIdleConnections()
+   public int getTotalConnections()
    {
-      if (shouldLoad()) {
-         update();
-      }
+      return getSnapshot().getTotalConnections();
+   }
 
-      return idleConnections;
+   public int getIdleConnections()
+   {
+      return getSnapshot().getIdleConnections();
    }
 
    public int getActiveConnections()
    {
-      if (shouldLoad()) {
-         update();
-      }
-
-      return activeConnections;
+      return getSnapshot().getActiveConnections();
    }
 
    public int getPendingThreads()
    {
-      if (shouldLoad()) {
-         update();
-      }
-
-      return pendingThreads;
+      return getSnapshot().getPendingThreads();
    }
 
    public int getMaxConnections() {
-      if (shouldLoad()) {
-         update();
-      }
-
-      return maxConnections;
+      return getSnapshot().getMaxConnections();
    }
 
    public int getMinConnections() {
-      if (shouldLoad()) {
-         update();
-      }
+      return getSnapshot().getMinConnections();
+   }
 
-      return minConnections;
+   /**
+    * Load the statistics.  Pools that can read all of them in one pass override this method; the
+    * default calls {@link #update()} and copies the fields it sets.
+    *
+    * @return the loaded statistics
+    */
+   protected PoolStatsSnapshot load()
+   {
+      update();
+      return new PoolStatsSnapshot(totalConnections, idleConnections, activeConnections, pendingThreads, maxConnections, minConnections);
    }
 
-   protected abstract void update();
+   /**
+    * Set the statistics fields, for subclasses that do not override {@link #load()}.
+    */
+   protected void update()
+   {
+   }
 
    private boolean shouldLoad()
    {
       for (; ; ) {
           final long now = currentTime();
           final long reloadTime = reloadAt.get();
-          if (reloadTime > now) {
+          if (reloadTime - now > 0) {
               return false;
           }
           else if (reloadAt.compareAndSet(reloadTime, plusMillis(now, timeoutMs))) {
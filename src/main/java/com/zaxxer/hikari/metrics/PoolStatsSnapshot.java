@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * An immutable set of pool statistics, taken together so that they agree with each other: the idle
+ * and active connections of a single pool never add up to more than its total connections.
+ *
+ * @author Brett Wooldridge
+ */
+public final class PoolStatsSnapshot
+{
+   private final int totalConnections;
+   private final int idleConnections;
+   private final int activeConnections;
+   private final int pendingThreads;
+   private final int maxConnections;
+   private final int minConnections;
+
+   @ConstructorProperties({ "totalConnections", "idleConnections", "activeConnections", "pendingThreads", "maxConnections", "minConnections" })
+   public PoolStatsSnapshot(final int totalConnections, final int idleConnections, final int activeConnections, final int pendingThreads,
+                            final int maxConnections, final int minConnections)
+   {
+      this.totalConnections = totalConnections;
+      this.idleConnections = idleConnections;
+      this.activeConnections = activeConnections;
+      this.pendingThreads = pendingThreads;
+      this.maxConnections = maxConnections;
+      this.minConnections = minConnections;
+   }
+
+   public int getTotalConnections()
+   {
+      return totalConnections;
+   }
+
+   public int getIdleConnections()
+   {
+      return idleConnections;
+   }
+
+   public int getActiveConnections()
+   {
+      return activeConnections;
+   }
+
+   public int getPendingThreads()
+   {
+      return pendingThreads;
+   }
+
+   public int getMaxConnections()
+   {
+      return maxConnections;
+   }
+
+   public int getMinConnections()
+   {
+      return minConnections;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public String toString()
+   {
+      return "total=" + totalConnections + ", active=" + activeConnections + ", idle=" + idleConnections + ", waiting=" + pendingThreads
+         + ", max=" + maxConnections + ", min=" + minConnections;
+   }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Execution statistics of the SQL run through a pool's statement proxies, kept per fingerprint in a
+ * table of bounded size.  A fingerprint is the SQL with its comments removed, its whitespace collapsed
+ * and its literals replaced by {@code ?}, so that statements differing only in their values are counted
+ * together.
+ * <p>
+ * When the table is full, the fingerprint with the least total execution time is replaced by the new
+ * one, which inherits that time as its over-estimate (the Space-Saving algorithm), so that the table
+ * converges on the fingerprints taking the most time.  The fingerprints are kept in a heap by the total
+ * time last seen, which only lags their actual total, so that the least one is found without scanning
+ * the table.
+ *
+ * @author Brett Wooldridge
+ */
+public final class StatementMetrics
+{
+   private static final int MAX_FINGERPRINT_LENGTH = 2048;
+   private static final int FINGERPRINTS_PER_ENTRY = 4;
+
+   private final int maxSize;
+   private final ConcurrentHashMap<String, Stats> table;
+   private final ConcurrentHashMap<String, String> fingerprints;
+   private final PriorityQueue<Ranked> ranking;   // guarded by admissionLock
+   private final ReentrantLock admissionLock;
+
+   public StatementMetrics(final int maxSize)
+   {
+      this.maxSize = maxSize;
+      this.table = new ConcurrentHashMap<>();
+      this.fingerprints = new ConcurrentHashMap<>();
+      this.ranking = new PriorityQueue<>(maxSize, Comparator.comparingLong(r -> r.totalNanos));
+      this.admissionLock = new ReentrantLock();
+   }
+
+   /**
+    * Get the statistics of a fingerprint, admitting it to the table if it is not tracked yet.
+    *
+    * @param fingerprint the fingerprint, see {@link #fingerprint(String)}
+    * @return the statistics
+    */
+   public Stats get(final String fingerprint)
+   {
+      final Stats stats = table.get(fingerprint);
+      return stats != null ? stats : admit(fingerprint);
+   }
+
+   /**
+    * Get the statistics of a fingerprint, if it is tracked.
+    *
+    * @param fingerprint the fingerprint
+    * @return the statistics, or null if the fingerprint is not in the table
+    */
+   public Stats peek(final String fingerprint)
+   {
+      return table.get(fingerprint);
+   }
+
+   /**
+    * Get the statistics of the fingerprints taking the most total execution time.
+    *
+    * @param n the maximum number of fingerprints
+    * @return the statistics, by descending total execution time
+    */
+   public List<Stats> getTopStatements(final int n)
+   {
+      final List<Stats> top = new ArrayList<>(table.values());
+      top.sort(Comparator.comparingLong(Stats::getTotalNanos).reversed());
+      return top.size() > n ? new ArrayList<>(top.subList(0, n)) : top;
+   }
+
+   /**
+    * Get the statistics of every tracked fingerprint.
+    *
+    * @return the statistics, in no particular order
+    */
+   public List<Stats> getStatements()
+   {
+      return new ArrayList<>(table.values());
+   }
+
+   /**
+    * Get the fingerprint of a SQL statement, remembering it for the next execution of the same SQL.  The
+    * remembered fingerprints are forgotten all at once when there are several times more of them than
+    * the table holds, as happens when the SQL embeds its values.
+    *
+    * @param sql the SQL
+    * @return the fingerprint
+    */
+   public String fingerprintOf(final String sql)
+   {
+      String fingerprint = fingerprints.get(sql);
+      if (fingerprint == null) {
+         fingerprint = fingerprint(sql);
+         if (fingerprints.size() >= maxSize * FINGERPRINTS_PER_ENTRY) {
+            fingerprints.clear();
+         }
+         fingerprints.put(sql, fingerprint);
+      }
+      return fingerprint;
+   }
+
+   /**
+    * Compute the fingerprint of a SQL statement.
+    *
+    * @param sql the SQL
+    * @return the fingerprint
+    */
+   public static String fingerprint(final String sql)
+   {
+      final int length = sql.length();
+      final StringBuilder sb = new StringBuilder(Math.min(length, MAX_FINGERPRINT_LENGTH));
+      for (int i = 0; i < length && sb.length() < MAX_FINGERPRINT_LENGTH; i++) {
+         final char c = sql.charAt(i);
+         if (c == '\'') {
+            // a string literal, with '' as an escaped quote
+            for (i++; i < length; i++) {
+               if (sql.charAt(i) == '\'') {
+                  if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                     i++;
+                  }
+                  else {
+                     break;
+                  }
+               }
+            }
+            appendParameter(sb);
+         }
+         else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+            while (i + 1 < length && sql.charAt(i + 1) != '\n') {
+               i++;
+            }
+         }
+         else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+            final int end = sql.indexOf("*/", i + 2);
+            i = (end < 0 ? length : end + 1);
+         }
+         else if (Character.isWhitespace(c)) {
+            if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+               sb.append(' ');
+            }
+         }
+         else if (Character.isDigit(c) && (sb.length() == 0 || !isIdentifierPart(sb.charAt(sb.length() - 1)))) {
+            while (i + 1 < length && (Character.isDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '.')) {
+               i++;
+            }
+            appendParameter(sb);
+         }
+         else if (c == '?') {
+            appendParameter(sb);
+         }
+         else {
+            sb.append(c);
+         }
+      }
+
+      final int end = sb.length();
+      return (end > 0 && sb.charAt(end - 1) == ' ') ? sb.substring(0, end - 1) : sb.toString();
+   }
+
+   /**
+    * Append a parameter, collapsing lists of parameters such as {@code IN (?, ?, ?)} into one.
+    */
+   private static void appendParameter(final StringBuilder sb)
+   {
+      int end = sb.length();
+      if (end > 0 && sb.charAt(end - 1) == ' ') {
+         end--;
+      }
+      if (end > 1 && sb.charAt(end - 1) == ',' && sb.charAt(end - 2) == '?') {
+         sb.setLength(end - 1);
+         return;
+      }
+      if (end > 2 && sb.charAt(end - 1) == ',' && sb.charAt(end - 2) == ' ' && sb.charAt(end - 3) == '?') {
+         sb.setLength(end - 2);
+         return;
+      }
+      sb.append('?');
+   }
+
+   private static boolean isIdentifierPart(final char c)
+   {
+      return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+   }
+
+   private Stats admit(final String fingerprint)
+   {
+      admissionLock.lock();
+      try {
+         final Stats stats = table.get(fingerprint);
+         if (stats != null) {
+            return stats;
+         }
+
+         long overestimateNanos = 0L;
+         if (table.size() >= maxSize) {
+            final Stats least = pollLeast();
+            table.remove(least.fingerprint);
+            overestimateNanos = least.getTotalNanos();
+         }
+
+         final Stats admitted = new Stats(fingerprint, overestimateNanos);
+         table.put(fingerprint, admitted);
+         ranking.add(new Ranked(admitted));
+         return admitted;
+      }
+      finally {
+         admissionLock.unlock();
+      }
+   }
+
+   /**
+    * Remove the fingerprint with the least total time from the heap.  Totals only grow, so an entry whose
+    * total has not grown since it was last seen is the least; one that has grown is put back with its
+    * new total.  Under constant executions the search is cut short after one round of the table, at the
+    * cost of evicting a fingerprint that is only nearly the least.
+    */
+   private Stats pollLeast()
+   {
+      for (int i = 0; ; i++) {
+         final Ranked ranked = ranking.poll();
+         final long totalNanos = ranked.stats.getTotalNanos();
+         if (totalNanos == ranked.totalNanos || i >= maxSize) {
+            return ranked.stats;
+         }
+
+         ranked.totalNanos = totalNanos;
+         ranking.add(ranked);
+      }
+   }
+
+   /**
+    * A fingerprint in the heap, with its total time when it was last seen.
+    */
+   private static final class Ranked
+   {
+      private final Stats stats;
+      private long totalNanos;
+
+      private Ranked(final Stats stats)
+      {
+         this.stats = stats;
+         this.totalNanos = stats.getTotalNanos();
+      }
+   }
+
+   /**
+    * The execution statistics of one fingerprint.
+    */
+   public static final class Stats
+   {
+      private final String fingerprint;
+      private final long overestimateNanos;
+      private final LongAdder executions;
+      private final LongAdder executionNanos;
+      private final LongAdder twinExecutions;
+      private final LongAdder twinExecutionNanos;
+      private final LongAdder updateCount;
+      private final LongAdder rowsFetched;
+      private volatile long maxNanos;
+
+      Stats(final String fingerprint, final long overestimateNanos)
+      {
+         this.fingerprint = fingerprint;
+         this.overestimateNanos = overestimateNanos;
+         this.executions = new LongAdder();
+         this.executionNanos = new LongAdder();
+         this.twinExecutions = new LongAdder();
+         this.twinExecutionNanos = new LongAdder();
+         this.updateCount = new LongAdder();
+         this.rowsFetched = new LongAdder();
+      }
+
+      /**
+       * Record an execution on the primary database.
+       *
+       * @param elapsedNanos the execution time
+       */
+      public void recordExecution(final long elapsedNanos)
+      {
+         executions.increment();
+         executionNanos.add(elapsedNanos);
+         if (elapsedNanos > maxNanos) {
+            maxNanos = elapsedNanos;   // racy, the maximum is approximate
+         }
+      }
+
+      /**
+       * Record the mirrored execution on the twin database.
+       *
+       * @param elapsedNanos the execution time
+       */
+      public void recordTwinExecution(final long elapsedNanos)
+      {
+         twinExecutions.increment();
+         twinExecutionNanos.add(elapsedNanos);
+      }
+
+      /**
+       * Record the number of rows updated by an execution.
+       *
+       * @param count the update count
+       */
+      public void recordUpdateCount(final long count)
+      {
+         if (count > 0) {
+            updateCount.add(count);
+         }
+      }
+
+      /**
+       * Record the number of rows fetched from a result set of an execution.
+       *
+       * @param rows the number of rows
+       */
+      public void recordRowsFetched(final long rows)
+      {
+         if (rows > 0) {
+            rowsFetched.add(rows);
+         }
+      }
+
+      public String getFingerprint()
+      {
+         return fingerprint;
+      }
+
+      public long getExecutions()
+      {
+         return executions.sum();
+      }
+
+      /**
+       * Get the total execution time on the primary database, including the over-estimate inherited on
+       * admission.
+       *
+       * @return the total execution time in nanoseconds
+       */
+      public long getTotalNanos()
+      {
+         return overestimateNanos + executionNanos.sum();
+      }
+
+      /**
+       * Get the execution time inherited from the fingerprint this one replaced in the table, by which
+       * {@link #getTotalNanos()} may over-estimate.
+       *
+       * @return the over-estimate in nanoseconds
+       */
+      public long getOverestimateNanos()
+      {
+         return overestimateNanos;
+      }
+
+      public long getExecutionNanos()
+      {
+         return executionNanos.sum();
+      }
+
+      public long getMaxNanos()
+      {
+         return maxNanos;
+      }
+
+      public long getTwinExecutions()
+      {
+         return twinExecutions.sum();
+      }
+
+      public long getTwinExecutionNanos()
+      {
+         return twinExecutionNanos.sum();
+      }
+
+      public long getUpdateCount()
+      {
+         return updateCount.sum();
+      }
+
+      public long getRowsFetched()
+      {
+         return rowsFetched.sum();
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public String toString()
+      {
+         return fingerprint + " (executions=" + getExecutions() + ", totalNanos=" + getTotalNanos() + ")";
+      }
+   }
+}
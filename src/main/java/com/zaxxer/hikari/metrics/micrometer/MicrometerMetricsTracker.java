@@ -1,13 +1,25 @@
 package com.zaxxer.hikari.metrics.micrometer;
 
 import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.LatencyHistogram;
 import com.zaxxer.hikari.metrics.PoolStats;
+import com.zaxxer.hikari.metrics.StatementMetrics;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
 import io.micrometer.core.instrument.Timer;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+import static com.zaxxer.hikari.util.ClockSource.currentTime;
+import static com.zaxxer.hikari.util.ClockSource.plusMillis;
 
 /**
  * {@link IMetricsTracker Metrics tracker} for Micrometer.
@@ -47,10 +59,44 @@ public class MicrometerMetricsTracker implements IMetricsTracker
    private static final String METRIC_NAME_PENDING_CONNECTIONS = HIKARI_METRIC_NAME_PREFIX + ".connections.pending";
    private static final String METRIC_NAME_MAX_CONNECTIONS = HIKARI_METRIC_NAME_PREFIX + ".connections.max";
    private static final String METRIC_NAME_MIN_CONNECTIONS = HIKARI_METRIC_NAME_PREFIX + ".connections.min";
+   private static final String METRIC_NAME_FAILURE_EVICTIONS = HIKARI_METRIC_NAME_PREFIX + ".connections.failure.evictions";
+   private static final String METRIC_NAME_STATEMENT_CACHE_HITS = HIKARI_METRIC_NAME_PREFIX + ".statements.cache.hits";
+   private static final String METRIC_NAME_STATEMENT_CACHE_MISSES = HIKARI_METRIC_NAME_PREFIX + ".statements.cache.misses";
+   private static final String METRIC_NAME_STATEMENT_CACHE_EVICTIONS = HIKARI_METRIC_NAME_PREFIX + ".statements.cache.evictions";
+   private static final String METRIC_NAME_SLOW_QUERIES = HIKARI_METRIC_NAME_PREFIX + ".statements.slow";
+   private static final String METRIC_NAME_LONG_TRANSACTIONS = HIKARI_METRIC_NAME_PREFIX + ".transactions.long";
+
+   private static final String METRIC_TAG = "tag";
+   private static final String METRIC_NAME_TAG_WAIT = HIKARI_METRIC_NAME_PREFIX + ".tag.connections.acquire";
+   private static final String METRIC_NAME_TAG_USAGE = HIKARI_METRIC_NAME_PREFIX + ".tag.connections.usage";
+   private static final String METRIC_NAME_TAG_TIMEOUT_RATE = HIKARI_METRIC_NAME_PREFIX + ".tag.connections.timeout";
+
+   private static final String METRIC_HOST = "host";
+   private static final String METRIC_NAME_HOST_CONNECT = HIKARI_METRIC_NAME_PREFIX + ".host.connections.creation";
+
+   private static final String METRIC_RANK = "rank";
+   private static final int STATEMENT_RANKS = 10;
+   private static final long STATEMENT_RANKING_WINDOW_MS = 1000L;
+   private static final String METRIC_NAME_TOP_STATEMENT_EXECUTIONS = HIKARI_METRIC_NAME_PREFIX + ".statements.top.executions";
+   private static final String METRIC_NAME_TOP_STATEMENT_TIME = HIKARI_METRIC_NAME_PREFIX + ".statements.top.time";
+   private static final String METRIC_NAME_TOP_STATEMENT_TWIN_TIME = HIKARI_METRIC_NAME_PREFIX + ".statements.top.twin.time";
+   private static final String METRIC_NAME_TOP_STATEMENT_UPDATED_ROWS = HIKARI_METRIC_NAME_PREFIX + ".statements.top.rows.updated";
+   private static final String METRIC_NAME_TOP_STATEMENT_FETCHED_ROWS = HIKARI_METRIC_NAME_PREFIX + ".statements.top.rows.fetched";
+
+   private static final String METRIC_LE = "le";
+   private static final String METRIC_NAME_WAIT_BUCKETS = METRIC_NAME_WAIT + ".buckets";
+   private static final String METRIC_NAME_USAGE_BUCKETS = METRIC_NAME_USAGE + ".buckets";
+   private static final String METRIC_NAME_CONNECT_BUCKETS = METRIC_NAME_CONNECT + ".buckets";
 
 
    private final Timer connectionObtainTimer;
    private final Counter connectionTimeoutCounter;
+   private final Counter failureEvictionCounter;
+   private final Counter statementCacheHitCounter;
+   private final Counter statementCacheMissCounter;
+   private final Counter statementCacheEvictionCounter;
+   private final Counter slowQueryCounter;
+   private final Counter longTransactionCounter;
    private final Timer connectionUsage;
    private final Timer connectionCreation;
    @SuppressWarnings({"FieldCanBeLocal", "unused"})
@@ -67,10 +113,21 @@ public class MicrometerMetricsTracker implements IMetricsTracker
    private final Gauge minConnectionGauge;
    @SuppressWarnings({"FieldCanBeLocal", "unused"})
    private final PoolStats poolStats;
+   @SuppressWarnings({"FieldCanBeLocal", "unused"})
+   private TopStatements topStatements;
+
+   private final String poolName;
+   private final MeterRegistry meterRegistry;
+   private final ConcurrentHashMap<String, Timer> tagObtainTimers = new ConcurrentHashMap<>();
+   private final ConcurrentHashMap<String, Timer> tagUsageTimers = new ConcurrentHashMap<>();
+   private final ConcurrentHashMap<String, Counter> tagTimeoutCounters = new ConcurrentHashMap<>();
+   private final ConcurrentHashMap<String, Timer> hostCreationTimers = new ConcurrentHashMap<>();
 
    MicrometerMetricsTracker(final String poolName, final PoolStats poolStats, final MeterRegistry meterRegistry)
    {
       this.poolStats = poolStats;
+      this.poolName = poolName;
+      this.meterRegistry = meterRegistry;
 
       this.connectionObtainTimer = Timer.builder(METRIC_NAME_WAIT)
          .description("Connection acquire time")
@@ -92,6 +149,36 @@ public class MicrometerMetricsTracker implements IMetricsTracker
          .tags(METRIC_CATEGORY, poolName)
          .register(meterRegistry);
 
+      this.failureEvictionCounter = Counter.builder(METRIC_NAME_FAILURE_EVICTIONS)
+         .description("Connections evicted because the database failed")
+         .tags(METRIC_CATEGORY, poolName)
+         .register(meterRegistry);
+
+      this.statementCacheHitCounter = Counter.builder(METRIC_NAME_STATEMENT_CACHE_HITS)
+         .description("Prepared statement cache hits")
+         .tags(METRIC_CATEGORY, poolName)
+         .register(meterRegistry);
+
+      this.statementCacheMissCounter = Counter.builder(METRIC_NAME_STATEMENT_CACHE_MISSES)
+         .description("Prepared statement cache misses")
+         .tags(METRIC_CATEGORY, poolName)
+         .register(meterRegistry);
+
+      this.statementCacheEvictionCounter = Counter.builder(METRIC_NAME_STATEMENT_CACHE_EVICTIONS)
+         .description("Prepared statements evicted from the cache")
+         .tags(METRIC_CATEGORY, poolName)
+         .register(meterRegistry);
+
+      this.slowQueryCounter = Counter.builder(METRIC_NAME_SLOW_QUERIES)
+         .description("Statement executions exceeding the slow query threshold")
+         .tags(METRIC_CATEGORY, poolName)
+         .register(meterRegistry);
+
+      this.longTransactionCounter = Counter.builder(METRIC_NAME_LONG_TRANSACTIONS)
+         .description("Transactions exceeding the long transaction threshold")
+         .tags(METRIC_CATEGORY, poolName)
+         .register(meterRegistry);
+
       this.totalConnectionGauge = Gauge.builder(METRIC_NAME_TOTAL_CONNECTIONS, poolStats, PoolStats::getTotalConnections)
          .description("Total connections")
          .tags(METRIC_CATEGORY, poolName)
@@ -149,4 +236,191 @@ public class MicrometerMetricsTracker implements IMetricsTracker
    {
       connectionCreation.record(connectionCreatedMillis, TimeUnit.MILLISECONDS);
    }
+
+   /** {@inheritDoc} */
+   @Override
+   public void recordServerFailureEviction(final int evictedConnections)
+   {
+      failureEvictionCounter.increment(evictedConnections);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void recordStatementCacheAccess(final boolean hit)
+   {
+      (hit ? statementCacheHitCounter : statementCacheMissCounter).increment();
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void recordStatementCacheEviction()
+   {
+      statementCacheEvictionCounter.increment();
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void recordSlowQuery()
+   {
+      slowQueryCounter.increment();
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void recordLongTransaction()
+   {
+      longTransactionCounter.increment();
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void recordConnectionAcquiredNanos(final String tag, final long elapsedAcquiredNanos)
+   {
+      recordConnectionAcquiredNanos(elapsedAcquiredNanos);
+      if (tag != null) {
+         tagObtainTimers.computeIfAbsent(tag, t -> Timer.builder(METRIC_NAME_TAG_WAIT)
+            .description("Connection acquire time by tag")
+            .tags(METRIC_CATEGORY, poolName, METRIC_TAG, t)
+            .register(meterRegistry))
+            .record(elapsedAcquiredNanos, TimeUnit.NANOSECONDS);
+      }
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void recordConnectionUsageMillis(final String tag, final long elapsedBorrowedMillis)
+   {
+      recordConnectionUsageMillis(elapsedBorrowedMillis);
+      if (tag != null) {
+         tagUsageTimers.computeIfAbsent(tag, t -> Timer.builder(METRIC_NAME_TAG_USAGE)
+            .description("Connection usage time by tag")
+            .tags(METRIC_CATEGORY, poolName, METRIC_TAG, t)
+            .register(meterRegistry))
+            .record(elapsedBorrowedMillis, TimeUnit.MILLISECONDS);
+      }
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void recordConnectionTimeout(final String tag)
+   {
+      recordConnectionTimeout();
+      if (tag != null) {
+         tagTimeoutCounters.computeIfAbsent(tag, t -> Counter.builder(METRIC_NAME_TAG_TIMEOUT_RATE)
+            .description("Connection timeout total count by tag")
+            .tags(METRIC_CATEGORY, poolName, METRIC_TAG, t)
+            .register(meterRegistry))
+            .increment();
+      }
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void recordConnectionCreatedMillis(final String host, final long connectionCreatedMillis)
+   {
+      recordConnectionCreatedMillis(connectionCreatedMillis);
+      if (host != null) {
+         hostCreationTimers.computeIfAbsent(host, h -> Timer.builder(METRIC_NAME_HOST_CONNECT)
+            .description("Connection creation time by host")
+            .tags(METRIC_CATEGORY, poolName, METRIC_HOST, h)
+            .register(meterRegistry))
+            .record(connectionCreatedMillis, TimeUnit.MILLISECONDS);
+      }
+   }
+
+   /**
+    * Registers a cumulative counter per power-of-two upper bound of each histogram, tagged with the
+    * bound as {@code le}, so that the buckets of several pools or instances can be summed.
+    */
+   @Override
+   public void registerLatencyHistograms(final LatencyHistogram acquireNanos, final LatencyHistogram usageMillis, final LatencyHistogram creationMillis)
+   {
+      registerBuckets(METRIC_NAME_WAIT_BUCKETS, "Connection acquire time (ns) at or below le", acquireNanos, LatencyHistogram.powerOfTwoBounds(10, 36));
+      registerBuckets(METRIC_NAME_USAGE_BUCKETS, "Connection usage time (ms) at or below le", usageMillis, LatencyHistogram.powerOfTwoBounds(1, 26));
+      registerBuckets(METRIC_NAME_CONNECT_BUCKETS, "Connection creation time (ms) at or below le", creationMillis, LatencyHistogram.powerOfTwoBounds(1, 26));
+   }
+
+   /**
+    * Registers gauges for a fixed number of ranks, each reporting the statistics of the fingerprint
+    * currently at that rank by total execution time, so that the number of meters does not grow with
+    * the number of distinct statements.  The fingerprint at each rank is available from
+    * {@link StatementMetrics#getTopStatements(int)}.
+    */
+   @Override
+   public void registerStatementMetrics(final StatementMetrics statementMetrics)
+   {
+      final TopStatements top = new TopStatements(statementMetrics);
+      this.topStatements = top;
+
+      for (int i = 0; i < STATEMENT_RANKS; i++) {
+         final int rank = i;
+         final String rankTag = String.valueOf(rank + 1);
+         Gauge.builder(METRIC_NAME_TOP_STATEMENT_EXECUTIONS, top, t -> t.value(rank, StatementMetrics.Stats::getExecutions))
+            .description("Executions of the statement at this rank by total execution time")
+            .tags(METRIC_CATEGORY, poolName, METRIC_RANK, rankTag)
+            .register(meterRegistry);
+
+         TimeGauge.builder(METRIC_NAME_TOP_STATEMENT_TIME, top, TimeUnit.NANOSECONDS, t -> t.value(rank, StatementMetrics.Stats::getExecutionNanos))
+            .description("Execution time of the statement at this rank by total execution time")
+            .tags(METRIC_CATEGORY, poolName, METRIC_RANK, rankTag)
+            .register(meterRegistry);
+
+         TimeGauge.builder(METRIC_NAME_TOP_STATEMENT_TWIN_TIME, top, TimeUnit.NANOSECONDS, t -> t.value(rank, StatementMetrics.Stats::getTwinExecutionNanos))
+            .description("Execution time on the twin of the statement at this rank by total execution time")
+            .tags(METRIC_CATEGORY, poolName, METRIC_RANK, rankTag)
+            .register(meterRegistry);
+
+         Gauge.builder(METRIC_NAME_TOP_STATEMENT_UPDATED_ROWS, top, t -> t.value(rank, StatementMetrics.Stats::getUpdateCount))
+            .description("Rows updated by the statement at this rank by total execution time")
+            .tags(METRIC_CATEGORY, poolName, METRIC_RANK, rankTag)
+            .register(meterRegistry);
+
+         Gauge.builder(METRIC_NAME_TOP_STATEMENT_FETCHED_ROWS, top, t -> t.value(rank, StatementMetrics.Stats::getRowsFetched))
+            .description("Rows fetched by the statement at this rank by total execution time")
+            .tags(METRIC_CATEGORY, poolName, METRIC_RANK, rankTag)
+            .register(meterRegistry);
+      }
+   }
+
+   private void registerBuckets(final String name, final String description, final LatencyHistogram histogram, final long[] bounds)
+   {
+      for (long bound : bounds) {
+         FunctionCounter.builder(name, histogram, h -> h.snapshot().getCountAtOrBelow(bound))
+            .description(description)
+            .tags(METRIC_CATEGORY, poolName, METRIC_LE, String.valueOf(bound))
+            .register(meterRegistry);
+      }
+   }
+
+   /**
+    * The fingerprints with the most total execution time, ranked at most once per window however many
+    * gauges read them, so that the gauges of one scrape report the same ranking.
+    */
+   private static final class TopStatements
+   {
+      private final StatementMetrics statementMetrics;
+      private final AtomicLong reloadAt;
+
+      private volatile List<StatementMetrics.Stats> ranked;
+
+      private TopStatements(final StatementMetrics statementMetrics)
+      {
+         this.statementMetrics = statementMetrics;
+         this.reloadAt = new AtomicLong(currentTime());
+         this.ranked = Collections.emptyList();
+      }
+
+      private double value(final int rank, final ToLongFunction<StatementMetrics.Stats> value)
+      {
+         List<StatementMetrics.Stats> current = ranked;
+         final long reloadTime = reloadAt.get();
+         final long now = currentTime();
+         if (reloadTime - now <= 0 && reloadAt.compareAndSet(reloadTime, plusMillis(now, STATEMENT_RANKING_WINDOW_MS))) {
+            current = statementMetrics.getTopStatements(STATEMENT_RANKS);
+            ranked = current;
+         }
+
+         return rank < current.size() ? value.applyAsLong(current.get(rank)) : 0L;
+      }
+   }
 }
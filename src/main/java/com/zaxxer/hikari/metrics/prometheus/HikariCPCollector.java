@@ -17,10 +17,12 @@
 package com.zaxxer.hikari.metrics.prometheus;
 
 import com.zaxxer.hikari.metrics.PoolStats;
+import com.zaxxer.hikari.metrics.PoolStatsSnapshot;
 import io.prometheus.client.Collector;
 import io.prometheus.client.GaugeMetricFamily;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -34,19 +36,23 @@ class HikariCPCollector extends Collector {
 
    @Override
    public List<MetricFamilySamples> collect() {
+      // one snapshot per pool, so that the gauges of a pool agree with each other
+      final Map<String, PoolStatsSnapshot> snapshots = new HashMap<>();
+      poolStatsMap.forEach((k, v) -> snapshots.put(k, v.getSnapshot()));
+
       return Arrays.asList(
-         createGauge("hikaricp_active_connections", "Active connections",
-            PoolStats::getActiveConnections),
-         createGauge("hikaricp_idle_connections", "Idle connections",
-            PoolStats::getIdleConnections),
-         createGauge("hikaricp_pending_threads", "Pending threads",
-            PoolStats::getPendingThreads),
-         createGauge("hikaricp_connections", "The number of current connections",
-            PoolStats::getTotalConnections),
-         createGauge("hikaricp_max_connections", "Max connections",
-            PoolStats::getMaxConnections),
-         createGauge("hikaricp_min_connections", "Min connections",
-            PoolStats::getMinConnections)
+         createGauge(snapshots, "hikaricp_active_connections", "Active connections",
+            PoolStatsSnapshot::getActiveConnections),
+         createGauge(snapshots, "hikaricp_idle_connections", "Idle connections",
+            PoolStatsSnapshot::getIdleConnections),
+         createGauge(snapshots, "hikaricp_pending_threads", "Pending threads",
+            PoolStatsSnapshot::getPendingThreads),
+         createGauge(snapshots, "hikaricp_connections", "The number of current connections",
+            PoolStatsSnapshot::getTotalConnections),
+         createGauge(snapshots, "hikaricp_max_connections", "Max connections",
+            PoolStatsSnapshot::getMaxConnections),
+         createGauge(snapshots, "hikaricp_min_connections", "Min connections",
+            PoolStatsSnapshot::getMinConnections)
       );
    }
 
@@ -55,10 +61,10 @@ class HikariCPCollector extends Collector {
       return this;
    }
 
-   private GaugeMetricFamily createGauge(String metric, String help,
-      Function<PoolStats, Integer> metricValueFunction) {
+   private GaugeMetricFamily createGauge(Map<String, PoolStatsSnapshot> snapshots, String metric, String help,
+      Function<PoolStatsSnapshot, Integer> metricValueFunction) {
       GaugeMetricFamily metricFamily = new GaugeMetricFamily(metric, help, LABEL_NAMES);
-      poolStatsMap.forEach((k, v) -> metricFamily.addMetric(
+      snapshots.forEach((k, v) -> metricFamily.addMetric(
          Collections.singletonList(k),
          metricValueFunction.apply(v)
       ));
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.zaxxer.hikari.metrics.prometheus;
+
+import com.zaxxer.hikari.metrics.LatencyHistogram;
+import io.prometheus.client.Collector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Exports the {@link LatencyHistogram latency histograms} of pools as Prometheus histograms, with a
+ * cumulative bucket per power-of-two upper bound so that they can be aggregated across pools and
+ * instances with {@code histogram_quantile}.
+ */
+class HikariCPHistogramCollector extends Collector {
+
+   private static final List<String> LABEL_NAMES = Collections.singletonList("pool");
+   private static final List<String> BUCKET_LABEL_NAMES = Arrays.asList("pool", "le");
+
+   private static final long[] NANOS_BOUNDS = LatencyHistogram.powerOfTwoBounds(10, 36);
+   private static final long[] MILLIS_BOUNDS = LatencyHistogram.powerOfTwoBounds(1, 26);
+
+   private final Map<String, LatencyHistogram[]> histogramsMap = new ConcurrentHashMap<>();
+
+   @Override
+   public List<MetricFamilySamples> collect() {
+      return Arrays.asList(
+         createHistogram("hikaricp_connection_acquired_nanos_histogram", "Connection acquired time (ns)",
+            h -> h[0], NANOS_BOUNDS),
+         createHistogram("hikaricp_connection_usage_millis_histogram", "Connection usage (ms)",
+            h -> h[1], MILLIS_BOUNDS),
+         createHistogram("hikaricp_connection_creation_millis_histogram", "Connection creation (ms)",
+            h -> h[2], MILLIS_BOUNDS)
+      );
+   }
+
+   protected HikariCPHistogramCollector add(String name, LatencyHistogram acquireNanos, LatencyHistogram usageMillis, LatencyHistogram creationMillis) {
+      histogramsMap.put(name, new LatencyHistogram[] { acquireNanos, usageMillis, creationMillis });
+      return this;
+   }
+
+   private MetricFamilySamples createHistogram(String metric, String help,
+      Function<LatencyHistogram[], LatencyHistogram> histogramFunction, long[] bounds) {
+      List<MetricFamilySamples.Sample> samples = new ArrayList<>();
+      histogramsMap.forEach((k, v) -> {
+         LatencyHistogram.Snapshot snapshot = histogramFunction.apply(v).snapshot();
+         for (long bound : bounds) {
+            samples.add(new MetricFamilySamples.Sample(metric + "_bucket", BUCKET_LABEL_NAMES,
+               Arrays.asList(k, doubleToGoString(bound)), snapshot.getCountAtOrBelow(bound)));
+         }
+         samples.add(new MetricFamilySamples.Sample(metric + "_bucket", BUCKET_LABEL_NAMES,
+            Arrays.asList(k, "+Inf"), snapshot.getCount()));
+         samples.add(new MetricFamilySamples.Sample(metric + "_count", LABEL_NAMES,
+            Collections.singletonList(k), snapshot.getCount()));
+         samples.add(new MetricFamilySamples.Sample(metric + "_sum", LABEL_NAMES,
+            Collections.singletonList(k), snapshot.getSum()));
+      });
+      return new MetricFamilySamples(metric, Type.HISTOGRAM, help, samples);
+   }
+}
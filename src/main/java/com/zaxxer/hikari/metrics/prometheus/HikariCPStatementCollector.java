@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package com.zaxxer.hikari.metrics.prometheus;
+
+import com.zaxxer.hikari.metrics.StatementMetrics;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Exports the {@link StatementMetrics statement metrics} of pools, labelled by SQL fingerprint.  Only
+ * the fingerprints currently in a pool's table are exported, so a counter disappears when its
+ * fingerprint is evicted and starts again from zero if it is admitted again.
+ */
+class HikariCPStatementCollector extends Collector {
+
+   private static final List<String> LABEL_NAMES = Arrays.asList("pool", "sql");
+
+   private final Map<String, StatementMetrics> statementMetricsMap = new ConcurrentHashMap<>();
+
+   @Override
+   public List<MetricFamilySamples> collect() {
+      return Arrays.asList(
+         createCounter("hikaricp_statement_executions_total", "Statement executions",
+            StatementMetrics.Stats::getExecutions),
+         createCounter("hikaricp_statement_execution_nanos_total", "Statement execution time (ns)",
+            StatementMetrics.Stats::getExecutionNanos),
+         createCounter("hikaricp_statement_twin_execution_nanos_total", "Statement execution time on the twin (ns)",
+            StatementMetrics.Stats::getTwinExecutionNanos),
+         createCounter("hikaricp_statement_updated_rows_total", "Rows updated by statements",
+            StatementMetrics.Stats::getUpdateCount),
+         createCounter("hikaricp_statement_fetched_rows_total", "Rows fetched from statement result sets",
+            StatementMetrics.Stats::getRowsFetched)
+      );
+   }
+
+   protected HikariCPStatementCollector add(String name, StatementMetrics statementMetrics) {
+      statementMetricsMap.put(name, statementMetrics);
+      return this;
+   }
+
+   private CounterMetricFamily createCounter(String metric, String help,
+      ToLongFunction<StatementMetrics.Stats> metricValueFunction) {
+      CounterMetricFamily metricFamily = new CounterMetricFamily(metric, help, LABEL_NAMES);
+      statementMetricsMap.forEach((k, v) -> v.getStatements().forEach(stats -> metricFamily.addMetric(
+         Arrays.asList(k, stats.getFingerprint()),
+         metricValueFunction.applyAsLong(stats)
+      )));
+      return metricFamily;
+   }
+}
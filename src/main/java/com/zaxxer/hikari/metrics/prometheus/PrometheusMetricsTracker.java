@@ -17,11 +17,14 @@
 package com.zaxxer.hikari.metrics.prometheus;
 
 import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.LatencyHistogram;
+import com.zaxxer.hikari.metrics.StatementMetrics;
 import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.Counter;
 import io.prometheus.client.Summary;
 
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 class PrometheusMetricsTracker implements IMetricsTracker
 {
@@ -59,8 +62,16 @@ class PrometheusMetricsTracker implements IMetricsTracker
    private final Summary.Child elapsedBorrowedSummaryChild;
    private final Summary.Child elapsedCreationSummaryChild;
 
-   PrometheusMetricsTracker(String poolName, CollectorRegistry collectorRegistry) {
+   private final String poolName;
+   private final Supplier<HikariCPHistogramCollector> histogramCollector;
+   private final Supplier<HikariCPStatementCollector> statementCollector;
+
+   PrometheusMetricsTracker(String poolName, CollectorRegistry collectorRegistry, Supplier<HikariCPHistogramCollector> histogramCollector,
+                            Supplier<HikariCPStatementCollector> statementCollector) {
       registerMetrics(collectorRegistry);
+      this.poolName = poolName;
+      this.histogramCollector = histogramCollector;
+      this.statementCollector = statementCollector;
       this.connectionTimeoutCounterChild = CONNECTION_TIMEOUT_COUNTER.labels(poolName);
       this.elapsedAcquiredSummaryChild = ELAPSED_ACQUIRED_SUMMARY.labels(poolName);
       this.elapsedBorrowedSummaryChild = ELAPSED_BORROWED_SUMMARY.labels(poolName);
@@ -97,4 +108,16 @@ class PrometheusMetricsTracker implements IMetricsTracker
    {
       connectionTimeoutCounterChild.inc();
    }
+
+   @Override
+   public void registerLatencyHistograms(LatencyHistogram acquireNanos, LatencyHistogram usageMillis, LatencyHistogram creationMillis)
+   {
+      histogramCollector.get().add(poolName, acquireNanos, usageMillis, creationMillis);
+   }
+
+   @Override
+   public void registerStatementMetrics(StatementMetrics statementMetrics)
+   {
+      statementCollector.get().add(poolName, statementMetrics);
+   }
 }
@@ -31,6 +31,10 @@ public class PrometheusMetricsTrackerFactory implements MetricsTrackerFactory {
 
    private HikariCPCollector collector;
 
+   private HikariCPHistogramCollector histogramCollector;
+
+   private HikariCPStatementCollector statementCollector;
+
    private CollectorRegistry collectorRegistry;
 
    /**
@@ -52,7 +56,7 @@ public class PrometheusMetricsTrackerFactory implements MetricsTrackerFactory {
    @Override
    public IMetricsTracker create(String poolName, PoolStats poolStats) {
       getCollector().add(poolName, poolStats);
-      return new PrometheusMetricsTracker(poolName, this.collectorRegistry);
+      return new PrometheusMetricsTracker(poolName, this.collectorRegistry, this::getHistogramCollector, this::getStatementCollector);
    }
 
    /**
@@ -64,4 +68,24 @@ public class PrometheusMetricsTrackerFactory implements MetricsTrackerFactory {
       }
       return collector;
    }
+
+   /**
+    * initialize and register the histogram collector once a pool has latency histograms
+    */
+   private synchronized HikariCPHistogramCollector getHistogramCollector() {
+      if (histogramCollector == null) {
+         histogramCollector = new HikariCPHistogramCollector().register(this.collectorRegistry);
+      }
+      return histogramCollector;
+   }
+
+   /**
+    * initialize and register the statement collector once a pool has statement metrics
+    */
+   private synchronized HikariCPStatementCollector getStatementCollector() {
+      if (statementCollector == null) {
+         statementCollector = new HikariCPStatementCollector().register(this.collectorRegistry);
+      }
+      return statementCollector;
+   }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.zaxxer.hikari.pool;
+
+/**
+ * The deferrable state of a connection: read-only, transaction isolation, catalog and schema.  It is
+ * either the live state of a {@link ProxyConnection}, or a {@link #snapshot(ConnectionState) snapshot}
+ * of it that a borrower leaves behind when the reset of its state is deferred to the next borrower,
+ * so that the closed proxy itself is not kept reachable from the pool.
+ *
+ * @author Brett Wooldridge
+ */
+abstract class ConnectionState
+{
+   abstract boolean getReadOnlyState();
+
+   abstract int getTransactionIsolationState();
+
+   abstract String getCatalogState();
+
+   abstract String getSchemaState();
+
+   /**
+    * Copy the deferrable state of a connection.
+    *
+    * @param state the state to copy
+    * @return an immutable copy of the state
+    */
+   static ConnectionState snapshot(final ConnectionState state)
+   {
+      return new Snapshot(state.getReadOnlyState(), state.getTransactionIsolationState(), state.getCatalogState(), state.getSchemaState());
+   }
+
+   private static final class Snapshot extends ConnectionState
+   {
+      private final boolean isReadOnly;
+      private final int transactionIsolation;
+      private final String catalog;
+      private final String schema;
+
+      Snapshot(final boolean isReadOnly, final int transactionIsolation, final String catalog, final String schema)
+      {
+         this.isReadOnly = isReadOnly;
+         this.transactionIsolation = transactionIsolation;
+         this.catalog = catalog;
+         this.schema = schema;
+      }
+
+      @Override
+      boolean getReadOnlyState()
+      {
+         return isReadOnly;
+      }
+
+      @Override
+      int getTransactionIsolationState()
+      {
+         return transactionIsolation;
+      }
+
+      @Override
+      String getCatalogState()
+      {
+         return catalog;
+      }
+
+      @Override
+      String getSchemaState()
+      {
+         return schema;
+      }
+   }
+}
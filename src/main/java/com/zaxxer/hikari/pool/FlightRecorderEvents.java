@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The JDK Flight Recorder events of the pool.  This is the only class referring to {@code jdk.jfr},
+ * and it is loaded only if {@link PoolEvents} found the Flight Recorder, so that the pool still runs
+ * on JVMs without it.  The events are disabled unless a recording enables them, as the bundled
+ * {@code hikaricp.jfc} does, so that a recording with the JDK's own settings does not record every
+ * borrow.
+ *
+ * @author Brett Wooldridge
+ */
+final class FlightRecorderEvents
+{
+   private static final String[] BORROW_SOURCES = { "thread-local", "shared", "handoff", "timeout" };
+
+   private FlightRecorderEvents()
+   {
+      // utility class
+   }
+
+   static void register()
+   {
+      FlightRecorder.register(BorrowEvent.class);
+      FlightRecorder.register(ValidationEvent.class);
+      FlightRecorder.register(CreateEvent.class);
+      FlightRecorder.register(CloseEvent.class);
+      FlightRecorder.register(ResetEvent.class);
+      FlightRecorder.register(TwinCallEvent.class);
+      FlightRecorder.register(FailoverEvent.class);
+      FlightRecorder.register(JournalFlushEvent.class);
+      FlightRecorder.register(ReplayEvent.class);
+      FlightRecorder.register(SlowQueryEvent.class);
+      FlightRecorder.register(LongTransactionEvent.class);
+   }
+
+   static Object begin(final int kind)
+   {
+      final PoolEvent event;
+      switch (kind) {
+         case PoolEvents.BORROW:
+            event = new BorrowEvent();
+            break;
+         case PoolEvents.VALIDATION:
+            event = new ValidationEvent();
+            break;
+         case PoolEvents.CREATE:
+            event = new CreateEvent();
+            break;
+         case PoolEvents.CLOSE:
+            event = new CloseEvent();
+            break;
+         case PoolEvents.RESET:
+            event = new ResetEvent();
+            break;
+         case PoolEvents.TWIN_CALL:
+            event = new TwinCallEvent();
+            break;
+         case PoolEvents.JOURNAL_FLUSH:
+            event = new JournalFlushEvent();
+            break;
+         case PoolEvents.REPLAY:
+            event = new ReplayEvent();
+            break;
+         default:
+            throw new IllegalArgumentException("Unknown event kind " + kind);
+      }
+
+      if (!event.isEnabled()) {
+         return null;
+      }
+
+      event.begin();
+      return event;
+   }
+
+   static void borrowed(final Object begun, final String poolName, final String tag, final int source)
+   {
+      final BorrowEvent event = (BorrowEvent) begun;
+      event.end();
+      if (event.shouldCommit()) {
+         event.poolName = poolName;
+         event.tag = tag;
+         event.source = BORROW_SOURCES[source];
+         event.commit();
+      }
+   }
+
+   static void validated(final Object begun, final String poolName, final boolean alive)
+   {
+      final ValidationEvent event = (ValidationEvent) begun;
+      event.end();
+      if (event.shouldCommit()) {
+         event.poolName = poolName;
+         event.alive = alive;
+         event.commit();
+      }
+   }
+
+   static void created(final Object begun, final String poolName, final String host, final boolean success)
+   {
+      final CreateEvent event = (CreateEvent) begun;
+      event.end();
+      if (event.shouldCommit()) {
+         event.poolName = poolName;
+         event.host = host;
+         event.success = success;
+         event.commit();
+      }
+   }
+
+   static void closed(final Object begun, final String poolName, final String reason)
+   {
+      final CloseEvent event = (CloseEvent) begun;
+      event.end();
+      if (event.shouldCommit()) {
+         event.poolName = poolName;
+         event.reason = reason;
+         event.commit();
+      }
+   }
+
+   static void reset(final Object begun, final String poolName, final int dirtyBits)
+   {
+      final ResetEvent event = (ResetEvent) begun;
+      event.end();
+      if (event.shouldCommit()) {
+         event.poolName = poolName;
+         event.dirtyBits = dirtyBits;
+         event.commit();
+      }
+   }
+
+   static void twinCalled(final Object begun, final String poolName, final String sqlState)
+   {
+      final TwinCallEvent event = (TwinCallEvent) begun;
+      event.end();
+      if (event.shouldCommit()) {
+         event.poolName = poolName;
+         event.sqlState = sqlState;
+         event.commit();
+      }
+   }
+
+   static void failover(final String poolName, final String transition)
+   {
+      final FailoverEvent event = new FailoverEvent();
+      if (event.shouldCommit()) {
+         event.poolName = poolName;
+         event.transition = transition;
+         event.commit();
+      }
+   }
+
+   static void journalFlushed(final Object begun, final String poolName, final int records)
+   {
+      final JournalFlushEvent event = (JournalFlushEvent) begun;
+      event.end();
+      if (event.shouldCommit()) {
+         event.poolName = poolName;
+         event.records = records;
+         event.commit();
+      }
+   }
+
+   static void replayed(final Object begun, final String poolName, final int records, final boolean completed)
+   {
+      final ReplayEvent event = (ReplayEvent) begun;
+      event.end();
+      if (event.shouldCommit()) {
+         event.poolName = poolName;
+         event.records = records;
+         event.completed = completed;
+         event.commit();
+      }
+   }
+
+   static void slowExecution(final String poolName, final boolean transaction, final String sql, final long elapsedMillis, final Thread thread)
+   {
+      final SlowExecutionEvent event = transaction ? new LongTransactionEvent() : new SlowQueryEvent();
+      if (event.shouldCommit()) {
+         event.poolName = poolName;
+         event.sql = sql;
+         event.elapsed = elapsedMillis;
+         event.executingThread = thread;
+         event.commit();
+      }
+   }
+
+   @Category("HikariCP")
+   @Enabled(false)
+   abstract static class PoolEvent extends Event
+   {
+      @Label("Pool")
+      String poolName;
+   }
+
+   @Name("com.zaxxer.hikari.Borrow")
+   @Label("Connection Borrow")
+   @Description("A getConnection() call, from entering the pool to leaving it with a connection or a timeout")
+   static final class BorrowEvent extends PoolEvent
+   {
+      @Label("Tag")
+      String tag;
+
+      @Label("Source")
+      @Description("Where the connection came from: thread-local, shared, handoff, or timeout if none did")
+      String source;
+   }
+
+   @Name("com.zaxxer.hikari.Validation")
+   @Label("Connection Validation")
+   @StackTrace(false)
+   static final class ValidationEvent extends PoolEvent
+   {
+      @Label("Alive")
+      boolean alive;
+   }
+
+   @Name("com.zaxxer.hikari.Create")
+   @Label("Connection Create")
+   @StackTrace(false)
+   static final class CreateEvent extends PoolEvent
+   {
+      @Label("Host")
+      String host;
+
+      @Label("Success")
+      boolean success;
+   }
+
+   @Name("com.zaxxer.hikari.Close")
+   @Label("Connection Close")
+   @StackTrace(false)
+   static final class CloseEvent extends PoolEvent
+   {
+      @Label("Reason")
+      String reason;
+   }
+
+   @Name("com.zaxxer.hikari.Reset")
+   @Label("Connection State Reset")
+   static final class ResetEvent extends PoolEvent
+   {
+      @Label("Dirty Bits")
+      int dirtyBits;
+   }
+
+   @Name("com.zaxxer.hikari.TwinCall")
+   @Label("Twin Call Failure")
+   @Description("The handling of a failed call on the twin connection: falling back and flushing the journal")
+   static final class TwinCallEvent extends PoolEvent
+   {
+      @Label("SQL State")
+      String sqlState;
+   }
+
+   @Name("com.zaxxer.hikari.Failover")
+   @Label("Failover Transition")
+   static final class FailoverEvent extends PoolEvent
+   {
+      @Label("Transition")
+      String transition;
+   }
+
+   @Name("com.zaxxer.hikari.JournalFlush")
+   @Label("Journal Flush")
+   @Description("Writing the queued invocations of a connection to the invocation_queue table")
+   static final class JournalFlushEvent extends PoolEvent
+   {
+      @Label("Records")
+      int records;
+   }
+
+   @Name("com.zaxxer.hikari.Replay")
+   @Label("Journal Replay")
+   @Description("Replaying the invocation_queue table of the twin, committed every 1000 records with the number replayed so far, and once completed")
+   @StackTrace(false)
+   static final class ReplayEvent extends PoolEvent
+   {
+      @Label("Records")
+      int records;
+
+      @Label("Completed")
+      boolean completed;
+   }
+
+   @StackTrace(false)
+   abstract static class SlowExecutionEvent extends PoolEvent
+   {
+      @Label("SQL")
+      @Description("The fingerprint of the SQL, the last executed in the transaction for a long transaction")
+      String sql;
+
+      @Label("Elapsed")
+      @Timespan(Timespan.MILLISECONDS)
+      long elapsed;
+
+      @Label("Executing Thread")
+      Thread executingThread;
+   }
+
+   @Name("com.zaxxer.hikari.SlowQuery")
+   @Label("Slow Query")
+   @Description("A statement execution still running when the slow query threshold elapsed")
+   static final class SlowQueryEvent extends SlowExecutionEvent
+   {
+   }
+
+   @Name("com.zaxxer.hikari.LongTransaction")
+   @Label("Long Transaction")
+   @Description("A transaction still open when the long transaction threshold elapsed")
+   static final class LongTransactionEvent extends SlowExecutionEvent
+   {
+   }
+}
@@ -19,15 +19,21 @@ package com.zaxxer.hikari.pool;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.health.HealthCheckRegistry;
 import com.google.common.base.Verify;
+import com.google.common.util.concurrent.RateLimiter;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.StateHint;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
 import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
 import com.zaxxer.hikari.metrics.PoolStats;
+import com.zaxxer.hikari.metrics.PoolStatsSnapshot;
+import com.zaxxer.hikari.metrics.StatementMetrics;
 import com.zaxxer.hikari.metrics.dropwizard.CodahaleHealthChecker;
 import com.zaxxer.hikari.metrics.dropwizard.CodahaleMetricsTrackerFactory;
 import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
 import com.zaxxer.hikari.util.ConcurrentBag;
 import com.zaxxer.hikari.util.ConcurrentBag.IBagStateListener;
+import com.zaxxer.hikari.util.SharedTimeoutExecutor;
 import com.zaxxer.hikari.util.SuspendResumeLock;
 import com.zaxxer.hikari.util.UtilityElf.*;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -46,9 +52,15 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLTransientConnectionException;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 
 import static com.zaxxer.hikari.util.ClockSource.*;
 import static com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry.STATE_IN_USE;
@@ -78,23 +90,42 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
 
    private final long aliveBypassWindowMs = Long.getLong("com.zaxxer.hikari.aliveBypassWindowMs", MILLISECONDS.toMillis(500));
    private final long housekeepingPeriodMs = Long.getLong("com.zaxxer.hikari.housekeeping.periodMs", SECONDS.toMillis(30));
+   private final int validatorConcurrency = Integer.getInteger("com.zaxxer.hikari.validator.concurrency", 2);
 
    private static final String EVICTED_CONNECTION_MESSAGE = "(connection was evicted)";
    private static final String DEAD_CONNECTION_MESSAGE = "(connection is dead)";
+   private static final String REBALANCED_CONNECTION_MESSAGE = "(connection moved to another host)";
 
    private final PoolEntryCreator poolEntryCreator = new PoolEntryCreator(null /*logging prefix*/);
    private final PoolEntryCreator postFillPoolEntryCreator = new PoolEntryCreator("After adding ");
    private final Collection<Runnable> addConnectionQueue;
    private final ThreadPoolExecutor addConnectionExecutor;
-   private final ThreadPoolExecutor closeConnectionExecutor;
+   private final ExecutorService closeConnectionExecutor;
+   private final ThreadPoolExecutor validatorExecutor;
+   private final ThreadPoolExecutor asyncValidationExecutor;
+   private final ReentrantLock creationLock = new ReentrantLock();
+   private final AtomicInteger pendingCreations = new AtomicInteger();
+   private final RateLimiter creationRateLimiter;
+   private volatile int prewarmTarget;
+   private final AtomicLong lastServerFailure = new AtomicLong(currentTime());
 
    private final ConcurrentBag<PoolEntry> connectionBag;
+   private final ReentrantLock fillPoolLock = new ReentrantLock();
 
    private final ProxyLeakTaskFactory leakTaskFactory;
+   final ProxySlowTaskFactory slowTaskFactory;
    private final SuspendResumeLock suspendResumeLock;
+   private final Map<String, Semaphore> leaseQuotas;
+   private final PoolSizeController sizeController;
+   private final LatencyHistograms latencyHistograms;
+   final StatementMetrics statementMetrics;
+   private final PoolStats poolStats;
+
+   final HikariPoolGroup poolGroup;
 
    private final ScheduledExecutorService houseKeepingExecutorService;
    private ScheduledFuture<?> houseKeeperTask;
+   private ScheduledFuture<?> validatorTask;
 
    /**
     * Construct a HikariPool with the specified configuration.
@@ -105,49 +136,89 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
    {
       super(config);
 
-      this.connectionBag = new ConcurrentBag<>(this);
-      this.suspendResumeLock = config.isAllowPoolSuspension() ? new SuspendResumeLock() : SuspendResumeLock.FAUX_LOCK;
+      this.poolGroup = config.getPoolGroup();
+      try {
+         this.connectionBag = new ConcurrentBag<>(this, config.isVirtualThreadMode(), config.isFairBorrowing(), config.isStripedBorrowing());
+         this.suspendResumeLock = config.isAllowPoolSuspension() ? new SuspendResumeLock() : SuspendResumeLock.FAUX_LOCK;
+         this.leaseQuotas = new HashMap<>();
+         config.getTagLeaseLimits().stringPropertyNames().forEach(tag -> leaseQuotas.put(tag, new Semaphore(Integer.parseInt(config.getTagLeaseLimits().getProperty(tag).trim()), true)));
 
-      this.houseKeepingExecutorService = initializeHouseKeepingExecutorService();
+         this.sizeController = config.isAdaptivePoolSizing() ? new PoolSizeController(poolName, config.getMinimumIdle(), currentTime()) : null;
+         this.latencyHistograms = config.isLatencyHistograms() ? new LatencyHistograms() : null;
+         this.statementMetrics = config.getStatementMetricsSize() > 0 ? new StatementMetrics(config.getStatementMetricsSize()) : null;
+         this.creationRateLimiter = config.getConnectionCreationRate() > 0 ? RateLimiter.create(config.getConnectionCreationRate(), 1, SECONDS) : null;
 
-      checkFailFast();
+         this.houseKeepingExecutorService = initializeHouseKeepingExecutorService();
+         this.poolStats = createPoolStats();
 
-      if (config.getMetricsTrackerFactory() != null) {
-         setMetricsTrackerFactory(config.getMetricsTrackerFactory());
-      }
-      else {
-         setMetricRegistry(config.getMetricRegistry());
-      }
+         checkFailFast();
 
-      setHealthCheckRegistry(config.getHealthCheckRegistry());
+         if (config.getMetricsTrackerFactory() != null) {
+            setMetricsTrackerFactory(config.getMetricsTrackerFactory());
+         }
+         else if (config.getMetricRegistry() == null && poolGroup != null && poolGroup.getMetricsTrackerFactory() != null) {
+            setMetricsTrackerFactory(poolGroup.getMetricsTrackerFactory());
+         }
+         else {
+            setMetricRegistry(config.getMetricRegistry());
+         }
 
-      handleMBeans(this, true);
+         setHealthCheckRegistry(config.getHealthCheckRegistry());
 
-      ThreadFactory threadFactory = config.getThreadFactory();
+         handleMBeans(this, true);
 
-      LinkedBlockingQueue<Runnable> addQueue = new LinkedBlockingQueue<>(config.getMaximumPoolSize());
-      this.addConnectionQueue = unmodifiableCollection(addQueue);
-      this.addConnectionExecutor = createThreadPoolExecutor(addQueue, poolName + " connection adder", threadFactory, new ThreadPoolExecutor.DiscardPolicy());
-      this.closeConnectionExecutor = createThreadPoolExecutor(config.getMaximumPoolSize(), poolName + " connection closer", threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+         ThreadFactory threadFactory = config.getThreadFactory();
 
-      this.leakTaskFactory = new ProxyLeakTaskFactory(config.getLeakDetectionThreshold(), houseKeepingExecutorService);
+         LinkedBlockingQueue<Runnable> addQueue = new LinkedBlockingQueue<>(config.getMaximumPoolSize());
+         this.addConnectionQueue = unmodifiableCollection(addQueue);
+         this.addConnectionExecutor = createThreadPoolExecutor(addQueue, poolName + " connection adder", threadFactory, new ThreadPoolExecutor.DiscardPolicy());
+         this.closeConnectionExecutor = poolGroup != null
+            ? poolGroup.newCloseConnectionScope()
+            : createThreadPoolExecutor(config.getMaximumPoolSize(), poolName + " connection closer", threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+         // at most every connection is under validation at once, none waits behind another that hangs
+         this.asyncValidationExecutor = createThreadPoolExecutor(config.getMaximumPoolSize(), poolName + " async validator", threadFactory, new ThreadPoolExecutor.AbortPolicy());
+         this.asyncValidationExecutor.setMaximumPoolSize(config.getMaximumPoolSize());
+         this.asyncValidationExecutor.setCorePoolSize(config.getMaximumPoolSize());
 
-      this.houseKeeperTask = houseKeepingExecutorService.scheduleWithFixedDelay(new HouseKeeper(), 100L, housekeepingPeriodMs, MILLISECONDS);
+         this.leakTaskFactory = new ProxyLeakTaskFactory(config.getLeakDetectionThreshold(), houseKeepingExecutorService);
+         this.slowTaskFactory = new ProxySlowTaskFactory(this, config, houseKeepingExecutorService);
 
-      if (Boolean.getBoolean("com.zaxxer.hikari.blockUntilFilled") && config.getInitializationFailTimeout() > 1) {
-         addConnectionExecutor.setCorePoolSize(Runtime.getRuntime().availableProcessors());
-         addConnectionExecutor.setMaximumPoolSize(Runtime.getRuntime().availableProcessors());
+         // the pool is visible to the other pools of its group only once it can be reclaimed from
+         if (poolGroup != null) {
+            poolGroup.register(this);
+         }
 
-         final long startTime = currentTime();
-         while (elapsedMillis(startTime) < config.getInitializationFailTimeout() && getTotalConnections() < config.getMinimumIdle()) {
-            quietlySleep(MILLISECONDS.toMillis(100));
+         this.houseKeeperTask = houseKeepingExecutorService.scheduleWithFixedDelay(new HouseKeeper(), 100L, housekeepingPeriodMs, MILLISECONDS);
+
+         if (config.isBackgroundValidation()) {
+            this.validatorExecutor = createThreadPoolExecutor(config.getMaximumPoolSize(), poolName + " connection validator", threadFactory, new ThreadPoolExecutor.AbortPolicy());
+            this.validatorExecutor.setMaximumPoolSize(validatorConcurrency);
+            this.validatorExecutor.setCorePoolSize(validatorConcurrency);
+            final long validatorPeriodMs = Math.max(100L, aliveBypassWindowMs / 4);
+            this.validatorTask = houseKeepingExecutorService.scheduleWithFixedDelay(new BackgroundValidator(), validatorPeriodMs, validatorPeriodMs, MILLISECONDS);
+         }
+         else {
+            this.validatorExecutor = null;
          }
 
-         addConnectionExecutor.setCorePoolSize(1);
-         addConnectionExecutor.setMaximumPoolSize(1);
-      }
+         if (Boolean.getBoolean("com.zaxxer.hikari.blockUntilFilled") && config.getInitializationFailTimeout() > 1) {
+            prewarm(Math.max(config.getPrewarmConnections(), config.getMinimumIdle()), config.getInitializationFailTimeout());
+         }
+         else if (config.getPrewarmConnections() > 0) {
+            prewarm(config.getPrewarmConnections(), Math.max(config.getConnectionTimeout(), config.getInitializationFailTimeout()));
+         }
+         else {
+            setCreationConcurrency(config.getConnectionCreationConcurrency());
+         }
 
-      synchronizeTwins();
+         synchronizeTwins();
+      }
+      catch (Throwable t) {
+         if (poolGroup != null) {
+            poolGroup.unregister(this);
+         }
+         throw t;
+      }
    }
 
    /**
@@ -158,6 +229,10 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
    public void synchronizeTwins() {
 
       String url = config.getTwinJmxUrl();
+      if (url == null && Boolean.getBoolean("com.zaxxer.hikari.skipTwinSynchronization")) {
+         logger.info("{} - No twin DataSource URL configured, skipping synchronization", poolName);
+         return;
+      }
       Verify.verifyNotNull(url, "No twin DataSource URL configured");
 
       @Cleanup Player player = new Player(this);
@@ -210,40 +285,157 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
     */
    public ProxyConnection getConnection(final long hardTimeout) throws SQLException
    {
+      return getConnection(hardTimeout, null, ConcurrentBag.PRIORITY_NORMAL);
+   }
+
+   /**
+    * Get a connection from the pool on behalf of a tagged borrower, or timeout after the specified
+    * number of milliseconds.  The priority selects the waiter lane in the bag; if a lease limit is
+    * configured for the tag, the borrower first waits for one of the tag's leases.
+    *
+    * @param hardTimeout the maximum time to wait for a connection from the pool
+    * @param tag the borrower's tag, used for lease limits and metrics, or null
+    * @param priority one of the {@link ConcurrentBag} <code>PRIORITY_*</code> constants
+    * @return a java.sql.Connection instance
+    * @throws SQLException thrown if a timeout occurs trying to obtain a connection
+    */
+   public ProxyConnection getConnection(final long hardTimeout, final String tag, final int priority) throws SQLException
+   {
+      return getConnection(hardTimeout, tag, priority, null);
+   }
+
+   /**
+    * Get a connection from the pool in the hinted state, or timeout after the specified number of
+    * milliseconds.  With lazy state reset an idle connection already in the hinted state is preferred,
+    * so that neither the deferred reset nor the hinted state change costs a round trip; otherwise any
+    * connection is taken and its state set.
+    *
+    * @param hardTimeout the maximum time to wait for a connection from the pool
+    * @param hint the state the connection should be in
+    * @return a java.sql.Connection instance
+    * @throws SQLException thrown if a timeout occurs trying to obtain a connection, or setting the state fails
+    */
+   public ProxyConnection getConnection(final long hardTimeout, final StateHint hint) throws SQLException
+   {
+      final ProxyConnection connection = getConnection(hardTimeout, null, ConcurrentBag.PRIORITY_NORMAL,
+                                                       config.isLazyStateReset() ? poolEntry -> poolEntry.isInState(hint) : null);
+      try {
+         // a state equal to the one a deferred reset would overwrite is kept without touching the driver
+         if (hint.getReadOnly() != null) {
+            connection.setReadOnly(hint.getReadOnly());
+         }
+         if (hint.getTransactionIsolation() != null) {
+            connection.setTransactionIsolation(hint.getTransactionIsolation());
+         }
+         if (hint.getCatalog() != null) {
+            connection.setCatalog(hint.getCatalog());
+         }
+         if (hint.getSchema() != null) {
+            connection.setSchema(hint.getSchema());
+         }
+         return connection;
+      }
+      catch (SQLException e) {
+         connection.close();
+         throw e;
+      }
+   }
+
+   private ProxyConnection getConnection(final long hardTimeout, final String tag, final int priority, final Predicate<PoolEntry> preferred) throws SQLException
+   {
+      final Object borrowEvent = PoolEvents.begin(PoolEvents.BORROW);
       suspendResumeLock.acquire();
       final long startTime = currentTime();
+      final Semaphore quota = (tag != null ? leaseQuotas.get(tag) : null);
+      boolean leased = false;
 
       try {
-         long timeout = hardTimeout;
+         if (quota != null) {
+            if (!quota.tryAcquire(hardTimeout, MILLISECONDS)) {
+               metricsTracker.recordBorrowTimeoutStats(tag, startTime);
+               PoolEvents.borrowed(borrowEvent, poolName, tag, PoolEvents.SOURCE_TIMEOUT);
+               throw createTimeoutException(tag, startTime);
+            }
+            leased = true;
+         }
+
+         long timeout = hardTimeout - elapsedMillis(startTime);
          do {
-            PoolEntry poolEntry = connectionBag.borrow(timeout, MILLISECONDS);
+            PoolEntry poolEntry = connectionBag.borrow(timeout, MILLISECONDS, priority, preferred);
             if (poolEntry == null) {
                break; // We timed out... break and throw exception
             }
 
-            final long now = currentTime();
-            if (poolEntry.isMarkedEvicted() || (elapsedMillis(poolEntry.lastAccessed, now) > aliveBypassWindowMs && !isConnectionAlive(poolEntry.connection))) {
+            // millisecond accuracy suffices for the bypass window and the last-access stamp
+            final long now = coarseTime();
+            if (poolEntry.isMarkedEvicted() || (elapsedMillis(poolEntry.getLastAlive(), now) > aliveBypassWindowMs && !isConnectionAlive(poolEntry.connection))) {
                closeConnection(poolEntry, poolEntry.isMarkedEvicted() ? EVICTED_CONNECTION_MESSAGE : DEAD_CONNECTION_MESSAGE);
                timeout = hardTimeout - elapsedMillis(startTime);
             }
             else {
+               poolEntry.leaseTag = tag;
+               leased = false;   // released when the connection is returned
                metricsTracker.recordBorrowStats(poolEntry, startTime);
+               PoolEvents.borrowed(borrowEvent, poolName, tag, poolEntry.borrowSource);
                return poolEntry.createProxyConnection(leakTaskFactory.schedule(poolEntry), now);
             }
          } while (timeout > 0L);
 
-         metricsTracker.recordBorrowTimeoutStats(startTime);
-         throw createTimeoutException(startTime);
+         metricsTracker.recordBorrowTimeoutStats(tag, startTime);
+         PoolEvents.borrowed(borrowEvent, poolName, tag, PoolEvents.SOURCE_TIMEOUT);
+         throw createTimeoutException(tag, startTime);
       }
       catch (InterruptedException e) {
          Thread.currentThread().interrupt();
          throw new SQLException(poolName + " - Interrupted during connection acquisition", e);
       }
       finally {
+         if (leased) {
+            quota.release();
+         }
          suspendResumeLock.release();
       }
    }
 
+   /**
+    * Get a connection from the pool without blocking the calling thread, or fail the returned
+    * future after connectionTimeout milliseconds.
+    *
+    * @return a future that is completed with a java.sql.Connection instance
+    */
+   public CompletableFuture<Connection> getConnectionAsync()
+   {
+      return getConnectionAsync(connectionTimeout);
+   }
+
+   /**
+    * Get a connection from the pool without blocking the calling thread.  If no connection is
+    * idle, the request is queued on the bag and the returned future is completed by the thread
+    * that returns the next connection, so dependent stages that do heavy work should use the
+    * <code>*Async</code> variants.  A connection that has to be validated first is validated on
+    * one of the pool's async validator threads, within the time left.  The timeout is enforced by
+    * the housekeeping timer, also while a validation hangs, a
+    * suspended pool fails the future immediately rather than blocking, and shutting the pool down
+    * fails the futures still pending.
+    *
+    * @param hardTimeout the maximum time to wait for a connection from the pool
+    * @return a future that is completed with a java.sql.Connection instance, or exceptionally
+    *         with a SQLException if a timeout occurs
+    */
+   public CompletableFuture<Connection> getConnectionAsync(final long hardTimeout)
+   {
+      final CompletableFuture<Connection> result = new CompletableFuture<>();
+      // only check for suspension, a permit held for the whole wait would stall suspendPool() and synchronous borrowers
+      if (!suspendResumeLock.tryAcquire()) {
+         result.completeExceptionally(new SQLTransientConnectionException(poolName + " - The pool is currently suspended"));
+         return result;
+      }
+      suspendResumeLock.release();
+
+      borrowAsync(result, currentTime(), hardTimeout);
+      return result;
+   }
+
    /**
     * Shutdown the pool, closing all idle connections and aborting or closing
     * active connections.
@@ -266,17 +458,28 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
             houseKeeperTask = null;
          }
 
+         if (validatorTask != null) {
+            validatorTask.cancel(false);
+            validatorTask = null;
+            validatorExecutor.shutdown();
+            validatorExecutor.awaitTermination(Math.max(1000L, validationTimeout), MILLISECONDS);
+         }
+
          softEvictConnections();
 
          addConnectionExecutor.shutdown();
          addConnectionExecutor.awaitTermination(getLoginTimeout(), SECONDS);
 
+         asyncValidationExecutor.shutdown();
+         asyncValidationExecutor.awaitTermination(Math.max(1000L, validationTimeout), MILLISECONDS);
+
          destroyHouseKeepingExecutorService();
 
          connectionBag.close();
 
-         final ExecutorService assassinExecutor = createThreadPoolExecutor(config.getMaximumPoolSize(), poolName + " connection assassinator",
-                                                                           config.getThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+         final ExecutorService assassinExecutor = isSharedTimeoutExecutor()
+            ? SharedTimeoutExecutor.getInstance(config.isVirtualThreadMode()).newScope()
+            : createThreadPoolExecutor(config.getMaximumPoolSize(), poolName + " connection assassinator", config.getThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
          try {
             final long start = currentTime();
             do {
@@ -297,6 +500,9 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
          logPoolState("After shutdown ");
          handleMBeans(this, false);
          metricsTracker.close();
+         if (poolGroup != null) {
+            poolGroup.unregister(this);
+         }
       }
    }
 
@@ -344,12 +550,26 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
     */
    public void setMetricsTrackerFactory(MetricsTrackerFactory metricsTrackerFactory)
    {
+      IMetricsTrackerDelegate delegate;
       if (metricsTrackerFactory != null) {
-         this.metricsTracker = new MetricsTrackerDelegate(metricsTrackerFactory.create(config.getPoolName(), getPoolStats()));
+         final IMetricsTracker tracker = metricsTrackerFactory.create(config.getPoolName(), poolStats);
+         if (latencyHistograms != null) {
+            latencyHistograms.register(tracker);
+         }
+         if (statementMetrics != null) {
+            tracker.registerStatementMetrics(statementMetrics);
+         }
+         delegate = new MetricsTrackerDelegate(tracker);
       }
       else {
-         this.metricsTracker = new NopMetricsTrackerDelegate();
+         delegate = new NopMetricsTrackerDelegate();
+      }
+
+      if (latencyHistograms != null) {
+         delegate = latencyHistograms.track(delegate);
       }
+
+      this.metricsTracker = (sizeController != null ? sizeController.track(delegate) : delegate);
    }
 
    /**
@@ -411,6 +631,58 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
       return connectionBag.getWaitingThreadCount();
    }
 
+   /** {@inheritDoc} */
+   @Override
+   public PoolStatsSnapshot getPoolStatsSnapshot()
+   {
+      return poolStats.getSnapshot();
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public int getTargetConnections()
+   {
+      return sizeController != null ? sizeController.getTargetSize() : -1;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public String getSizingDecision()
+   {
+      return sizeController != null ? sizeController.getDecision() : null;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public long[] getConnectionAcquireNanosPercentiles()
+   {
+      return latencyHistograms != null ? latencyHistograms.getAcquirePercentiles() : null;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public long[] getConnectionUsageMillisPercentiles()
+   {
+      return latencyHistograms != null ? latencyHistograms.getUsagePercentiles() : null;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public long[] getConnectionCreationMillisPercentiles()
+   {
+      return latencyHistograms != null ? latencyHistograms.getCreationPercentiles() : null;
+   }
+
+   /**
+    * Get the statement metrics of the pool, see {@link HikariConfig#setStatementMetricsSize(int)}.
+    *
+    * @return the statement metrics, or null if they are disabled
+    */
+   public StatementMetrics getStatementMetrics()
+   {
+      return statementMetrics;
+   }
+
    /** {@inheritDoc} */
    @Override
    public void softEvictConnections()
@@ -418,6 +690,49 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
       connectionBag.values().forEach(poolEntry -> softEvictConnection(poolEntry, "(connection evicted)", false /* not owner */));
    }
 
+   /**
+    * Treat a server-level error reported by one connection as a failure of the whole database: every
+    * connection created before the failure is soft evicted, so that borrowers do not discover the dead
+    * connections one validation at a time, and the pool is refilled in the background.  Errors reported
+    * by connections that predate the last such failure are ignored, as those connections have already
+    * been evicted and must not take the replacement connections down with them.
+    * <p>
+    * In a pool spread over several hosts, the failure is that of the host of the reporting connection:
+    * only connections to that host are evicted, and the last failure is tracked per host.
+    *
+    * @param poolEntry the PoolEntry whose connection reported the error
+    * @param sqlState the SQLSTATE of the error
+    */
+   void evictOnServerFailure(final PoolEntry poolEntry, final String sqlState)
+   {
+      final HostSelector.Host host = poolEntry.host;
+      final AtomicLong lastFailure = (host != null ? host.lastServerFailure : lastServerFailure);
+      final long failureTime = currentTime();
+      final long previous = lastFailure.get();
+      if (poolEntry.createdAt - previous < 0 || !lastFailure.compareAndSet(previous, failureTime)) {
+         return;
+      }
+
+      int evicted = 0;
+      for (PoolEntry entry : connectionBag.values()) {
+         if (entry.host == host && entry.createdAt - failureTime <= 0) {
+            softEvictConnection(entry, "(database failure)", false /* not owner */);
+            evicted++;
+         }
+      }
+
+      if (host != null) {
+         logger.warn("{} - Database failure detected on host {} from SQLSTATE({}), evicted {} connections", poolName, host, sqlState, evicted);
+      }
+      else {
+         logger.warn("{} - Database failure detected from SQLSTATE({}), evicted {} connections", poolName, sqlState, evicted);
+      }
+      metricsTracker.recordServerFailureEviction(evicted);
+      if (poolState == POOL_NORMAL) {
+         fillPool();
+      }
+   }
+
    /** {@inheritDoc} */
    @Override
    public synchronized void suspendPool()
@@ -437,6 +752,7 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
          throw new IllegalStateException("Pool " + config.getPoolName() + " is not suspended on restoreDirect call");
       }
       fallback = false;
+      PoolEvents.failover(poolName, "restore");
    }
 
    /** {@inheritDoc} */
@@ -468,6 +784,9 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
    final void fallback() {
       suspendResumeLock.acquire();
       try {
+         if (!fallback) {
+            PoolEvents.failover(poolName, "fallback");
+         }
          fallback = true;
       } finally {
          suspendResumeLock.release();
@@ -501,10 +820,28 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
    void recycle(final PoolEntry poolEntry)
    {
       metricsTracker.recordConnectionUsage(poolEntry);
+      releaseLease(poolEntry);
 
       connectionBag.requite(poolEntry);
    }
 
+   /**
+    * Release the tag lease held by the borrower of the specified entry, if any.
+    *
+    * @param poolEntry the PoolEntry being returned
+    */
+   void releaseLease(final PoolEntry poolEntry)
+   {
+      final String tag = poolEntry.leaseTag;
+      if (tag != null) {
+         poolEntry.leaseTag = null;
+         final Semaphore quota = leaseQuotas.get(tag);
+         if (quota != null) {
+            quota.release();
+         }
+      }
+   }
+
    /**
     * Permanently close the real (underlying) connection (eat any exception).
     *
@@ -524,6 +861,24 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
       }
    }
 
+   /**
+    * Close one idle connection, on behalf of the pool group reclaiming it for another pool.
+    *
+    * @param closureReason reason to close
+    * @return true if an idle connection was closed
+    */
+   boolean evictIdleConnection(final String closureReason)
+   {
+      for (PoolEntry poolEntry : connectionBag.values(STATE_NOT_IN_USE)) {
+         if (connectionBag.reserve(poolEntry)) {
+            closeConnection(poolEntry, closureReason);
+            return true;
+         }
+      }
+
+      return false;
+   }
+
    @SuppressWarnings("unused")
    int[] getPoolStateCounts()
    {
@@ -541,6 +896,11 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
     */
    private PoolEntry createPoolEntry()
    {
+      if (poolGroup != null && !poolGroup.acquireConnection(this, connectionTimeout)) {
+         return null;
+      }
+
+      boolean isCreated = false;
       try {
          final PoolEntry poolEntry = newPoolEntry();
 
@@ -558,6 +918,7 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
                lifetime, MILLISECONDS));
          }
 
+         isCreated = true;
          return poolEntry;
       }
       catch (ConnectionSetupException e) {
@@ -584,17 +945,132 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
          }
          return null;
       }
+      finally {
+         if (!isCreated && poolGroup != null) {
+            poolGroup.releaseConnection(); // the permit of a created connection is released by PoolEntry.close()
+         }
+      }
+   }
+
+   /**
+    * Create connections in parallel until the pool holds {@code target} connections, or the timeout
+    * elapses, then drop back to the configured connection creation concurrency.
+    *
+    * @param target the number of connections to create
+    * @param timeoutMs the maximum time to wait for them
+    */
+   private void prewarm(final int target, final long timeoutMs)
+   {
+      prewarmTarget = target;
+      setCreationConcurrency(Math.max(config.getConnectionCreationConcurrency(), Runtime.getRuntime().availableProcessors()));
+      try {
+         final int connectionsToAdd = target - getTotalConnections();
+         for (int i = 0; i < connectionsToAdd; i++) {
+            addConnectionExecutor.submit((i < connectionsToAdd - 1) ? poolEntryCreator : postFillPoolEntryCreator);
+         }
+
+         final long startTime = currentTime();
+         while (elapsedMillis(startTime) < timeoutMs && getTotalConnections() < target && poolState == POOL_NORMAL) {
+            quietlySleep(MILLISECONDS.toMillis(100));
+         }
+
+         logger.debug("{} - Pre-warmed {} of {} connections in {}ms", poolName, getTotalConnections(), target, elapsedMillis(startTime));
+      }
+      finally {
+         prewarmTarget = 0;
+         setCreationConcurrency(config.getConnectionCreationConcurrency());
+      }
+   }
+
+   /**
+    * Set the number of connection adder threads.  The maximum is raised before (or lowered after)
+    * the core size, as later JDKs reject a core size above the maximum.
+    *
+    * @param concurrency the number of threads that may create connections concurrently
+    */
+   private void setCreationConcurrency(final int concurrency)
+   {
+      if (concurrency > addConnectionExecutor.getMaximumPoolSize()) {
+         addConnectionExecutor.setMaximumPoolSize(concurrency);
+         addConnectionExecutor.setCorePoolSize(concurrency);
+      }
+      else {
+         addConnectionExecutor.setCorePoolSize(concurrency);
+         addConnectionExecutor.setMaximumPoolSize(concurrency);
+      }
+   }
+
+   /**
+    * Reserve the creation of one connection, if the pool still needs one.  Connections that are being
+    * created count towards the total, so that concurrent creators never overshoot maximumPoolSize, nor
+    * create more connections than there are waiting threads or missing idle connections.  Connections
+    * are also created up to the adaptive target size and, during startup, the pre-warm target.
+    * A successful reservation must be released with {@code pendingCreations.decrementAndGet()}.
+    *
+    * @return true if a connection should be created, false if the need has disappeared
+    */
+   private boolean reserveCreation()
+   {
+      creationLock.lock();
+      try {
+         final int pending = pendingCreations.get();
+         final int total = getTotalConnections() + pending;
+         final int target = Math.max(prewarmTarget, sizeController != null ? sizeController.getTargetSize() : 0);
+         if (total < config.getMaximumPoolSize() &&
+            (connectionBag.getWaitingThreadCount() > pending || getIdleConnections() + pending < config.getMinimumIdle() || total < target)) {
+            pendingCreations.incrementAndGet();
+            return true;
+         }
+         return false;
+      }
+      finally {
+         creationLock.unlock();
+      }
    }
 
    /**
     * Fill pool up from current idle connections (as they are perceived at the point of execution) to minimumIdle connections.
     */
-   private synchronized void fillPool()
+   private void fillPool()
    {
-      final int connectionsToAdd = Math.min(config.getMaximumPoolSize() - getTotalConnections(), config.getMinimumIdle() - getIdleConnections())
-                                   - addConnectionQueue.size();
-      for (int i = 0; i < connectionsToAdd; i++) {
-         addConnectionExecutor.submit((i < connectionsToAdd - 1) ? poolEntryCreator : postFillPoolEntryCreator);
+      fillPoolLock.lock();
+      try {
+         final int idleShortfall = config.getMinimumIdle() - getIdleConnections();
+         final int targetShortfall = (sizeController != null ? sizeController.getTargetSize() - getTotalConnections() : 0);
+         final int connectionsToAdd = Math.min(config.getMaximumPoolSize() - getTotalConnections(), Math.max(idleShortfall, targetShortfall))
+                                      - addConnectionQueue.size();
+         for (int i = 0; i < connectionsToAdd; i++) {
+            addConnectionExecutor.submit((i < connectionsToAdd - 1) ? poolEntryCreator : postFillPoolEntryCreator);
+         }
+      }
+      finally {
+         fillPoolLock.unlock();
+      }
+   }
+
+   /**
+    * Move idle connections off hosts holding more than their share onto hosts holding fewer, such as
+    * a host that has recovered from a failure.  The connections are closed here, and their replacements
+    * are placed on the hosts below their share when the pool refills.
+    */
+   private void rebalanceHosts()
+   {
+      final int[] excess = hostSelector.planRebalance();
+      if (excess == null) {
+         return;
+      }
+
+      int moved = 0;
+      for (PoolEntry poolEntry : connectionBag.values(STATE_NOT_IN_USE)) {
+         if (excess[poolEntry.host.index] > 0 && connectionBag.reserve(poolEntry)) {
+            excess[poolEntry.host.index]--;
+            closeConnection(poolEntry, REBALANCED_CONNECTION_MESSAGE);
+            moved++;
+         }
+      }
+
+      if (moved > 0) {
+         logger.debug("{} - Moved {} idle connections between hosts", poolName, moved);
       }
    }
 
@@ -698,14 +1174,17 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
 
    /**
     * Create/initialize the Housekeeping service {@link ScheduledExecutorService}.  If the user specified an Executor
-    * to be used in the {@link HikariConfig}, then we use that.  If no Executor was specified (typical), then create
-    * an Executor and configure it.
+    * to be used in the {@link HikariConfig}, then we use that, else the one of the pool group, if any.  If no Executor
+    * was specified (typical), then create an Executor and configure it.
     *
-    * @return either the user specified {@link ScheduledExecutorService}, or the one we created
+    * @return either the user specified {@link ScheduledExecutorService}, the one of the group, or the one we created
     */
    private ScheduledExecutorService initializeHouseKeepingExecutorService()
    {
-      if (config.getScheduledExecutor() == null) {
+      if (config.getScheduledExecutor() == null && poolGroup != null) {
+         return poolGroup.getHouseKeepingExecutorService();
+      }
+      else if (config.getScheduledExecutor() == null) {
          final ThreadFactory threadFactory = Optional.ofNullable(config.getThreadFactory()).orElseGet(() -> new DefaultThreadFactory(poolName + " housekeeper", true));
          final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, threadFactory, new ThreadPoolExecutor.DiscardPolicy());
          executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
@@ -722,31 +1201,188 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
     */
    private void destroyHouseKeepingExecutorService()
    {
-      if (config.getScheduledExecutor() == null) {
+      if (config.getScheduledExecutor() == null && poolGroup == null) {
          houseKeepingExecutorService.shutdownNow();
       }
    }
 
    /**
-    * Create a PoolStats instance that will be used by metrics tracking, with a pollable resolution of 1 second.
+    * Take a snapshot of the pool statistics in a single scan of the connection bag.
+    *
+    * @return the snapshot
+    */
+   PoolStatsSnapshot takePoolStatsSnapshot()
+   {
+      final int[] states = connectionBag.getStateCounts();
+      return new PoolStatsSnapshot(states[4], states[STATE_NOT_IN_USE], states[STATE_IN_USE], states[5], config.getMaximumPoolSize(), config.getMinimumIdle());
+   }
+
+   /**
+    * Create the PoolStats instance shared by metrics tracking and the MXBean, with a pollable resolution of
+    * {@link HikariConfig#getPoolStatsWindow()}.
     *
     * @return a PoolStats instance
     */
-   private PoolStats getPoolStats()
+   private PoolStats createPoolStats()
    {
-      return new PoolStats(SECONDS.toMillis(1)) {
+      return new PoolStats(config.getPoolStatsWindow()) {
          @Override
-         protected void update() {
-            this.pendingThreads = HikariPool.this.getThreadsAwaitingConnection();
-            this.idleConnections = HikariPool.this.getIdleConnections();
-            this.totalConnections = HikariPool.this.getTotalConnections();
-            this.activeConnections = HikariPool.this.getActiveConnections();
-            this.maxConnections = config.getMaximumPoolSize();
-            this.minConnections = config.getMinimumIdle();
+         protected PoolStatsSnapshot load() {
+            return takePoolStatsSnapshot();
          }
       };
    }
 
+   /**
+    * One asynchronous borrow attempt on behalf of {@link #getConnectionAsync(long)}.  Mirrors the
+    * loop in {@link #getConnection(long)}: evicted or dead entries are closed and the borrow is
+    * retried with the remaining timeout.
+    *
+    * @param result the future handed to the caller
+    * @param startTime the start time (timestamp) of the acquisition attempt
+    * @param hardTimeout the maximum time to wait for a connection from the pool
+    */
+   private void borrowAsync(final CompletableFuture<Connection> result, final long startTime, final long hardTimeout)
+   {
+      final CompletableFuture<PoolEntry> borrow = connectionBag.borrowAsync();
+      if (!borrow.isDone()) {
+         final long timeout = hardTimeout - elapsedMillis(startTime);
+         try {
+            final ScheduledFuture<?> timer = houseKeepingExecutorService.schedule(() -> borrow.complete(null), timeout, MILLISECONDS);
+            borrow.whenComplete((poolEntry, throwable) -> timer.cancel(false));
+         }
+         catch (RejectedExecutionException e) {
+            borrow.completeExceptionally(e);   // the pool is shutting down
+         }
+         result.whenComplete((connection, throwable) -> borrow.complete(null));
+      }
+
+      borrow.whenComplete((poolEntry, throwable) -> {
+         if (result.isDone()) {
+            if (poolEntry != null) {
+               connectionBag.requite(poolEntry);   // the caller cancelled in the meantime
+            }
+            return;
+         }
+
+         if (throwable != null) {
+            result.completeExceptionally(new SQLTransientConnectionException(poolName + " - The pool has been shut down", throwable));
+            return;
+         }
+
+         if (poolEntry == null) {
+            metricsTracker.recordBorrowTimeoutStats(null, startTime);
+            result.completeExceptionally(createTimeoutException(null, startTime));
+            return;
+         }
+
+         if (poolEntry.isMarkedEvicted() || elapsedMillis(poolEntry.getLastAlive(), coarseTime()) <= aliveBypassWindowMs) {
+            completeAsync(result, poolEntry, startTime, hardTimeout, poolEntry.isMarkedEvicted());
+            return;
+         }
+
+         // validation is a network round trip, keep it off the thread that completed the borrow, which is
+         // usually another application thread returning its own connection
+         try {
+            asyncValidationExecutor.execute(() -> validateAsync(result, poolEntry, startTime, hardTimeout));
+         }
+         catch (RejectedExecutionException e) {
+            connectionBag.requite(poolEntry);
+            final String reason = asyncValidationExecutor.isShutdown() ? " - The pool has been shut down" : " - The async validator rejected the connection";
+            result.completeExceptionally(new SQLTransientConnectionException(poolName + reason, e));
+         }
+      });
+   }
+
+   /**
+    * Validate a borrowed entry on an async validator thread, within the time left of the borrow, and
+    * complete the borrow with it.  The future is failed with a timeout once the time is up, even if the
+    * validation hangs past its own timeout; the entry is then closed or returned when it completes.
+    *
+    * @param result the future handed to the caller
+    * @param poolEntry the borrowed entry
+    * @param startTime the start time (timestamp) of the acquisition attempt
+    * @param hardTimeout the maximum time to wait for a connection from the pool
+    */
+   private void validateAsync(final CompletableFuture<Connection> result, final PoolEntry poolEntry, final long startTime, final long hardTimeout)
+   {
+      final long timeout = hardTimeout - elapsedMillis(startTime);
+      if (timeout <= 0L || result.isDone()) {
+         connectionBag.requite(poolEntry);
+         if (!result.isDone()) {
+            metricsTracker.recordBorrowTimeoutStats(null, startTime);
+            result.completeExceptionally(createTimeoutException(null, startTime));
+         }
+         return;
+      }
+
+      ScheduledFuture<?> timer = null;
+      try {
+         timer = houseKeepingExecutorService.schedule(() -> {
+            if (!result.isDone()) {
+               metricsTracker.recordBorrowTimeoutStats(null, startTime);
+               result.completeExceptionally(createTimeoutException(null, startTime));
+            }
+         }, timeout, MILLISECONDS);
+      }
+      catch (RejectedExecutionException e) {
+         connectionBag.requite(poolEntry);
+         result.completeExceptionally(new SQLTransientConnectionException(poolName + " - The pool has been shut down", e));
+         return;
+      }
+
+      try {
+         completeAsync(result, poolEntry, startTime, hardTimeout, !isConnectionAlive(poolEntry.connection, Math.min(validationTimeout, timeout)));
+      }
+      finally {
+         timer.cancel(false);
+      }
+   }
+
+   /**
+    * Complete an asynchronous borrow with a borrowed entry, or close the entry and retry with the
+    * remaining timeout if it is evicted or dead.
+    *
+    * @param result the future handed to the caller
+    * @param poolEntry the borrowed entry
+    * @param startTime the start time (timestamp) of the acquisition attempt
+    * @param hardTimeout the maximum time to wait for a connection from the pool
+    * @param unusable true if the entry is evicted or failed validation
+    */
+   private void completeAsync(final CompletableFuture<Connection> result, final PoolEntry poolEntry, final long startTime, final long hardTimeout, final boolean unusable)
+   {
+      if (unusable) {
+         closeConnection(poolEntry, poolEntry.isMarkedEvicted() ? EVICTED_CONNECTION_MESSAGE : DEAD_CONNECTION_MESSAGE);
+         if (result.isDone()) {
+            return;   // timed out or cancelled while the entry was validated
+         }
+         else if (hardTimeout - elapsedMillis(startTime) > 0L) {
+            borrowAsync(result, startTime, hardTimeout);
+         }
+         else {
+            metricsTracker.recordBorrowTimeoutStats(null, startTime);
+            result.completeExceptionally(createTimeoutException(null, startTime));
+         }
+         return;
+      }
+
+      if (result.isDone()) {
+         connectionBag.requite(poolEntry);   // timed out or cancelled while the entry was validated
+         return;
+      }
+
+      metricsTracker.recordBorrowStats(poolEntry, startTime);
+      final ProxyConnection connection = poolEntry.createProxyConnection(leakTaskFactory.schedule(poolEntry), coarseTime());
+      if (!result.complete(connection)) {
+         try {
+            connection.close();   // lost the race against a cancellation
+         }
+         catch (SQLException e) {
+            logger.debug("{} - Failed to return connection of a cancelled request", poolName, e);
+         }
+      }
+   }
+
    /**
     * Create a timeout exception (specifically, {@link SQLTransientConnectionException}) to be thrown, because a
     * timeout occurred when trying to acquire a Connection from the pool.  If there was an underlying cause for the
@@ -756,20 +1392,22 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
     *
     * As a side-effect, log the timeout failure at DEBUG, and record the timeout failure in the metrics tracker.
     *
+    * @param tag the borrower's tag, or null
     * @param startTime the start time (timestamp) of the acquisition attempt
     * @return a SQLException to be thrown from {@link #getConnection()}
     */
-   private SQLException createTimeoutException(long startTime)
+   private SQLException createTimeoutException(String tag, long startTime)
    {
       logPoolState("Timeout failure ");
-      metricsTracker.recordConnectionTimeout();
+      metricsTracker.recordConnectionTimeout(tag);
 
       String sqlState = null;
       final Throwable originalException = getLastConnectionFailure();
       if (originalException instanceof SQLException) {
          sqlState = ((SQLException) originalException).getSQLState();
       }
-      final SQLException connectionException = new SQLTransientConnectionException(poolName + " - Connection is not available, request timed out after " + elapsedMillis(startTime) + "ms.", sqlState, originalException);
+      final String forTag = (tag != null ? " for tag " + tag : "");
+      final SQLException connectionException = new SQLTransientConnectionException(poolName + " - Connection is not available" + forTag + ", request timed out after " + elapsedMillis(startTime) + "ms.", sqlState, originalException);
       if (originalException instanceof SQLException) {
          connectionException.setNextException((SQLException) originalException);
       }
@@ -798,10 +1436,22 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
       public Boolean call()
       {
          long sleepBackoff = 250L;
-         while (poolState == POOL_NORMAL && shouldCreateAnotherConnection()) {
-            final PoolEntry poolEntry = createPoolEntry();
+         while (poolState == POOL_NORMAL && reserveCreation()) {
+            final PoolEntry poolEntry;
+            try {
+               if (creationRateLimiter != null) {
+                  creationRateLimiter.acquire();
+               }
+               poolEntry = createPoolEntry();
+               if (poolEntry != null) {
+                  connectionBag.add(poolEntry);
+               }
+            }
+            finally {
+               pendingCreations.decrementAndGet();
+            }
+
             if (poolEntry != null) {
-               connectionBag.add(poolEntry);
                logger.debug("{} - Added connection {}", poolName, poolEntry.connection);
                if (loggingPrefix != null) {
                   logPoolState(loggingPrefix);
@@ -816,17 +1466,6 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
          // Pool is suspended or shutdown or at max size
          return Boolean.FALSE;
       }
-
-      /**
-       * We only create connections if we need another idle connection or have threads still waiting
-       * for a new connection.  Otherwise we bail out of the request to create.
-       *
-       * @return true if we should create a connection, false if the need has disappeared
-       */
-      private synchronized boolean shouldCreateAnotherConnection() {
-         return getTotalConnections() < config.getMaximumPoolSize() &&
-            (connectionBag.getWaitingThreadCount() > 0 || getIdleConnections() < config.getMinimumIdle());
-      }
    }
 
    /**
@@ -864,21 +1503,37 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
 
             previous = now;
 
+            // with adaptive sizing, idle connections above the target are retired once unused for a whole period
+            long retireAfter = idleTimeout;
+            int retireAbove = 0;
+            if (sizeController != null) {
+               retireAbove = sizeController.update(config.getMinimumIdle(), config.getMaximumPoolSize(), getThreadsAwaitingConnection(), now);
+               retireAfter = Math.min(idleTimeout, housekeepingPeriodMs);
+            }
+
             String afterPrefix = "Pool ";
             if (idleTimeout > 0L && config.getMinimumIdle() < config.getMaximumPoolSize()) {
                logPoolState("Before cleanup ");
                afterPrefix = "After cleanup  ";
 
                final List<PoolEntry> notInUse = connectionBag.values(STATE_NOT_IN_USE);
-               int toRemove = notInUse.size() - config.getMinimumIdle();
+               int toRemove = Math.min(notInUse.size() - config.getMinimumIdle(), getTotalConnections() - retireAbove);
                for (PoolEntry entry : notInUse) {
-                  if (toRemove > 0 && elapsedMillis(entry.lastAccessed, now) > idleTimeout && connectionBag.reserve(entry)) {
+                  if (toRemove > 0 && elapsedMillis(entry.lastAccessed, now) > retireAfter && connectionBag.reserve(entry)) {
                      closeConnection(entry, "(connection has passed idleTimeout)");
                      toRemove--;
                   }
                }
             }
 
+            if (hostSelector != null) {
+               rebalanceHosts();
+            }
+
+            if (latencyHistograms != null) {
+               latencyHistograms.roll();
+            }
+
             logPoolState(afterPrefix);
 
             fillPool(); // Try to maintain minimum connections
@@ -889,6 +1544,73 @@ public final class HikariPool extends PoolBase implements HikariPoolMXBean, IBag
       }
    }
 
+   /**
+    * The background task that validates idle connections before they pass the alive bypass window.
+    * Each run hands at most {@code com.zaxxer.hikari.validator.concurrency} of the longest idle
+    * connections to the validator threads, so that validation is spread over the window rather than
+    * done in bursts.  A connection is reserved while it is validated, and unreserved with a fresh
+    * validation time if it is alive.  The access time is left alone, so idle retirement is unaffected.
+    */
+   private final class BackgroundValidator implements Runnable
+   {
+      private final AtomicInteger inFlight = new AtomicInteger();
+
+      @Override
+      public void run()
+      {
+         try {
+            if (poolState != POOL_NORMAL) {
+               return;
+            }
+
+            final long now = currentTime();
+            final long validateAfter = aliveBypassWindowMs / 2;
+            final List<PoolEntry> notInUse = connectionBag.values(STATE_NOT_IN_USE);
+            notInUse.sort((a, b) -> Long.compare(a.getLastAlive() - now, b.getLastAlive() - now));
+            for (PoolEntry entry : notInUse) {
+               if (inFlight.get() >= validatorConcurrency || elapsedMillis(entry.getLastAlive(), now) <= validateAfter) {
+                  break;
+               }
+               if (connectionBag.reserve(entry)) {
+                  inFlight.incrementAndGet();
+                  try {
+                     validatorExecutor.execute(() -> validate(entry));
+                  }
+                  catch (RejectedExecutionException e) {
+                     // pool is shutting down
+                     inFlight.decrementAndGet();
+                     connectionBag.unreserve(entry);
+                     break;
+                  }
+               }
+            }
+         }
+         catch (Exception e) {
+            logger.error("Unexpected exception in background validation task", e);
+         }
+      }
+
+      private void validate(final PoolEntry entry)
+      {
+         try {
+            final boolean alive = !entry.isMarkedEvicted() && isConnectionAlive(entry.connection);
+            if (entry.isMarkedEvicted()) {
+               closeConnection(entry, EVICTED_CONNECTION_MESSAGE);
+            }
+            else if (!alive) {
+               closeConnection(entry, DEAD_CONNECTION_MESSAGE);
+            }
+            else {
+               entry.lastValidated = currentTime();
+               connectionBag.unreserve(entry);
+            }
+         }
+         finally {
+            inFlight.decrementAndGet();
+         }
+      }
+   }
+
    public static class PoolInitializationException extends RuntimeException
    {
       private static final long serialVersionUID = 929872118275916520L;
@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import com.zaxxer.hikari.metrics.PoolStatsSnapshot;
+import com.zaxxer.hikari.util.ExecutorScope;
+import com.zaxxer.hikari.util.UtilityElf.DefaultThreadFactory;
+
+/**
+ * A host for many pools, for example one per tenant, that would otherwise each keep their own
+ * housekeeping thread, connection closer and timeout executor.  Pools join a group through
+ * {@link HikariConfig#setPoolGroup(HikariPoolGroup)}, and then share:
+ * <ul>
+ *    <li>one housekeeping scheduler, which also runs leak detection and maxLifetime expiry;</li>
+ *    <li>one connection closer, each pool awaiting only its own closes at shutdown;</li>
+ *    <li>the JVM-wide executor for network timeouts and aborts;</li>
+ *    <li>a maximum on the total number of connections of all pools in the group;</li>
+ *    <li>the metrics tracker factory of the group, unless the pool configures its own.</li>
+ * </ul>
+ * When the group is at its maximum, a pool below its fair share of the maximum (in proportion to
+ * its maximumPoolSize) reclaims an idle connection from the pool furthest above its share, and
+ * waits up to connectionTimeout for the freed permit; a pool at or above its share waits for
+ * connections to be returned instead.  The remaining per-pool executors (connection adder and
+ * background validator) let their threads exit when idle, so an idle pool holds no threads.
+ * <p>
+ * The group must outlive its pools: close the pools before the group, which refuses to close while
+ * any of its pools is open.
+ *
+ * @author Brett Wooldridge
+ */
+public final class HikariPoolGroup implements AutoCloseable
+{
+   private static final Logger LOGGER = LoggerFactory.getLogger(HikariPoolGroup.class);
+
+   private static final String RECLAIMED_CONNECTION_MESSAGE = "(connection reclaimed by pool group)";
+
+   private final String name;
+   private final int maxTotalConnections;
+   private final Semaphore connectionPermits;
+   private final Set<HikariPool> pools;
+   private final ScheduledThreadPoolExecutor houseKeepingExecutorService;
+   private final ThreadPoolExecutor closeConnectionExecutor;
+
+   private volatile IMetricsTracker metricsTracker;
+   private volatile MetricsTrackerFactory metricsTrackerFactory;
+
+   private boolean isClosed;
+
+   /**
+    * Construct a pool group.
+    *
+    * @param name the name of the group, used for its threads and metrics
+    * @param maxTotalConnections the maximum total number of connections of all pools in the group
+    * @param threads the number of housekeeping and connection closer threads
+    */
+   public HikariPoolGroup(final String name, final int maxTotalConnections, final int threads)
+   {
+      if (maxTotalConnections < 1) {
+         throw new IllegalArgumentException("maxTotalConnections cannot be less than 1");
+      }
+      if (threads < 1) {
+         throw new IllegalArgumentException("threads cannot be less than 1");
+      }
+
+      this.name = name;
+      this.maxTotalConnections = maxTotalConnections;
+      this.connectionPermits = new Semaphore(maxTotalConnections, true);
+      this.pools = ConcurrentHashMap.newKeySet();
+
+      this.houseKeepingExecutorService = new ScheduledThreadPoolExecutor(threads, new DefaultThreadFactory(name + " housekeeper", true), new ThreadPoolExecutor.DiscardPolicy());
+      this.houseKeepingExecutorService.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+      this.houseKeepingExecutorService.setRemoveOnCancelPolicy(true);
+
+      this.closeConnectionExecutor = new ThreadPoolExecutor(threads, threads, 5, SECONDS, new LinkedBlockingQueue<>(), new DefaultThreadFactory(name + " connection closer", true));
+      this.closeConnectionExecutor.allowCoreThreadTimeOut(true);
+   }
+
+   /**
+    * Set the MetricsTrackerFactory used by the pools of the group that do not configure their own,
+    * and register a tracker for the group as a whole, under the name of the group.  May be set once.
+    *
+    * @param metricsTrackerFactory the MetricsTrackerFactory
+    */
+   public synchronized void setMetricsTrackerFactory(final MetricsTrackerFactory metricsTrackerFactory)
+   {
+      if (this.metricsTrackerFactory != null) {
+         throw new IllegalStateException("The MetricsTrackerFactory of the group has already been set");
+      }
+
+      this.metricsTracker = metricsTrackerFactory.create(name, getPoolStats());
+      this.metricsTrackerFactory = metricsTrackerFactory;
+   }
+
+   /**
+    * Get the MetricsTrackerFactory of the group.
+    *
+    * @return the MetricsTrackerFactory, or null if none was set
+    */
+   public MetricsTrackerFactory getMetricsTrackerFactory()
+   {
+      return metricsTrackerFactory;
+   }
+
+   /**
+    * Get the name of the group.
+    *
+    * @return the name of the group
+    */
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    * Get the maximum total number of connections of all pools in the group.
+    *
+    * @return the maximum total number of connections
+    */
+   public int getMaxTotalConnections()
+   {
+      return maxTotalConnections;
+   }
+
+   /**
+    * Get the total number of connections of all pools in the group, including those being created.
+    *
+    * @return the total number of connections
+    */
+   public int getTotalConnections()
+   {
+      return maxTotalConnections - connectionPermits.availablePermits();
+   }
+
+   /**
+    * Get the number of pools in the group.
+    *
+    * @return the number of pools
+    */
+   public int getPoolCount()
+   {
+      return pools.size();
+   }
+
+   /**
+    * Shut down the executors of the group.  A pool leaves the group once its shutdown has completed,
+    * including the close of its connections on the shared connection closer.
+    *
+    * @throws IllegalStateException if a pool of the group has not been shut down
+    */
+   @Override
+   public synchronized void close()
+   {
+      if (isClosed) {
+         return;
+      }
+
+      if (!pools.isEmpty()) {
+         throw new IllegalStateException("Pool group " + name + " still has " + pools.size() + " open pools, close them before the group");
+      }
+
+      isClosed = true;
+      houseKeepingExecutorService.shutdownNow();
+      closeConnectionExecutor.shutdown();
+
+      final IMetricsTracker tracker = metricsTracker;
+      if (tracker != null) {
+         tracker.close();
+      }
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public String toString()
+   {
+      return name;
+   }
+
+   // ***********************************************************************
+   //                         Used by the pools
+   // ***********************************************************************
+
+   synchronized void register(final HikariPool pool)
+   {
+      if (isClosed) {
+         throw new IllegalStateException("Pool group " + name + " has been closed");
+      }
+
+      pools.add(pool);
+   }
+
+   void unregister(final HikariPool pool)
+   {
+      pools.remove(pool);
+   }
+
+   ScheduledExecutorService getHouseKeepingExecutorService()
+   {
+      return houseKeepingExecutorService;
+   }
+
+   ExecutorService newCloseConnectionScope()
+   {
+      return new ExecutorScope(closeConnectionExecutor);
+   }
+
+   /**
+    * Take a connection permit for the pool.  A pool below its fair share reclaims an idle
+    * connection from the pool furthest above its share and waits for the freed permit; a pool at
+    * or above its share only takes a free permit.  A taken permit is returned with
+    * {@link #releaseConnection()} once the connection is closed, or failed to open.
+    * <p>
+    * This runs on the connection adder thread of the pool.  While the group has a free permit it
+    * costs one semaphore operation.  At the maximum it walks every pool of the group twice, once
+    * for the sum of their maximumPoolSize and once for the pool to reclaim from, and then blocks
+    * the adder for up to timeoutMs while the reclaimed connection is closed; the adders of other
+    * pools are not held up.  Groups of thousands of pools that sit at their maximum should size
+    * maxTotalConnections so that reclaiming stays the exception.
+    *
+    * @param pool the pool about to create a connection
+    * @param timeoutMs the maximum time a pool below its fair share waits for a permit
+    * @return true if a permit was taken
+    */
+   boolean acquireConnection(final HikariPool pool, final long timeoutMs)
+   {
+      try {
+         // the timed form honours the fairness of the semaphore, so pools waiting for a reclaimed
+         // connection are not overtaken
+         if (connectionPermits.tryAcquire(0, MILLISECONDS)) {
+            return true;
+         }
+
+         final long sum = sumOfMaximumPoolSizes();
+         if (isBelowFairShare(pool, sum) && reclaimConnection(pool, sum)) {
+            return connectionPermits.tryAcquire(timeoutMs, MILLISECONDS);
+         }
+
+         LOGGER.debug("{} - Pool group is at its maximum of {} connections, {} waits for a connection to be closed", name, maxTotalConnections, pool);
+         return false;
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         return false;
+      }
+   }
+
+   /**
+    * Return the permit of a closed connection, or of one that failed to open.
+    */
+   void releaseConnection()
+   {
+      connectionPermits.release();
+   }
+
+   /**
+    * Get the fair share of a pool: the maximum total number of connections of the group, divided
+    * between its pools in proportion to their maximumPoolSize, and at least one connection.
+    *
+    * @param maxTotalConnections the maximum total number of connections of the group
+    * @param maximumPoolSize the maximumPoolSize of the pool
+    * @param sumOfMaximumPoolSizes the sum of the maximumPoolSize of all pools in the group
+    * @return the fair share of the pool
+    */
+   static int fairShare(final int maxTotalConnections, final int maximumPoolSize, final long sumOfMaximumPoolSizes)
+   {
+      if (sumOfMaximumPoolSizes <= maxTotalConnections) {
+         return maximumPoolSize;
+      }
+
+      return (int) Math.max(1L, (long) maxTotalConnections * maximumPoolSize / sumOfMaximumPoolSizes);
+   }
+
+   private boolean isBelowFairShare(final HikariPool pool, final long sum)
+   {
+      return pool.getTotalConnections() < fairShare(maxTotalConnections, pool.config.getMaximumPoolSize(), sum);
+   }
+
+   private boolean reclaimConnection(final HikariPool requester, final long sum)
+   {
+      HikariPool victim = null;
+      int victimExcess = 0;
+      for (HikariPool pool : pools) {
+         if (pool != requester && pool.getIdleConnections() > 0) {
+            final int excess = pool.getTotalConnections() - fairShare(maxTotalConnections, pool.config.getMaximumPoolSize(), sum);
+            if (excess > victimExcess) {
+               victim = pool;
+               victimExcess = excess;
+            }
+         }
+      }
+
+      if (victim != null && victim.evictIdleConnection(RECLAIMED_CONNECTION_MESSAGE)) {
+         LOGGER.debug("{} - Reclaimed an idle connection of {} for {}", name, victim, requester);
+         return true;
+      }
+
+      return false;
+   }
+
+   private long sumOfMaximumPoolSizes()
+   {
+      long sum = 0;
+      for (HikariPool pool : pools) {
+         sum += pool.config.getMaximumPoolSize();
+      }
+      return sum;
+   }
+
+   private PoolStats getPoolStats()
+   {
+      return new PoolStats(SECONDS.toMillis(1)) {
+         @Override
+         protected PoolStatsSnapshot load() {
+            int pending = 0, idle = 0, total = 0, active = 0, min = 0;
+            for (HikariPool pool : pools) {
+               final PoolStatsSnapshot snapshot = pool.takePoolStatsSnapshot();
+               pending += snapshot.getPendingThreads();
+               idle += snapshot.getIdleConnections();
+               total += snapshot.getTotalConnections();
+               active += snapshot.getActiveConnections();
+               min += snapshot.getMinConnections();
+            }
+
+            return new PoolStatsSnapshot(total, idle, active, pending, maxTotalConnections, min);
+         }
+      };
+   }
+}
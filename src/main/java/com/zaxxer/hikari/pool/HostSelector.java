@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static com.zaxxer.hikari.util.ClockSource.currentTime;
+import static com.zaxxer.hikari.util.ClockSource.plusMillis;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * Places the connections of a pool configured with several host jdbcUrls on those hosts.  A new
+ * connection goes to the available host with the lowest {@code (connections + 1) * latency / weight},
+ * where latency is a moving average of the time taken to open a connection to the host, so that
+ * hosts receive connections in proportion to their weight unless they are slow to respond.  A host
+ * failing to open a connection is skipped for a back-off period, doubling with each consecutive
+ * failure up to 30 seconds.
+ *
+ * @author Brett Wooldridge
+ */
+final class HostSelector
+{
+   private static final double LATENCY_ALPHA = 0.2;
+   private static final long MAX_BACKOFF_MS = SECONDS.toMillis(30);
+
+   private final Host[] hosts;
+
+   HostSelector(final Host[] hosts)
+   {
+      this.hosts = hosts;
+   }
+
+   /**
+    * Get the number of hosts.
+    *
+    * @return the number of hosts
+    */
+   int size()
+   {
+      return hosts.length;
+   }
+
+   /**
+    * Get the host the next connection should be opened on.  When every host is backing off, the
+    * host whose back-off ends first is returned.
+    *
+    * @return the host
+    */
+   Host select()
+   {
+      final long now = currentTime();
+
+      Host best = null;
+      double bestScore = Double.MAX_VALUE;
+      Host earliest = hosts[0];
+      for (Host host : hosts) {
+         if (host.isAvailable(now)) {
+            final double score = (host.connections.get() + 1) * Math.max(1.0, host.latencyMillis) / host.weight;
+            if (score < bestScore) {
+               best = host;
+               bestScore = score;
+            }
+         }
+         else if (host.downUntil - earliest.downUntil < 0) {
+            earliest = host;
+         }
+      }
+
+      return best != null ? best : earliest;
+   }
+
+   /**
+    * Plan the rebalancing of connections onto hosts holding fewer than their share, typically hosts
+    * that have recovered from a failure.  The share of an available host is the total number of
+    * connections divided in proportion to the weights of the available hosts.
+    *
+    * @return the number of connections to move off each host, indexed by {@link Host#index}, or
+    *         null if no host is below its share
+    */
+   int[] planRebalance()
+   {
+      final long now = currentTime();
+
+      int total = 0;
+      int availableWeight = 0;
+      for (Host host : hosts) {
+         total += host.connections.get();
+         if (host.isAvailable(now)) {
+            availableWeight += host.weight;
+         }
+      }
+
+      if (total == 0 || availableWeight == 0) {
+         return null;
+      }
+
+      int deficit = 0;
+      final int[] excess = new int[hosts.length];
+      for (Host host : hosts) {
+         final int share = host.isAvailable(now) ? (int) ((long) total * host.weight / availableWeight) : 0;
+         final int connections = host.connections.get();
+         if (connections > share) {
+            excess[host.index] = connections - share;
+         }
+         else if (host.isAvailable(now)) {
+            deficit += share - connections;
+         }
+      }
+
+      if (deficit == 0) {
+         return null;
+      }
+
+      // move no more connections than the hosts below their share are missing
+      for (int i = 0; i < excess.length; i++) {
+         final int moved = Math.min(excess[i], deficit);
+         excess[i] = moved;
+         deficit -= moved;
+      }
+
+      return excess;
+   }
+
+   /**
+    * A host of a multi-host pool.
+    */
+   static final class Host
+   {
+      final int index;
+      final String name;
+      final int weight;
+      final DataSource dataSource;
+      final AtomicInteger connections;
+      final AtomicLong lastServerFailure;
+
+      private volatile double latencyMillis;
+      private volatile long downUntil;
+      private volatile int failures;
+
+      Host(final int index, final String name, final int weight, final DataSource dataSource)
+      {
+         this.index = index;
+         this.name = name;
+         this.weight = weight;
+         this.dataSource = dataSource;
+         this.connections = new AtomicInteger();
+         this.lastServerFailure = new AtomicLong(currentTime());
+      }
+
+      /**
+       * Record a connection opened on this host.
+       *
+       * @param elapsedMillis the time taken to open the connection
+       */
+      void connected(final long elapsedMillis)
+      {
+         final double latency = latencyMillis;
+         latencyMillis = (latency == 0.0 ? elapsedMillis : latency + LATENCY_ALPHA * (elapsedMillis - latency));
+         failures = 0;
+         downUntil = 0;
+         connections.incrementAndGet();
+      }
+
+      /**
+       * Record a failure to open a connection on this host, and back off from it.
+       */
+      void failed()
+      {
+         final int failed = Math.min(failures + 1, 16);
+         failures = failed;
+         downUntil = plusMillis(currentTime(), Math.min(MAX_BACKOFF_MS, 500L << failed));
+      }
+
+      /**
+       * Record a connection to this host being closed.
+       */
+      void closed()
+      {
+         connections.decrementAndGet();
+      }
+
+      boolean isAvailable(final long now)
+      {
+         return failures == 0 || now - downUntil >= 0;
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public String toString()
+      {
+         return name;
+      }
+   }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static com.zaxxer.hikari.util.ClockSource.currentTime;
+import static com.zaxxer.hikari.util.ClockSource.elapsedNanos;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.LatencyHistogram;
+import com.zaxxer.hikari.pool.PoolBase.IMetricsTrackerDelegate;
+
+/**
+ * The latency histograms of a pool, recorded from the metrics delegate whether or not a metrics
+ * tracker is configured.  The housekeeper rolls the window the percentiles are reported over.
+ *
+ * @author Brett Wooldridge
+ */
+final class LatencyHistograms
+{
+   private static final long[] NONE = new long[3];
+
+   final LatencyHistogram acquireNanos = new LatencyHistogram();
+   final LatencyHistogram usageMillis = new LatencyHistogram();
+   final LatencyHistogram creationMillis = new LatencyHistogram();
+
+   private volatile long[] acquirePercentiles = NONE;
+   private volatile long[] usagePercentiles = NONE;
+   private volatile long[] creationPercentiles = NONE;
+
+   /**
+    * Offer the histograms to a tracker that exports them.
+    *
+    * @param tracker the tracker
+    */
+   void register(final IMetricsTracker tracker)
+   {
+      tracker.registerLatencyHistograms(acquireNanos, usageMillis, creationMillis);
+   }
+
+   /**
+    * Wrap a metrics delegate so that the pool's latencies are recorded in the histograms before
+    * being passed on to the delegate.
+    *
+    * @param delegate the delegate to wrap
+    * @return the wrapping delegate
+    */
+   IMetricsTrackerDelegate track(final IMetricsTrackerDelegate delegate)
+   {
+      return new IMetricsTrackerDelegate() {
+         @Override
+         public void recordConnectionUsage(final PoolEntry poolEntry)
+         {
+            usageMillis.record(poolEntry.getMillisSinceBorrowed());
+            delegate.recordConnectionUsage(poolEntry);
+         }
+
+         @Override
+         public void recordConnectionCreated(final String host, final long connectionCreatedMillis)
+         {
+            creationMillis.record(connectionCreatedMillis);
+            delegate.recordConnectionCreated(host, connectionCreatedMillis);
+         }
+
+         @Override
+         public void recordBorrowTimeoutStats(final String tag, final long startTime)
+         {
+            acquireNanos.record(elapsedNanos(startTime));
+            delegate.recordBorrowTimeoutStats(tag, startTime);
+         }
+
+         @Override
+         public void recordBorrowStats(final PoolEntry poolEntry, final long startTime)
+         {
+            final long now = currentTime();
+            poolEntry.lastBorrowed = now;
+            acquireNanos.record(elapsedNanos(startTime, now));
+            delegate.recordBorrowStats(poolEntry, startTime);
+         }
+
+         @Override
+         public void recordConnectionTimeout(final String tag)
+         {
+            delegate.recordConnectionTimeout(tag);
+         }
+
+         @Override
+         public void recordServerFailureEviction(final int evictedConnections)
+         {
+            delegate.recordServerFailureEviction(evictedConnections);
+         }
+
+         @Override
+         public void recordStatementCacheAccess(final boolean hit)
+         {
+            delegate.recordStatementCacheAccess(hit);
+         }
+
+         @Override
+         public void recordStatementCacheEviction()
+         {
+            delegate.recordStatementCacheEviction();
+         }
+
+         @Override
+         public void recordSlowQuery()
+         {
+            delegate.recordSlowQuery();
+         }
+
+         @Override
+         public void recordLongTransaction()
+         {
+            delegate.recordLongTransaction();
+         }
+
+         @Override
+         public void close()
+         {
+            delegate.close();
+         }
+      };
+   }
+
+   /**
+    * Start a new reporting window, reporting the percentiles of the one just ended.
+    */
+   void roll()
+   {
+      acquirePercentiles = percentiles(acquireNanos.intervalSnapshot());
+      usagePercentiles = percentiles(usageMillis.intervalSnapshot());
+      creationPercentiles = percentiles(creationMillis.intervalSnapshot());
+   }
+
+   long[] getAcquirePercentiles()
+   {
+      return acquirePercentiles.clone();
+   }
+
+   long[] getUsagePercentiles()
+   {
+      return usagePercentiles.clone();
+   }
+
+   long[] getCreationPercentiles()
+   {
+      return creationPercentiles.clone();
+   }
+
+   private static long[] percentiles(final LatencyHistogram.Snapshot snapshot)
+   {
+      return new long[] { snapshot.getValueAtPercentile(50.0), snapshot.getValueAtPercentile(99.0), snapshot.getValueAtPercentile(99.9) };
+   }
+}
@@ -20,6 +20,8 @@ import java.util.Iterator;
 
 class Player implements AutoCloseable {
 
+   private static final int REPLAY_PROGRESS_RECORDS = 1000;
+
    private static Table<Class, String, Method> methods = HashBasedTable.create();
 
    private final PreparedStatement select;
@@ -89,8 +91,17 @@ class Player implements AutoCloseable {
    boolean play() {
       if (select == null) return false;
 
+      final String poolName = pool.config.getPoolName();
+      Object event = PoolEvents.begin(PoolEvents.REPLAY);
+      int replayed = 0;
+
       @Cleanup ResultSet resultSet = select.executeQuery();
       while (resultSet.next()) {
+         if (replayed > 0 && replayed % REPLAY_PROGRESS_RECORDS == 0) {
+            PoolEvents.replayed(event, poolName, replayed, false);
+            event = PoolEvents.begin(PoolEvents.REPLAY);
+         }
+
          int id = resultSet.getInt(1);
          int connectionId = resultSet.getInt(2);
          int statementId = resultSet.getInt(3);
@@ -150,9 +161,11 @@ class Player implements AutoCloseable {
 
          delete.setInt(1, id);
          delete.addBatch();
+         replayed++;
       }
       delete.executeBatch();
       twinConnection.commit();
+      PoolEvents.replayed(event, poolName, replayed, true);
 
       for (Statement statement : statements.values())
          statement.close();
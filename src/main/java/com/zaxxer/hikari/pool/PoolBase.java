@@ -17,10 +17,13 @@
 package com.zaxxer.hikari.pool;
 
 import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.StateHint;
 import com.zaxxer.hikari.metrics.IMetricsTracker;
 import com.zaxxer.hikari.pool.HikariPool.PoolInitializationException;
+import com.zaxxer.hikari.pool.HostSelector.Host;
 import com.zaxxer.hikari.util.DriverDataSource;
 import com.zaxxer.hikari.util.PropertyElf;
+import com.zaxxer.hikari.util.SharedTimeoutExecutor;
 import com.zaxxer.hikari.util.UtilityElf;
 import com.zaxxer.hikari.util.UtilityElf.DefaultThreadFactory;
 import org.slf4j.Logger;
@@ -36,6 +39,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Properties;
+import java.util.TreeSet;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -75,6 +79,7 @@ abstract class PoolBase
    private int transactionIsolation;
    private Executor netTimeoutExecutor;
    private DataSource dataSource;
+   HostSelector hostSelector;
 
    private final String schema;
    private final boolean isReadOnly;
@@ -84,6 +89,7 @@ abstract class PoolBase
    private final boolean isIsolateInternalQueries;
 
    private volatile boolean isValidChecked;
+   volatile ResetDialect resetDialect = ResetDialect.GENERIC;
 
    PoolBase(final HikariConfig config)
    {
@@ -125,6 +131,7 @@ abstract class PoolBase
    void quietlyCloseConnection(final Connection connection, final String closureReason)
    {
       if (connection != null) {
+         final Object event = PoolEvents.begin(PoolEvents.CLOSE);
          try {
             logger.debug("{} - Closing connection {}: {}", poolName, connection, closureReason);
 
@@ -141,19 +148,38 @@ abstract class PoolBase
          catch (Exception e) {
             logger.debug("{} - Closing connection {} failed", poolName, connection, e);
          }
+         finally {
+            PoolEvents.closed(event, poolName, closureReason);
+         }
       }
    }
 
    boolean isConnectionAlive(final Connection connection)
    {
+      return isConnectionAlive(connection, validationTimeout);
+   }
+
+   /**
+    * Validate a connection within a timeout shorter than the validation timeout, for a borrower that
+    * has less time left than that.
+    *
+    * @param connection the connection to validate
+    * @param timeoutMs the validation timeout in milliseconds
+    * @return true if the connection is alive
+    */
+   boolean isConnectionAlive(final Connection connection, final long timeoutMs)
+   {
+      final Object event = PoolEvents.begin(PoolEvents.VALIDATION);
+      boolean alive = false;
       try {
          try {
-            setNetworkTimeout(connection, validationTimeout);
+            setNetworkTimeout(connection, timeoutMs);
 
-            final int validationSeconds = (int) Math.max(1000L, validationTimeout) / 1000;
+            final int validationSeconds = (int) Math.max(1000L, timeoutMs) / 1000;
 
             if (isUseJdbc4Validation) {
-               return connection.isValid(validationSeconds);
+               alive = connection.isValid(validationSeconds);
+               return alive;
             }
 
             try (Statement statement = connection.createStatement()) {
@@ -172,6 +198,7 @@ abstract class PoolBase
             }
          }
 
+         alive = true;
          return true;
       }
       catch (Exception e) {
@@ -180,6 +207,9 @@ abstract class PoolBase
                      poolName, connection, e.getMessage());
          return false;
       }
+      finally {
+         PoolEvents.validated(event, poolName, alive);
+      }
    }
 
    Exception getLastConnectionFailure()
@@ -198,39 +228,95 @@ abstract class PoolBase
 
    PoolEntry newPoolEntry() throws Exception
    {
-      return new PoolEntry(newConnection(), this, isReadOnly, isAutoCommit);
+      if (hostSelector == null) {
+         return new PoolEntry(newConnection(null), this, isReadOnly, isAutoCommit, null);
+      }
+
+      // one failed host must not fail the pool, so each host is tried before giving up
+      Exception failure = null;
+      for (int i = 0; i < hostSelector.size(); i++) {
+         final Host host = hostSelector.select();
+         try {
+            return new PoolEntry(newConnection(host), this, isReadOnly, isAutoCommit, host);
+         }
+         catch (Exception e) {
+            failure = e;
+         }
+      }
+
+      throw failure;
+   }
+
+   int resetConnectionState(final Connection connection, final ProxyConnection proxyConnection, final int dirtyBits, final ResetDialect dialect) throws SQLException
+   {
+      return resetConnectionState(connection, proxyConnection, proxyConnection.getAutoCommitState(), proxyConnection.getNetworkTimeoutState(), dirtyBits, dialect);
+   }
+
+   /**
+    * Reset the state that a previous borrower left behind, see {@link HikariConfig#setLazyStateReset(boolean)}.
+    * Auto-commit and the network timeout are never deferred.
+    *
+    * @param connection the connection to reset
+    * @param state the state the previous borrower left the connection in
+    * @param dirtyBits the states to reset
+    * @param dialect the dialect of the connection's database
+    * @return the states that were reset
+    * @throws SQLException if the connection state could not be reset
+    */
+   int resetDeferredState(final Connection connection, final ConnectionState state, final int dirtyBits, final ResetDialect dialect) throws SQLException
+   {
+      return resetConnectionState(connection, state, isAutoCommit, networkTimeout, dirtyBits, dialect);
+   }
+
+   private int resetConnectionState(final Connection connection, final ConnectionState state, final boolean autoCommitState, final int networkTimeoutState, final int dirtyBits, final ResetDialect dialect) throws SQLException
+   {
+      final Object event = PoolEvents.begin(PoolEvents.RESET);
+      try {
+         return resetState(connection, state, autoCommitState, networkTimeoutState, dirtyBits, dialect);
+      }
+      finally {
+         PoolEvents.reset(event, poolName, dirtyBits);
+      }
    }
 
-   void resetConnectionState(final Connection connection, final ProxyConnection proxyConnection, final int dirtyBits) throws SQLException
+   private int resetState(final Connection connection, final ConnectionState state, final boolean autoCommitState, final int networkTimeoutState, final int dirtyBits, final ResetDialect dialect) throws SQLException
    {
       int resetBits = 0;
 
-      if ((dirtyBits & DIRTY_BIT_READONLY) != 0 && proxyConnection.getReadOnlyState() != isReadOnly) {
+      if ((dirtyBits & DIRTY_BIT_READONLY) != 0 && state.getReadOnlyState() != isReadOnly) {
          connection.setReadOnly(isReadOnly);
          resetBits |= DIRTY_BIT_READONLY;
       }
 
-      if ((dirtyBits & DIRTY_BIT_AUTOCOMMIT) != 0 && proxyConnection.getAutoCommitState() != isAutoCommit) {
+      if ((dirtyBits & DIRTY_BIT_AUTOCOMMIT) != 0 && autoCommitState != isAutoCommit) {
          connection.setAutoCommit(isAutoCommit);
          resetBits |= DIRTY_BIT_AUTOCOMMIT;
       }
 
-      if ((dirtyBits & DIRTY_BIT_ISOLATION) != 0 && proxyConnection.getTransactionIsolationState() != transactionIsolation) {
+      final boolean isIsolationDirty = (dirtyBits & DIRTY_BIT_ISOLATION) != 0 && state.getTransactionIsolationState() != transactionIsolation;
+      final boolean isSchemaDirty = (dirtyBits & DIRTY_BIT_SCHEMA) != 0 && schema != null && !schema.equals(state.getSchemaState());
+
+      // the connection is now in the pool's auto-commit mode; only batch in auto-commit, so that the batch does not begin a transaction
+      if (isIsolationDirty && isSchemaDirty && isAutoCommit && executeResetSql(connection, dialect)) {
+         resetBits |= DIRTY_BIT_ISOLATION | DIRTY_BIT_SCHEMA;
+      }
+
+      if (isIsolationDirty && (resetBits & DIRTY_BIT_ISOLATION) == 0) {
          connection.setTransactionIsolation(transactionIsolation);
          resetBits |= DIRTY_BIT_ISOLATION;
       }
 
-      if ((dirtyBits & DIRTY_BIT_CATALOG) != 0 && catalog != null && !catalog.equals(proxyConnection.getCatalogState())) {
+      if ((dirtyBits & DIRTY_BIT_CATALOG) != 0 && catalog != null && !catalog.equals(state.getCatalogState())) {
          connection.setCatalog(catalog);
          resetBits |= DIRTY_BIT_CATALOG;
       }
 
-      if ((dirtyBits & DIRTY_BIT_NETTIMEOUT) != 0 && proxyConnection.getNetworkTimeoutState() != networkTimeout) {
+      if ((dirtyBits & DIRTY_BIT_NETTIMEOUT) != 0 && networkTimeoutState != networkTimeout) {
          setNetworkTimeout(connection, networkTimeout);
          resetBits |= DIRTY_BIT_NETTIMEOUT;
       }
 
-      if ((dirtyBits & DIRTY_BIT_SCHEMA) != 0 && schema != null && !schema.equals(proxyConnection.getSchemaState())) {
+      if (isSchemaDirty && (resetBits & DIRTY_BIT_SCHEMA) == 0) {
          connection.setSchema(schema);
          resetBits |= DIRTY_BIT_SCHEMA;
       }
@@ -238,6 +324,64 @@ abstract class PoolBase
       if (resetBits != 0 && logger.isDebugEnabled()) {
          logger.debug("{} - Reset ({}) on connection {}", poolName, stringFromResetBits(resetBits), connection);
       }
+      return resetBits;
+   }
+
+   /**
+    * Restore the transaction isolation and the schema in one statement, if the dialect can.
+    *
+    * @param connection the connection to reset
+    * @param dialect the dialect of the connection's database
+    * @return true if both were restored, false if they must be restored through JDBC
+    */
+   private boolean executeResetSql(final Connection connection, final ResetDialect dialect)
+   {
+      final String sql = dialect.resetSql(transactionIsolation, schema);
+      if (sql == null) {
+         return false;
+      }
+
+      try (Statement statement = connection.createStatement()) {
+         statement.execute(sql);
+         return true;
+      }
+      catch (SQLException e) {
+         logger.debug("{} - Batched state reset failed on connection {} ({}), resetting through JDBC.", poolName, connection, e.getMessage());
+         return false;
+      }
+   }
+
+   /**
+    * Determine whether an idle connection is already in the state a borrower hinted at.  A state
+    * whose reset was deferred is the state the previous borrower left, any other state is the
+    * pool default; a schema or catalog with no pool default is unknown and never matches.
+    *
+    * @param deferredState the deferred state, or null
+    * @param deferredBits the dirty bits of the deferred state
+    * @param hint the state the borrower wants
+    * @return true if every hinted attribute matches
+    */
+   boolean isInState(final ConnectionState deferredState, final int deferredBits, final StateHint hint)
+   {
+      final int bits = (deferredState != null ? deferredBits : 0);
+
+      if (hint.getReadOnly() != null
+         && hint.getReadOnly() != ((bits & DIRTY_BIT_READONLY) != 0 ? deferredState.getReadOnlyState() : isReadOnly)) {
+         return false;
+      }
+
+      if (hint.getTransactionIsolation() != null
+         && hint.getTransactionIsolation() != ((bits & DIRTY_BIT_ISOLATION) != 0 ? deferredState.getTransactionIsolationState() : transactionIsolation)) {
+         return false;
+      }
+
+      if (hint.getCatalog() != null
+         && !hint.getCatalog().equals((bits & DIRTY_BIT_CATALOG) != 0 ? deferredState.getCatalogState() : catalog)) {
+         return false;
+      }
+
+      return hint.getSchema() == null
+         || hint.getSchema().equals((bits & DIRTY_BIT_SCHEMA) != 0 ? deferredState.getSchemaState() : schema);
    }
 
    void shutdownNetworkTimeoutExecutor()
@@ -247,6 +391,17 @@ abstract class PoolBase
       }
    }
 
+   /**
+    * Determine whether the pool uses the JVM-wide executor for network timeouts and aborts, which
+    * pools in a {@link HikariPoolGroup} always do.
+    *
+    * @return true if the shared executor is used
+    */
+   boolean isSharedTimeoutExecutor()
+   {
+      return config.isSharedTimeoutExecutor() || config.getPoolGroup() != null;
+   }
+
    long getLoginTimeout()
    {
       try {
@@ -310,12 +465,25 @@ abstract class PoolBase
       final String driverClassName = config.getDriverClassName();
       final String dataSourceJNDI = config.getDataSourceJNDI();
       final Properties dataSourceProperties = config.getDataSourceProperties();
+      final Properties hostJdbcUrls = config.getHostJdbcUrls();
 
       DataSource ds = config.getDataSource();
       if (dsClassName != null && ds == null) {
          ds = createInstance(dsClassName, DataSource.class);
          PropertyElf.setTargetFromProperties(ds, dataSourceProperties);
       }
+      else if (!hostJdbcUrls.isEmpty() && ds == null) {
+         final TreeSet<String> urls = new TreeSet<>(hostJdbcUrls.stringPropertyNames());
+         final Host[] hosts = new Host[urls.size()];
+         for (String url : urls) {
+            final int index = urls.headSet(url).size();
+            final String name = url.replaceAll("([?&;]password=)[^&#;]*(.*)", "$1<masked>$2");
+            hosts[index] = new Host(index, name, Integer.parseInt(hostJdbcUrls.getProperty(url)),
+                                    new DriverDataSource(url, driverClassName, dataSourceProperties, username, password));
+         }
+         hostSelector = new HostSelector(hosts);
+         ds = hosts[0].dataSource;   // the login timeout is global to DriverManager, any host will do
+      }
       else if (jdbcUrl != null && ds == null) {
          ds = new DriverDataSource(jdbcUrl, driverClassName, dataSourceProperties, username, password);
       }
@@ -330,7 +498,7 @@ abstract class PoolBase
 
       if (ds != null) {
          setLoginTimeout(ds);
-         createNetworkTimeoutExecutor(ds, dsClassName, jdbcUrl);
+         createNetworkTimeoutExecutor(ds, dsClassName, jdbcUrl != null ? jdbcUrl : hostJdbcUrls.stringPropertyNames().toString());
       }
 
       this.dataSource = ds;
@@ -339,24 +507,35 @@ abstract class PoolBase
    /**
     * Obtain connection from data source.
     *
+    * @param host the host to open the connection on, or null if the pool has a single data source
     * @return a Connection connection
     */
-   private Connection newConnection() throws Exception
+   private Connection newConnection(final Host host) throws Exception
    {
       final long start = currentTime();
+      final Object event = PoolEvents.begin(PoolEvents.CREATE);
 
       Connection connection = null;
       try {
          String username = config.getUsername();
          String password = config.getPassword();
 
-         connection = (username == null) ? dataSource.getConnection() : dataSource.getConnection(username, password);
+         final DataSource source = (host != null ? host.dataSource : dataSource);
+         connection = (username == null) ? source.getConnection() : source.getConnection(username, password);
 
          setupConnection(connection);
          lastConnectionFailure.set(null);
+         if (host != null) {
+            host.connected(elapsedMillis(start));
+         }
+         PoolEvents.created(event, poolName, host != null ? host.name : null, true);
          return connection;
       }
       catch (Exception e) {
+         if (host != null) {
+            host.failed();
+         }
+
          if (connection != null) {
             quietlyCloseConnection(connection, "(Failed to create/setup connection)");
          }
@@ -365,12 +544,13 @@ abstract class PoolBase
          }
 
          lastConnectionFailure.set(e);
+         PoolEvents.created(event, poolName, host != null ? host.name : null, false);
          throw e;
       }
       finally {
          // tracker will be null during failFast check
          if (metricsTracker != null) {
-            metricsTracker.recordConnectionCreated(elapsedMillis(start));
+            metricsTracker.recordConnectionCreated(host != null ? host.name : null, elapsedMillis(start));
          }
       }
    }
@@ -432,6 +612,7 @@ abstract class PoolBase
       if (!isValidChecked) {
          checkValidationSupport(connection);
          checkDefaultIsolation(connection);
+         checkResetDialect(connection);
 
          isValidChecked = true;
       }
@@ -481,6 +662,21 @@ abstract class PoolBase
       }
    }
 
+   /**
+    * Determine the database dialect used to batch the reset of connection state.
+    *
+    * @param connection a Connection to check
+    */
+   private void checkResetDialect(final Connection connection)
+   {
+      try {
+         resetDialect = ResetDialect.of(connection.getMetaData().getDatabaseProductName());
+      }
+      catch (Exception e) {
+         logger.debug("{} - Database product detection failed ({}), state reset will not be batched.", poolName, e.getMessage());
+      }
+   }
+
    /**
     * Set the query timeout, if it is supported by the driver.
     *
@@ -588,6 +784,9 @@ abstract class PoolBase
           (dataSource != null && dataSource.getClass().getName().contains("Mysql"))) {
          netTimeoutExecutor = new SynchronousExecutor();
       }
+      else if (isSharedTimeoutExecutor()) {
+         netTimeoutExecutor = SharedTimeoutExecutor.getInstance(config.isVirtualThreadMode());
+      }
       else {
          ThreadFactory threadFactory = config.getThreadFactory();
          threadFactory = threadFactory != null ? threadFactory : new DefaultThreadFactory(poolName + " network timeout executor", true);
@@ -675,13 +874,23 @@ abstract class PoolBase
    {
       default void recordConnectionUsage(PoolEntry poolEntry) {}
 
-      default void recordConnectionCreated(long connectionCreatedMillis) {}
+      default void recordConnectionCreated(String host, long connectionCreatedMillis) {}
 
-      default void recordBorrowTimeoutStats(long startTime) {}
+      default void recordBorrowTimeoutStats(String tag, long startTime) {}
 
       default void recordBorrowStats(final PoolEntry poolEntry, final long startTime) {}
 
-      default void recordConnectionTimeout() {}
+      default void recordConnectionTimeout(String tag) {}
+
+      default void recordServerFailureEviction(int evictedConnections) {}
+
+      default void recordStatementCacheAccess(boolean hit) {}
+
+      default void recordStatementCacheEviction() {}
+
+      default void recordSlowQuery() {}
+
+      default void recordLongTransaction() {}
 
       @Override
       default void close() {}
@@ -704,19 +913,19 @@ abstract class PoolBase
       @Override
       public void recordConnectionUsage(final PoolEntry poolEntry)
       {
-         tracker.recordConnectionUsageMillis(poolEntry.getMillisSinceBorrowed());
+         tracker.recordConnectionUsageMillis(poolEntry.leaseTag, poolEntry.getMillisSinceBorrowed());
       }
 
       @Override
-      public void recordConnectionCreated(long connectionCreatedMillis)
+      public void recordConnectionCreated(String host, long connectionCreatedMillis)
       {
-         tracker.recordConnectionCreatedMillis(connectionCreatedMillis);
+         tracker.recordConnectionCreatedMillis(host, connectionCreatedMillis);
       }
 
       @Override
-      public void recordBorrowTimeoutStats(long startTime)
+      public void recordBorrowTimeoutStats(String tag, long startTime)
       {
-         tracker.recordConnectionAcquiredNanos(elapsedNanos(startTime));
+         tracker.recordConnectionAcquiredNanos(tag, elapsedNanos(startTime));
       }
 
       @Override
@@ -724,12 +933,42 @@ abstract class PoolBase
       {
          final long now = currentTime();
          poolEntry.lastBorrowed = now;
-         tracker.recordConnectionAcquiredNanos(elapsedNanos(startTime, now));
+         tracker.recordConnectionAcquiredNanos(poolEntry.leaseTag, elapsedNanos(startTime, now));
+      }
+
+      @Override
+      public void recordConnectionTimeout(String tag) {
+         tracker.recordConnectionTimeout(tag);
       }
 
       @Override
-      public void recordConnectionTimeout() {
-         tracker.recordConnectionTimeout();
+      public void recordServerFailureEviction(int evictedConnections)
+      {
+         tracker.recordServerFailureEviction(evictedConnections);
+      }
+
+      @Override
+      public void recordStatementCacheAccess(boolean hit)
+      {
+         tracker.recordStatementCacheAccess(hit);
+      }
+
+      @Override
+      public void recordStatementCacheEviction()
+      {
+         tracker.recordStatementCacheEviction();
+      }
+
+      @Override
+      public void recordSlowQuery()
+      {
+         tracker.recordSlowQuery();
+      }
+
+      @Override
+      public void recordLongTransaction()
+      {
+         tracker.recordLongTransaction();
       }
 
       @Override
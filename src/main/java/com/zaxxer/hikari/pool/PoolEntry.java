@@ -15,58 +15,66 @@
  */
 package com.zaxxer.hikari.pool;
 
-import com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry;
-import com.zaxxer.hikari.util.FastList;
+import com.zaxxer.hikari.StateHint;
+import com.zaxxer.hikari.util.PaddedBagEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
+import static com.zaxxer.hikari.pool.ProxyConnection.*;
 import static com.zaxxer.hikari.util.ClockSource.*;
 
 /**
- * Entry used in the ConcurrentBag to track Connection instances.
+ * Entry used in the ConcurrentBag to track Connection instances.  The bag state lives in
+ * the padded superclass, isolated from the fields below that the borrowing thread writes.
  *
  * @author Brett Wooldridge
  */
-final class PoolEntry implements IConcurrentBagEntry
+final class PoolEntry extends PaddedBagEntry
 {
    private static final Logger LOGGER = LoggerFactory.getLogger(PoolEntry.class);
-   private static final AtomicIntegerFieldUpdater<PoolEntry> stateUpdater;
+
+   // auto-commit and the network timeout are always reset on return, as validation depends on them
+   private static final int DEFERRABLE_DIRTY_BITS = DIRTY_BIT_READONLY | DIRTY_BIT_ISOLATION | DIRTY_BIT_CATALOG | DIRTY_BIT_SCHEMA;
 
    Connection connection;
    long lastAccessed;
    long lastBorrowed;
+   long lastValidated;
+   final long createdAt;
+   String leaseTag;
+   int borrowSource;
+
+   ConnectionState deferredResetState;
+   int deferredResetBits;
 
-   @SuppressWarnings("FieldCanBeLocal")
-   private volatile int state = 0;
    private volatile boolean evict;
 
    private volatile ScheduledFuture<?> endOfLife;
 
-   private final FastList<Statement> openStatements;
+   private final StatementRegistry openStatements;
+   private final StatementCache statementCache;
    final HikariPool hikariPool;
+   final HostSelector.Host host;
 
    private final boolean isReadOnly;
    private final boolean isAutoCommit;
 
-   static
-   {
-      stateUpdater = AtomicIntegerFieldUpdater.newUpdater(PoolEntry.class, "state");
-   }
-
-   PoolEntry(final Connection connection, final PoolBase pool, final boolean isReadOnly, final boolean isAutoCommit)
+   PoolEntry(final Connection connection, final PoolBase pool, final boolean isReadOnly, final boolean isAutoCommit, final HostSelector.Host host)
    {
       this.connection = connection;
       this.hikariPool = (HikariPool) pool;
+      this.host = host;
       this.isReadOnly = isReadOnly;
       this.isAutoCommit = isAutoCommit;
       this.lastAccessed = currentTime();
-      this.openStatements = new FastList<>(Statement.class, 16);
+      this.createdAt = lastAccessed;
+      this.lastValidated = lastAccessed;
+      this.openStatements = new StatementRegistry(16);
+      this.statementCache = pool.config.getPreparedStatementCacheSize() > 0 ? new StatementCache(pool, pool.config.getPreparedStatementCacheSize()) : null;
    }
 
    /**
@@ -80,6 +88,9 @@ final class PoolEntry implements IConcurrentBagEntry
          this.lastAccessed = lastAccessed;
          hikariPool.recycle(this);
       }
+      else {
+         hikariPool.releaseLease(this);
+      }
    }
 
    /**
@@ -97,12 +108,60 @@ final class PoolEntry implements IConcurrentBagEntry
       return ProxyFactory.getProxyConnection(this, connection, openStatements, leakTask, now, isReadOnly, isAutoCommit);
    }
 
+   /**
+    * The cache of prepared statements kept across borrows of this connection.
+    *
+    * @return the statement cache, or null if statement caching is disabled
+    */
+   StatementCache getStatementCache()
+   {
+      return statementCache;
+   }
+
    void resetConnectionState(final ProxyConnection proxyConnection, final int dirtyBits) throws SQLException
    {
-      hikariPool.resetConnectionState(connection, proxyConnection, dirtyBits);
+      int resetBits = dirtyBits;
+      if (hikariPool.config.isLazyStateReset()) {
+         final int deferBits = dirtyBits & DEFERRABLE_DIRTY_BITS;
+         if (deferBits != 0) {
+            // a reset still deferred from an earlier borrower is applied now, the closing proxy only knows its own state
+            proxyConnection.applyPendingReset();
+            deferResetConnectionState(ConnectionState.snapshot(proxyConnection), deferBits);
+         }
+         resetBits = dirtyBits & ~DEFERRABLE_DIRTY_BITS;
+      }
+
+      if (resetBits != 0 && (hikariPool.resetConnectionState(connection, proxyConnection, resetBits, hikariPool.resetDialect) & (DIRTY_BIT_CATALOG | DIRTY_BIT_SCHEMA)) != 0) {
+         proxyConnection.invalidateStatementCache();
+      }
       Connection twinConnection = proxyConnection.twinDelegate;
       if (twinConnection != null)
-         hikariPool.resetConnectionState(twinConnection, proxyConnection, dirtyBits);
+         hikariPool.resetConnectionState(twinConnection, proxyConnection, dirtyBits, ResetDialect.GENERIC);
+   }
+
+   /**
+    * Leave the reset of connection state to the next borrower.
+    *
+    * @param state the state the physical connection is left in
+    * @param dirtyBits the states that differ from the pool defaults
+    */
+   void deferResetConnectionState(final ConnectionState state, final int dirtyBits)
+   {
+      this.deferredResetState = state;
+      this.deferredResetBits = dirtyBits;
+   }
+
+   /**
+    * Determine whether this (idle) connection is already in the hinted state, taking a deferred reset into account.
+    *
+    * @param hint the state the borrower wants
+    * @return true if borrowing this connection would need no state change for the hint
+    */
+   boolean isInState(final StateHint hint)
+   {
+      // the two fields are written without a lock; a stale pair only costs a missed preference
+      final ConnectionState state = deferredResetState;
+      return hikariPool.isInState(state, deferredResetBits, hint);
    }
 
    String getPoolName()
@@ -125,45 +184,33 @@ final class PoolEntry implements IConcurrentBagEntry
       hikariPool.closeConnection(this, closureReason);
    }
 
-   /** Returns millis since lastBorrowed */
-   long getMillisSinceBorrowed()
-   {
-      return elapsedMillis(lastBorrowed);
-   }
-
-   /** {@inheritDoc} */
-   @Override
-   public String toString()
+   /** Returns the later of lastAccessed and lastValidated, when the connection was last known to be alive */
+   long getLastAlive()
    {
-      final long now = currentTime();
-      return connection
-         + ", accessed " + elapsedDisplayString(lastAccessed, now) + " ago, "
-         + stateToString();
+      return lastValidated - lastAccessed > 0 ? lastValidated : lastAccessed;
    }
 
-   // ***********************************************************************
-   //                      IConcurrentBagEntry methods
-   // ***********************************************************************
-
-   /** {@inheritDoc} */
-   @Override
-   public int getState()
+   /** Returns millis since lastBorrowed */
+   long getMillisSinceBorrowed()
    {
-      return stateUpdater.get(this);
+      return elapsedMillis(lastBorrowed);
    }
 
    /** {@inheritDoc} */
    @Override
-   public boolean compareAndSet(int expect, int update)
+   public void setBorrowSource(final int source)
    {
-      return stateUpdater.compareAndSet(this, expect, update);
+      this.borrowSource = source;
    }
 
    /** {@inheritDoc} */
    @Override
-   public void setState(int update)
+   public String toString()
    {
-      stateUpdater.set(this, update);
+      final long now = currentTime();
+      return connection
+         + ", accessed " + elapsedDisplayString(lastAccessed, now) + " ago, "
+         + stateToString();
    }
 
    Connection close()
@@ -173,15 +220,26 @@ final class PoolEntry implements IConcurrentBagEntry
          LOGGER.warn("{} - maxLifeTime expiration task cancellation unexpectedly returned false for connection {}", getPoolName(), connection);
       }
 
+      if (statementCache != null) {
+         statementCache.clear();
+      }
+      deferResetConnectionState(null, 0);
+
       Connection con = connection;
       connection = null;
       endOfLife = null;
+      if (con != null && hikariPool.poolGroup != null) {
+         hikariPool.poolGroup.releaseConnection();
+      }
+      if (con != null && host != null) {
+         host.closed();
+      }
       return con;
    }
 
    private String stateToString()
    {
-      switch (state) {
+      switch (getState()) {
       case STATE_IN_USE:
          return "IN_USE";
       case STATE_NOT_IN_USE:
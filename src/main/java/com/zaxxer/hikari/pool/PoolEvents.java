@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emits the JDK Flight Recorder events of the pool, see {@link FlightRecorderEvents} for the event
+ * types and {@code com/zaxxer/hikari/hikaricp.jfc} for a recording profile enabling them.
+ * <p>
+ * The events are enabled when the JVM has the Flight Recorder and the
+ * {@code com.zaxxer.hikari.flightRecorder} system property is not {@code false}.  Otherwise every
+ * method is a no-op on a constant, which the JIT removes.  While enabled but not recording, an event
+ * is begun only to find that its type is disabled.
+ * <p>
+ * A begun event is passed back as an opaque object, so that callers do not refer to {@code jdk.jfr};
+ * {@code null} stands for an event that is not recorded.
+ *
+ * @author Brett Wooldridge
+ */
+final class PoolEvents
+{
+   static final int BORROW = 0;
+   static final int VALIDATION = 1;
+   static final int CREATE = 2;
+   static final int CLOSE = 3;
+   static final int RESET = 4;
+   static final int TWIN_CALL = 5;
+   static final int JOURNAL_FLUSH = 6;
+   static final int REPLAY = 7;
+
+   static final int SOURCE_TIMEOUT = 3;
+
+   static final boolean ENABLED = isFlightRecorderAvailable();
+
+   private PoolEvents()
+   {
+      // utility class
+   }
+
+   /**
+    * Begin an event, before the operation it times.
+    *
+    * @param kind the kind of the event
+    * @return the begun event, or null if it is not recorded
+    */
+   static Object begin(final int kind)
+   {
+      return ENABLED ? FlightRecorderEvents.begin(kind) : null;
+   }
+
+   /**
+    * End a borrow event.
+    *
+    * @param event the begun event
+    * @param poolName the name of the pool
+    * @param tag the borrower's tag, or null
+    * @param source the {@link com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry} borrow source, or
+    *        {@link #SOURCE_TIMEOUT}
+    */
+   static void borrowed(final Object event, final String poolName, final String tag, final int source)
+   {
+      if (ENABLED && event != null) {
+         FlightRecorderEvents.borrowed(event, poolName, tag, source);
+      }
+   }
+
+   static void validated(final Object event, final String poolName, final boolean alive)
+   {
+      if (ENABLED && event != null) {
+         FlightRecorderEvents.validated(event, poolName, alive);
+      }
+   }
+
+   static void created(final Object event, final String poolName, final String host, final boolean success)
+   {
+      if (ENABLED && event != null) {
+         FlightRecorderEvents.created(event, poolName, host, success);
+      }
+   }
+
+   static void closed(final Object event, final String poolName, final String reason)
+   {
+      if (ENABLED && event != null) {
+         FlightRecorderEvents.closed(event, poolName, reason);
+      }
+   }
+
+   static void reset(final Object event, final String poolName, final int dirtyBits)
+   {
+      if (ENABLED && event != null) {
+         FlightRecorderEvents.reset(event, poolName, dirtyBits);
+      }
+   }
+
+   static void twinCalled(final Object event, final String poolName, final String sqlState)
+   {
+      if (ENABLED && event != null) {
+         FlightRecorderEvents.twinCalled(event, poolName, sqlState);
+      }
+   }
+
+   /**
+    * Record an instant failover transition.
+    *
+    * @param poolName the name of the pool
+    * @param transition the transition, such as "fallback" or "restore"
+    */
+   static void failover(final String poolName, final String transition)
+   {
+      if (ENABLED) {
+         FlightRecorderEvents.failover(poolName, transition);
+      }
+   }
+
+   static void journalFlushed(final Object event, final String poolName, final int records)
+   {
+      if (ENABLED && event != null) {
+         FlightRecorderEvents.journalFlushed(event, poolName, records);
+      }
+   }
+
+   static void replayed(final Object event, final String poolName, final int records, final boolean completed)
+   {
+      if (ENABLED && event != null) {
+         FlightRecorderEvents.replayed(event, poolName, records, completed);
+      }
+   }
+
+   /**
+    * Record an instant slow query or long transaction detection.
+    *
+    * @param poolName the name of the pool
+    * @param transaction true for a long transaction, false for a slow query
+    * @param sql the SQL fingerprint
+    * @param elapsedMillis the time the statement or transaction has been running
+    * @param thread the thread executing the statement or holding the transaction
+    */
+   static void slowExecution(final String poolName, final boolean transaction, final String sql, final long elapsedMillis, final Thread thread)
+   {
+      if (ENABLED) {
+         FlightRecorderEvents.slowExecution(poolName, transaction, sql, elapsedMillis, thread);
+      }
+   }
+
+   private static boolean isFlightRecorderAvailable()
+   {
+      if ("false".equalsIgnoreCase(System.getProperty("com.zaxxer.hikari.flightRecorder"))) {
+         return false;
+      }
+
+      try {
+         Class.forName("jdk.jfr.FlightRecorder", false, PoolEvents.class.getClassLoader());
+         FlightRecorderEvents.register();
+         return true;
+      }
+      catch (Throwable t) {
+         LoggerFactory.getLogger(PoolEvents.class).debug("Flight Recorder events disabled ({})", t.toString());
+         return false;
+      }
+   }
+}
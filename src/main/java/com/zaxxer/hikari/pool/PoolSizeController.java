@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static com.zaxxer.hikari.util.ClockSource.currentTime;
+import static com.zaxxer.hikari.util.ClockSource.elapsedMillis;
+import static com.zaxxer.hikari.util.ClockSource.elapsedNanos;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zaxxer.hikari.pool.PoolBase.IMetricsTrackerDelegate;
+
+/**
+ * Adaptive pool sizing.  Borrow and return statistics are collected by wrapping the pool's
+ * metrics delegate, and once per housekeeping run a target pool size is derived from them
+ * with Little's law: the number of connections the workload occupies is the borrow rate
+ * multiplied by the time a borrower holds (and waits for) a connection.
+ * <p>
+ * The target grows as soon as demand exceeds it, but only shrinks once the estimate has fallen
+ * well below it (hysteresis) and no resize has happened for a cooldown period, and then only
+ * halfway at a time, so that a short lull between peaks does not drain the pool.
+ *
+ * @author Brett Wooldridge
+ */
+final class PoolSizeController
+{
+   private static final Logger LOGGER = LoggerFactory.getLogger(PoolSizeController.class);
+
+   private static final long COOLDOWN_MS = Long.getLong("com.zaxxer.hikari.adaptive.cooldownMs", SECONDS.toMillis(60));
+   private static final double HEADROOM = 1.25;
+   private static final double SHRINK_THRESHOLD = 0.8;
+   private static final double SMOOTHING = 0.5;
+
+   private final String poolName;
+
+   private final LongAdder borrows = new LongAdder();
+   private final LongAdder timeouts = new LongAdder();
+   private final LongAdder waitNanos = new LongAdder();
+   private final LongAdder returns = new LongAdder();
+   private final LongAdder usageMillis = new LongAdder();
+
+   private long windowStart;
+   private long lastResize;
+   private double arrivalRate;
+   private double meanUsageMs;
+   private double meanWaitMs;
+
+   private volatile int targetSize;
+   private volatile String decision;
+
+   PoolSizeController(final String poolName, final int initialSize, final long now)
+   {
+      this.poolName = poolName;
+      this.targetSize = initialSize;
+      this.windowStart = now;
+      this.lastResize = now;
+      this.decision = "initial size " + initialSize;
+   }
+
+   /**
+    * Wrap a metrics delegate so that the statistics the controller needs are collected even
+    * when metrics are otherwise disabled.
+    *
+    * @param delegate the delegate to forward to
+    * @return the wrapping delegate
+    */
+   IMetricsTrackerDelegate track(final IMetricsTrackerDelegate delegate)
+   {
+      return new IMetricsTrackerDelegate() {
+         @Override
+         public void recordConnectionUsage(final PoolEntry poolEntry)
+         {
+            recordUsage(poolEntry.getMillisSinceBorrowed());
+            delegate.recordConnectionUsage(poolEntry);
+         }
+
+         @Override
+         public void recordConnectionCreated(final String host, final long connectionCreatedMillis)
+         {
+            delegate.recordConnectionCreated(host, connectionCreatedMillis);
+         }
+
+         @Override
+         public void recordBorrowTimeoutStats(final String tag, final long startTime)
+         {
+            recordTimeout(elapsedNanos(startTime));
+            delegate.recordBorrowTimeoutStats(tag, startTime);
+         }
+
+         @Override
+         public void recordBorrowStats(final PoolEntry poolEntry, final long startTime)
+         {
+            final long now = currentTime();
+            poolEntry.lastBorrowed = now;
+            recordBorrow(elapsedNanos(startTime, now));
+            delegate.recordBorrowStats(poolEntry, startTime);
+         }
+
+         @Override
+         public void recordConnectionTimeout(final String tag)
+         {
+            delegate.recordConnectionTimeout(tag);
+         }
+
+         @Override
+         public void recordServerFailureEviction(final int evictedConnections)
+         {
+            delegate.recordServerFailureEviction(evictedConnections);
+         }
+
+         @Override
+         public void recordStatementCacheAccess(final boolean hit)
+         {
+            delegate.recordStatementCacheAccess(hit);
+         }
+
+         @Override
+         public void recordStatementCacheEviction()
+         {
+            delegate.recordStatementCacheEviction();
+         }
+
+         @Override
+         public void recordSlowQuery()
+         {
+            delegate.recordSlowQuery();
+         }
+
+         @Override
+         public void recordLongTransaction()
+         {
+            delegate.recordLongTransaction();
+         }
+
+         @Override
+         public void close()
+         {
+            delegate.close();
+         }
+      };
+   }
+
+   void recordBorrow(final long elapsedAcquiredNanos)
+   {
+      borrows.increment();
+      waitNanos.add(elapsedAcquiredNanos);
+   }
+
+   void recordTimeout(final long elapsedAcquiredNanos)
+   {
+      timeouts.increment();
+      waitNanos.add(elapsedAcquiredNanos);
+   }
+
+   void recordUsage(final long elapsedBorrowedMillis)
+   {
+      returns.increment();
+      usageMillis.add(elapsedBorrowedMillis);
+   }
+
+   /**
+    * Close the current statistics window and recompute the target pool size.  Only called
+    * from the housekeeper.
+    *
+    * @param minimum the lower bound for the target (minimumIdle)
+    * @param maximum the upper bound for the target (maximumPoolSize)
+    * @param waiting the number of borrowers currently waiting for a connection
+    * @param now the current timestamp
+    * @return the new target pool size
+    */
+   int update(final int minimum, final int maximum, final int waiting, final long now)
+   {
+      final double seconds = elapsedNanos(windowStart, now) / 1_000_000_000d;
+      if (seconds <= 0d) {
+         return targetSize;
+      }
+      windowStart = now;
+
+      final long borrowCount = borrows.sumThenReset();
+      final long timeoutCount = timeouts.sumThenReset();
+      final long returnCount = returns.sumThenReset();
+      final long requests = borrowCount + timeoutCount;
+
+      arrivalRate = smooth(arrivalRate, requests / seconds);
+      if (requests > 0) {
+         meanWaitMs = smooth(meanWaitMs, waitNanos.sumThenReset() / 1_000_000d / requests);
+      }
+      if (returnCount > 0) {
+         meanUsageMs = smooth(meanUsageMs, (double) usageMillis.sumThenReset() / returnCount);
+      }
+
+      // Little's law, L = lambda * W, counting both the time connections are held and the time borrowers queue for them
+      int desired = (int) Math.ceil(arrivalRate * (meanUsageMs + meanWaitMs) / 1000d * HEADROOM);
+
+      final int current = Math.max(minimum, Math.min(maximum, targetSize));
+      if (timeoutCount > 0 || waiting > 0) {
+         desired = Math.max(desired, current + Math.max(1, waiting));   // demand is not met at the current size
+      }
+      desired = Math.max(minimum, Math.min(maximum, desired));
+
+      if (desired > current) {
+         resize("grow", current, desired, now);
+      }
+      else if (desired < current * SHRINK_THRESHOLD && elapsedMillis(lastResize, now) >= COOLDOWN_MS) {
+         resize("shrink", current, current - Math.max(1, (current - desired) / 2), now);
+      }
+      else if (current != targetSize) {
+         resize("clamp", targetSize, current, now);
+      }
+
+      return targetSize;
+   }
+
+   int getTargetSize()
+   {
+      return targetSize;
+   }
+
+   String getDecision()
+   {
+      return decision;
+   }
+
+   private void resize(final String action, final int from, final int to, final long now)
+   {
+      targetSize = to;
+      lastResize = now;
+      decision = String.format("%s %d -> %d (borrow rate %.1f/s, usage %.1fms, wait %.2fms)", action, from, to, arrivalRate, meanUsageMs, meanWaitMs);
+      LOGGER.debug("{} - Adaptive sizing: {}", poolName, decision);
+   }
+
+   private static double smooth(final double previous, final double sample)
+   {
+      return previous == 0d ? sample : previous + SMOOTHING * (sample - previous);
+   }
+}
@@ -16,9 +16,10 @@
 
 package com.zaxxer.hikari.pool;
 
+import com.zaxxer.hikari.metrics.StatementMetrics;
 import com.zaxxer.hikari.util.DontRecord;
-import com.zaxxer.hikari.util.FastList;
 import com.zaxxer.hikari.util.Marshaller;
+import lombok.SneakyThrows;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,18 +28,19 @@ import java.lang.reflect.Proxy;
 import java.sql.*;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 
-import static com.zaxxer.hikari.util.ClockSource.currentTime;
+import static com.zaxxer.hikari.util.ClockSource.coarseTime;
 
 /**
  * This is the proxy class for java.sql.Connection.
  *
  * @author Brett Wooldridge
  */
-public abstract class ProxyConnection implements Connection
+public abstract class ProxyConnection extends ConnectionState implements Connection
 {
    static final int DIRTY_BIT_READONLY   = 0b000001;
    static final int DIRTY_BIT_AUTOCOMMIT = 0b000010;
@@ -49,6 +51,7 @@ public abstract class ProxyConnection implements Connection
 
    private static final Logger LOGGER;
    private static final Set<String> ERROR_STATES;
+   private static final Set<String> SERVER_ERROR_STATES;
    private static final Set<Integer> ERROR_CODES;
 
    @SuppressWarnings("WeakerAccess")
@@ -56,11 +59,16 @@ public abstract class ProxyConnection implements Connection
 
    private final PoolEntry poolEntry;
    private final ProxyLeakTask leakTask;
-   private final FastList<ProxyStatement> openStatements;
+   private final StatementRegistry openStatements;
+   private final StatementCache statementCache;
 
    private int dirtyBits;
+   private int pendingResetBits;
+   private ConnectionState pendingResetState;
    private long lastAccess;
    private boolean isCommitStateDirty;
+   private ProxySlowTask transactionTask = ProxySlowTask.NO_TASK;
+   String lastSql;   // the SQL of the last execution, for long transaction reports
 
    private boolean isReadOnly;
    private boolean isAutoCommit;
@@ -88,15 +96,27 @@ public abstract class ProxyConnection implements Connection
       ERROR_STATES.add("JZ0C0"); // Sybase disconnect error
       ERROR_STATES.add("JZ0C1"); // Sybase disconnect error
 
+      SERVER_ERROR_STATES = new HashSet<>();
+      SERVER_ERROR_STATES.add("08001"); // UNABLE TO ESTABLISH CONNECTION
+      SERVER_ERROR_STATES.add("08004"); // SERVER REJECTED CONNECTION
+      SERVER_ERROR_STATES.add("08006"); // CONNECTION FAILURE
+      SERVER_ERROR_STATES.add("57P01"); // ADMIN SHUTDOWN
+      SERVER_ERROR_STATES.add("57P02"); // CRASH SHUTDOWN
+      SERVER_ERROR_STATES.add("57P03"); // CANNOT CONNECT NOW
+
       ERROR_CODES = new HashSet<>();
       ERROR_CODES.add(500150);
       ERROR_CODES.add(2399);
    }
 
-   protected ProxyConnection(final PoolEntry poolEntry, final Connection connection, final FastList<ProxyStatement> openStatements, final ProxyLeakTask leakTask, final long now, final boolean isReadOnly, final boolean isAutoCommit) {
+   protected ProxyConnection(final PoolEntry poolEntry, final Connection connection, final StatementRegistry openStatements, final ProxyLeakTask leakTask, final long now, final boolean isReadOnly, final boolean isAutoCommit) {
       this.poolEntry = poolEntry;
       this.delegate = connection;
       this.openStatements = openStatements;
+      this.statementCache = poolEntry.getStatementCache();
+      this.pendingResetState = poolEntry.deferredResetState;
+      this.pendingResetBits = poolEntry.deferredResetBits;
+      poolEntry.deferResetConnectionState(null, 0);
       this.leakTask = leakTask;
       this.lastAccess = now;
       this.isReadOnly = isReadOnly;
@@ -136,21 +156,25 @@ public abstract class ProxyConnection implements Connection
       return isAutoCommit;
    }
 
+   @Override
    final String getCatalogState()
    {
       return dbcatalog;
    }
 
+   @Override
    final String getSchemaState()
    {
       return dbschema;
    }
 
+   @Override
    final int getTransactionIsolationState()
    {
       return transactionIsolation;
    }
 
+   @Override
    final boolean getReadOnlyState()
    {
       return isReadOnly;
@@ -186,6 +210,9 @@ public abstract class ProxyConnection implements Connection
             leakTask.cancel();
             poolEntry.evict("(connection is broken)");
             delegate = ClosedConnection.CLOSED_CONNECTION;
+            if (SERVER_ERROR_STATES.contains(sqlState)) {
+               poolEntry.hikariPool.evictOnServerFailure(poolEntry, sqlState);
+            }
          }
          else {
             nse = nse.getNextException();
@@ -198,16 +225,21 @@ public abstract class ProxyConnection implements Connection
    public final void checkTwinException(final SQLException sqle) throws SQLException {
       if (LOGGER.isTraceEnabled())
          LOGGER.trace(getClass().getName() + ".checkTwinException", sqle);
-      poolEntry.hikariPool.fallback();
-      if (twinDelegate != null) {
-         try {
-            twinDelegate.close();
-         } catch (SQLException e) {
-            LOGGER.error("Failed to close twin connection", e);
+      final Object event = PoolEvents.begin(PoolEvents.TWIN_CALL);
+      try {
+         poolEntry.hikariPool.fallback();
+         if (twinDelegate != null) {
+            try {
+               twinDelegate.close();
+            } catch (SQLException e) {
+               LOGGER.error("Failed to close twin connection", e);
+            }
+            twinDelegate = null;
          }
-         twinDelegate = null;
+         drainQueue();
+      } finally {
+         PoolEvents.twinCalled(event, poolEntry.getPoolName(), sqle.getSQLState());
       }
-      drainQueue();
    }
 
    final boolean isFallbackMode() {
@@ -215,6 +247,8 @@ public abstract class ProxyConnection implements Connection
    }
 
    private void drainQueue() throws SQLException {
+      final Object event = PoolEvents.begin(PoolEvents.JOURNAL_FLUSH);
+      int i = 0;
       try {
          if (fallbackInsert == null)
             fallbackInsert = delegate.prepareStatement("INSERT INTO invocation_queue (connection_id, statement_id, class, method, args) VALUES (?, ?, ?, ?, ?)");
@@ -222,7 +256,6 @@ public abstract class ProxyConnection implements Connection
          for (ProxyStatement openStatement : openStatements)
             openStatement.drainQueue();
 
-         int i = 0;
          Iterator<Record> iterator = invocationQueue.iterator();
          while (iterator.hasNext()) {
             Record record = iterator.next();
@@ -246,6 +279,8 @@ public abstract class ProxyConnection implements Connection
             delegate.commit();
       } catch (SQLException e) {
          throw checkException(e);
+      } finally {
+         PoolEvents.journalFlushed(event, poolEntry.getPoolName(), i);
       }
    }
 
@@ -265,58 +300,212 @@ public abstract class ProxyConnection implements Connection
    }
 
    @SuppressWarnings("WeakerAccess")
+   @SneakyThrows(SQLException.class)
    protected final void invoked(String method, Object[] args) {
+      if (pendingResetBits != 0 && !isStateSetter(method)) {
+         applyPendingReset();
+      }
       invocationQueue.add(tailRecord = new Record(getConnectionId(), getStatementId(), getClassId(), method, args));
       if (LOGGER.isTraceEnabled())
          LOGGER.trace(tailRecord.toString());
    }
 
-   final synchronized void untrackStatement(final ProxyStatement statement)
+   /**
+    * Apply the reset of connection state that the previous borrower left to this one (see
+    * {@link com.zaxxer.hikari.HikariConfig#setLazyStateReset(boolean)}).  Called before anything
+    * other than a state setter reaches the connection, including the getters of the state.
+    *
+    * @throws SQLException if the connection state could not be reset
+    */
+   final void applyPendingReset() throws SQLException
+   {
+      if (pendingResetBits != 0) {
+         final int resetBits = pendingResetBits;
+         pendingResetBits = 0;
+         try {
+            if ((poolEntry.hikariPool.resetDeferredState(delegate, pendingResetState, resetBits, poolEntry.hikariPool.resetDialect) & (DIRTY_BIT_CATALOG | DIRTY_BIT_SCHEMA)) != 0) {
+               invalidateStatementCache();
+            }
+         }
+         catch (SQLException e) {
+            throw checkException(e);
+         }
+         finally {
+            pendingResetState = null;
+         }
+      }
+   }
+
+   /**
+    * Drop the pending reset of a state that the borrower is setting itself.
+    *
+    * @param dirtyBit the state being set
+    * @return true if the reset of that state was pending, in which case the connection is still in
+    *         the state of {@code pendingResetState}
+    */
+   private boolean clearPendingReset(final int dirtyBit)
+   {
+      if ((pendingResetBits & dirtyBit) != 0) {
+         pendingResetBits &= ~dirtyBit;
+         return true;
+      }
+      return false;
+   }
+
+   private static boolean isStateSetter(final String method)
+   {
+      return method.startsWith("setReadOnly ") || method.startsWith("setTransactionIsolation ") || method.startsWith("setCatalog ")
+         || method.startsWith("setSchema ") || method.startsWith("close ");
+   }
+
+   /**
+    * Get the statement metrics of the pool, see {@link com.zaxxer.hikari.HikariConfig#setStatementMetricsSize(int)}.
+    *
+    * @return the statement metrics, or null if they are disabled
+    */
+   final StatementMetrics getStatementMetrics()
+   {
+      return poolEntry.hikariPool.statementMetrics;
+   }
+
+   final void untrackStatement(final ProxyStatement statement)
    {
       openStatements.remove(statement);
    }
 
+   /**
+    * Arm the slow query timer of an execution starting on this connection, see
+    * {@link com.zaxxer.hikari.HikariConfig#setSlowQueryThreshold(long)}.
+    *
+    * @param sql the SQL executed, or null if unknown
+    * @return the armed task, or {@link ProxySlowTask#NO_TASK}
+    */
+   final ProxySlowTask scheduleSlowQueryTask(final String sql)
+   {
+      lastSql = sql;
+      return poolEntry.hikariPool.slowTaskFactory.scheduleStatement(sql);
+   }
+
    final void markCommitStateDirty()
    {
       if (isAutoCommit) {
-         lastAccess = currentTime();
+         lastAccess = coarseTime();
       }
       else {
+         if (!isCommitStateDirty && transactionTask == ProxySlowTask.NO_TASK) {
+            transactionTask = poolEntry.hikariPool.slowTaskFactory.scheduleTransaction(this);
+         }
          isCommitStateDirty = true;
       }
    }
 
+   private void cancelTransactionTask()
+   {
+      transactionTask.cancel();
+      transactionTask = ProxySlowTask.NO_TASK;
+   }
+
    void cancelLeakTask()
    {
       leakTask.cancel();
    }
 
-   private synchronized <T extends Statement> T trackStatement(final T statement)
+   private <T extends Statement> T trackStatement(final T statement)
    {
       openStatements.add((ProxyStatement) statement);
 
       return statement;
    }
 
-   @SuppressWarnings("EmptyTryBlock")
-   private synchronized void closeStatements()
+   private StatementCache.Key cacheKey(final String sql, final int resultSetType, final int concurrency, final int holdability, final int autoGeneratedKeys, final Object columns)
    {
-      final int size = openStatements.size();
-      if (size > 0) {
-         for (int i = 0; i < size && delegate != ClosedConnection.CLOSED_CONNECTION; i++) {
-            try (Statement ignored = openStatements.get(i)) {
-               // automatic resource cleanup
-            }
-            catch (SQLException e) {
-               LOGGER.warn("{} - Connection {} marked as broken because of an exception closing open statements during Connection.close()",
-                           poolEntry.getPoolName(), delegate);
-               leakTask.cancel();
-               poolEntry.evict("(exception closing Statements during Connection.close())");
-               delegate = ClosedConnection.CLOSED_CONNECTION;
-            }
+      if (statementCache == null) {
+         return null;
+      }
+
+      final Object columnsCopy = (columns instanceof int[] ? ((int[]) columns).clone() : columns instanceof String[] ? ((String[]) columns).clone() : null);
+      return new StatementCache.Key(statementCache.generation(), sql, resultSetType, concurrency, holdability, autoGeneratedKeys, columnsCopy);
+   }
+
+   private PreparedStatement takeCachedStatement(final StatementCache.Key key)
+   {
+      return key != null ? statementCache.take(key) : null;
+   }
+
+   private PreparedStatement newCacheableStatement(final StatementCache.Key key, final PreparedStatement statement)
+   {
+      if (key != null) {
+         try {
+            statementCache.captureDefaults(statement);
          }
+         catch (SQLException | UnsupportedOperationException e) {
+            LOGGER.debug("{} - Failed to read the default settings of statement {}", poolEntry.getPoolName(), statement, e);
+         }
+      }
+      return statement;
+   }
 
-         openStatements.clear();
+   /**
+    * Close the cached statements of the connection, whose catalog or schema is being changed.
+    */
+   final void invalidateStatementCache()
+   {
+      if (statementCache != null) {
+         statementCache.invalidate();
+      }
+   }
+
+   /**
+    * Return the driver statement of a closed {@link ProxyPreparedStatement} to the statement cache.  Its
+    * last result set, parameters, batch and warnings are cleared and its settings restored first; a statement
+    * that cannot be reset, that is not poolable, or that belongs to a connection that is broken, is not
+    * cached.
+    *
+    * @param key the cache key the statement was prepared with
+    * @param statement the driver statement
+    * @return true if the statement was cached, false if the caller must close it
+    */
+   final boolean recycleStatement(final StatementCache.Key key, final PreparedStatement statement)
+   {
+      if (delegate == ClosedConnection.CLOSED_CONNECTION) {
+         return false;
+      }
+
+      try {
+         final ResultSet resultSet = statement.getResultSet();
+         if (resultSet != null) {
+            resultSet.close();
+         }
+         statement.clearParameters();
+         statement.clearBatch();   // a batch added but never executed must not run for the next borrower
+         statement.clearWarnings();
+         if (!statementCache.restoreDefaults(statement)) {
+            return false;
+         }
+      }
+      catch (SQLException | UnsupportedOperationException e) {
+         LOGGER.debug("{} - Not caching statement {} that could not be reset", poolEntry.getPoolName(), statement, e);
+         return false;
+      }
+
+      return statementCache.offer(key, statement);
+   }
+
+   @SuppressWarnings("EmptyTryBlock")
+   private void closeStatements()
+   {
+      final ProxyStatement[] statements = openStatements.removeAll();
+      for (int i = 0; i < statements.length && delegate != ClosedConnection.CLOSED_CONNECTION; i++) {
+         try (Statement ignored = statements[i]) {
+            // automatic resource cleanup
+         }
+         catch (SQLException e) {
+            LOGGER.warn("{} - Connection {} marked as broken because of an exception closing open statements during Connection.close()",
+                        poolEntry.getPoolName(), delegate);
+            leakTask.cancel();
+            poolEntry.evict("(exception closing Statements during Connection.close())");
+            delegate = ClosedConnection.CLOSED_CONNECTION;
+         }
       }
    }
 
@@ -330,6 +519,7 @@ public abstract class ProxyConnection implements Connection
    {
       // Closing statements can cause connection eviction, so this must run before the conditional below
       closeStatements();
+      cancelTransactionTask();
 
       if (delegate != ClosedConnection.CLOSED_CONNECTION) {
          leakTask.cancel();
@@ -337,7 +527,7 @@ public abstract class ProxyConnection implements Connection
          try {
             if (isCommitStateDirty && !isAutoCommit) {
                delegate.rollback();
-               lastAccess = currentTime();
+               lastAccess = coarseTime();
                LOGGER.debug("{} - Executed rollback on connection {} due to dirty commit state on close().", poolEntry.getPoolName(), delegate);
                if (!isFallbackMode())
                   try {
@@ -352,7 +542,10 @@ public abstract class ProxyConnection implements Connection
 
             if (dirtyBits != 0) {
                poolEntry.resetConnectionState(this, dirtyBits);
-               lastAccess = currentTime();
+               lastAccess = coarseTime();
+            }
+            else if (pendingResetBits != 0) {
+               poolEntry.deferResetConnectionState(pendingResetState, pendingResetBits);
             }
 
             delegate.clearWarnings();
@@ -444,6 +637,7 @@ public abstract class ProxyConnection implements Connection
       CallableStatement statement = delegate.prepareCall(sql);
       ProxyCallableStatement result = trackStatement(ProxyFactory.getProxyCallableStatement(this, statement));
       tailRecord.statementId = System.identityHashCode(result);
+      result.sql = sql;
 
       if (!isFallbackMode())
          try {
@@ -461,6 +655,7 @@ public abstract class ProxyConnection implements Connection
       CallableStatement statement = delegate.prepareCall(sql, resultSetType, concurrency);
       ProxyCallableStatement result = trackStatement(ProxyFactory.getProxyCallableStatement(this, statement));
       tailRecord.statementId = System.identityHashCode(result);
+      result.sql = sql;
 
       if (!isFallbackMode())
          try {
@@ -478,6 +673,7 @@ public abstract class ProxyConnection implements Connection
       CallableStatement statement = delegate.prepareCall(sql, resultSetType, concurrency, holdability);
       ProxyCallableStatement result = trackStatement(ProxyFactory.getProxyCallableStatement(this, statement));
       tailRecord.statementId = System.identityHashCode(result);
+      result.sql = sql;
 
       if (!isFallbackMode())
          try {
@@ -492,9 +688,15 @@ public abstract class ProxyConnection implements Connection
    @Override
    public PreparedStatement prepareStatement(String sql) throws SQLException
    {
-      PreparedStatement statement = delegate.prepareStatement(sql);
+      final StatementCache.Key key = cacheKey(sql, -1, -1, -1, -1, null);
+      PreparedStatement statement = takeCachedStatement(key);
+      if (statement == null) {
+         statement = newCacheableStatement(key, delegate.prepareStatement(sql));
+      }
       ProxyPreparedStatement result = trackStatement(ProxyFactory.getProxyPreparedStatement(this, statement));
+      result.cacheKey = key;
       tailRecord.statementId = System.identityHashCode(result);
+      result.sql = sql;
 
       if (!isFallbackMode())
          try {
@@ -509,9 +711,15 @@ public abstract class ProxyConnection implements Connection
    @Override
    public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException
    {
-      PreparedStatement statement = delegate.prepareStatement(sql, autoGeneratedKeys);
+      final StatementCache.Key key = cacheKey(sql, -1, -1, -1, autoGeneratedKeys, null);
+      PreparedStatement statement = takeCachedStatement(key);
+      if (statement == null) {
+         statement = newCacheableStatement(key, delegate.prepareStatement(sql, autoGeneratedKeys));
+      }
       ProxyPreparedStatement result = trackStatement(ProxyFactory.getProxyPreparedStatement(this, statement));
+      result.cacheKey = key;
       tailRecord.statementId = System.identityHashCode(result);
+      result.sql = sql;
 
       if (!isFallbackMode())
          try {
@@ -526,9 +734,15 @@ public abstract class ProxyConnection implements Connection
    @Override
    public PreparedStatement prepareStatement(String sql, int resultSetType, int concurrency) throws SQLException
    {
-      PreparedStatement statement = delegate.prepareStatement(sql, resultSetType, concurrency);
+      final StatementCache.Key key = cacheKey(sql, resultSetType, concurrency, -1, -1, null);
+      PreparedStatement statement = takeCachedStatement(key);
+      if (statement == null) {
+         statement = newCacheableStatement(key, delegate.prepareStatement(sql, resultSetType, concurrency));
+      }
       ProxyPreparedStatement result = trackStatement(ProxyFactory.getProxyPreparedStatement(this, statement));
+      result.cacheKey = key;
       tailRecord.statementId = System.identityHashCode(result);
+      result.sql = sql;
 
       if (!isFallbackMode())
          try {
@@ -543,9 +757,15 @@ public abstract class ProxyConnection implements Connection
    @Override
    public PreparedStatement prepareStatement(String sql, int resultSetType, int concurrency, int holdability) throws SQLException
    {
-      PreparedStatement statement = delegate.prepareStatement(sql, resultSetType, concurrency, holdability);
+      final StatementCache.Key key = cacheKey(sql, resultSetType, concurrency, holdability, -1, null);
+      PreparedStatement statement = takeCachedStatement(key);
+      if (statement == null) {
+         statement = newCacheableStatement(key, delegate.prepareStatement(sql, resultSetType, concurrency, holdability));
+      }
       ProxyPreparedStatement result = trackStatement(ProxyFactory.getProxyPreparedStatement(this, statement));
+      result.cacheKey = key;
       tailRecord.statementId = System.identityHashCode(result);
+      result.sql = sql;
 
       if (!isFallbackMode())
          try {
@@ -560,9 +780,15 @@ public abstract class ProxyConnection implements Connection
    @Override
    public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException
    {
-      PreparedStatement statement = delegate.prepareStatement(sql, columnIndexes);
+      final StatementCache.Key key = cacheKey(sql, -1, -1, -1, -1, columnIndexes);
+      PreparedStatement statement = takeCachedStatement(key);
+      if (statement == null) {
+         statement = newCacheableStatement(key, delegate.prepareStatement(sql, columnIndexes));
+      }
       ProxyPreparedStatement result = trackStatement(ProxyFactory.getProxyPreparedStatement(this, statement));
+      result.cacheKey = key;
       tailRecord.statementId = System.identityHashCode(result);
+      result.sql = sql;
 
       if (!isFallbackMode())
          try {
@@ -577,9 +803,15 @@ public abstract class ProxyConnection implements Connection
    @Override
    public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException
    {
-      PreparedStatement statement = delegate.prepareStatement(sql, columnNames);
+      final StatementCache.Key key = cacheKey(sql, -1, -1, -1, -1, columnNames);
+      PreparedStatement statement = takeCachedStatement(key);
+      if (statement == null) {
+         statement = newCacheableStatement(key, delegate.prepareStatement(sql, columnNames));
+      }
       ProxyPreparedStatement result = trackStatement(ProxyFactory.getProxyPreparedStatement(this, statement));
+      result.cacheKey = key;
       tailRecord.statementId = System.identityHashCode(result);
+      result.sql = sql;
 
       if (!isFallbackMode())
          try {
@@ -594,18 +826,45 @@ public abstract class ProxyConnection implements Connection
    @Override
    public DatabaseMetaData getMetaData() throws SQLException
    {
+      applyPendingReset();
       markCommitStateDirty();
       return delegate.getMetaData();
    }
 
+   /** {@inheritDoc} */
+   @Override
+   public int getTransactionIsolation() throws SQLException
+   {
+      applyPendingReset();
+      return delegate.getTransactionIsolation();
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public String getCatalog() throws SQLException
+   {
+      applyPendingReset();
+      return delegate.getCatalog();
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public String getSchema() throws SQLException
+   {
+      applyPendingReset();
+      return delegate.getSchema();
+   }
+
    /** {@inheritDoc} */
    @Override
    @DontRecord
    public void commit() throws SQLException
    {
+      applyPendingReset();
       delegate.commit();
       isCommitStateDirty = false;
-      lastAccess = currentTime();
+      cancelTransactionTask();
+      lastAccess = coarseTime();
 
       if (!isFallbackMode()) {
          try {
@@ -632,9 +891,11 @@ public abstract class ProxyConnection implements Connection
    @DontRecord
    public void rollback() throws SQLException
    {
+      applyPendingReset();
       delegate.rollback();
       isCommitStateDirty = false;
-      lastAccess = currentTime();
+      cancelTransactionTask();
+      lastAccess = coarseTime();
 
       for (ProxyStatement openStatement : openStatements)
          openStatement.invocationQueue.clear();
@@ -654,7 +915,7 @@ public abstract class ProxyConnection implements Connection
    {
       delegate.rollback(savepoint);
       isCommitStateDirty = false;
-      lastAccess = currentTime();
+      lastAccess = coarseTime();
 
       if (!isFallbackMode())
          try {
@@ -672,6 +933,9 @@ public abstract class ProxyConnection implements Connection
       delegate.setAutoCommit(autoCommit);
       isAutoCommit = autoCommit;
       dirtyBits |= DIRTY_BIT_AUTOCOMMIT;
+      if (autoCommit) {
+         cancelTransactionTask();
+      }
 
       if (!isFallbackMode())
          try {
@@ -685,7 +949,9 @@ public abstract class ProxyConnection implements Connection
    @Override
    public void setReadOnly(boolean readOnly) throws SQLException
    {
-      delegate.setReadOnly(readOnly);
+      if (!clearPendingReset(DIRTY_BIT_READONLY) || readOnly != pendingResetState.getReadOnlyState()) {
+         delegate.setReadOnly(readOnly);
+      }
       isReadOnly = readOnly;
       isCommitStateDirty = false;
       dirtyBits |= DIRTY_BIT_READONLY;
@@ -702,7 +968,9 @@ public abstract class ProxyConnection implements Connection
    @Override
    public void setTransactionIsolation(int level) throws SQLException
    {
-      delegate.setTransactionIsolation(level);
+      if (!clearPendingReset(DIRTY_BIT_ISOLATION) || level != pendingResetState.getTransactionIsolationState()) {
+         delegate.setTransactionIsolation(level);
+      }
       transactionIsolation = level;
       dirtyBits |= DIRTY_BIT_ISOLATION;
 
@@ -718,7 +986,10 @@ public abstract class ProxyConnection implements Connection
    @Override
    public void setCatalog(String catalog) throws SQLException
    {
-      delegate.setCatalog(catalog);
+      if (!clearPendingReset(DIRTY_BIT_CATALOG) || !Objects.equals(catalog, pendingResetState.getCatalogState())) {
+         invalidateStatementCache();
+         delegate.setCatalog(catalog);
+      }
       dbcatalog = catalog;
       dirtyBits |= DIRTY_BIT_CATALOG;
 
@@ -767,7 +1038,10 @@ public abstract class ProxyConnection implements Connection
    @Override
    public void setSchema(String schema) throws SQLException
    {
-      delegate.setSchema(schema);
+      if (!clearPendingReset(DIRTY_BIT_SCHEMA) || !Objects.equals(schema, pendingResetState.getSchemaState())) {
+         invalidateStatementCache();
+         delegate.setSchema(schema);
+      }
       dbschema = schema;
       dirtyBits |= DIRTY_BIT_SCHEMA;
 
@@ -791,6 +1065,7 @@ public abstract class ProxyConnection implements Connection
    @SuppressWarnings("unchecked")
    public final <T> T unwrap(Class<T> iface) throws SQLException
    {
+      applyPendingReset();
       if (iface.isInstance(delegate)) {
          return (T) delegate;
       }
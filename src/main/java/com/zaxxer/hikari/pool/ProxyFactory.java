@@ -16,8 +16,6 @@
 
 package com.zaxxer.hikari.pool;
 
-import com.zaxxer.hikari.util.FastList;
-
 import java.sql.*;
 
 /**
@@ -38,14 +36,14 @@ public final class ProxyFactory
     * Create a proxy for the specified {@link Connection} instance.
     * @param poolEntry the PoolEntry holding pool state
     * @param connection the raw database Connection
-    * @param openStatements a reusable list to track open Statement instances
+    * @param openStatements the registry of the connection's open Statement instances
     * @param leakTask the ProxyLeakTask for this connection
     * @param now the current timestamp
     * @param isReadOnly the default readOnly state of the connection
     * @param isAutoCommit the default autoCommit state of the connection
     * @return a proxy that wraps the specified {@link Connection}
     */
-   static ProxyConnection getProxyConnection(final PoolEntry poolEntry, final Connection connection, final FastList<Statement> openStatements, final ProxyLeakTask leakTask, final long now, final boolean isReadOnly, final boolean isAutoCommit)
+   static ProxyConnection getProxyConnection(final PoolEntry poolEntry, final Connection connection, final StatementRegistry openStatements, final ProxyLeakTask leakTask, final long now, final boolean isReadOnly, final boolean isAutoCommit)
    {
       // Body is replaced (injected) by JavassistProxyFactory
       throw new IllegalStateException("You need to run the CLI build and you need target/classes in your classpath to run.");
@@ -37,6 +37,8 @@ public abstract class ProxyPreparedStatement<T extends PreparedStatement> extend
 {
    private static final Logger LOGGER = LoggerFactory.getLogger(ProxyPreparedStatement.class);
 
+   StatementCache.Key cacheKey;
+
    ProxyPreparedStatement(ProxyConnection connection, T statement)
    {
       super(connection, statement);
@@ -47,6 +49,15 @@ public abstract class ProxyPreparedStatement<T extends PreparedStatement> extend
       return 'P';
    }
 
+   /** {@inheritDoc} */
+   @Override
+   void closeDelegate() throws SQLException
+   {
+      if (cacheKey == null || !connection.recycleStatement(cacheKey, delegate)) {
+         delegate.close();
+      }
+   }
+
    // **********************************************************************
    //              Overridden java.sql.PreparedStatement Methods
    // **********************************************************************
@@ -56,10 +67,19 @@ public abstract class ProxyPreparedStatement<T extends PreparedStatement> extend
    public boolean execute() throws SQLException
    {
       connection.markCommitStateDirty();
-      boolean result = delegate.execute();
+      final long start = beginExecution(null);
+      boolean result;
+      try {
+         result = delegate.execute();
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start);
 
       if (!isFallbackMode()) try {
          twinDelegate.execute();
+         twinExecuted(twinStart);
       } catch (SQLException e) {
          checkTwinException(e);
       }
@@ -71,11 +91,20 @@ public abstract class ProxyPreparedStatement<T extends PreparedStatement> extend
    public ResultSet executeQuery() throws SQLException
    {
       connection.markCommitStateDirty();
-      ResultSet resultSet = delegate.executeQuery();
+      final long start = beginExecution(null);
+      ResultSet resultSet;
+      try {
+         resultSet = delegate.executeQuery();
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start);
 
       if (!isFallbackMode())
          try {
             twinDelegate.executeQuery();
+            twinExecuted(twinStart);
          } catch (SQLException e) {
             checkTwinException(e);
          }
@@ -87,10 +116,19 @@ public abstract class ProxyPreparedStatement<T extends PreparedStatement> extend
    public int executeUpdate() throws SQLException
    {
       connection.markCommitStateDirty();
-      int result = delegate.executeUpdate();
+      final long start = beginExecution(null);
+      int result;
+      try {
+         result = delegate.executeUpdate();
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start, result);
 
       if (!isFallbackMode()) try {
          twinDelegate.executeUpdate();
+         twinExecuted(twinStart);
       } catch (SQLException e) {
          checkTwinException(e);
       }
@@ -102,11 +140,20 @@ public abstract class ProxyPreparedStatement<T extends PreparedStatement> extend
    public long executeLargeUpdate() throws SQLException
    {
       connection.markCommitStateDirty();
-      long result = delegate.executeLargeUpdate();
+      final long start = beginExecution(null);
+      long result;
+      try {
+         result = delegate.executeLargeUpdate();
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start, result);
 
       if (!isFallbackMode())
          try {
             twinDelegate.executeLargeUpdate();
+            twinExecuted(twinStart);
          } catch (SQLException e) {
             checkTwinException(e);
          }
@@ -16,6 +16,8 @@
 
 package com.zaxxer.hikari.pool;
 
+import com.zaxxer.hikari.metrics.StatementMetrics;
+
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -31,11 +33,15 @@ public abstract class ProxyResultSet implements ResultSet
    protected final ProxyStatement statement;
    final ResultSet delegate;
 
+   private final StatementMetrics.Stats stats;   // of the execution that produced this result set
+   private long rowsFetched;
+
    protected ProxyResultSet(ProxyConnection connection, ProxyStatement statement, ResultSet resultSet)
    {
       this.connection = connection;
       this.statement = statement;
       this.delegate = resultSet;
+      this.stats = (statement != null ? statement.stats : null);
    }
 
    @SuppressWarnings("unused")
@@ -66,6 +72,40 @@ public abstract class ProxyResultSet implements ResultSet
       return statement;
    }
 
+   /** {@inheritDoc} */
+   @Override
+   public boolean next() throws SQLException
+   {
+      try {
+         final boolean hasRow = delegate.next();
+         if (hasRow) {
+            rowsFetched++;
+         }
+         return hasRow;
+      }
+      catch (SQLException e) {
+         throw checkException(e);
+      }
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void close() throws SQLException
+   {
+      try {
+         delegate.close();
+      }
+      catch (SQLException e) {
+         throw checkException(e);
+      }
+      finally {
+         if (stats != null && rowsFetched > 0) {
+            stats.recordRowsFetched(rowsFetched);
+            rowsFetched = 0;
+         }
+      }
+   }
+
    /** {@inheritDoc} */
    @Override
    public void updateRow() throws SQLException
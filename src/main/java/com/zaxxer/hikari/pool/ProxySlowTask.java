@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static com.zaxxer.hikari.util.ClockSource.currentTime;
+import static com.zaxxer.hikari.util.ClockSource.elapsedMillis;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zaxxer.hikari.metrics.StatementMetrics;
+
+/**
+ * A Runnable that is scheduled in the future to report a slow statement execution or a long
+ * transaction.  The ScheduledFuture is cancelled if the execution returns, or the transaction
+ * ends, before the threshold expires.
+ *
+ * @author Brett Wooldridge
+ */
+class ProxySlowTask implements Runnable
+{
+   private static final Logger LOGGER = LoggerFactory.getLogger(ProxySlowTask.class);
+   static final ProxySlowTask NO_TASK;
+
+   private ProxySlowTaskFactory factory;
+   private ProxyConnection connection;
+   private String sql;
+   private Thread thread;
+   private long startTime;
+   private ScheduledFuture<?> scheduledFuture;
+   private volatile boolean isReported;
+
+   static
+   {
+      NO_TASK = new ProxySlowTask() {
+         @Override
+         void schedule(ScheduledExecutorService executorService, long threshold) {}
+
+         @Override
+         public void run() {}
+
+         @Override
+         void cancel() {}
+      };
+   }
+
+   /**
+    * Create a task for a statement execution, or for a transaction if a connection is given.
+    *
+    * @param factory the factory, for the pool the task reports to
+    * @param connection the connection holding the transaction, or null for a statement execution
+    * @param sql the SQL executed, or null for a transaction or an unknown SQL
+    */
+   ProxySlowTask(final ProxySlowTaskFactory factory, final ProxyConnection connection, final String sql)
+   {
+      this.factory = factory;
+      this.connection = connection;
+      this.sql = sql;
+      this.thread = Thread.currentThread();
+      this.startTime = currentTime();
+   }
+
+   private ProxySlowTask()
+   {
+   }
+
+   void schedule(ScheduledExecutorService executorService, long threshold)
+   {
+      scheduledFuture = executorService.schedule(this, threshold, TimeUnit.MILLISECONDS);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void run()
+   {
+      isReported = true;
+
+      final boolean transaction = connection != null;
+      // a racy read of the connection's last SQL, good enough for a report
+      final String executed = transaction ? connection.lastSql : sql;
+      final String fingerprint = executed != null ? StatementMetrics.fingerprint(executed) : "<unknown>";
+      final long elapsed = elapsedMillis(startTime);
+
+      final String what = transaction ? "Long transaction" : "Slow statement";
+      if (factory.isStackTraces()) {
+         final Exception exception = new Exception("Apparent " + what.toLowerCase());
+         exception.setStackTrace(thread.getStackTrace());
+         LOGGER.warn("{} - {} detected after {}ms on thread {}: {}, stack trace follows", factory.getPoolName(), what, elapsed, thread.getName(), fingerprint, exception);
+      }
+      else {
+         LOGGER.warn("{} - {} detected after {}ms on thread {}: {}", factory.getPoolName(), what, elapsed, thread.getName(), fingerprint);
+      }
+
+      factory.reported(transaction, fingerprint, elapsed, thread);
+   }
+
+   void cancel()
+   {
+      scheduledFuture.cancel(false);
+      if (isReported) {
+         LOGGER.info("{} - Previously reported {} on thread {} ended after {}ms", factory.getPoolName(),
+                     connection != null ? "long transaction" : "slow statement", thread.getName(), elapsedMillis(startTime));
+      }
+   }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.zaxxer.hikari.HikariConfig;
+
+/**
+ * A factory for {@link ProxySlowTask} Runnables that are scheduled in the future to report slow
+ * statement executions and long transactions, see {@link HikariConfig#setSlowQueryThreshold(long)}
+ * and {@link HikariConfig#setLongTransactionThreshold(long)}.
+ *
+ * @author Brett Wooldridge
+ */
+class ProxySlowTaskFactory
+{
+   private final PoolBase pool;
+   private final ScheduledExecutorService executorService;
+   private final long slowQueryThreshold;
+   private final long longTransactionThreshold;
+   private final int sampling;
+   private final boolean isStackTraces;
+
+   ProxySlowTaskFactory(final PoolBase pool, final HikariConfig config, final ScheduledExecutorService executorService)
+   {
+      this.pool = pool;
+      this.executorService = executorService;
+      this.slowQueryThreshold = config.getSlowQueryThreshold();
+      this.longTransactionThreshold = config.getLongTransactionThreshold();
+      this.sampling = config.getSlowQuerySampling();
+      this.isStackTraces = config.isSlowQueryStackTraces();
+   }
+
+   /**
+    * Arm the timer of a statement execution, on the executing thread.
+    *
+    * @param sql the SQL executed, or null if unknown
+    * @return the armed task, or {@link ProxySlowTask#NO_TASK} if the execution is not timed
+    */
+   ProxySlowTask scheduleStatement(final String sql)
+   {
+      return (slowQueryThreshold == 0 || !isSampled()) ? ProxySlowTask.NO_TASK : scheduleNewTask(null, sql, slowQueryThreshold);
+   }
+
+   /**
+    * Arm the timer of a transaction, on the thread holding the connection.
+    *
+    * @param connection the connection holding the transaction
+    * @return the armed task, or {@link ProxySlowTask#NO_TASK} if the transaction is not timed
+    */
+   ProxySlowTask scheduleTransaction(final ProxyConnection connection)
+   {
+      return (longTransactionThreshold == 0 || !isSampled()) ? ProxySlowTask.NO_TASK : scheduleNewTask(connection, null, longTransactionThreshold);
+   }
+
+   String getPoolName()
+   {
+      return pool.poolName;
+   }
+
+   boolean isStackTraces()
+   {
+      return isStackTraces;
+   }
+
+   void reported(final boolean transaction, final String fingerprint, final long elapsedMillis, final Thread thread)
+   {
+      if (transaction) {
+         pool.metricsTracker.recordLongTransaction();
+      }
+      else {
+         pool.metricsTracker.recordSlowQuery();
+      }
+      PoolEvents.slowExecution(pool.poolName, transaction, fingerprint, elapsedMillis, thread);
+   }
+
+   private boolean isSampled()
+   {
+      return sampling == 1 || ThreadLocalRandom.current().nextInt(sampling) == 0;
+   }
+
+   private ProxySlowTask scheduleNewTask(final ProxyConnection connection, final String sql, final long threshold)
+   {
+      ProxySlowTask task = new ProxySlowTask(this, connection, sql);
+      task.schedule(executorService, threshold);
+
+      return task;
+   }
+}
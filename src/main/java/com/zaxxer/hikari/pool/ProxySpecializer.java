@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zaxxer.hikari.util.JavassistProxyFactory;
+
+import lombok.SneakyThrows;
+
+/**
+ * Creates proxies specialized for the concrete driver class of the object they wrap.  The proxies
+ * generated at build time call their delegate through the JDBC interface, so with several drivers
+ * (or a test stub) loaded those call sites become megamorphic.  When the system property
+ * {@code com.zaxxer.hikari.specializeProxies} is {@code true}, {@link ProxyFactory} asks this class
+ * first; the first time a driver class is seen a proxy class calling through that class is
+ * generated with {@link JavassistProxyFactory}, which then must be on the classpath at runtime.
+ * Driver classes that cannot be specialized (not public, not visible from the HikariCP class
+ * loader, or Javassist missing) keep the build-time proxy.
+ *
+ * @author Brett Wooldridge
+ */
+final class ProxySpecializer extends ClassValue<Constructor<?>>
+{
+   private static final Logger LOGGER = LoggerFactory.getLogger(ProxySpecializer.class);
+
+   static final boolean ENABLED = Boolean.getBoolean("com.zaxxer.hikari.specializeProxies");
+
+   static final ProxySpecializer CONNECTION = new ProxySpecializer(Connection.class, ProxyConnection.class);
+   static final ProxySpecializer STATEMENT = new ProxySpecializer(Statement.class, ProxyStatement.class);
+   static final ProxySpecializer PREPARED_STATEMENT = new ProxySpecializer(PreparedStatement.class, ProxyPreparedStatement.class);
+   static final ProxySpecializer CALLABLE_STATEMENT = new ProxySpecializer(CallableStatement.class, ProxyCallableStatement.class);
+   static final ProxySpecializer RESULT_SET = new ProxySpecializer(ResultSet.class, ProxyResultSet.class);
+
+   private final Class<?> primaryInterface;
+   private final Class<?> proxySuperclass;
+
+   private ProxySpecializer(final Class<?> primaryInterface, final Class<?> proxySuperclass)
+   {
+      this.primaryInterface = primaryInterface;
+      this.proxySuperclass = proxySuperclass;
+   }
+
+   /**
+    * Create a specialized proxy for the given driver object.
+    *
+    * @param delegate the driver object to proxy
+    * @param args the arguments of the proxy constructor
+    * @return the proxy, or null if the class of the driver object cannot be specialized
+    */
+   @SneakyThrows
+   Object newProxy(final Object delegate, final Object[] args)
+   {
+      final Constructor<?> constructor = get(delegate.getClass());
+      if (constructor == null) {
+         return null;
+      }
+
+      try {
+         return constructor.newInstance(args);
+      }
+      catch (InvocationTargetException e) {
+         throw e.getCause();
+      }
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   protected Constructor<?> computeValue(final Class<?> delegateClass)
+   {
+      final Class<?> castClass = findCastClass(delegateClass);
+      if (castClass == null) {
+         LOGGER.debug("No public {} class visible to HikariCP for {}, proxies stay unspecialized", primaryInterface.getSimpleName(), delegateClass.getName());
+         return null;
+      }
+
+      try {
+         final Class<?> proxyClass = JavassistProxyFactory.generateSpecializedProxyClass(primaryInterface, proxySuperclass, castClass);
+         final Constructor<?> constructor = proxyClass.getDeclaredConstructors()[0];
+         constructor.setAccessible(true);
+         LOGGER.debug("Generated {} for {}", proxyClass.getName(), delegateClass.getName());
+         return constructor;
+      }
+      catch (Exception | LinkageError e) {
+         LOGGER.warn("Failed to generate a specialized {} proxy for {}, proxies stay unspecialized ({})", primaryInterface.getSimpleName(), delegateClass.getName(), e.toString());
+         return null;
+      }
+   }
+
+   /**
+    * The most specific public class of the driver object that implements the JDBC interface and
+    * that the generated proxy, defined in the HikariCP class loader, can link against.
+    */
+   private Class<?> findCastClass(final Class<?> delegateClass)
+   {
+      for (Class<?> clazz = delegateClass; clazz != null && primaryInterface.isAssignableFrom(clazz); clazz = clazz.getSuperclass()) {
+         if (Modifier.isPublic(clazz.getModifiers()) && isVisible(clazz)) {
+            return clazz;
+         }
+      }
+
+      return null;
+   }
+
+   private static boolean isVisible(final Class<?> clazz)
+   {
+      try {
+         return Class.forName(clazz.getName(), false, ProxySpecializer.class.getClassLoader()) == clazz;
+      }
+      catch (ClassNotFoundException e) {
+         return false;
+      }
+   }
+}
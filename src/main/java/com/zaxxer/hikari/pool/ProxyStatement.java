@@ -16,6 +16,10 @@
 
 package com.zaxxer.hikari.pool;
 
+import static com.zaxxer.hikari.util.ClockSource.currentTime;
+import static com.zaxxer.hikari.util.ClockSource.elapsedNanos;
+
+import com.zaxxer.hikari.metrics.StatementMetrics;
 import com.zaxxer.hikari.util.DontRecord;
 import com.zaxxer.hikari.util.Marshaller;
 import org.slf4j.Logger;
@@ -28,6 +32,7 @@ import java.sql.Statement;
 import java.util.ArrayDeque;
 import java.util.Iterator;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * This is the proxy class for java.sql.Statement.
@@ -37,16 +42,24 @@ import java.util.Queue;
 public abstract class ProxyStatement<T extends Statement> implements Statement
 {
    private static final Logger LOGGER = LoggerFactory.getLogger(ProxyStatement.class);
+   @SuppressWarnings("rawtypes")
+   private static final AtomicIntegerFieldUpdater<ProxyStatement> closedUpdater = AtomicIntegerFieldUpdater.newUpdater(ProxyStatement.class, "closed");
 
    protected final ProxyConnection connection;
    protected final T delegate;
 
-   private boolean isClosed;
+   @SuppressWarnings("unused")
+   private volatile int closed;
 
    T twinDelegate;
    final ArrayDeque<Record> invocationQueue;
    Record tailRecord;
    ResultSet proxyResultSet;
+   int slot = -1;   // index in the connection's StatementRegistry, guarded by the registry
+   String sql;      // the SQL a prepared statement was prepared with, for statement metrics
+   StatementMetrics.Stats stats;   // of the last execution, for the rows fetched from its result sets
+   private String fingerprint;
+   private ProxySlowTask slowTask = ProxySlowTask.NO_TASK;
 
    ProxyStatement(ProxyConnection connection, T statement)
    {
@@ -116,6 +129,104 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
          LOGGER.trace(tailRecord.toString());
    }
 
+   /**
+    * Start timing an execution, arming the slow query timer and, if the pool records statement
+    * metrics, the statement metrics.  The caller cancels the timer with {@link #cancelSlowTask()}
+    * in a {@code finally} around the driver call.
+    *
+    * @param sql the SQL executed, or null for the SQL the statement was prepared with
+    * @return the start time
+    */
+   final long beginExecution(final String sql)
+   {
+      slowTask = connection.scheduleSlowQueryTask(sql != null ? sql : this.sql);
+
+      final StatementMetrics metrics = connection.getStatementMetrics();
+      if (metrics == null) {
+         return 0L;
+      }
+
+      if (sql != null) {
+         stats = metrics.get(metrics.fingerprintOf(sql));
+      }
+      else if (this.sql != null) {
+         if (fingerprint == null) {
+            fingerprint = metrics.fingerprintOf(this.sql);
+         }
+         stats = metrics.get(fingerprint);
+      }
+      else {
+         stats = null;   // a batch of SQL added to a plain statement has no single fingerprint
+      }
+      return currentTime();
+   }
+
+   /**
+    * Record an execution on the primary database.
+    *
+    * @param startTime the start time returned by {@link #beginExecution(String)}
+    * @return the start time of the mirrored execution on the twin
+    */
+   final long executed(final long startTime)
+   {
+      if (stats == null) {
+         return 0L;
+      }
+
+      final long now = currentTime();
+      stats.recordExecution(elapsedNanos(startTime, now));
+      return now;
+   }
+
+   final long executed(final long startTime, final long updateCount)
+   {
+      if (stats != null) {
+         stats.recordUpdateCount(updateCount);
+      }
+      return executed(startTime);
+   }
+
+   final long executed(final long startTime, final int[] updateCounts)
+   {
+      if (stats != null) {
+         for (int updateCount : updateCounts) {
+            stats.recordUpdateCount(updateCount);
+         }
+      }
+      return executed(startTime);
+   }
+
+   final long executed(final long startTime, final long[] updateCounts)
+   {
+      if (stats != null) {
+         for (long updateCount : updateCounts) {
+            stats.recordUpdateCount(updateCount);
+         }
+      }
+      return executed(startTime);
+   }
+
+   /**
+    * Record the mirrored execution on the twin database.
+    *
+    * @param twinStartTime the start time returned by {@code executed()}
+    */
+   final void twinExecuted(final long twinStartTime)
+   {
+      if (stats != null) {
+         stats.recordTwinExecution(elapsedNanos(twinStartTime));
+      }
+   }
+
+   /**
+    * Disarm the slow query timer once the driver has returned from an execution, normally or not.
+    */
+   final void cancelSlowTask()
+   {
+      slowTask.cancel();
+      slowTask = ProxySlowTask.NO_TASK;
+   }
+
    // **********************************************************************
    //                 Overridden java.sql.Statement Methods
    // **********************************************************************
@@ -124,18 +235,15 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    @Override
    public final void close() throws SQLException
    {
-      synchronized (this) {
-         if (isClosed) {
-            return;
-         }
-
-         isClosed = true;
+      if (!closedUpdater.compareAndSet(this, 0, 1)) {
+         return;
       }
 
       connection.untrackStatement(this);
+      cancelSlowTask();
 
       try {
-         delegate.close();
+         closeDelegate();
          if (twinDelegate != null)
             try {
                twinDelegate.close();
@@ -153,6 +261,16 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
       }
    }
 
+   /**
+    * Close the driver statement when this proxy is closed.
+    *
+    * @throws SQLException if the driver fails to close the statement
+    */
+   void closeDelegate() throws SQLException
+   {
+      delegate.close();
+   }
+
    /** {@inheritDoc} */
    @Override
    public Connection getConnection() throws SQLException
@@ -165,11 +283,20 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    public boolean execute(String sql) throws SQLException
    {
       connection.markCommitStateDirty();
-      boolean result = delegate.execute(sql);
+      final long start = beginExecution(sql);
+      boolean result;
+      try {
+         result = delegate.execute(sql);
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start);
 
       if (!isFallbackMode())
          try {
             twinDelegate.execute(sql);
+            twinExecuted(twinStart);
          } catch (SQLException e) {
             checkTwinException(e);
          }
@@ -181,11 +308,20 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException
    {
       connection.markCommitStateDirty();
-      boolean result = delegate.execute(sql, autoGeneratedKeys);
+      final long start = beginExecution(sql);
+      boolean result;
+      try {
+         result = delegate.execute(sql, autoGeneratedKeys);
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start);
 
       if (!isFallbackMode())
          try {
             twinDelegate.execute(sql, autoGeneratedKeys);
+            twinExecuted(twinStart);
          } catch (SQLException e) {
             checkTwinException(e);
          }
@@ -198,7 +334,15 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    public ResultSet executeQuery(String sql) throws SQLException
    {
       connection.markCommitStateDirty();
-      ResultSet resultSet = delegate.executeQuery(sql);
+      final long start = beginExecution(sql);
+      ResultSet resultSet;
+      try {
+         resultSet = delegate.executeQuery(sql);
+      }
+      finally {
+         cancelSlowTask();
+      }
+      executed(start);
       return ProxyFactory.getProxyResultSet(connection, this, resultSet);
    }
 
@@ -207,11 +351,20 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    public int executeUpdate(String sql) throws SQLException
    {
       connection.markCommitStateDirty();
-      int result = delegate.executeUpdate(sql);
+      final long start = beginExecution(sql);
+      int result;
+      try {
+         result = delegate.executeUpdate(sql);
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start, result);
 
       if (!isFallbackMode())
          try {
             twinDelegate.executeUpdate(sql);
+            twinExecuted(twinStart);
          } catch (SQLException e) {
             checkTwinException(e);
          }
@@ -223,9 +376,20 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    public int[] executeBatch() throws SQLException
    {
       connection.markCommitStateDirty();
-      int[] result = delegate.executeBatch();
+      final long start = beginExecution(null);
+      int[] result;
       try {
-         if (!isFallbackMode()) twinDelegate.executeBatch();
+         result = delegate.executeBatch();
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start, result);
+      try {
+         if (!isFallbackMode()) {
+            twinDelegate.executeBatch();
+            twinExecuted(twinStart);
+         }
       } catch (SQLException e) {
          checkTwinException(e);
       }
@@ -237,11 +401,20 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException
    {
       connection.markCommitStateDirty();
-      int result = delegate.executeUpdate(sql, autoGeneratedKeys);
+      final long start = beginExecution(sql);
+      int result;
+      try {
+         result = delegate.executeUpdate(sql, autoGeneratedKeys);
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start, result);
 
       if (!isFallbackMode())
          try {
             twinDelegate.executeUpdate(sql, autoGeneratedKeys);
+            twinExecuted(twinStart);
          } catch (SQLException e) {
             checkTwinException(e);
          }
@@ -253,11 +426,20 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException
    {
       connection.markCommitStateDirty();
-      int result = delegate.executeUpdate(sql, columnIndexes);
+      final long start = beginExecution(sql);
+      int result;
+      try {
+         result = delegate.executeUpdate(sql, columnIndexes);
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start, result);
 
       if (!isFallbackMode())
          try {
             twinDelegate.executeUpdate(sql, columnIndexes);
+            twinExecuted(twinStart);
          } catch (SQLException e) {
             checkTwinException(e);
          }
@@ -269,11 +451,20 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    public int executeUpdate(String sql, String[] columnNames) throws SQLException
    {
       connection.markCommitStateDirty();
-      int result = delegate.executeUpdate(sql, columnNames);
+      final long start = beginExecution(sql);
+      int result;
+      try {
+         result = delegate.executeUpdate(sql, columnNames);
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start, result);
 
       if (!isFallbackMode())
          try {
             twinDelegate.executeUpdate(sql, columnNames);
+            twinExecuted(twinStart);
          } catch (SQLException e) {
             checkTwinException(e);
          }
@@ -285,11 +476,20 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    public boolean execute(String sql, int[] columnIndexes) throws SQLException
    {
       connection.markCommitStateDirty();
-      boolean result = delegate.execute(sql, columnIndexes);
+      final long start = beginExecution(sql);
+      boolean result;
+      try {
+         result = delegate.execute(sql, columnIndexes);
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start);
 
       if (!isFallbackMode())
          try {
             twinDelegate.execute(sql, columnIndexes);
+            twinExecuted(twinStart);
          } catch (SQLException e) {
             checkTwinException(e);
          }
@@ -301,11 +501,20 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    public boolean execute(String sql, String[] columnNames) throws SQLException
    {
       connection.markCommitStateDirty();
-      boolean result = delegate.execute(sql, columnNames);
+      final long start = beginExecution(sql);
+      boolean result;
+      try {
+         result = delegate.execute(sql, columnNames);
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start);
 
       if (!isFallbackMode())
          try {
             twinDelegate.execute(sql, columnNames);
+            twinExecuted(twinStart);
          } catch (SQLException e) {
             checkTwinException(e);
          }
@@ -317,7 +526,15 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    public long[] executeLargeBatch() throws SQLException
    {
       connection.markCommitStateDirty();
-      long[] result = delegate.executeLargeBatch();
+      final long start = beginExecution(null);
+      long[] result;
+      try {
+         result = delegate.executeLargeBatch();
+      }
+      finally {
+         cancelSlowTask();
+      }
+      executed(start, result);
       try {
          delegate.executeLargeBatch();
       } catch (SQLException e) {
@@ -331,11 +548,20 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    public long executeLargeUpdate(String sql) throws SQLException
    {
       connection.markCommitStateDirty();
-      long result = delegate.executeLargeUpdate(sql);
+      final long start = beginExecution(sql);
+      long result;
+      try {
+         result = delegate.executeLargeUpdate(sql);
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start, result);
 
       if (!isFallbackMode())
          try {
             twinDelegate.executeLargeUpdate(sql);
+            twinExecuted(twinStart);
          } catch (SQLException e) {
             checkTwinException(e);
          }
@@ -347,11 +573,20 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException
    {
       connection.markCommitStateDirty();
-      long result = delegate.executeLargeUpdate(sql, autoGeneratedKeys);
+      final long start = beginExecution(sql);
+      long result;
+      try {
+         result = delegate.executeLargeUpdate(sql, autoGeneratedKeys);
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start, result);
 
       if (!isFallbackMode())
          try {
             twinDelegate.executeLargeUpdate(sql, autoGeneratedKeys);
+            twinExecuted(twinStart);
          } catch (SQLException e) {
             checkTwinException(e);
          }
@@ -363,11 +598,20 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException
    {
       connection.markCommitStateDirty();
-      long result = delegate.executeLargeUpdate(sql, columnIndexes);
+      final long start = beginExecution(sql);
+      long result;
+      try {
+         result = delegate.executeLargeUpdate(sql, columnIndexes);
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start, result);
 
       if (!isFallbackMode())
          try {
             twinDelegate.executeLargeUpdate(sql, columnIndexes);
+            twinExecuted(twinStart);
          } catch (SQLException e) {
             checkTwinException(e);
          }
@@ -379,11 +623,20 @@ public abstract class ProxyStatement<T extends Statement> implements Statement
    public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException
    {
       connection.markCommitStateDirty();
-      long result = delegate.executeLargeUpdate(sql, columnNames);
+      final long start = beginExecution(sql);
+      long result;
+      try {
+         result = delegate.executeLargeUpdate(sql, columnNames);
+      }
+      finally {
+         cancelSlowTask();
+      }
+      final long twinStart = executed(start, result);
 
       if (!isFallbackMode())
          try {
             twinDelegate.executeLargeUpdate(sql, columnNames);
+            twinExecuted(twinStart);
          } catch (SQLException e) {
             checkTwinException(e);
          }
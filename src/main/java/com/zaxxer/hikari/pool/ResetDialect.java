@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import java.sql.Connection;
+
+/**
+ * Database specific SQL that restores the transaction isolation and the schema of a connection
+ * in a single round trip, where restoring them through JDBC would take one round trip each.
+ * The other connection states are either client-side in the common drivers, or are cached by
+ * the driver and so must be set through JDBC.
+ *
+ * @author Brett Wooldridge
+ */
+enum ResetDialect
+{
+   GENERIC
+   {
+      @Override
+      String resetSql(final int isolation, final String schema)
+      {
+         return null;
+      }
+   },
+
+   POSTGRESQL
+   {
+      @Override
+      String resetSql(final int isolation, final String schema)
+      {
+         final String level = isolationLevelName(isolation);
+         if (level == null) {
+            return null;
+         }
+
+         // the same statements the PostgreSQL driver runs for setTransactionIsolation() and setSchema()
+         return "SET SESSION CHARACTERISTICS AS TRANSACTION ISOLATION LEVEL " + level
+            + "; SET SESSION search_path TO '" + schema.replace("'", "''") + "'";
+      }
+   },
+
+   H2
+   {
+      @Override
+      String resetSql(final int isolation, final String schema)
+      {
+         final int lockMode;
+         switch (isolation) {
+         case Connection.TRANSACTION_READ_UNCOMMITTED:
+            lockMode = 0;
+            break;
+         case Connection.TRANSACTION_READ_COMMITTED:
+            lockMode = 3;
+            break;
+         case Connection.TRANSACTION_REPEATABLE_READ:
+         case Connection.TRANSACTION_SERIALIZABLE:
+            lockMode = 1;
+            break;
+         default:
+            return null;
+         }
+
+         return "SET SCHEMA \"" + schema.replace("\"", "\"\"") + "\"; SET LOCK_MODE " + lockMode;
+      }
+   };
+
+   /**
+    * Build the SQL that sets both the transaction isolation and the schema of a connection that is in
+    * auto-commit mode.
+    *
+    * @param isolation the transaction isolation level, one of the {@link Connection} constants
+    * @param schema the schema
+    * @return the SQL, or null if this dialect cannot combine the two
+    */
+   abstract String resetSql(int isolation, String schema);
+
+   /**
+    * Determine the dialect from the database product name reported by the driver.
+    *
+    * @param databaseProductName the database product name
+    * @return the matching dialect, or {@link #GENERIC}
+    */
+   static ResetDialect of(final String databaseProductName)
+   {
+      if ("PostgreSQL".equalsIgnoreCase(databaseProductName)) {
+         return POSTGRESQL;
+      }
+      else if ("H2".equalsIgnoreCase(databaseProductName)) {
+         return H2;
+      }
+
+      return GENERIC;
+   }
+
+   private static String isolationLevelName(final int isolation)
+   {
+      switch (isolation) {
+      case Connection.TRANSACTION_READ_UNCOMMITTED:
+         return "READ UNCOMMITTED";
+      case Connection.TRANSACTION_READ_COMMITTED:
+         return "READ COMMITTED";
+      case Connection.TRANSACTION_REPEATABLE_READ:
+         return "REPEATABLE READ";
+      case Connection.TRANSACTION_SERIALIZABLE:
+         return "SERIALIZABLE";
+      default:
+         return null;
+      }
+   }
+}
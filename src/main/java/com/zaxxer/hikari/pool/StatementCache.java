@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A size-bounded LRU cache of the idle prepared statements of one physical connection, kept
+ * across borrows.  A statement is removed from the cache while a {@link ProxyPreparedStatement}
+ * uses it and offered back when that proxy is closed, so a cached statement is never shared.
+ * Changing the catalog or schema of the connection invalidates the cache, as the statements
+ * may refer to objects that resolve differently there.
+ *
+ * @author Brett Wooldridge
+ */
+final class StatementCache
+{
+   private static final Logger LOGGER = LoggerFactory.getLogger(StatementCache.class);
+
+   private final PoolBase pool;
+   private final int maxSize;
+   private final ReentrantLock lock;
+   private final LinkedHashMap<Key, PreparedStatement> statements;
+   private volatile int generation;
+   private volatile long[] defaults;
+
+   StatementCache(final PoolBase pool, final int maxSize)
+   {
+      this.pool = pool;
+      this.maxSize = maxSize;
+      this.lock = new ReentrantLock();
+      this.statements = new LinkedHashMap<>(16, 0.75f, true);
+   }
+
+   /**
+    * Take the cached statement for the given key out of the cache.
+    *
+    * @param key the SQL and result set options of the statement
+    * @return the cached statement, or null on a cache miss
+    */
+   PreparedStatement take(final Key key)
+   {
+      final PreparedStatement statement;
+      lock.lock();
+      try {
+         statement = statements.remove(key);
+      }
+      finally {
+         lock.unlock();
+      }
+
+      pool.metricsTracker.recordStatementCacheAccess(statement != null);
+      return statement;
+   }
+
+   /**
+    * Offer a statement whose proxy was closed back to the cache, evicting (and closing) the least
+    * recently used statement if the cache is full.
+    *
+    * @param key the SQL and result set options of the statement
+    * @param statement the driver statement, with its parameters already cleared
+    * @return true if the statement was cached, false if the caller must close it
+    */
+   boolean offer(final Key key, final PreparedStatement statement)
+   {
+      PreparedStatement evicted = null;
+      lock.lock();
+      try {
+         if (key.generation != generation || statements.containsKey(key)) {
+            return false;
+         }
+
+         if (statements.size() >= maxSize) {
+            final Iterator<PreparedStatement> eldest = statements.values().iterator();
+            evicted = eldest.next();
+            eldest.remove();
+         }
+         statements.put(key, statement);
+      }
+      finally {
+         lock.unlock();
+      }
+
+      if (evicted != null) {
+         pool.metricsTracker.recordStatementCacheEviction();
+         try {
+            evicted.close();
+         }
+         catch (SQLException e) {
+            LOGGER.debug("{} - Failed to close evicted statement {}", pool.poolName, evicted, e);
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Close all cached statements, because the catalog or schema of the connection changed.  Statements
+    * that are in use at the time are refused when they are offered back.
+    */
+   void invalidate()
+   {
+      final PreparedStatement[] invalidated;
+      lock.lock();
+      try {
+         generation++;
+         invalidated = statements.values().toArray(new PreparedStatement[0]);
+         statements.clear();
+      }
+      finally {
+         lock.unlock();
+      }
+
+      for (PreparedStatement statement : invalidated) {
+         try {
+            statement.close();
+         }
+         catch (SQLException e) {
+            LOGGER.debug("{} - Failed to close invalidated statement {}", pool.poolName, statement, e);
+         }
+      }
+   }
+
+   /**
+    * Get the generation of the cache, which is part of every key, so that statements prepared before
+    * an {@link #invalidate()} are not cached.
+    *
+    * @return the current generation
+    */
+   int generation()
+   {
+      return generation;
+   }
+
+   /**
+    * Remember the settings of a newly prepared statement as the defaults to restore on cached statements.
+    * Only the first statement of the connection is inspected.
+    *
+    * @param statement a driver statement that has not been used yet
+    * @throws SQLException if the driver fails to report a setting
+    */
+   void captureDefaults(final PreparedStatement statement) throws SQLException
+   {
+      if (defaults == null) {
+         defaults = new long[] { statement.getMaxRows(), statement.getQueryTimeout(), statement.getFetchSize(), statement.getFetchDirection(),
+                                 statement.getMaxFieldSize(), statement.getLargeMaxRows() };
+      }
+   }
+
+   /**
+    * Restore the settings a borrower may have changed on a statement to the defaults of a new statement,
+    * so that the next borrower of the cached statement does not inherit them.
+    *
+    * @param statement the driver statement being offered back
+    * @return false if the statement must not be cached, because it was marked as not poolable or the
+    *         defaults are unknown
+    * @throws SQLException if a setting could not be restored
+    */
+   boolean restoreDefaults(final PreparedStatement statement) throws SQLException
+   {
+      final long[] settings = defaults;
+      if (settings == null || !statement.isPoolable()) {
+         return false;
+      }
+
+      if (statement.getMaxRows() != settings[0]) {
+         statement.setMaxRows((int) settings[0]);
+      }
+      if (statement.getQueryTimeout() != settings[1]) {
+         statement.setQueryTimeout((int) settings[1]);
+      }
+      if (statement.getFetchSize() != settings[2]) {
+         statement.setFetchSize((int) settings[2]);
+      }
+      if (statement.getFetchDirection() != settings[3]) {
+         statement.setFetchDirection((int) settings[3]);
+      }
+      if (statement.getMaxFieldSize() != settings[4]) {
+         statement.setMaxFieldSize((int) settings[4]);
+      }
+      // drivers without large row limits report maxRows here, which is restored above
+      if (statement.getLargeMaxRows() != settings[5]) {
+         statement.setLargeMaxRows(settings[5]);
+      }
+      // there is no getter, it is enabled by default
+      statement.setEscapeProcessing(true);
+      return true;
+   }
+
+   /**
+    * Forget all cached statements, because the connection they belong to is being closed.
+    */
+   void clear()
+   {
+      lock.lock();
+      try {
+         statements.clear();
+      }
+      finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * The cache key: the SQL plus every option passed to {@code prepareStatement()}, and the generation
+    * of the cache the statement was prepared in.
+    */
+   static final class Key
+   {
+      private final int generation;
+      private final String sql;
+      private final int resultSetType;
+      private final int concurrency;
+      private final int holdability;
+      private final int autoGeneratedKeys;
+      private final Object columns;
+      private final int hashCode;
+
+      /**
+       * @param generation the generation of the cache
+       * @param sql the SQL
+       * @param resultSetType the result set type, or -1 for the default
+       * @param concurrency the result set concurrency, or -1 for the default
+       * @param holdability the result set holdability, or -1 for the default
+       * @param autoGeneratedKeys the auto-generated keys flag, or -1 if not given
+       * @param columns the int[] column indexes or String[] column names of generated keys, or null
+       */
+      Key(final int generation, final String sql, final int resultSetType, final int concurrency, final int holdability, final int autoGeneratedKeys, final Object columns)
+      {
+         this.generation = generation;
+         this.sql = sql;
+         this.resultSetType = resultSetType;
+         this.concurrency = concurrency;
+         this.holdability = holdability;
+         this.autoGeneratedKeys = autoGeneratedKeys;
+         this.columns = columns;
+         this.hashCode = 31 * Objects.hash(generation, sql, resultSetType, concurrency, holdability, autoGeneratedKeys) + Arrays.deepHashCode(new Object[] { columns });
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public boolean equals(final Object other)
+      {
+         if (this == other) {
+            return true;
+         }
+         if (!(other instanceof Key)) {
+            return false;
+         }
+
+         final Key key = (Key) other;
+         return hashCode == key.hashCode
+            && generation == key.generation
+            && resultSetType == key.resultSetType
+            && concurrency == key.concurrency
+            && holdability == key.holdability
+            && autoGeneratedKeys == key.autoGeneratedKeys
+            && sql.equals(key.sql)
+            && Objects.deepEquals(columns, key.columns);
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public int hashCode()
+      {
+         return hashCode;
+      }
+   }
+}
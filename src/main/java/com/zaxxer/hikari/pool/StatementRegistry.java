@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * The open statements of a physical connection, shared by every proxy handed out for it.  Each
+ * {@link ProxyStatement} remembers its slot, so a closed statement is removed in constant time by
+ * clearing the slot; the array is compacted once half of it is cleared, which keeps the statements
+ * in the order they were opened.
+ * <p>
+ * Statements are nearly always opened and closed by the thread using the connection, so the
+ * registry is guarded by a flag set with a CAS rather than by a lock: that thread pays one
+ * uncontended CAS, and a statement closed from another thread spins for the few instructions the
+ * guard is held.  The guard is never held while calling into the driver.
+ *
+ * @author Brett Wooldridge
+ */
+final class StatementRegistry implements Iterable<ProxyStatement>
+{
+   private static final AtomicIntegerFieldUpdater<StatementRegistry> GUARD_UPDATER = AtomicIntegerFieldUpdater.newUpdater(StatementRegistry.class, "guard");
+
+   private static final ProxyStatement[] EMPTY = new ProxyStatement[0];
+
+   @SuppressWarnings("unused")
+   private volatile int guard;
+
+   private ProxyStatement[] statements;
+   private int end;       // one past the last used slot
+   private int count;     // slots in use, excluding cleared slots
+
+   StatementRegistry(final int initialCapacity)
+   {
+      this.statements = new ProxyStatement[initialCapacity];
+   }
+
+   /**
+    * Track a newly opened statement.
+    *
+    * @param statement the statement
+    */
+   void add(final ProxyStatement statement)
+   {
+      acquire();
+      try {
+         if (end == statements.length) {
+            if (count <= end >> 1) {
+               compact();
+            }
+            else {
+               statements = Arrays.copyOf(statements, end << 1);
+            }
+         }
+
+         statement.slot = end;
+         statements[end++] = statement;
+         count++;
+      }
+      finally {
+         release();
+      }
+   }
+
+   /**
+    * Stop tracking a closed statement.  A statement that is not tracked, for example because
+    * {@link #removeAll()} already took it, is ignored.
+    *
+    * @param statement the statement
+    */
+   void remove(final ProxyStatement statement)
+   {
+      acquire();
+      try {
+         final int slot = statement.slot;
+         if (slot >= 0 && slot < end && statements[slot] == statement) {
+            statements[slot] = null;
+            statement.slot = -1;
+            if (--count == 0) {
+               end = 0;
+            }
+            else if (slot == end - 1) {
+               end--;
+            }
+         }
+      }
+      finally {
+         release();
+      }
+   }
+
+   /**
+    * Stop tracking all statements, so that the caller can close them without holding the guard.
+    *
+    * @return the statements that were open, in the order they were opened
+    */
+   ProxyStatement[] removeAll()
+   {
+      acquire();
+      try {
+         if (count == 0) {
+            return EMPTY;
+         }
+
+         final ProxyStatement[] open = new ProxyStatement[count];
+         for (int i = 0, j = 0; i < end; i++) {
+            final ProxyStatement statement = statements[i];
+            if (statement != null) {
+               statement.slot = -1;
+               open[j++] = statement;
+               statements[i] = null;
+            }
+         }
+
+         end = 0;
+         count = 0;
+         return open;
+      }
+      finally {
+         release();
+      }
+   }
+
+   /**
+    * Get the number of open statements.
+    *
+    * @return the number of open statements
+    */
+   int size()
+   {
+      return count;
+   }
+
+   /**
+    * Iterate over the open statements.  Like the list this registry replaced, the iterator is not
+    * guarded, and is only meant for the thread using the connection.
+    *
+    * @return an iterator over the open statements, in the order they were opened
+    */
+   @Override
+   public Iterator<ProxyStatement> iterator()
+   {
+      return new Iterator<ProxyStatement>() {
+         private int index = advance(0);
+
+         private int advance(int i)
+         {
+            final ProxyStatement[] snapshot = statements;
+            final int limit = Math.min(end, snapshot.length);
+            while (i < limit && snapshot[i] == null) {
+               i++;
+            }
+            return i;
+         }
+
+         @Override
+         public boolean hasNext()
+         {
+            return index < end;
+         }
+
+         @Override
+         public ProxyStatement next()
+         {
+            if (index >= end) {
+               throw new NoSuchElementException();
+            }
+
+            final ProxyStatement statement = statements[index];
+            index = advance(index + 1);
+            return statement;
+         }
+      };
+   }
+
+   private void compact()
+   {
+      int j = 0;
+      for (int i = 0; i < end; i++) {
+         final ProxyStatement statement = statements[i];
+         if (statement != null) {
+            statement.slot = j;
+            statements[j++] = statement;
+         }
+      }
+
+      Arrays.fill(statements, j, end, null);
+      end = j;
+   }
+
+   private void acquire()
+   {
+      while (!GUARD_UPDATER.compareAndSet(this, 0, 1)) {
+         Thread.yield();
+      }
+   }
+
+   private void release()
+   {
+      GUARD_UPDATER.lazySet(this, 0);
+   }
+}
@@ -25,10 +25,19 @@ import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * A resolution-independent provider of current time-stamps and elapsed time
  * calculations.
+ * <p>
+ * Hot paths that only need millisecond accuracy (last-access stamps, the alive bypass
+ * window) use {@link #coarseTime()}.  When the system property
+ * {@code com.zaxxer.hikari.clockResolutionMs} is set to a positive value, coarse
+ * time-stamps are read from a field refreshed by a ticker thread at that resolution,
+ * rather than from the (on some virtualized hosts slow) system clock.  Coarse and
+ * precise time-stamps are in the same units and may be mixed; a coarse time-stamp lags
+ * by at most the resolution.
  *
  * @author Brett Wooldridge
  */
@@ -36,6 +45,8 @@ public interface ClockSource
 {
    static ClockSource CLOCK = Factory.create();
 
+   static ClockSource COARSE_CLOCK = Factory.createCoarse(CLOCK);
+
    /**
     * Get the current time-stamp (resolution is opaque).
     *
@@ -47,6 +58,16 @@ public interface ClockSource
 
    long currentTime0();
 
+   /**
+    * Get the current time-stamp from the coarse clock, in the same opaque units as
+    * {@link #currentTime()} but possibly lagging behind it by the clock resolution.
+    *
+    * @return the current coarse time-stamp
+    */
+   static long coarseTime() {
+      return COARSE_CLOCK.currentTime0();
+   }
+
    /**
     * Convert an opaque time-stamp returned by currentTime() into
     * milliseconds.
@@ -195,6 +216,95 @@ public interface ClockSource
 
          return new NanosecondClockSource();
       }
+
+      private static ClockSource createCoarse(final ClockSource clock) {
+         final long resolutionMs = Long.getLong("com.zaxxer.hikari.clockResolutionMs", 0L);
+         if (resolutionMs > 0L) {
+            return new CoarseClockSource(clock, resolutionMs);
+         }
+
+         return clock;
+      }
+   }
+
+   /**
+    * A ClockSource that returns the time-stamp of another ClockSource as of its last tick.  A
+    * daemon thread refreshes the time-stamp once per resolution period, so that reading the time
+    * is a volatile read instead of a system call.
+    */
+   final class CoarseClockSource implements ClockSource
+   {
+      private final ClockSource clock;
+      private volatile long now;
+
+      CoarseClockSource(final ClockSource clock, final long resolutionMs) {
+         this.clock = clock;
+         this.now = clock.currentTime0();
+
+         final long resolutionNanos = MILLISECONDS.toNanos(resolutionMs);
+         final Thread ticker = new Thread(() -> {
+            while (true) {
+               LockSupport.parkNanos(resolutionNanos);
+               now = clock.currentTime0();
+            }
+         }, "HikariCP clock ticker");
+         ticker.setDaemon(true);
+         ticker.start();
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public long currentTime0() {
+         return now;
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public long toMillis0(final long time) {
+         return clock.toMillis0(time);
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public long toNanos0(final long time) {
+         return clock.toNanos0(time);
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public long elapsedMillis0(final long startTime) {
+         return clock.elapsedMillis0(startTime, now);
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public long elapsedMillis0(final long startTime, final long endTime) {
+         return clock.elapsedMillis0(startTime, endTime);
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public long elapsedNanos0(final long startTime) {
+         return clock.elapsedNanos0(startTime, now);
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public long elapsedNanos0(final long startTime, final long endTime) {
+         return clock.elapsedNanos0(startTime, endTime);
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public long plusMillis0(final long time, final long millis) {
+         return clock.plusMillis0(time, millis);
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public TimeUnit getSourceTimeUnit0() {
+         return clock.getSourceTimeUnit0();
+      }
    }
 
    final class MillisecondClockSource implements ClockSource
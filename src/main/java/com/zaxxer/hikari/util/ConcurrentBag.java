@@ -22,6 +22,9 @@ import static java.util.concurrent.locks.LockSupport.parkNanos;
 
 import static com.zaxxer.hikari.util.ClockSource.currentTime;
 import static com.zaxxer.hikari.util.ClockSource.elapsedNanos;
+import static com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry.SOURCE_HANDOFF;
+import static com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry.SOURCE_LOCAL;
+import static com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry.SOURCE_SHARED;
 import static com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry.STATE_IN_USE;
 import static com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry.STATE_NOT_IN_USE;
 import static com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry.STATE_REMOVED;
@@ -31,10 +34,18 @@ import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -58,6 +69,30 @@ import com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry;
  * "requite" borrowed objects otherwise a memory leak will result.  Only
  * the "remove" method can completely remove an object from the bag.
  *
+ * In virtual-thread mode the ThreadLocal lists are replaced by a single
+ * shared LIFO stack of recently requited items (a fresh virtual thread
+ * per request would never find anything in its own list), and waiters
+ * park on a {@link ReentrantLock} condition rather than the handoff queue,
+ * so that a requite wakes exactly one waiter and never pins a carrier.
+ *
+ * Asynchronous borrowers registered through <code>borrowAsync()</code> do
+ * not occupy a thread at all; their futures are queued and completed by
+ * whichever thread requites, adds or unreserves the next available item.
+ * In fair mode synchronous borrowers join the same FIFO queue, new
+ * borrowers never barge ahead of queued ones, and every returned item is
+ * assigned directly to the oldest waiter.
+ *
+ * In striped mode the shared list is logically divided into one stripe
+ * per CPU (rounded up to a power of two).  A thread that misses its
+ * ThreadLocal list starts scanning in its home stripe, selected by a hash
+ * of the thread, instead of at the head of the list, so that on many-core
+ * hosts borrowers do not all contend on the first few entries.
+ *
+ * The waiter queue is split into priority lanes.  Borrowers that ask for
+ * a non-normal priority are always queued, and a returned item is offered
+ * to the lanes in a weighted order (see <code>LANE_ORDER</code>), so that
+ * high priority waiters are served first without starving the others.
+ *
  * @author Brett Wooldridge
  *
  * @param <T> the templated type to store in the bag
@@ -66,6 +101,23 @@ public class ConcurrentBag<T extends IConcurrentBagEntry> implements AutoCloseab
 {
    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentBag.class);
 
+   public static final int PRIORITY_HIGH = 0;
+   public static final int PRIORITY_NORMAL = 1;
+   public static final int PRIORITY_LOW = 2;
+
+   // Lane visiting order for eight consecutive handoffs: while every lane has waiters the normal and low
+   // lanes are each still guaranteed one handoff in eight, the high lane receives the other six.
+   private static final int[][] LANE_ORDER = {
+      { PRIORITY_HIGH, PRIORITY_NORMAL, PRIORITY_LOW },
+      { PRIORITY_HIGH, PRIORITY_NORMAL, PRIORITY_LOW },
+      { PRIORITY_HIGH, PRIORITY_NORMAL, PRIORITY_LOW },
+      { PRIORITY_NORMAL, PRIORITY_HIGH, PRIORITY_LOW },
+      { PRIORITY_HIGH, PRIORITY_NORMAL, PRIORITY_LOW },
+      { PRIORITY_HIGH, PRIORITY_NORMAL, PRIORITY_LOW },
+      { PRIORITY_HIGH, PRIORITY_NORMAL, PRIORITY_LOW },
+      { PRIORITY_LOW, PRIORITY_HIGH, PRIORITY_NORMAL }
+   };
+
    private final CopyOnWriteArrayList<T> sharedList;
    private final boolean weakThreadLocals;
 
@@ -76,6 +128,21 @@ public class ConcurrentBag<T extends IConcurrentBagEntry> implements AutoCloseab
 
    private final SynchronousQueue<T> handoffQueue;
 
+   private final boolean fair;
+   private final ConcurrentLinkedQueue<CompletableFuture<T>>[] waiterLanes;
+   private final AtomicInteger queuedWaiters;
+   private final AtomicInteger handoffSequence;
+
+   // striped mode
+   private final int stripes;
+   private final ReentrantLock stripeLock;
+   private volatile Object[] stripedView;
+
+   // virtual-thread mode
+   private final ConcurrentLinkedDeque<T> sharedStack;
+   private final ReentrantLock waiterLock;
+   private final Condition waiterSignal;
+
    public interface IConcurrentBagEntry
    {
       int STATE_NOT_IN_USE = 0;
@@ -83,9 +150,21 @@ public class ConcurrentBag<T extends IConcurrentBagEntry> implements AutoCloseab
       int STATE_REMOVED = -1;
       int STATE_RESERVED = -2;
 
+      int SOURCE_LOCAL = 0;
+      int SOURCE_SHARED = 1;
+      int SOURCE_HANDOFF = 2;
+
       boolean compareAndSet(int expectState, int newState);
       void setState(int newState);
       int getState();
+
+      /**
+       * Called by the borrowing thread with where the entry it borrowed came from: its thread-local
+       * list, a scan of the shared list, or a handoff after waiting.
+       *
+       * @param source one of <code>SOURCE_LOCAL</code>, <code>SOURCE_SHARED</code> or <code>SOURCE_HANDOFF</code>
+       */
+      default void setBorrowSource(int source) {}
    }
 
    public interface IBagStateListener
@@ -99,18 +178,75 @@ public class ConcurrentBag<T extends IConcurrentBagEntry> implements AutoCloseab
     * @param listener the IBagStateListener to attach to this bag
     */
    public ConcurrentBag(final IBagStateListener listener)
+   {
+      this(listener, false);
+   }
+
+   /**
+    * Construct a ConcurrentBag with the specified listener, optionally in
+    * virtual-thread mode.
+    *
+    * @param listener the IBagStateListener to attach to this bag
+    * @param virtualThreadMode true to use the shared stack and lock-based waiter signaling
+    */
+   public ConcurrentBag(final IBagStateListener listener, final boolean virtualThreadMode)
+   {
+      this(listener, virtualThreadMode, false);
+   }
+
+   /**
+    * Construct a ConcurrentBag with the specified listener, optionally in
+    * virtual-thread mode and/or fair mode.
+    *
+    * @param listener the IBagStateListener to attach to this bag
+    * @param virtualThreadMode true to use the shared stack and lock-based waiter signaling
+    * @param fair true to hand items to waiters in strict FIFO order
+    */
+   public ConcurrentBag(final IBagStateListener listener, final boolean virtualThreadMode, final boolean fair)
+   {
+      this(listener, virtualThreadMode, fair, false);
+   }
+
+   /**
+    * Construct a ConcurrentBag with the specified listener, optionally in
+    * virtual-thread, fair and/or striped mode.
+    *
+    * @param listener the IBagStateListener to attach to this bag
+    * @param virtualThreadMode true to use the shared stack and lock-based waiter signaling
+    * @param fair true to hand items to waiters in strict FIFO order
+    * @param striped true to spread shared list scans over per-thread home stripes
+    */
+   public ConcurrentBag(final IBagStateListener listener, final boolean virtualThreadMode, final boolean fair, final boolean striped)
    {
       this.listener = listener;
+      this.fair = fair;
+      this.stripes = striped ? Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1 : 0;
+      this.stripeLock = striped ? new ReentrantLock() : null;
+      this.stripedView = new Object[0];
       this.weakThreadLocals = useWeakThreadLocals();
 
       this.handoffQueue = new SynchronousQueue<>(true);
       this.waiters = new AtomicInteger();
+      this.waiterLanes = createWaiterLanes();
+      this.queuedWaiters = new AtomicInteger();
+      this.handoffSequence = new AtomicInteger();
       this.sharedList = new CopyOnWriteArrayList<>();
-      if (weakThreadLocals) {
-         this.threadList = ThreadLocal.withInitial(() -> new ArrayList<>(16));
+      if (virtualThreadMode) {
+         this.threadList = null;
+         this.sharedStack = new ConcurrentLinkedDeque<>();
+         this.waiterLock = new ReentrantLock();
+         this.waiterSignal = waiterLock.newCondition();
       }
       else {
-         this.threadList = ThreadLocal.withInitial(() -> new FastList<>(IConcurrentBagEntry.class, 16));
+         this.sharedStack = null;
+         this.waiterLock = null;
+         this.waiterSignal = null;
+         if (weakThreadLocals) {
+            this.threadList = ThreadLocal.withInitial(() -> new ArrayList<>(16));
+         }
+         else {
+            this.threadList = ThreadLocal.withInitial(() -> new FastList<>(IConcurrentBagEntry.class, 16));
+         }
       }
    }
 
@@ -125,38 +261,59 @@ public class ConcurrentBag<T extends IConcurrentBagEntry> implements AutoCloseab
     */
    public T borrow(long timeout, final TimeUnit timeUnit) throws InterruptedException
    {
-      // Try the thread-local list first
-      final List<Object> list = threadList.get();
-      for (int i = list.size() - 1; i >= 0; i--) {
-         final Object entry = list.remove(i);
-         @SuppressWarnings("unchecked")
-         final T bagEntry = weakThreadLocals ? ((WeakReference<T>) entry).get() : (T) entry;
-         if (bagEntry != null && bagEntry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
-            return bagEntry;
-         }
+      return borrow(timeout, timeUnit, PRIORITY_NORMAL);
+   }
+
+   /**
+    * The method will borrow a BagEntry from the bag at the given priority, blocking
+    * for the specified timeout if none are available.  Unless the bag is fair,
+    * normal priority borrowers "barge" exactly like <code>borrow(long, TimeUnit)</code>,
+    * while high and low priority borrowers wait in their priority lane.
+    *
+    * @param timeout how long to wait before giving up, in units of unit
+    * @param timeUnit a <code>TimeUnit</code> determining how to interpret the timeout parameter
+    * @param priority one of <code>PRIORITY_HIGH</code>, <code>PRIORITY_NORMAL</code> or <code>PRIORITY_LOW</code>
+    * @return a borrowed instance from the bag or null if a timeout occurs
+    * @throws InterruptedException if interrupted while waiting
+    */
+   public T borrow(long timeout, final TimeUnit timeUnit, final int priority) throws InterruptedException
+   {
+      if (fair || priority != PRIORITY_NORMAL) {
+         return sourced(borrowQueued(timeUnit.toNanos(timeout), priority), SOURCE_HANDOFF);
+      }
+
+      // Try the thread-local list (or the shared stack in virtual-thread mode) first
+      final T localEntry = pollLocal();
+      if (localEntry != null) {
+         localEntry.setBorrowSource(SOURCE_LOCAL);
+         return localEntry;
       }
 
       // Otherwise, scan the shared list ... then poll the handoff queue
       final int waiting = waiters.incrementAndGet();
       try {
-         for (T bagEntry : sharedList) {
-            if (bagEntry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
-               // If we may have stolen another waiter's connection, request another bag add.
-               if (waiting > 1) {
-                  listener.addBagItem(waiting - 1);
-               }
-               return bagEntry;
+         final T sharedEntry = pollSharedList();
+         if (sharedEntry != null) {
+            // If we may have stolen another waiter's connection, request another bag add.
+            if (waiting > 1) {
+               listener.addBagItem(waiting - 1);
             }
+            sharedEntry.setBorrowSource(SOURCE_SHARED);
+            return sharedEntry;
          }
 
          listener.addBagItem(waiting);
 
          timeout = timeUnit.toNanos(timeout);
+         if (waiterLock != null) {
+            return sourced(awaitSignal(timeout), SOURCE_HANDOFF);
+         }
+
          do {
             final long start = currentTime();
             final T bagEntry = handoffQueue.poll(timeout, NANOSECONDS);
             if (bagEntry == null || bagEntry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
-               return bagEntry;
+               return sourced(bagEntry, SOURCE_HANDOFF);
             }
 
             timeout -= elapsedNanos(start);
@@ -169,6 +326,70 @@ public class ConcurrentBag<T extends IConcurrentBagEntry> implements AutoCloseab
       }
    }
 
+   /**
+    * The method will borrow a BagEntry from the bag at the given priority, preferring
+    * an idle entry that matches the given predicate and falling back to
+    * <code>borrow(long, TimeUnit, int)</code> if none does.  The preference is skipped
+    * when it would jump a fair queue or a priority lane.
+    *
+    * @param timeout how long to wait before giving up, in units of unit
+    * @param timeUnit a <code>TimeUnit</code> determining how to interpret the timeout parameter
+    * @param priority one of <code>PRIORITY_HIGH</code>, <code>PRIORITY_NORMAL</code> or <code>PRIORITY_LOW</code>
+    * @param preferred the predicate an entry should match, or null for no preference
+    * @return a borrowed instance from the bag or null if a timeout occurs
+    * @throws InterruptedException if interrupted while waiting
+    */
+   public T borrow(long timeout, final TimeUnit timeUnit, final int priority, final Predicate<T> preferred) throws InterruptedException
+   {
+      if (preferred != null && priority == PRIORITY_NORMAL && !(fair && queuedWaiters.get() > 0)) {
+         for (T bagEntry : sharedList) {
+            if (bagEntry.getState() == STATE_NOT_IN_USE && preferred.test(bagEntry) && bagEntry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+               // If we may have stolen another waiter's connection, request another bag add.
+               final int waiting = waiters.get();
+               if (waiting > 0) {
+                  listener.addBagItem(waiting);
+               }
+               bagEntry.setBorrowSource(SOURCE_SHARED);
+               return bagEntry;
+            }
+         }
+      }
+
+      return borrow(timeout, timeUnit, priority);
+   }
+
+   /**
+    * The method will borrow a BagEntry from the bag without blocking.  If no
+    * entry is immediately available the returned future is queued, and is
+    * completed by the thread that next requites, adds or unreserves an entry.
+    * The bag does not time out asynchronous borrowers; the caller gives up by
+    * completing the future with <code>null</code> (or cancelling it), which
+    * removes it from the queue.
+    *
+    * @return a future that is completed with the borrowed instance
+    */
+   public CompletableFuture<T> borrowAsync()
+   {
+      return borrowAsync(PRIORITY_NORMAL);
+   }
+
+   /**
+    * The method will borrow a BagEntry from the bag at the given priority without
+    * blocking.  See <code>borrowAsync()</code>.
+    *
+    * @param priority one of <code>PRIORITY_HIGH</code>, <code>PRIORITY_NORMAL</code> or <code>PRIORITY_LOW</code>
+    * @return a future that is completed with the borrowed instance
+    */
+   public CompletableFuture<T> borrowAsync(final int priority)
+   {
+      T bagEntry = pollUncontended();
+      if (bagEntry != null) {
+         return CompletableFuture.completedFuture(bagEntry);
+      }
+
+      return enqueue(priority);
+   }
+
    /**
     * This method will return a borrowed object to the bag.  Objects
     * that are borrowed from the bag but never "requited" will result
@@ -180,8 +401,19 @@ public class ConcurrentBag<T extends IConcurrentBagEntry> implements AutoCloseab
     */
    public void requite(final T bagEntry)
    {
+      // hand off while the entry is still in use, so that barging borrowers cannot take it from queued waiters
+      if (handoffToQueuedWaiter(bagEntry)) {
+         return;
+      }
+
       bagEntry.setState(STATE_NOT_IN_USE);
 
+      if (sharedStack != null) {
+         sharedStack.push(bagEntry);
+         signalWaiter();
+         return;
+      }
+
       for (int i = 0; waiters.get() > 0; i++) {
          if (bagEntry.getState() != STATE_NOT_IN_USE || handoffQueue.offer(bagEntry)) {
             return;
@@ -194,6 +426,17 @@ public class ConcurrentBag<T extends IConcurrentBagEntry> implements AutoCloseab
          }
       }
 
+      // low priority waiters that were passed over in favour of the barging borrowers above
+      if (queuedWaiters.get() > 0) {
+         if (!bagEntry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+            return;   // taken in the meantime
+         }
+         if (handoffToQueuedWaiter(bagEntry)) {
+            return;
+         }
+         bagEntry.setState(STATE_NOT_IN_USE);
+      }
+
       final List<Object> threadLocalList = threadList.get();
       if (threadLocalList.size() < 50) {
          threadLocalList.add(weakThreadLocals ? new WeakReference<>(bagEntry) : bagEntry);
@@ -212,7 +455,25 @@ public class ConcurrentBag<T extends IConcurrentBagEntry> implements AutoCloseab
          throw new IllegalStateException("ConcurrentBag has been closed, ignoring add()");
       }
 
+      // claim the entry for queued waiters before it is visible to barging borrowers
+      final boolean claimed = queuedWaiters.get() > 0 && bagEntry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE);
+
       sharedList.add(bagEntry);
+      if (stripes > 0) {
+         refreshStripedView();
+      }
+
+      if (claimed) {
+         if (handoffToQueuedWaiter(bagEntry)) {
+            return;
+         }
+         bagEntry.setState(STATE_NOT_IN_USE);
+      }
+
+      if (waiterLock != null) {
+         signalWaiter();
+         return;
+      }
 
       // spin until a thread takes it or none are waiting
       while (waiters.get() > 0 && bagEntry.getState() == STATE_NOT_IN_USE && !handoffQueue.offer(bagEntry)) {
@@ -237,6 +498,9 @@ public class ConcurrentBag<T extends IConcurrentBagEntry> implements AutoCloseab
       }
 
       final boolean removed = sharedList.remove(bagEntry);
+      if (removed && stripes > 0) {
+         refreshStripedView();
+      }
       if (!removed && !closed) {
          LOGGER.warn("Attempt to remove an object from the bag that does not exist: {}", bagEntry);
       }
@@ -245,12 +509,21 @@ public class ConcurrentBag<T extends IConcurrentBagEntry> implements AutoCloseab
    }
 
    /**
-    * Close the bag to further adds.
+    * Close the bag to further adds.  Queued borrowers, including asynchronous
+    * ones, are failed with an <code>IllegalStateException</code>, as no entry
+    * will be handed to them any more.
     */
    @Override
    public void close()
    {
       closed = true;
+
+      for (ConcurrentLinkedQueue<CompletableFuture<T>> lane : waiterLanes) {
+         CompletableFuture<T> future;
+         while ((future = lane.poll()) != null) {
+            future.completeExceptionally(new IllegalStateException("ConcurrentBag has been closed"));
+         }
+      }
    }
 
    /**
@@ -308,7 +581,19 @@ public class ConcurrentBag<T extends IConcurrentBagEntry> implements AutoCloseab
     */
    public void unreserve(final T bagEntry)
    {
+      if (queuedWaiters.get() > 0 && bagEntry.compareAndSet(STATE_RESERVED, STATE_IN_USE)) {
+         if (handoffToQueuedWaiter(bagEntry)) {
+            return;
+         }
+         bagEntry.setState(STATE_RESERVED);
+      }
+
       if (bagEntry.compareAndSet(STATE_RESERVED, STATE_NOT_IN_USE)) {
+         if (waiterLock != null) {
+            signalWaiter();
+            return;
+         }
+
          // spin until a thread takes it or none are waiting
          while (waiters.get() > 0 && !handoffQueue.offer(bagEntry)) {
             yield();
@@ -321,13 +606,13 @@ public class ConcurrentBag<T extends IConcurrentBagEntry> implements AutoCloseab
 
    /**
     * Get the number of threads pending (waiting) for an item from the
-    * bag to become available.
+    * bag to become available, including asynchronous borrowers.
     *
     * @return the number of threads waiting for items from the bag
     */
    public int getWaitingThreadCount()
    {
-      return waiters.get();
+      return waiters.get() + queuedWaiters.get();
    }
 
    /**
@@ -347,14 +632,23 @@ public class ConcurrentBag<T extends IConcurrentBagEntry> implements AutoCloseab
       return count;
    }
 
+   /**
+    * Count the items in each state in a single pass over the bag.
+    *
+    * @return the number of items not in use, in use, removed and reserved, followed by the number of items
+    *         counted and the number of waiting threads
+    */
    public int[] getStateCounts()
    {
       final int[] states = new int[6];
+      int size = 0;
       for (IConcurrentBagEntry e : sharedList) {
-         ++states[e.getState()];
+         final int state = e.getState();
+         ++states[state >= 0 ? state : 1 - state];   // STATE_REMOVED at 2, STATE_RESERVED at 3
+         size++;
       }
-      states[4] = sharedList.size();
-      states[5] = waiters.get();
+      states[4] = size;
+      states[5] = waiters.get() + queuedWaiters.get();
 
       return states;
    }
@@ -374,6 +668,329 @@ public class ConcurrentBag<T extends IConcurrentBagEntry> implements AutoCloseab
       sharedList.forEach(entry -> LOGGER.info(entry.toString()));
    }
 
+   /**
+    * Tag a borrowed entry with the path it was borrowed through.
+    *
+    * @param bagEntry the borrowed entry, or null
+    * @param source one of the <code>SOURCE_*</code> constants
+    * @return the entry
+    */
+   private static <T extends IConcurrentBagEntry> T sourced(final T bagEntry, final int source)
+   {
+      if (bagEntry != null) {
+         bagEntry.setBorrowSource(source);
+      }
+      return bagEntry;
+   }
+
+   /**
+    * Queued borrow, used in fair mode and for non-normal priorities.  The caller
+    * joins its waiter lane (unless, in fair mode, somebody is already queued, or
+    * an entry is free) and blocks until an entry is assigned to it.
+    *
+    * @param timeout how long to wait before giving up, in nanoseconds
+    * @param priority the waiter lane to join
+    * @return a borrowed instance from the bag or null if a timeout occurs
+    * @throws InterruptedException if interrupted while waiting
+    */
+   private T borrowQueued(final long timeout, final int priority) throws InterruptedException
+   {
+      final T bagEntry = pollUncontended();
+      if (bagEntry != null) {
+         return bagEntry;
+      }
+
+      final CompletableFuture<T> future = enqueue(priority);
+      try {
+         return future.get(timeout, NANOSECONDS);
+      }
+      catch (TimeoutException e) {
+         // either we withdraw from the queue, or an entry was assigned to us just now, or the bag was closed
+         return assigned(future);
+      }
+      catch (InterruptedException e) {
+         final T assignedEntry = assigned(future);
+         if (assignedEntry != null) {
+            requite(assignedEntry);
+         }
+         throw e;
+      }
+      catch (ExecutionException e) {
+         return null;
+      }
+   }
+
+   /**
+    * Withdraw a waiter whose wait ended, getting the entry assigned to it in the meantime if any.
+    *
+    * @param future the waiter's future
+    * @return the assigned entry, or null if none was assigned or the bag was closed in the meantime
+    */
+   static <E> E assigned(final CompletableFuture<E> future)
+   {
+      if (future.complete(null) || future.isCompletedExceptionally()) {
+         return null;
+      }
+      return future.getNow(null);
+   }
+
+   /**
+    * Claim an entry without queueing.  In fair mode this only succeeds when no
+    * other borrower is already queued.
+    *
+    * @return a claimed entry, or null if none was available
+    */
+   private T pollUncontended()
+   {
+      if (fair && queuedWaiters.get() > 0) {
+         return null;
+      }
+
+      final T bagEntry = pollLocal();
+      return bagEntry != null ? bagEntry : pollSharedList();
+   }
+
+   /**
+    * Append a new waiter node to a lane.  The node's future is its slot: a
+    * returning thread assigns an entry by completing it, the waiter withdraws by
+    * completing it with <code>null</code>.
+    *
+    * @param priority the waiter lane to join
+    * @return the queued future
+    */
+   private CompletableFuture<T> enqueue(final int priority)
+   {
+      final ConcurrentLinkedQueue<CompletableFuture<T>> lane = waiterLanes[priority];
+      final CompletableFuture<T> future = new CompletableFuture<>();
+      final int waiting = waiters.get() + queuedWaiters.incrementAndGet();
+      lane.add(future);
+      future.whenComplete((entry, throwable) -> {
+         queuedWaiters.decrementAndGet();
+         if (entry == null) {
+            lane.remove(future);
+         }
+      });
+
+      // close() drains the lanes after setting the flag, so a waiter queued concurrently is failed here
+      if (closed) {
+         future.completeExceptionally(new IllegalStateException("ConcurrentBag has been closed"));
+         return future;
+      }
+
+      listener.addBagItem(waiting);
+
+      // Re-scan after queueing, an entry may have been returned before the future was visible.
+      // Passing it through requite() assigns it to the oldest waiter, which need not be us.
+      final T bagEntry = pollSharedList();
+      if (bagEntry != null) {
+         requite(bagEntry);
+      }
+
+      return future;
+   }
+
+   /**
+    * Claim an entry from the calling thread's list, or from the shared stack
+    * in virtual-thread mode.
+    *
+    * @return a claimed entry, or null if none was available
+    */
+   private T pollLocal()
+   {
+      if (threadList == null) {
+         return pollSharedStack();
+      }
+
+      final List<Object> list = threadList.get();
+      for (int i = list.size() - 1; i >= 0; i--) {
+         final Object entry = list.remove(i);
+         @SuppressWarnings("unchecked")
+         final T bagEntry = weakThreadLocals ? ((WeakReference<T>) entry).get() : (T) entry;
+         if (bagEntry != null && bagEntry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+            return bagEntry;
+         }
+      }
+
+      return null;
+   }
+
+   /**
+    * Claim the first available entry in the shared list.  In striped mode the
+    * scan starts in the calling thread's home stripe and wraps around, stealing
+    * from the other stripes only when the home stripe has nothing available.
+    *
+    * @return a claimed entry, or null if none was available
+    */
+   private T pollSharedList()
+   {
+      if (stripes > 0) {
+         final Object[] entries = stripedView;
+         final int size = entries.length;
+         final int start = (int) (((long) homeStripe() * size) / stripes);
+         for (int i = 0; i < size; i++) {
+            @SuppressWarnings("unchecked")
+            final T bagEntry = (T) entries[(start + i) % size];
+            if (bagEntry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+               return bagEntry;
+            }
+         }
+
+         return null;
+      }
+
+      for (T bagEntry : sharedList) {
+         if (bagEntry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+            return bagEntry;
+         }
+      }
+
+      return null;
+   }
+
+   /**
+    * The calling thread's home stripe, a mix of its id so that consecutively
+    * created threads land in different stripes.
+    *
+    * @return a stripe index in [0, stripes)
+    */
+   private int homeStripe()
+   {
+      final long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+      return (int) (id >>> 32) & (stripes - 1);
+   }
+
+   /**
+    * Re-publish the array snapshot scanned in striped mode.  The snapshot is taken
+    * under the lock, so the last publisher always publishes the latest list.
+    */
+   private void refreshStripedView()
+   {
+      stripeLock.lock();
+      try {
+         stripedView = sharedList.toArray();
+      }
+      finally {
+         stripeLock.unlock();
+      }
+   }
+
+   /**
+    * Hand an entry directly to the oldest queued borrower of the lane chosen by the
+    * weighted lane order.  The caller owns the entry, in use, so that no barging
+    * borrower can claim it meanwhile.  A waiter stays at the head of its lane until
+    * it is completed, so it never loses its place; futures that were meanwhile timed
+    * out, cancelled or served by another thread are discarded.
+    *
+    * @param bagEntry the in-use entry to hand off
+    * @return true if the entry was handed off, false if there are no queued borrowers,
+    *         in which case the caller still owns the entry
+    */
+   private boolean handoffToQueuedWaiter(final T bagEntry)
+   {
+      if (queuedWaiters.get() == 0) {
+         return false;
+      }
+
+      for (int priority : LANE_ORDER[handoffSequence.getAndIncrement() & 7]) {
+         // barging borrowers on the handoff queue are of normal priority, so low priority waiters yield to them
+         if (priority == PRIORITY_LOW && !fair && sharedStack == null && waiters.get() > 0) {
+            continue;
+         }
+
+         final ConcurrentLinkedQueue<CompletableFuture<T>> lane = waiterLanes[priority];
+         CompletableFuture<T> future;
+         while ((future = lane.peek()) != null) {
+            final boolean completed = future.complete(bagEntry);
+            lane.remove(future);
+            if (completed) {
+               return true;
+            }
+         }
+      }
+
+      return false;
+   }
+
+   @SuppressWarnings("unchecked")
+   private ConcurrentLinkedQueue<CompletableFuture<T>>[] createWaiterLanes()
+   {
+      final ConcurrentLinkedQueue<CompletableFuture<T>>[] lanes = new ConcurrentLinkedQueue[LANE_ORDER[0].length];
+      for (int i = 0; i < lanes.length; i++) {
+         lanes[i] = new ConcurrentLinkedQueue<>();
+      }
+
+      return lanes;
+   }
+
+   /**
+    * Pop entries from the shared stack until one can be claimed, discarding
+    * stale entries that were meanwhile borrowed through the shared list.
+    *
+    * @return a claimed entry, or null if the stack was drained
+    */
+   private T pollSharedStack()
+   {
+      T bagEntry;
+      while ((bagEntry = sharedStack.pollFirst()) != null) {
+         if (bagEntry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+            return bagEntry;
+         }
+      }
+
+      return null;
+   }
+
+   /**
+    * Virtual-thread mode wait.  The shared stack and list are re-checked under
+    * the waiter lock, and requite() signals under the same lock after making
+    * the entry available, so a wake-up can never be lost between the check
+    * and the await.
+    *
+    * @param timeout the remaining timeout in nanoseconds
+    * @return a claimed entry, or null if the timeout elapsed
+    * @throws InterruptedException if interrupted while waiting
+    */
+   private T awaitSignal(long timeout) throws InterruptedException
+   {
+      waiterLock.lock();
+      try {
+         do {
+            T bagEntry = pollSharedStack();
+            if (bagEntry != null) {
+               return bagEntry;
+            }
+
+            bagEntry = pollSharedList();
+            if (bagEntry != null) {
+               return bagEntry;
+            }
+
+            timeout = waiterSignal.awaitNanos(timeout);
+         } while (timeout > 10_000);
+
+         return null;
+      }
+      finally {
+         waiterLock.unlock();
+      }
+   }
+
+   /**
+    * Wake exactly one waiter, if there are any, in virtual-thread mode.
+    */
+   private void signalWaiter()
+   {
+      if (waiters.get() > 0) {
+         waiterLock.lock();
+         try {
+            waiterSignal.signal();
+         }
+         finally {
+            waiterLock.unlock();
+         }
+      }
+   }
+
    /**
     * Determine whether to use WeakReferences based on whether there is a
     * custom ClassLoader implementation sitting between this class and the
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.util;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An {@link java.util.concurrent.ExecutorService} running its tasks on an executor shared with
+ * others.  It tracks the tasks submitted through it, so that its owner can shut it down and await
+ * their completion without affecting the other users of the shared executor, which is never shut
+ * down through a scope.
+ *
+ * @author Brett Wooldridge
+ */
+public final class ExecutorScope extends AbstractExecutorService
+{
+   private final Executor executor;
+   private final Phaser tasks;
+   private volatile boolean isShutdown;
+
+   /**
+    * Create a scope over a shared executor.
+    *
+    * @param executor the shared executor
+    */
+   public ExecutorScope(final Executor executor)
+   {
+      this.executor = executor;
+      this.tasks = new Phaser(1);   // the owner's party, arrived at shutdown
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void execute(final Runnable command)
+   {
+      if (isShutdown || tasks.register() < 0) {
+         throw new RejectedExecutionException("Executor scope is shut down");
+      }
+
+      try {
+         executor.execute(() -> {
+            try {
+               command.run();
+            }
+            finally {
+               tasks.arriveAndDeregister();
+            }
+         });
+      }
+      catch (RejectedExecutionException e) {
+         tasks.arriveAndDeregister();
+         throw e;
+      }
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void shutdown()
+   {
+      if (!isShutdown) {
+         isShutdown = true;
+         tasks.arriveAndDeregister();
+      }
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public List<Runnable> shutdownNow()
+   {
+      shutdown();
+      return Collections.emptyList();
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public boolean isShutdown()
+   {
+      return isShutdown;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public boolean isTerminated()
+   {
+      return tasks.isTerminated();
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException
+   {
+      try {
+         tasks.awaitAdvanceInterruptibly(0, timeout, unit);
+         return true;
+      }
+      catch (TimeoutException e) {
+         return false;
+      }
+   }
+}
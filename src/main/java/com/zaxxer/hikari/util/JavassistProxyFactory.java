@@ -39,89 +39,93 @@ public final class JavassistProxyFactory
    private static ClassPool classPool;
    private static String genDirectory = "";
 
-   public static void main(String... args) throws Exception {
-      classPool = new ClassPool();
-      classPool.importPackage("java.sql");
-      classPool.appendClassPath(new LoaderClassPath(JavassistProxyFactory.class.getClassLoader()));
-
-      if (args.length > 0) {
-         genDirectory = args[0];
+   // runtime specializations, by class name, so that a driver class is only specialized once
+   private static final Map<String, Class<?>> specializedClasses = new HashMap<>();
+
+   private static final MethodBodyGenerator simpleMethodBodyGenerator = (method, superMethod) -> {
+      boolean superDefined = (superMethod.getModifiers() & Modifier.ABSTRACT) == 0;
+      boolean isThrowsSqlException = isThrowsSqlException(method);
+      StringBuilder sb = new StringBuilder("{\n");
+      if (superDefined)
+         sb.append("return super.method($$);\n");
+      else {
+         if (isThrowsSqlException) {
+            sb.append("	try {\n");
+            sb.append("		return ((cast) delegate).method($$);\n");
+            sb.append("	} catch (SQLException e) {\n");
+            sb.append("		throw checkException(e);\n");
+            sb.append("	}\n");
+         } else
+            sb.append("	return ((cast) delegate).method($$);\n");
       }
+      sb.append("}\n");
+      return sb.toString();
+   };
+
+   @SuppressWarnings("Convert2Lambda")
+   private static final MethodBodyGenerator compositeMethodBodyGenerator = new MethodBodyGenerator() {
+      @Override
+      @SneakyThrows
+      public String generate(CtMethod method, CtMethod superMethod) {
+         String name = method.getName();
+         if (name.startsWith("get") && Character.isUpperCase(name.charAt(3)))
+            return simpleMethodBodyGenerator.generate(method, superMethod);
 
-      MethodBodyGenerator simpleMethodBodyGenerator = (method, superMethod) -> {
+         String descriptor = method.getMethodInfo().toString();
          boolean superDefined = (superMethod.getModifiers() & Modifier.ABSTRACT) == 0;
-         boolean isThrowsSqlException = isThrowsSqlException(method);
+         boolean isThrowsSqlException = JavassistProxyFactory.isThrowsSqlException(method);
          StringBuilder sb = new StringBuilder("{\n");
-         if (superDefined)
-            sb.append("return super.method($$);\n");
-         else {
+
+         if (superDefined) {
+            if (superMethod.getAnnotation(DontRecord.class) == null)
+               sb.append("	invoked(\"" + descriptor + "\", $args);\n");
             if (isThrowsSqlException) {
+               sb.append("	ReturnType result;\n");
                sb.append("	try {\n");
-               sb.append("		return ((cast) delegate).method($$);\n");
+               sb.append("		result = super.method($$);\n");
                sb.append("	} catch (SQLException e) {\n");
                sb.append("		throw checkException(e);\n");
                sb.append("	}\n");
+               sb.append("	return result;\n");
             } else
-               sb.append("	return ((cast) delegate).method($$);\n");
-         }
-         sb.append("}\n");
-         return sb.toString();
-      };
-
-      @SuppressWarnings("Convert2Lambda") MethodBodyGenerator compositeMethodBodyGenerator = new MethodBodyGenerator() {
-         @Override
-         @SneakyThrows
-         public String generate(CtMethod method, CtMethod superMethod) {
-            String name = method.getName();
-            if (name.startsWith("get") && Character.isUpperCase(name.charAt(3)))
-               return simpleMethodBodyGenerator.generate(method, superMethod);
-
-            String descriptor = method.getMethodInfo().toString();
-            boolean superDefined = (superMethod.getModifiers() & Modifier.ABSTRACT) == 0;
-            boolean isThrowsSqlException = JavassistProxyFactory.isThrowsSqlException(method);
-            StringBuilder sb = new StringBuilder("{\n");
-
-            if (superDefined) {
-               if (superMethod.getAnnotation(DontRecord.class) == null)
-                  sb.append("	invoked(\"" + descriptor + "\", $args);\n");
-               if (isThrowsSqlException) {
-                  sb.append("	ReturnType result;\n");
-                  sb.append("	try {\n");
-                  sb.append("		result = super.method($$);\n");
-                  sb.append("	} catch (SQLException e) {\n");
-                  sb.append("		throw checkException(e);\n");
-                  sb.append("	}\n");
-                  sb.append("	return result;\n");
-               } else
-                  sb.append("return super.method($$);\n");
+               sb.append("return super.method($$);\n");
+         } else {
+            sb.append("	invoked(\"" + descriptor + "\", $args);\n");
+            if (isThrowsSqlException) {
+               sb.append("	ReturnType result;\n");
+               sb.append("	try {\n");
+               sb.append("		result = ((cast) delegate).method($$);\n");
+               sb.append("	} catch (SQLException e) {\n");
+               sb.append("		throw checkException(e);\n");
+               sb.append("	}\n");
+               sb.append("	if(!isFallbackMode())");
+               sb.append("		try {\n");
+               sb.append("			((cast) twinDelegate).method($$);\n");
+               sb.append("		} catch (SQLException e) {\n");
+               sb.append("			checkTwinException(e);\n");
+               sb.append("		}\n");
+               sb.append("	return result;\n");
             } else {
-               sb.append("	invoked(\"" + descriptor + "\", $args);\n");
-               if (isThrowsSqlException) {
-                  sb.append("	ReturnType result;\n");
-                  sb.append("	try {\n");
-                  sb.append("		result = ((cast) delegate).method($$);\n");
-                  sb.append("	} catch (SQLException e) {\n");
-                  sb.append("		throw checkException(e);\n");
-                  sb.append("	}\n");
-                  sb.append("	if(!isFallbackMode())");
-                  sb.append("		try {\n");
-                  sb.append("			((cast) twinDelegate).method($$);\n");
-                  sb.append("		} catch (SQLException e) {\n");
-                  sb.append("			checkTwinException(e);\n");
-                  sb.append("		}\n");
-                  sb.append("	return result;\n");
-               } else {
-                  sb.append("	ReturnType result;\n");
-                  sb.append("	result = ((cast) delegate).method($$);\n");
-                  sb.append("	if(!isFallbackMode())");
-                  sb.append("		((cast) twinDelegate).method($$);\n");
-                  sb.append("	return result;\n");
-               }
+               sb.append("	ReturnType result;\n");
+               sb.append("	result = ((cast) delegate).method($$);\n");
+               sb.append("	if(!isFallbackMode())");
+               sb.append("		((cast) twinDelegate).method($$);\n");
+               sb.append("	return result;\n");
             }
-            sb.append("}\n");
-            return sb.toString();
          }
-      };
+         sb.append("}\n");
+         return sb.toString();
+      }
+   };
+
+   public static void main(String... args) throws Exception {
+      classPool = new ClassPool();
+      classPool.importPackage("java.sql");
+      classPool.appendClassPath(new LoaderClassPath(JavassistProxyFactory.class.getClassLoader()));
+
+      if (args.length > 0) {
+         genDirectory = args[0];
+      }
 
       generateProxyClass(Connection.class, ProxyConnection.class.getName(), compositeMethodBodyGenerator);
       generateProxyClass(Statement.class, ProxyStatement.class.getName(), compositeMethodBodyGenerator);
@@ -143,8 +147,15 @@ public final class JavassistProxyFactory
          if (name.startsWith("getProxy")) {
             CtClass returnType = method.getReturnType();
             String proxyClassName = returnType.getPackageName() + ".Hikari" + returnType.getSimpleName();
+            String specializer = "com.zaxxer.hikari.pool.ProxySpecializer." + returnType.getSimpleName().substring("Proxy".length()).replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase();
             try {
-               method.setBody("{return new " + proxyClassName + "($$);}");
+               method.setBody("{\n"
+                  + "	if (com.zaxxer.hikari.pool.ProxySpecializer.ENABLED) {\n"
+                  + "		Object proxy = " + specializer + ".newProxy($" + (delegateParameterIndex(method, returnType) + 1) + ", $args);\n"
+                  + "		if (proxy != null) return (" + returnType.getName() + ") proxy;\n"
+                  + "	}\n"
+                  + "	return new " + proxyClassName + "($$);\n"
+                  + "}");
             } catch (Exception e) {
                e.printStackTrace();
             }
@@ -154,6 +165,55 @@ public final class JavassistProxyFactory
       proxyCt.writeFile(genDirectory + "target/classes");
    }
 
+   /**
+    * Find the parameter of a ProxyFactory method that receives the driver object being proxied.
+    */
+   private static int delegateParameterIndex(CtMethod method, CtClass proxyType) throws NotFoundException
+   {
+      String delegateType = "java.sql." + proxyType.getSimpleName().substring("Proxy".length());
+      CtClass[] parameterTypes = method.getParameterTypes();
+      for (int i = 0; i < parameterTypes.length; i++) {
+         if (parameterTypes[i].getName().equals(delegateType)) {
+            return i;
+         }
+      }
+
+      throw new NotFoundException(delegateType + " parameter of " + method.getLongName());
+   }
+
+   /**
+    * Generate, at runtime, a variant of a Hikari proxy class whose calls to the delegate are made
+    * through a concrete driver class instead of the JDBC interface, so that the JIT sees one
+    * receiver type at each call site however many drivers are loaded.  Calls to the twin delegate,
+    * which may belong to another driver, stay interface calls.  The class is defined in the class
+    * loader of the proxy superclass, so the driver class must be visible from it.
+    *
+    * @param primaryInterface the JDBC interface the proxy implements
+    * @param proxySuperclass the Proxy* class the generated class extends
+    * @param delegateClass the public driver class to call the delegate through
+    * @return the generated class
+    * @throws Exception if the class cannot be generated
+    */
+   public static synchronized Class<?> generateSpecializedProxyClass(Class<?> primaryInterface, Class<?> proxySuperclass, Class<?> delegateClass) throws Exception
+   {
+      String newClassName = proxySuperclass.getName().replaceAll("(.+)\\.(\\w+)", "$1.Hikari$2") + "$" + delegateClass.getName().replace('.', '_');
+      Class<?> specialized = specializedClasses.get(newClassName);
+      if (specialized == null) {
+         ClassPool pool = new ClassPool(true);
+         pool.importPackage("java.sql");
+         pool.appendClassPath(new LoaderClassPath(proxySuperclass.getClassLoader()));
+         pool.appendClassPath(new LoaderClassPath(delegateClass.getClassLoader()));
+
+         CtClass targetCt = makeProxyClass(pool, primaryInterface, proxySuperclass.getName(), newClassName,
+            primaryInterface == ResultSet.class ? simpleMethodBodyGenerator : compositeMethodBodyGenerator, delegateClass.getName());
+         specialized = targetCt.toClass(proxySuperclass.getClassLoader(), proxySuperclass.getProtectionDomain());
+         targetCt.detach();
+         specializedClasses.put(newClassName, specialized);
+      }
+
+      return specialized;
+   }
+
    /**
     *  Generate Javassist Proxy Classes
     */
@@ -161,12 +221,18 @@ public final class JavassistProxyFactory
    {
       String newClassName = superClassName.replaceAll("(.+)\\.(\\w+)", "$1.Hikari$2");
 
+      System.out.println("Generating " + newClassName);
+
+      CtClass targetCt = makeProxyClass(classPool, primaryInterface, superClassName, newClassName, methodBodyGenerator, null);
+      targetCt.writeFile(genDirectory + "target/classes");
+   }
+
+   private static CtClass makeProxyClass(ClassPool classPool, Class<?> primaryInterface, String superClassName, String newClassName, MethodBodyGenerator methodBodyGenerator, String delegateClassName) throws Exception
+   {
       CtClass superCt = classPool.getCtClass(superClassName);
       CtClass targetCt = classPool.makeClass(newClassName, superCt);
       targetCt.setModifiers(Modifier.FINAL);
 
-      System.out.println("Generating " + newClassName);
-
       targetCt.setModifiers(Modifier.PUBLIC);
 
       // Make a set of method signatures we inherit implementation for, so we don't generate delegates for these
@@ -204,6 +270,11 @@ public final class JavassistProxyFactory
 
             body = body.replace("method", intfMethod.getName());
 
+            if (delegateClassName != null) {
+               // a marker the replacements below cannot touch
+               body = body.replace("((cast) delegate)", "((\u0001) delegate)");
+            }
+
             body = body.replace("cast", primaryInterface.getName());
 
             if (intfMethod.getReturnType() == CtClass.voidType) {
@@ -218,9 +289,23 @@ public final class JavassistProxyFactory
             try {
                // Clone the method we want to inject into
                CtMethod method = CtNewMethod.copy(intfMethod, targetCt, null);
-               method.setBody(body);
+               if (delegateClassName != null) {
+                  try {
+                     method.setBody(body.replace("\u0001", delegateClassName));
+                  }
+                  catch (CannotCompileException e) {
+                     // the driver class does not have the method (an older JDBC version), keep the interface call
+                     method.setBody(body.replace("\u0001", primaryInterface.getName()));
+                  }
+               }
+               else {
+                  method.setBody(body);
+               }
                targetCt.addMethod(method);
             } catch (Exception e) {
+               if (delegateClassName != null) {
+                  throw e;   // an incomplete specialized proxy must not be used, the caller keeps the build-time one
+               }
                e.printStackTrace();
             }
 
@@ -228,7 +313,7 @@ public final class JavassistProxyFactory
       }
 
       targetCt.getClassFile().setMajorVersion(ClassFile.JAVA_8);
-      targetCt.writeFile(genDirectory + "target/classes");
+      return targetCt;
    }
 
    private static boolean isThrowsSqlException(CtMethod method)
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zaxxer.hikari.util;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry;
+
+/**
+ * Base class for {@link ConcurrentBag} entries whose state word sits on a cache line
+ * of its own.  Every borrower scanning the bag CASes the state of the entries it passes,
+ * so if the state shares a line with the entry's other (frequently written) fields, or
+ * with a neighbouring object, that line bounces between cores and sockets.
+ * <p>
+ * The JVM only guarantees that superclass fields are laid out before subclass fields,
+ * so the state is surrounded by 128 bytes of padding on each side (two lines, because of
+ * adjacent-line prefetching) declared in the intermediate classes below.  The padding is
+ * longs preceded by an int, so that no alignment gap is left for the state to be packed
+ * into next to the object header.  {@code @Contended} would do the same, but needs
+ * {@code -XX:-RestrictContended} and a different annotation on each Java version.
+ *
+ * @author Brett Wooldridge
+ */
+public abstract class PaddedBagEntry extends PaddedBagEntryStateRhs implements IConcurrentBagEntry
+{
+   private static final AtomicIntegerFieldUpdater<PaddedBagEntryState> STATE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(PaddedBagEntryState.class, "state");
+
+   /** {@inheritDoc} */
+   @Override
+   public int getState()
+   {
+      return state;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public boolean compareAndSet(int expect, int update)
+   {
+      return STATE_UPDATER.compareAndSet(this, expect, update);
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void setState(int update)
+   {
+      state = update;
+   }
+}
+
+@SuppressWarnings("unused")
+abstract class PaddedBagEntryStateLhs
+{
+   int p00;
+   long p01, p02, p03, p04, p05, p06, p07, p08;
+   long p09, p10, p11, p12, p13, p14, p15, p16;
+}
+
+abstract class PaddedBagEntryState extends PaddedBagEntryStateLhs
+{
+   volatile int state;
+}
+
+@SuppressWarnings("unused")
+abstract class PaddedBagEntryStateRhs extends PaddedBagEntryState
+{
+   long p17, p18, p19, p20, p21, p22, p23, p24;
+   long p25, p26, p27, p28, p29, p30, p31, p32;
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.util;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A JVM-wide executor for the work drivers hand to {@code Connection.setNetworkTimeout()} and
+ * {@code Connection.abort()}, shared by every pool configured with
+ * {@code HikariConfig#setSharedTimeoutExecutor(boolean)}, so that an application with many pools
+ * does not keep an executor (and its idle threads) per pool.  The platform-thread instance runs
+ * the work on a small set of daemon threads, {@code com.zaxxer.hikari.sharedExecutor.threads}
+ * (default: half the processors, at least two), that exit when idle; the virtual-thread instance
+ * runs each task on a new virtual thread, or falls back to the platform-thread instance on JVMs
+ * without virtual threads.  The shared instances are never shut down; a pool that needs to wait
+ * for its own tasks uses a {@link #newScope() scope}.
+ *
+ * @author Brett Wooldridge
+ */
+public final class SharedTimeoutExecutor implements Executor
+{
+   private static final Logger LOGGER = LoggerFactory.getLogger(SharedTimeoutExecutor.class);
+
+   private final ThreadPoolExecutor workers;
+   private final MethodHandle startVirtualThread;
+
+   private SharedTimeoutExecutor(final ThreadPoolExecutor workers, final MethodHandle startVirtualThread)
+   {
+      this.workers = workers;
+      this.startVirtualThread = startVirtualThread;
+   }
+
+   /**
+    * Get the shared executor.
+    *
+    * @param virtualThreads true to run tasks on virtual threads, where the JVM supports them
+    * @return the shared executor
+    */
+   public static SharedTimeoutExecutor getInstance(final boolean virtualThreads)
+   {
+      return virtualThreads ? VirtualHolder.INSTANCE : PlatformHolder.INSTANCE;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   public void execute(final Runnable command)
+   {
+      if (startVirtualThread != null) {
+         try {
+            startVirtualThread.invokeExact(command);
+            return;
+         }
+         catch (Throwable e) {
+            throw new RejectedExecutionException("Failed to start a virtual thread", e);
+         }
+      }
+
+      workers.execute(command);
+   }
+
+   /**
+    * Create a view of this executor that tracks the tasks submitted through it, so that its owner
+    * can shut it down and await their completion without affecting other users of this executor.
+    *
+    * @return a new scope
+    */
+   public ExecutorScope newScope()
+   {
+      return new ExecutorScope(this);
+   }
+
+   private static final class PlatformHolder
+   {
+      private static final SharedTimeoutExecutor INSTANCE;
+
+      static {
+         final int threads = Integer.getInteger("com.zaxxer.hikari.sharedExecutor.threads", Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+         final ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 15, SECONDS, new LinkedBlockingQueue<>(),
+                                                                   new UtilityElf.DefaultThreadFactory("HikariCP shared timeout executor", true));
+         workers.allowCoreThreadTimeOut(true);
+         INSTANCE = new SharedTimeoutExecutor(workers, null);
+      }
+   }
+
+   private static final class VirtualHolder
+   {
+      private static final SharedTimeoutExecutor INSTANCE;
+
+      static {
+         SharedTimeoutExecutor instance;
+         try {
+            final MethodHandle startVirtualThread = MethodHandles.publicLookup()
+               .findStatic(Thread.class, "startVirtualThread", methodType(Thread.class, Runnable.class))
+               .asType(methodType(void.class, Runnable.class));
+            instance = new SharedTimeoutExecutor(null, startVirtualThread);
+         }
+         catch (ReflectiveOperationException e) {
+            LOGGER.info("Virtual threads are not available in this JVM, the shared timeout executor uses platform threads.");
+            instance = PlatformHolder.INSTANCE;
+         }
+         INSTANCE = instance;
+      }
+   }
+}
@@ -33,6 +33,9 @@ public class SuspendResumeLock
       @Override
       public void acquire() {}
 
+      @Override
+      public boolean tryAcquire() { return true; }
+
       @Override
       public void release() {}
 
@@ -71,6 +74,16 @@ public class SuspendResumeLock
       acquisitionSemaphore.acquireUninterruptibly();
    }
 
+   /**
+    * Acquire a permit only if the pool is not currently suspended.
+    *
+    * @return true if a permit was acquired, false if the pool is suspended
+    */
+   public boolean tryAcquire()
+   {
+      return acquisitionSemaphore.tryAcquire();
+   }
+
    public void release()
    {
       acquisitionSemaphore.release();
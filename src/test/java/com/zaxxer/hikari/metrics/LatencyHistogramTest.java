@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest
+{
+   @Test
+   public void testBucketBounds()
+   {
+      for (long value : new long[] { 0, 1, 15, 16, 17, 31, 32, 1000, 123456789L, (1L << 36) - 1 }) {
+         final int index = LatencyHistogram.indexOf(value);
+         assertTrue(LatencyHistogram.lowerBoundOf(index) <= value);
+         assertTrue(LatencyHistogram.upperBoundOf(index) >= value);
+         assertTrue(LatencyHistogram.upperBoundOf(index) - LatencyHistogram.lowerBoundOf(index) <= value / 16);
+      }
+
+      assertEquals(LatencyHistogram.indexOf(1L << 36), LatencyHistogram.indexOf(Long.MAX_VALUE));
+      for (long bound : LatencyHistogram.powerOfTwoBounds(1, 36)) {
+         assertEquals(bound, LatencyHistogram.upperBoundOf(LatencyHistogram.indexOf(bound)));
+      }
+   }
+
+   @Test
+   public void testPercentilesAndMerge()
+   {
+      LatencyHistogram histogram = new LatencyHistogram();
+      for (int i = 1; i <= 1000; i++) {
+         histogram.record(i);
+      }
+
+      LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+      assertEquals(1000, snapshot.getCount());
+      assertEquals(500500, snapshot.getSum());
+      assertEquals(511, snapshot.getValueAtPercentile(50.0));
+      assertEquals(991, snapshot.getValueAtPercentile(99.0));
+      assertEquals(1023, snapshot.getValueAtPercentile(99.9));
+      assertEquals(511, snapshot.getCountAtOrBelow(511));
+
+      LatencyHistogram other = new LatencyHistogram();
+      other.record(1L << 40);
+      LatencyHistogram.Snapshot merged = snapshot.merge(other.snapshot());
+      assertEquals(1001, merged.getCount());
+      assertEquals(1000, merged.getCountAtOrBelow(1023));
+      assertEquals(1L << 36, merged.getValueAtPercentile(100.0));
+   }
+
+   @Test
+   public void testIntervalSnapshot()
+   {
+      LatencyHistogram histogram = new LatencyHistogram();
+      histogram.record(5);
+      histogram.record(7);
+      assertEquals(2, histogram.intervalSnapshot().getCount());
+
+      histogram.record(100);
+      LatencyHistogram.Snapshot interval = histogram.intervalSnapshot();
+      assertEquals(1, interval.getCount());
+      assertEquals(100, interval.getSum());
+      assertEquals(0, histogram.intervalSnapshot().getCount());
+      assertEquals(3, histogram.snapshot().getCount());
+   }
+}
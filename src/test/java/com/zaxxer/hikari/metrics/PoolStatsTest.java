@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PoolStatsTest
+{
+   @Test
+   public void testSnapshotIsLoadedOncePerWindow()
+   {
+      final AtomicInteger loads = new AtomicInteger();
+      PoolStats stats = new PoolStats(60_000) {
+         @Override
+         protected PoolStatsSnapshot load()
+         {
+            final int load = loads.incrementAndGet();
+            return new PoolStatsSnapshot(10, 10 - load, load, 0, 20, 5);
+         }
+      };
+
+      PoolStatsSnapshot snapshot = stats.getSnapshot();
+      assertEquals(9, stats.getIdleConnections());
+      assertEquals(1, stats.getActiveConnections());
+      assertEquals(10, stats.getTotalConnections());
+      assertEquals(0, stats.getPendingThreads());
+      assertEquals(20, stats.getMaxConnections());
+      assertEquals(5, stats.getMinConnections());
+      assertSame(snapshot, stats.getSnapshot());
+      assertEquals(1, loads.get());
+   }
+
+   @Test
+   public void testZeroWindowReloadsOnEveryRead()
+   {
+      final AtomicInteger loads = new AtomicInteger();
+      PoolStats stats = new PoolStats(0) {
+         @Override
+         protected void update()
+         {
+            this.activeConnections = loads.incrementAndGet();
+         }
+      };
+
+      assertEquals(1, stats.getActiveConnections());
+      assertEquals(2, stats.getActiveConnections());
+      assertEquals(3, stats.getSnapshot().getActiveConnections());
+   }
+}
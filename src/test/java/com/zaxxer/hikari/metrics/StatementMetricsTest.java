@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class StatementMetricsTest
+{
+   @Test
+   public void testFingerprint()
+   {
+      assertEquals("SELECT * FROM t1 WHERE id = ? AND name = ?",
+                   StatementMetrics.fingerprint("SELECT *\n  FROM t1  WHERE id = 42 AND name = 'O''Brien' "));
+      assertEquals("SELECT a FROM t WHERE id IN (?)",
+                   StatementMetrics.fingerprint("SELECT a FROM t WHERE id IN (1, 2,3)"));
+      assertEquals("INSERT INTO t VALUES (?)",
+                   StatementMetrics.fingerprint("INSERT INTO t VALUES (?, ?, ?) -- comment"));
+      assertEquals("UPDATE t SET x = ?",
+                   StatementMetrics.fingerprint("UPDATE /* hint */ t SET x = 1.5"));
+   }
+
+   @Test
+   public void testLeastTimeIsEvicted()
+   {
+      StatementMetrics metrics = new StatementMetrics(2);
+
+      StatementMetrics.Stats slow = metrics.get("slow");
+      slow.recordExecution(1_000);
+      slow.recordUpdateCount(3);
+      StatementMetrics.Stats fast = metrics.get("fast");
+      fast.recordExecution(10);
+      assertSame(slow, metrics.get("slow"));
+
+      // the newcomer replaces the fingerprint with the least time, and inherits it
+      StatementMetrics.Stats newcomer = metrics.get("newcomer");
+      assertNull(metrics.peek("fast"));
+      assertEquals(10, newcomer.getOverestimateNanos());
+      assertEquals(10, newcomer.getTotalNanos());
+      assertEquals(0, newcomer.getExecutions());
+
+      List<StatementMetrics.Stats> top = metrics.getTopStatements(1);
+      assertEquals(1, top.size());
+      assertSame(slow, top.get(0));
+      assertEquals(3, slow.getUpdateCount());
+   }
+
+   @Test
+   public void testLeastTimeIsEvictedAfterGrowth()
+   {
+      StatementMetrics metrics = new StatementMetrics(3);
+
+      StatementMetrics.Stats a = metrics.get("a");
+      StatementMetrics.Stats b = metrics.get("b");
+      StatementMetrics.Stats c = metrics.get("c");
+      // all admitted with no time, then grown in an order unrelated to admission
+      a.recordExecution(100);
+      b.recordExecution(50);
+      c.recordExecution(200);
+
+      StatementMetrics.Stats d = metrics.get("d");
+      assertNull(metrics.peek("b"));
+      assertEquals(50, d.getTotalNanos());
+
+      metrics.get("e");
+      assertNull(metrics.peek("d"));
+      assertSame(a, metrics.peek("a"));
+      assertSame(c, metrics.peek("c"));
+   }
+
+   @Test
+   public void testFingerprintIsRemembered()
+   {
+      StatementMetrics metrics = new StatementMetrics(1);
+
+      String fingerprint = metrics.fingerprintOf("SELECT a FROM t WHERE id = 1");
+      assertEquals("SELECT a FROM t WHERE id = ?", fingerprint);
+      assertSame(fingerprint, metrics.fingerprintOf("SELECT a FROM t WHERE id = 1"));
+
+      // remembering is bounded, the fingerprints are still computed past the bound
+      for (int i = 0; i < 10; i++) {
+         assertEquals("SELECT a FROM t WHERE id = ?", metrics.fingerprintOf("SELECT a FROM t WHERE id = " + i));
+      }
+   }
+}
@@ -1,12 +1,15 @@
 package com.zaxxer.hikari.metrics.micrometer;
 
 import com.zaxxer.hikari.metrics.PoolStats;
+import com.zaxxer.hikari.metrics.StatementMetrics;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
 public class MicrometerMetricsTrackerTest {
 
    private MeterRegistry mockMeterRegistry = new SimpleMeterRegistry();
@@ -38,4 +41,64 @@ public class MicrometerMetricsTrackerTest {
 
       testee.close();
    }
+
+   @Test
+   public void taggedMetrics() throws Exception {
+      testee.recordConnectionAcquiredNanos("batch", 1000L);
+      testee.recordConnectionUsageMillis("batch", 10L);
+      testee.recordConnectionTimeout("batch");
+      testee.recordConnectionAcquiredNanos(null, 1000L);
+
+      Assert.assertEquals(2, mockMeterRegistry.find("hikaricp.connections.acquire").tag("pool", "mypool").timer().count());
+      Assert.assertEquals(1, mockMeterRegistry.find("hikaricp.tag.connections.acquire").tags("pool", "mypool", "tag", "batch").timer().count());
+      Assert.assertEquals(1, mockMeterRegistry.find("hikaricp.tag.connections.usage").tags("pool", "mypool", "tag", "batch").timer().count());
+      Assert.assertEquals(1.0, mockMeterRegistry.find("hikaricp.tag.connections.timeout").tags("pool", "mypool", "tag", "batch").counter().count(), 0.0);
+
+      testee.close();
+   }
+
+   @Test
+   public void serverFailureEvictions() throws Exception {
+      testee.recordServerFailureEviction(5);
+      testee.recordServerFailureEviction(3);
+
+      Assert.assertEquals(8.0, mockMeterRegistry.find("hikaricp.connections.failure.evictions").tag("pool", "mypool").counter().count(), 0.0);
+
+      testee.close();
+   }
+
+   @Test
+   public void statementCacheMetrics() throws Exception {
+      testee.recordStatementCacheAccess(true);
+      testee.recordStatementCacheAccess(true);
+      testee.recordStatementCacheAccess(false);
+      testee.recordStatementCacheEviction();
+
+      Assert.assertEquals(2.0, mockMeterRegistry.find("hikaricp.statements.cache.hits").tag("pool", "mypool").counter().count(), 0.0);
+      Assert.assertEquals(1.0, mockMeterRegistry.find("hikaricp.statements.cache.misses").tag("pool", "mypool").counter().count(), 0.0);
+      Assert.assertEquals(1.0, mockMeterRegistry.find("hikaricp.statements.cache.evictions").tag("pool", "mypool").counter().count(), 0.0);
+
+      testee.close();
+   }
+
+   @Test
+   public void statementMetricsByRank() throws Exception {
+      StatementMetrics statementMetrics = new StatementMetrics(100);
+      for (int i = 0; i < 50; i++) {
+         statementMetrics.get("SELECT " + i).recordExecution(1000L + i);
+      }
+      statementMetrics.get("SELECT 7").recordUpdateCount(3);
+      statementMetrics.get("SELECT 7").recordExecution(1_000_000L);
+
+      testee.registerStatementMetrics(statementMetrics);
+
+      // a fixed set of meters, however many fingerprints are tracked
+      Assert.assertEquals(10, mockMeterRegistry.find("hikaricp.statements.top.executions").tag("pool", "mypool").meters().size());
+      Assert.assertEquals(2.0, mockMeterRegistry.find("hikaricp.statements.top.executions").tags("pool", "mypool", "rank", "1").gauge().value(), 0.0);
+      Assert.assertEquals(3.0, mockMeterRegistry.find("hikaricp.statements.top.rows.updated").tags("pool", "mypool", "rank", "1").gauge().value(), 0.0);
+      Assert.assertEquals(1_001_007L, mockMeterRegistry.find("hikaricp.statements.top.time").tags("pool", "mypool", "rank", "1").timeGauge().value(TimeUnit.NANOSECONDS), 1.0);
+      Assert.assertEquals(1.0, mockMeterRegistry.find("hikaricp.statements.top.executions").tags("pool", "mypool", "rank", "10").gauge().value(), 0.0);
+
+      testee.close();
+   }
 }
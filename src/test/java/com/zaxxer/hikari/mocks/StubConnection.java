@@ -45,13 +45,16 @@ import com.zaxxer.hikari.util.UtilityElf;
 public class StubConnection extends StubBaseConnection implements Connection
 {
    public static final AtomicInteger count = new AtomicInteger();
+   public static final AtomicInteger validations = new AtomicInteger();
    public static volatile boolean slowCreate;
    public static volatile boolean oldDriver;
+   public static volatile long validationDelayMs;
 
    private static long foo;
    private boolean autoCommit;
    private int isolation = Connection.TRANSACTION_READ_COMMITTED;
    private String catalog;
+   private String schema;
 
    static {
       foo = System.currentTimeMillis();
@@ -405,6 +408,10 @@ public class StubConnection extends StubBaseConnection implements Connection
    @Override
    public boolean isValid(int timeout) throws SQLException
    {
+      validations.incrementAndGet();
+      if (validationDelayMs > 0) {
+         UtilityElf.quietlySleep(validationDelayMs);
+      }
       if (throwException) {
          throw new SQLException();
       }
@@ -454,12 +461,13 @@ public class StubConnection extends StubBaseConnection implements Connection
    /** {@inheritDoc} */
    public void setSchema(String schema) throws SQLException
    {
+      this.schema = schema;
    }
 
    /** {@inheritDoc} */
    public String getSchema() throws SQLException
    {
-      return null;
+      return schema;
    }
 
    /** {@inheritDoc} */
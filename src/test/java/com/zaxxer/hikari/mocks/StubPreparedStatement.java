@@ -46,6 +46,13 @@ import java.util.Calendar;
 @SuppressWarnings("RedundantThrows")
 public class StubPreparedStatement extends StubStatement implements PreparedStatement
 {
+    public static volatile boolean simulateDisconnection = true;
+
+    private int maxRows;
+    private int maxFieldSize;
+    private int batchSize;
+    private boolean poolable = true;
+
     StubPreparedStatement(Connection connection)
     {
         super(connection);
@@ -69,26 +76,31 @@ public class StubPreparedStatement extends StubStatement implements PreparedStat
     @Override
     public int getMaxFieldSize() throws SQLException
     {
-        throw new SQLException("Simulated disconnection error", "08999");
+        if (simulateDisconnection) {
+            throw new SQLException("Simulated disconnection error", "08999");
+        }
+        return maxFieldSize;
     }
 
     /** {@inheritDoc} */
     @Override
     public void setMaxFieldSize(int max) throws SQLException
     {
+        maxFieldSize = max;
     }
 
     /** {@inheritDoc} */
     @Override
     public int getMaxRows() throws SQLException
     {
-        return 0;
+        return maxRows;
     }
 
     /** {@inheritDoc} */
     @Override
     public void setMaxRows(int max) throws SQLException
     {
+        maxRows = max;
     }
 
     /** {@inheritDoc} */
@@ -217,13 +229,16 @@ public class StubPreparedStatement extends StubStatement implements PreparedStat
     @Override
     public void clearBatch() throws SQLException
     {
+        batchSize = 0;
     }
 
     /** {@inheritDoc} */
     @Override
     public int[] executeBatch() throws SQLException
     {
-        return null;
+        final int[] updateCounts = new int[batchSize];
+        batchSize = 0;
+        return updateCounts;
     }
 
     /** {@inheritDoc} */
@@ -293,13 +308,14 @@ public class StubPreparedStatement extends StubStatement implements PreparedStat
     @Override
     public void setPoolable(boolean poolable) throws SQLException
     {
+        this.poolable = poolable;
     }
 
     /** {@inheritDoc} */
     @Override
     public boolean isPoolable() throws SQLException
     {
-        return false;
+        return poolable;
     }
 
     /** {@inheritDoc} */
@@ -480,6 +496,7 @@ public class StubPreparedStatement extends StubStatement implements PreparedStat
     @Override
     public void addBatch() throws SQLException
     {
+        batchSize++;
     }
 
     /** {@inheritDoc} */
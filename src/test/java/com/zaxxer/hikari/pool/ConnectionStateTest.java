@@ -18,6 +18,8 @@ package com.zaxxer.hikari.pool;
 
 import static com.zaxxer.hikari.pool.TestElf.newHikariConfig;
 import static com.zaxxer.hikari.pool.TestElf.newHikariDataSource;
+import static com.zaxxer.hikari.pool.TestElf.restoreTwinSynchronization;
+import static com.zaxxer.hikari.pool.TestElf.stubTwin;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
@@ -28,6 +30,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
+import org.junit.After;
 import org.junit.Test;
 
 import com.zaxxer.hikari.HikariConfig;
@@ -36,6 +39,12 @@ import com.zaxxer.hikari.util.UtilityElf;
 
 public class ConnectionStateTest
 {
+   @After
+   public void after()
+   {
+      restoreTwinSynchronization();
+   }
+
    @Test
    public void testAutoCommit() throws SQLException
    {
@@ -132,6 +141,38 @@ public class ConnectionStateTest
       }
    }
 
+   @Test
+   public void testLazyStateReset() throws SQLException
+   {
+      HikariConfig config = newHikariConfig();
+      config.setMinimumIdle(1);
+      config.setMaximumPoolSize(1);
+      config.setSchema("public");
+      config.setTransactionIsolation("TRANSACTION_READ_COMMITTED");
+      config.setLazyStateReset(true);
+      config.setConnectionTestQuery("VALUES 1");
+      config.setDataSourceClassName("com.zaxxer.hikari.mocks.StubDataSource");
+      stubTwin(config);
+
+      try (HikariDataSource ds = new HikariDataSource(config)) {
+         try (Connection connection = ds.getConnection()) {
+            connection.setSchema("other");
+            connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+         }
+
+         // only the state is kept for the next borrower, not the closed proxy
+         PoolEntry poolEntry = (PoolEntry) TestElf.getConcurrentBag(ds).values().get(0);
+         assertFalse(poolEntry.deferredResetState instanceof ProxyConnection);
+         assertEquals("other", poolEntry.deferredResetState.getSchemaState());
+
+         // the deferred reset is applied before the next borrower reads the state
+         try (Connection connection = ds.getConnection()) {
+            assertEquals("public", connection.getSchema());
+            assertEquals(Connection.TRANSACTION_READ_COMMITTED, connection.getTransactionIsolation());
+         }
+      }
+   }
+
    @Test
    public void testCommitTracking() throws SQLException
    {
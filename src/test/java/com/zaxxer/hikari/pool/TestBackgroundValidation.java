@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static com.zaxxer.hikari.pool.TestElf.getConcurrentBag;
+import static com.zaxxer.hikari.pool.TestElf.newHikariConfig;
+import static com.zaxxer.hikari.pool.TestElf.restoreTwinSynchronization;
+import static com.zaxxer.hikari.pool.TestElf.stubTwin;
+import static com.zaxxer.hikari.util.ClockSource.currentTime;
+import static com.zaxxer.hikari.util.ClockSource.elapsedMillis;
+import static com.zaxxer.hikari.util.ClockSource.plusMillis;
+import static com.zaxxer.hikari.util.UtilityElf.quietlySleep;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.mocks.StubConnection;
+
+/**
+ * @author Brett Wooldridge
+ */
+public class TestBackgroundValidation
+{
+   @Before
+   public void before()
+   {
+      // the validator runs every 500ms and validates connections idle for more than 1000ms
+      System.setProperty("com.zaxxer.hikari.aliveBypassWindowMs", "2000");
+   }
+
+   @After
+   public void after()
+   {
+      System.clearProperty("com.zaxxer.hikari.aliveBypassWindowMs");
+      restoreTwinSynchronization();
+   }
+
+   @Test
+   public void testIdleConnectionIsValidated() throws Exception
+   {
+      try (HikariDataSource ds = new HikariDataSource(newValidatedConfig())) {
+         final StubConnection stub;
+         try (Connection connection = ds.getConnection()) {
+            stub = connection.unwrap(StubConnection.class);
+         }
+
+         final PoolEntry entry = age(ds);
+         final int validations = StubConnection.validations.get();
+         quietlySleep(1200);
+
+         // the connection was reserved, validated and unreserved without touching its access time
+         assertTrue(StubConnection.validations.get() > validations);
+         assertTrue(elapsedMillis(entry.lastValidated) < 2000);
+         assertTrue(elapsedMillis(entry.lastAccessed) >= 5000);
+         try (Connection connection = ds.getConnection()) {
+            assertSame(stub, connection.unwrap(StubConnection.class));
+         }
+      }
+   }
+
+   @Test
+   public void testDeadConnectionIsClosed() throws Exception
+   {
+      try (HikariDataSource ds = new HikariDataSource(newValidatedConfig())) {
+         final StubConnection stub;
+         try (Connection connection = ds.getConnection()) {
+            stub = connection.unwrap(StubConnection.class);
+         }
+
+         final PoolEntry entry = age(ds);
+         stub.throwException = true;
+         quietlySleep(1200);
+
+         assertFalse(getConcurrentBag(ds).values().contains(entry));
+      }
+   }
+
+   @Test
+   public void testBorrowSkipsValidationAfterBackgroundValidation() throws Exception
+   {
+      try (HikariDataSource ds = new HikariDataSource(newValidatedConfig())) {
+         ds.getConnection().close();
+
+         final PoolEntry entry = age(ds);
+         quietlySleep(700);
+         assertTrue(elapsedMillis(entry.lastValidated) < 1000);
+
+         // the connection has not been accessed for longer than the bypass window, but was validated within it
+         final int validations = StubConnection.validations.get();
+         try (Connection connection = ds.getConnection()) {
+            assertEquals(validations, StubConnection.validations.get());
+         }
+      }
+   }
+
+   private static HikariConfig newValidatedConfig()
+   {
+      HikariConfig config = newHikariConfig();
+      config.setMinimumIdle(1);
+      config.setMaximumPoolSize(1);
+      config.setBackgroundValidation(true);
+      config.setDataSourceClassName("com.zaxxer.hikari.mocks.StubDataSource");
+      stubTwin(config);
+      return config;
+   }
+
+   /** Make the single connection of the pool look as if it had been idle for five seconds */
+   private static PoolEntry age(final HikariDataSource ds)
+   {
+      final PoolEntry entry = (PoolEntry) getConcurrentBag(ds).values().get(0);
+      entry.lastAccessed = plusMillis(currentTime(), -5000);
+      entry.lastValidated = entry.lastAccessed;
+      return entry;
+   }
+}
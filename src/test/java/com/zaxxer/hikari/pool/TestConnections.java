@@ -29,6 +29,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.sql.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -54,6 +55,7 @@ public class TestConnections
    public void after()
    {
       System.getProperties().remove("com.zaxxer.hikari.housekeeping.periodMs");
+      restoreTwinSynchronization();
       setSlf4jLogLevel(HikariPool.class, Level.WARN);
       setSlf4jLogLevel(PoolBase.class, Level.WARN);
    }
@@ -735,6 +737,139 @@ public class TestConnections
       }
    }
 
+   @Test
+   public void testServerFailureEvictsPreFailureConnections() throws Exception
+   {
+      HikariConfig config = newHikariConfig();
+      config.setMinimumIdle(0);
+      config.setMaximumPoolSize(5);
+      config.setConnectionTestQuery("VALUES 1");
+      config.setDataSourceClassName("com.zaxxer.hikari.mocks.StubDataSource");
+      stubTwin(config);
+
+      try (HikariDataSource ds = new HikariDataSource(config)) {
+         HikariPool pool = getPool(ds);
+         Connection failing = ds.getConnection();
+         Connection drained = ds.getConnection();
+         Connection draining = ds.getConnection();
+         ds.getConnection().close();
+         assertEquals(4, pool.getTotalConnections());
+         assertEquals(1, pool.getIdleConnections());
+
+         quietlySleep(10);   // the failure must be strictly newer than the connections it evicts
+
+         // the failing and the idle connection are closed at once, the borrowed ones are marked evicted
+         ((ProxyConnection) failing).checkException(new SQLException("terminating connection due to administrator command", "57P01"));
+         assertEquals(2, pool.getTotalConnections());
+         assertEquals(0, pool.getIdleConnections());
+
+         // a returned stale connection is closed instead of being borrowed again
+         drained.close();
+         quietlySleep(10);
+         Connection replacement = ds.getConnection();
+         StubConnection replacementStub = replacement.unwrap(StubConnection.class);
+         assertEquals(2, pool.getTotalConnections());
+         assertEquals(0, pool.getIdleConnections());
+
+         // a later error on a stale connection that is still draining does not take the replacement down
+         ((ProxyConnection) draining).checkException(new SQLException("terminating connection due to administrator command", "57P01"));
+         assertEquals(1, pool.getTotalConnections());
+         replacement.close();
+         try (Connection connection = ds.getConnection()) {
+            assertSame(replacementStub, connection.unwrap(StubConnection.class));
+         }
+
+         failing.close();
+         draining.close();
+         assertEquals(1, pool.getTotalConnections());
+         assertEquals(1, pool.getIdleConnections());
+      }
+   }
+
+   @Test
+   public void testServerFailureEvictsOnlyTheFailingHost() throws Exception
+   {
+      HikariConfig config = newHikariConfig();
+      config.setMinimumIdle(0);
+      config.setMaximumPoolSize(2);
+      config.setConnectionTestQuery("VALUES 1");
+      config.setDriverClassName("com.zaxxer.hikari.mocks.StubDriver");
+      config.addHostJdbcUrl("jdbc:stub:a", 1);
+      config.addHostJdbcUrl("jdbc:stub:b", 1);
+      stubTwin(config);
+
+      try (HikariDataSource ds = new HikariDataSource(config)) {
+         HikariPool pool = getPool(ds);
+
+         // back off from the host of the first connection, so that the second one goes to the other host
+         Connection first = ds.getConnection();
+         hostOf(ds, first).failed();
+         Connection second = ds.getConnection();
+         assertNotSame(hostOf(ds, first), hostOf(ds, second));
+
+         quietlySleep(10);   // the failure must be strictly newer than the connections it evicts
+
+         // only the connections of the failing host are evicted
+         ((ProxyConnection) first).checkException(new SQLException("terminating connection due to administrator command", "57P01"));
+         assertEquals(1, pool.getTotalConnections());
+
+         StubConnection secondStub = second.unwrap(StubConnection.class);
+         second.close();
+         second = ds.getConnection();
+         assertSame(secondStub, second.unwrap(StubConnection.class));
+
+         // a failure of the other host is not mistaken for a stale report of the first one
+         ((ProxyConnection) second).checkException(new SQLException("terminating connection due to administrator command", "57P01"));
+         assertEquals(0, pool.getTotalConnections());
+
+         first.close();
+         second.close();
+      }
+   }
+
+   @Test
+   public void testAsyncBorrowTimesOutWhileValidationHangs() throws Exception
+   {
+      HikariConfig config = newHikariConfig();
+      config.setMinimumIdle(1);
+      config.setMaximumPoolSize(1);
+      config.setConnectionTimeout(500);
+      config.setValidationTimeout(250);
+      config.setDataSourceClassName("com.zaxxer.hikari.mocks.StubDataSource");
+      stubTwin(config);
+
+      System.setProperty("com.zaxxer.hikari.aliveBypassWindowMs", "0");
+      try (HikariDataSource ds = new HikariDataSource(config)) {
+         quietlySleep(50);   // past the bypass window, the idle connection is validated on borrow
+         StubConnection.validationDelayMs = 3000;
+
+         final long start = System.currentTimeMillis();
+         try {
+            ds.getConnectionAsync().get(2, SECONDS);
+            fail("The borrow should have timed out while the connection was validated");
+         }
+         catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SQLTransientConnectionException);
+         }
+         assertTrue(System.currentTimeMillis() - start < 2000);
+      }
+      finally {
+         StubConnection.validationDelayMs = 0;
+         System.clearProperty("com.zaxxer.hikari.aliveBypassWindowMs");
+      }
+   }
+
+   private static HostSelector.Host hostOf(final HikariDataSource ds, final Connection connection) throws SQLException
+   {
+      final StubConnection stub = connection.unwrap(StubConnection.class);
+      for (Object entry : getConcurrentBag(ds).values()) {
+         if (((PoolEntry) entry).connection == stub) {
+            return ((PoolEntry) entry).host;
+         }
+      }
+      return null;
+   }
+
    class StubDataSourceWithErrorSwitch extends StubDataSource {
       private boolean errorOnConnection = false;
 
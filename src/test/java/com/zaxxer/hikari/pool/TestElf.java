@@ -18,6 +18,7 @@ package com.zaxxer.hikari.pool;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.mocks.StubDataSource;
 import com.zaxxer.hikari.util.ConcurrentBag;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.core.Appender;
@@ -167,6 +168,23 @@ public final class TestElf
       return config;
    }
 
+   /**
+    * Let the pool of a configuration start without a twin database: it gets a stub twin DataSource, and
+    * twin synchronization is skipped until {@link #restoreTwinSynchronization()}.
+    *
+    * @param config the configuration of the pool
+    */
+   static void stubTwin(final HikariConfig config)
+   {
+      config.setTwinDataSource(new StubDataSource());
+      System.setProperty("com.zaxxer.hikari.skipTwinSynchronization", "true");
+   }
+
+   static void restoreTwinSynchronization()
+   {
+      System.clearProperty("com.zaxxer.hikari.skipTwinSynchronization");
+   }
+
    static HikariDataSource newHikariDataSource()
    {
       final StackTraceElement callerStackTrace = Thread.currentThread().getStackTrace()[2];
@@ -200,7 +218,7 @@ public final class TestElf
 
    public static class FauxWebClassLoader extends ClassLoader
    {
-      static final byte[] classBytes = new byte[16_000];
+      static final byte[] classBytes = new byte[32_000];
 
       @Override
       public Class<?> loadClass(final String name) throws ClassNotFoundException
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class TestFlightRecorderEvents
+{
+   @Test
+   public void testEventsAreRecorded() throws Exception
+   {
+      assertTrue(PoolEvents.ENABLED);
+
+      // nothing is begun while no recording is running
+      assertNull(PoolEvents.begin(PoolEvents.BORROW));
+
+      Path file = Files.createTempFile("hikari", ".jfr");
+      try (Recording recording = new Recording()) {
+         recording.enable("com.zaxxer.hikari.Borrow").withoutThreshold();
+         recording.enable("com.zaxxer.hikari.Failover");
+         recording.start();
+
+         PoolEvents.borrowed(PoolEvents.begin(PoolEvents.BORROW), "pool", "tag", IConcurrentBagEntry.SOURCE_SHARED);
+         PoolEvents.borrowed(PoolEvents.begin(PoolEvents.BORROW), "pool", null, PoolEvents.SOURCE_TIMEOUT);
+         PoolEvents.failover("pool", "fallback");
+         // not enabled in the recording
+         assertNull(PoolEvents.begin(PoolEvents.VALIDATION));
+
+         recording.stop();
+         recording.dump(file);
+      }
+
+      try {
+         List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+         assertEquals(3, events.size());
+         assertEquals("com.zaxxer.hikari.Borrow", events.get(0).getEventType().getName());
+         assertEquals("pool", events.get(0).getString("poolName"));
+         assertEquals("tag", events.get(0).getString("tag"));
+         assertEquals("shared", events.get(0).getString("source"));
+         assertEquals("timeout", events.get(1).getString("source"));
+         assertEquals("fallback", events.get(2).getString("transition"));
+      }
+      finally {
+         Files.delete(file);
+      }
+   }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static com.zaxxer.hikari.pool.TestElf.newHikariConfig;
+import static com.zaxxer.hikari.pool.TestElf.restoreTwinSynchronization;
+import static com.zaxxer.hikari.pool.TestElf.stubTwin;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import com.zaxxer.hikari.mocks.StubDataSource;
+
+public class TestHikariPoolGroup
+{
+   @After
+   public void after()
+   {
+      restoreTwinSynchronization();
+   }
+
+   @Test
+   public void testFairShare()
+   {
+      // the group is not oversubscribed, every pool may grow to its maximumPoolSize
+      assertEquals(10, HikariPoolGroup.fairShare(100, 10, 60));
+
+      // shares are proportional to maximumPoolSize
+      assertEquals(25, HikariPoolGroup.fairShare(100, 100, 400));
+      assertEquals(50, HikariPoolGroup.fairShare(100, 200, 400));
+
+      // 300 tenants sharing 100 connections still get one each
+      assertEquals(1, HikariPoolGroup.fairShare(100, 10, 3000));
+   }
+
+   @Test
+   public void testPermitsAndMetrics()
+   {
+      final AtomicReference<PoolStats> poolStats = new AtomicReference<>();
+      final AtomicBoolean closed = new AtomicBoolean();
+      final MetricsTrackerFactory factory = (poolName, stats) -> {
+         assertEquals("tenants", poolName);
+         poolStats.set(stats);
+         return new IMetricsTracker() {
+            @Override
+            public void close()
+            {
+               closed.set(true);
+            }
+         };
+      };
+
+      try (HikariPoolGroup group = new HikariPoolGroup("tenants", 2, 1)) {
+         group.setMetricsTrackerFactory(factory);
+         assertSame(factory, group.getMetricsTrackerFactory());
+         assertEquals(2, poolStats.get().getMaxConnections());
+         assertEquals(0, poolStats.get().getTotalConnections());
+
+         try {
+            group.setMetricsTrackerFactory(factory);
+            fail("the factory of a group may only be set once");
+         }
+         catch (IllegalStateException e) {
+            // expected
+         }
+
+         assertTrue(group.acquireConnection(null, 0));
+         assertTrue(group.acquireConnection(null, 0));
+         assertEquals(2, group.getTotalConnections());
+
+         group.releaseConnection();
+         group.releaseConnection();
+         assertEquals(0, group.getTotalConnections());
+         assertEquals(0, group.getPoolCount());
+      }
+
+      assertTrue(closed.get());
+   }
+
+   @Test
+   public void testCloseRefusedWhilePoolsAreOpen()
+   {
+      final HikariPoolGroup group = new HikariPoolGroup("tenants", 2, 1);
+
+      HikariConfig config = newHikariConfig();
+      config.setMinimumIdle(0);
+      config.setMaximumPoolSize(1);
+      config.setDataSourceClassName("com.zaxxer.hikari.mocks.StubDataSource");
+      config.setPoolGroup(group);
+      stubTwin(config);
+
+      try (HikariDataSource ds = new HikariDataSource(config)) {
+         assertEquals(1, group.getPoolCount());
+         try {
+            group.close();
+            fail("a group may not be closed while one of its pools is open");
+         }
+         catch (IllegalStateException e) {
+            // expected
+         }
+      }
+
+      assertEquals(0, group.getPoolCount());
+      group.close();
+
+      try (HikariDataSource ds = new HikariDataSource(config)) {
+         fail("a closed group does not accept new pools");
+      }
+      catch (RuntimeException e) {
+         // expected
+      }
+   }
+
+   @Test
+   public void testFailedPoolLeavesTheGroup()
+   {
+      final HikariPoolGroup group = new HikariPoolGroup("tenants", 2, 1);
+
+      HikariConfig config = newHikariConfig();
+      config.setMinimumIdle(0);
+      config.setMaximumPoolSize(1);
+      config.setDataSourceClassName("com.zaxxer.hikari.mocks.StubDataSource");
+      config.setTwinDataSource(new StubDataSource());
+      config.setPoolGroup(group);
+
+      // without a twin JMX URL the pool fails at the end of its start-up, after joining the group
+      try (HikariDataSource ds = new HikariDataSource(config)) {
+         fail("the pool must fail to synchronize with its twin");
+      }
+      catch (RuntimeException e) {
+         // expected
+      }
+
+      assertEquals(0, group.getPoolCount());
+      group.close();
+   }
+}
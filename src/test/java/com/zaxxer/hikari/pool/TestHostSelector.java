@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.zaxxer.hikari.pool.HostSelector.Host;
+
+public class TestHostSelector
+{
+   @Test
+   public void testWeightedPlacement()
+   {
+      Host primary = new Host(0, "primary", 1, null);
+      Host replica = new Host(1, "replica", 3, null);
+      HostSelector selector = new HostSelector(new Host[] { primary, replica });
+
+      for (int i = 0; i < 40; i++) {
+         selector.select().connected(5);
+      }
+
+      assertEquals(10, primary.connections.get());
+      assertEquals(30, replica.connections.get());
+      assertNull(selector.planRebalance());
+   }
+
+   @Test
+   public void testFailedHostIsSkipped()
+   {
+      Host first = new Host(0, "first", 1, null);
+      Host second = new Host(1, "second", 1, null);
+      HostSelector selector = new HostSelector(new Host[] { first, second });
+
+      first.failed();
+      for (int i = 0; i < 4; i++) {
+         assertSame(second, selector.select());
+         second.connected(5);
+      }
+
+      // with every host backing off, the one recovering first is tried
+      second.failed();
+      assertSame(first, selector.select());
+
+      // the recovered host is below its share, half of the connections move onto it
+      first.connected(5);
+      second.connected(5);
+      first.closed();
+      assertArrayEquals(new int[] { 0, 2 }, selector.planRebalance());
+   }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static com.zaxxer.hikari.util.ClockSource.currentTime;
+import static com.zaxxer.hikari.util.ClockSource.plusMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestPoolSizeController
+{
+   @Test
+   public void testGrowsToLittlesLawEstimate()
+   {
+      final long start = currentTime();
+      final PoolSizeController controller = new PoolSizeController("test", 2, start);
+
+      // 100 borrows/s, each holding its connection for 50ms: L = 5, plus 25% headroom
+      load(controller, 100, 50);
+      assertEquals(7, controller.update(2, 20, 0, plusMillis(start, 1000)));
+      assertTrue(controller.getDecision().startsWith("grow 2 -> 7"));
+
+      // bounded by maximumPoolSize
+      load(controller, 1000, 50);
+      assertEquals(20, controller.update(2, 20, 0, plusMillis(start, 2000)));
+   }
+
+   @Test
+   public void testShrinksOnlyAfterCooldown()
+   {
+      final long start = currentTime();
+      final PoolSizeController controller = new PoolSizeController("test", 2, start);
+
+      load(controller, 200, 50);
+      assertEquals(13, controller.update(2, 20, 0, plusMillis(start, 1000)));
+
+      // load drops, but a resize happened less than a cooldown ago
+      load(controller, 10, 50);
+      assertEquals(13, controller.update(2, 20, 0, plusMillis(start, 2000)));
+
+      // after the cooldown the target moves halfway towards the estimate
+      load(controller, 10, 50);
+      final int shrunk = controller.update(2, 20, 0, plusMillis(start, SECONDS.toMillis(70)));
+      assertTrue(shrunk < 13 && shrunk > 2);
+      assertTrue(controller.getDecision().startsWith("shrink 13 -> "));
+   }
+
+   @Test
+   public void testGrowsWhenBorrowersWait()
+   {
+      final long start = currentTime();
+      final PoolSizeController controller = new PoolSizeController("test", 4, start);
+
+      controller.recordTimeout(MILLISECONDS.toNanos(100));
+      assertEquals(7, controller.update(2, 20, 3, plusMillis(start, 1000)));
+   }
+
+   private static void load(final PoolSizeController controller, final int borrows, final long usageMillis)
+   {
+      for (int i = 0; i < borrows; i++) {
+         controller.recordBorrow(MILLISECONDS.toNanos(0));
+         controller.recordUsage(usageMillis);
+      }
+   }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.junit.Test;
+
+public class TestProxySpecializer
+{
+   @Test
+   public void testSpecializedStatementProxy() throws Exception
+   {
+      try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:specializer");
+           PreparedStatement statement = connection.prepareStatement("SELECT ?")) {
+         Object proxy = ProxySpecializer.PREPARED_STATEMENT.newProxy(statement, new Object[] { null, statement });
+
+         assertTrue(proxy instanceof ProxyPreparedStatement);
+         assertEquals(HikariProxyPreparedStatement.class.getName() + "$" + statement.getClass().getName().replace('.', '_'), proxy.getClass().getName());
+         assertSame(ProxyPreparedStatement.class.getClassLoader(), proxy.getClass().getClassLoader());
+
+         // calls reach the driver through the specialized class
+         ((PreparedStatement) proxy).setInt(1, 42);
+         try (ResultSet resultSet = statement.executeQuery()) {
+            assertTrue(resultSet.next());
+            assertEquals(42, resultSet.getInt(1));
+         }
+
+         // the driver class is only specialized once
+         assertSame(proxy.getClass(), ProxySpecializer.PREPARED_STATEMENT.newProxy(statement, new Object[] { null, statement }).getClass());
+      }
+   }
+}
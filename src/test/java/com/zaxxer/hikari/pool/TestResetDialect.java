@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import org.junit.Test;
+
+public class TestResetDialect
+{
+   @Test
+   public void testDialectDetection()
+   {
+      assertEquals(ResetDialect.POSTGRESQL, ResetDialect.of("PostgreSQL"));
+      assertEquals(ResetDialect.H2, ResetDialect.of("H2"));
+      assertEquals(ResetDialect.GENERIC, ResetDialect.of("Oracle"));
+      assertEquals(ResetDialect.GENERIC, ResetDialect.of(null));
+   }
+
+   @Test
+   public void testPostgresResetSql()
+   {
+      assertEquals("SET SESSION CHARACTERISTICS AS TRANSACTION ISOLATION LEVEL READ COMMITTED; SET SESSION search_path TO 'o''brien'",
+                   ResetDialect.POSTGRESQL.resetSql(Connection.TRANSACTION_READ_COMMITTED, "o'brien"));
+      assertNull(ResetDialect.POSTGRESQL.resetSql(Connection.TRANSACTION_NONE, "public"));
+      assertNull(ResetDialect.GENERIC.resetSql(Connection.TRANSACTION_READ_COMMITTED, "public"));
+   }
+
+   @Test
+   public void testH2ResetInOneStatement() throws Exception
+   {
+      try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:resetdialect;DB_CLOSE_DELAY=-1");
+           Statement statement = connection.createStatement()) {
+         statement.execute("CREATE SCHEMA IF NOT EXISTS DIRTY");
+         connection.setSchema("DIRTY");
+         connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+
+         statement.execute(ResetDialect.H2.resetSql(Connection.TRANSACTION_READ_COMMITTED, "PUBLIC"));
+
+         assertEquals("PUBLIC", connection.getSchema());
+         assertEquals(Connection.TRANSACTION_READ_COMMITTED, connection.getTransactionIsolation());
+      }
+   }
+}
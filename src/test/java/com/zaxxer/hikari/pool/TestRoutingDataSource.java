@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static com.zaxxer.hikari.pool.TestElf.newHikariConfig;
+import static com.zaxxer.hikari.pool.TestElf.restoreTwinSynchronization;
+import static com.zaxxer.hikari.pool.TestElf.stubTwin;
+import static com.zaxxer.hikari.util.UtilityElf.quietlySleep;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariRoutingDataSource;
+
+public class TestRoutingDataSource
+{
+   @After
+   public void after()
+   {
+      restoreTwinSynchronization();
+   }
+
+   @Test
+   public void testLazyTenantsAndEviction() throws SQLException
+   {
+      HikariConfig template = new HikariConfig();
+      template.setPoolName("tenants");
+      template.addDataSourceProperty("user", "sa");
+
+      HikariRoutingDataSource routing = new HikariRoutingDataSource(template, 2, (tenant, config) -> {
+         config.setJdbcUrl("jdbc:h2:mem:" + tenant);
+         config.addDataSourceProperty("tenant", tenant);
+      });
+
+      HikariDataSource a = routing.getDataSource("a");
+      assertSame(a, routing.getDataSource("a"));
+      assertEquals("tenants-a", a.getPoolName());
+      assertEquals("jdbc:h2:mem:a", a.getJdbcUrl());
+      assertEquals("a", a.getDataSourceProperties().getProperty("tenant"));
+      assertEquals("sa", a.getDataSourceProperties().getProperty("user"));
+      assertNull(template.getDataSourceProperties().getProperty("tenant"));
+
+      // nothing is started until a connection is requested
+      assertNull(a.getHikariPoolMXBean());
+
+      HikariDataSource b = routing.getDataSource("b");
+      routing.getDataSource("a");
+      HikariDataSource c = routing.getDataSource("c");
+
+      // b is the least recently used idle tenant
+      assertEquals(2, routing.getActiveTenants());
+      assertTrue(awaitClosed(b));
+      assertFalse(a.isClosed());
+      assertFalse(c.isClosed());
+
+      // an evicted tenant is simply created again
+      assertNotSame(b, routing.getDataSource("b"));
+
+      routing.close();
+      assertTrue(a.isClosed());
+      assertEquals(0, routing.getActiveTenants());
+      try {
+         routing.getConnection("a");
+         fail("a closed routing DataSource must not hand out connections");
+      }
+      catch (SQLException e) {
+         // expected
+      }
+   }
+
+   @Test
+   public void testTenantIsNotEvictedWhileBorrowing() throws Exception
+   {
+      HikariConfig template = newHikariConfig();
+      template.setMinimumIdle(0);
+      template.setMaximumPoolSize(1);
+      template.setDataSourceClassName("com.zaxxer.hikari.mocks.StubDataSource");
+      template.addDataSourceProperty("connectionAcquistionTime", "1000");
+      stubTwin(template);
+
+      try (HikariRoutingDataSource routing = new HikariRoutingDataSource(template, 1, (tenant, config) -> {})) {
+         final HikariDataSource a = routing.getDataSource("a");
+
+         // the pool of a is still starting, it has no borrowed connection yet
+         final CompletableFuture<Connection> borrow = CompletableFuture.supplyAsync(() -> {
+            try {
+               return routing.getConnection("a");
+            }
+            catch (SQLException e) {
+               throw new RuntimeException(e);
+            }
+         });
+         quietlySleep(250);
+
+         routing.getDataSource("b");
+         assertFalse(a.isClosed());
+         assertEquals(2, routing.getActiveTenants());
+
+         try (Connection connection = borrow.get()) {
+            assertFalse(connection.isClosed());
+         }
+
+         routing.getDataSource("c");
+         assertTrue(awaitClosed(a));
+      }
+   }
+
+   private static boolean awaitClosed(final HikariDataSource dataSource)
+   {
+      // evicted pools are closed in the background
+      for (int i = 0; i < 500 && !dataSource.isClosed(); i++) {
+         quietlySleep(10);
+      }
+      return dataSource.isClosed();
+   }
+}
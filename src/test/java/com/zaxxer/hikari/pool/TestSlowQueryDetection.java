@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static com.zaxxer.hikari.pool.TestElf.newHikariConfig;
+import static com.zaxxer.hikari.pool.TestElf.restoreTwinSynchronization;
+import static com.zaxxer.hikari.pool.TestElf.stubTwin;
+import static com.zaxxer.hikari.util.UtilityElf.quietlySleep;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.mocks.StubStatement;
+import com.zaxxer.hikari.pool.PoolBase.IMetricsTrackerDelegate;
+
+public class TestSlowQueryDetection
+{
+   private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+   private final AtomicInteger slowQueries = new AtomicInteger();
+   private final CountDownLatch slowQueryReported = new CountDownLatch(1);
+   private final CountDownLatch longTransactionReported = new CountDownLatch(1);
+
+   @After
+   public void shutdown()
+   {
+      executor.shutdownNow();
+      restoreTwinSynchronization();
+   }
+
+   @Test
+   public void testSlowStatementIsReported() throws Exception
+   {
+      HikariConfig config = new HikariConfig();
+      config.setSlowQueryThreshold(50);
+      config.setSlowQueryStackTraces(true);
+      ProxySlowTaskFactory factory = new ProxySlowTaskFactory(pool(), config, executor);
+
+      // an execution returning in time is not reported
+      ProxySlowTask task = factory.scheduleStatement("SELECT * FROM t WHERE id = 1");
+      assertNotSame(ProxySlowTask.NO_TASK, task);
+      task.cancel();
+
+      task = factory.scheduleStatement("SELECT * FROM t WHERE id = 2");
+      assertTrue(slowQueryReported.await(5, SECONDS));
+      task.cancel();
+      assertEquals(1, slowQueries.get());
+
+      // transactions are not timed without a threshold
+      assertSame(ProxySlowTask.NO_TASK, factory.scheduleTransaction(mock(ProxyConnection.class)));
+   }
+
+   @Test
+   public void testLongTransactionIsReported() throws Exception
+   {
+      HikariConfig config = new HikariConfig();
+      config.setLongTransactionThreshold(50);
+      ProxySlowTaskFactory factory = new ProxySlowTaskFactory(pool(), config, executor);
+
+      ProxyConnection connection = mock(ProxyConnection.class);
+      connection.lastSql = "UPDATE t SET x = 'y'";
+      ProxySlowTask task = factory.scheduleTransaction(connection);
+      assertTrue(longTransactionReported.await(5, SECONDS));
+      task.cancel();
+
+      assertSame(ProxySlowTask.NO_TASK, factory.scheduleStatement("SELECT 1"));
+   }
+
+   @Test
+   public void testSampling()
+   {
+      HikariConfig config = new HikariConfig();
+      config.setSlowQueryThreshold(60_000);
+      config.setSlowQuerySampling(Integer.MAX_VALUE);
+      ProxySlowTaskFactory factory = new ProxySlowTaskFactory(pool(), config, executor);
+
+      int armed = 0;
+      for (int i = 0; i < 100; i++) {
+         final ProxySlowTask task = factory.scheduleStatement("SELECT 1");
+         if (task != ProxySlowTask.NO_TASK) {
+            armed++;
+            task.cancel();
+         }
+      }
+      assertTrue(armed < 2);
+   }
+
+   @Test
+   public void testFailedExecutionIsNotReported() throws Exception
+   {
+      HikariConfig config = newHikariConfig();
+      config.setMinimumIdle(0);
+      config.setMaximumPoolSize(1);
+      config.setSlowQueryThreshold(100);
+      config.setDataSourceClassName("com.zaxxer.hikari.mocks.StubDataSource");
+      stubTwin(config);
+      config.setMetricsTrackerFactory((poolName, poolStats) -> new IMetricsTracker() {
+         @Override
+         public void recordSlowQuery()
+         {
+            slowQueries.incrementAndGet();
+         }
+      });
+
+      try (HikariDataSource ds = new HikariDataSource(config);
+           Connection connection = ds.getConnection();
+           Statement statement = connection.createStatement()) {
+         // the driver throws at once, the timer must not outlive the execution
+         statement.unwrap(StubStatement.class).close();
+         try {
+            statement.execute("SELECT 1");
+            fail("the execution on a closed driver statement must fail");
+         }
+         catch (SQLException e) {
+            // expected
+         }
+
+         quietlySleep(300);
+         assertEquals(0, slowQueries.get());
+      }
+   }
+
+   private PoolBase pool()
+   {
+      PoolBase pool = mock(PoolBase.class);
+      pool.metricsTracker = new IMetricsTrackerDelegate() {
+         @Override
+         public void recordSlowQuery()
+         {
+            slowQueries.incrementAndGet();
+            slowQueryReported.countDown();
+         }
+
+         @Override
+         public void recordLongTransaction()
+         {
+            longTransactionReported.countDown();
+         }
+      };
+      return pool;
+   }
+}
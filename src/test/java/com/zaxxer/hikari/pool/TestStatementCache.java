@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static com.zaxxer.hikari.pool.TestElf.newHikariConfig;
+import static com.zaxxer.hikari.pool.TestElf.restoreTwinSynchronization;
+import static com.zaxxer.hikari.pool.TestElf.stubTwin;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.mocks.StubPreparedStatement;
+import com.zaxxer.hikari.pool.PoolBase.IMetricsTrackerDelegate;
+
+public class TestStatementCache
+{
+   private final AtomicInteger hits = new AtomicInteger();
+   private final AtomicInteger misses = new AtomicInteger();
+   private final AtomicInteger evictions = new AtomicInteger();
+
+   @After
+   public void after()
+   {
+      restoreTwinSynchronization();
+   }
+
+   @Test
+   public void testHitAndEviction() throws Exception
+   {
+      StatementCache cache = new StatementCache(pool(), 2);
+      PreparedStatement first = mock(PreparedStatement.class);
+      PreparedStatement second = mock(PreparedStatement.class);
+      PreparedStatement third = mock(PreparedStatement.class);
+
+      assertNull(cache.take(key(cache, "SELECT 1")));
+      assertTrue(cache.offer(key(cache, "SELECT 1"), first));
+      assertTrue(cache.offer(key(cache, "SELECT 2"), second));
+
+      // the same SQL and options hit, other options miss
+      assertSame(first, cache.take(key(cache, "SELECT 1")));
+      assertNull(cache.take(new StatementCache.Key(cache.generation(), "SELECT 2", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY, -1, -1, null)));
+      assertEquals(1, hits.get());
+      assertEquals(2, misses.get());
+
+      // the least recently used statement is evicted and closed
+      assertTrue(cache.offer(key(cache, "SELECT 1"), first));
+      assertSame(second, cache.take(key(cache, "SELECT 2")));
+      assertTrue(cache.offer(key(cache, "SELECT 2"), second));
+      assertTrue(cache.offer(key(cache, "SELECT 3"), third));
+      assertEquals(1, evictions.get());
+      verify(first).close();
+      verify(second, never()).close();
+      assertSame(third, cache.take(key(cache, "SELECT 3")));
+   }
+
+   @Test
+   public void testInvalidate() throws Exception
+   {
+      StatementCache cache = new StatementCache(pool(), 2);
+      PreparedStatement idle = mock(PreparedStatement.class);
+      PreparedStatement inUse = mock(PreparedStatement.class);
+
+      StatementCache.Key before = key(cache, "SELECT * FROM t");
+      assertTrue(cache.offer(before, idle));
+      StatementCache.Key borrowed = key(cache, "SELECT * FROM u");
+
+      // a changed schema closes the idle statements and refuses the ones in use
+      cache.invalidate();
+      verify(idle).close();
+      assertNull(cache.take(key(cache, "SELECT * FROM t")));
+      assertFalse(cache.offer(borrowed, inUse));
+      assertTrue(cache.offer(key(cache, "SELECT * FROM u"), inUse));
+   }
+
+   @Test
+   public void testRestoreDefaults() throws Exception
+   {
+      StatementCache cache = new StatementCache(pool(), 2);
+      PreparedStatement fresh = mock(PreparedStatement.class);
+      when(fresh.getFetchDirection()).thenReturn(ResultSet.FETCH_FORWARD);
+
+      // nothing is cached until the defaults are known
+      assertFalse(cache.restoreDefaults(fresh));
+      cache.captureDefaults(fresh);
+
+      PreparedStatement used = mock(PreparedStatement.class);
+      when(used.isPoolable()).thenReturn(true);
+      when(used.getMaxRows()).thenReturn(10);
+      when(used.getQueryTimeout()).thenReturn(5);
+      when(used.getFetchDirection()).thenReturn(ResultSet.FETCH_FORWARD);
+      when(used.getMaxFieldSize()).thenReturn(64);
+      when(used.getLargeMaxRows()).thenReturn(10_000_000_000L);
+      assertTrue(cache.restoreDefaults(used));
+      verify(used).setMaxRows(0);
+      verify(used).setQueryTimeout(0);
+      verify(used).setMaxFieldSize(0);
+      verify(used).setLargeMaxRows(0L);
+      verify(used, never()).setFetchSize(0);
+      verify(used, never()).setFetchDirection(ResultSet.FETCH_FORWARD);
+      verify(used).setEscapeProcessing(true);
+
+      // a statement marked as not poolable is closed instead
+      assertFalse(cache.restoreDefaults(mock(PreparedStatement.class)));
+   }
+
+   @Test
+   public void testStatementReuse() throws Exception
+   {
+      HikariConfig config = newHikariConfig();
+      config.setMinimumIdle(1);
+      config.setMaximumPoolSize(1);
+      config.setPreparedStatementCacheSize(4);
+      config.setDataSourceClassName("com.zaxxer.hikari.mocks.StubDataSource");
+      stubTwin(config);
+
+      StubPreparedStatement.simulateDisconnection = false;
+      try (HikariDataSource ds = new HikariDataSource(config)) {
+         final StubPreparedStatement cached;
+         try (Connection connection = ds.getConnection();
+              PreparedStatement statement = connection.prepareStatement("SELECT * FROM t WHERE id = ?")) {
+            cached = statement.unwrap(StubPreparedStatement.class);
+            statement.setMaxRows(10);
+            statement.setMaxFieldSize(64);
+            statement.setInt(1, 1);
+            statement.addBatch();
+         }
+
+         // the next borrower gets the same driver statement, with the settings and batch of the last one reset
+         try (Connection connection = ds.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM t WHERE id = ?")) {
+               assertSame(cached, statement.unwrap(StubPreparedStatement.class));
+               assertEquals(0, statement.getMaxRows());
+               assertEquals(0, statement.getMaxFieldSize());
+               assertEquals(0, statement.executeBatch().length);
+            }
+
+            // a changed schema invalidates the cache
+            connection.setSchema("other");
+            try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM t WHERE id = ?")) {
+               assertNotSame(cached, statement.unwrap(StubPreparedStatement.class));
+            }
+         }
+      }
+      finally {
+         StubPreparedStatement.simulateDisconnection = true;
+      }
+   }
+
+   private static StatementCache.Key key(final StatementCache cache, final String sql)
+   {
+      return new StatementCache.Key(cache.generation(), sql, -1, -1, -1, -1, null);
+   }
+
+   private PoolBase pool()
+   {
+      PoolBase pool = mock(PoolBase.class);
+      pool.metricsTracker = new IMetricsTrackerDelegate() {
+         @Override
+         public void recordStatementCacheAccess(boolean hit)
+         {
+            (hit ? hits : misses).incrementAndGet();
+         }
+
+         @Override
+         public void recordStatementCacheEviction()
+         {
+            evictions.incrementAndGet();
+         }
+      };
+      return pool;
+   }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.pool;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.zaxxer.hikari.mocks.StubStatement;
+
+public class TestStatementRegistry
+{
+   @Test
+   public void testRemoveKeepsOpeningOrder()
+   {
+      StatementRegistry registry = new StatementRegistry(2);
+      ProxyStatement[] statements = newStatements(40);
+      for (ProxyStatement statement : statements) {
+         registry.add(statement);
+      }
+
+      // remove every other statement, then add more to force a compaction
+      List<ProxyStatement> expected = new ArrayList<>();
+      for (int i = 0; i < statements.length; i++) {
+         if (i % 2 == 0) {
+            registry.remove(statements[i]);
+         }
+         else {
+            expected.add(statements[i]);
+         }
+      }
+      for (ProxyStatement statement : newStatements(30)) {
+         registry.add(statement);
+         expected.add(statement);
+      }
+
+      List<ProxyStatement> actual = new ArrayList<>();
+      registry.forEach(actual::add);
+      assertEquals(expected, actual);
+      assertEquals(expected.size(), registry.size());
+
+      // removing an untracked statement is ignored
+      registry.remove(statements[0]);
+      assertArrayEquals(expected.toArray(), registry.removeAll());
+      assertEquals(0, registry.size());
+      assertEquals(0, registry.removeAll().length);
+   }
+
+   @Test
+   public void testConcurrentRemove() throws Exception
+   {
+      final StatementRegistry registry = new StatementRegistry(16);
+      final int threads = 4;
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+         Future<?>[] futures = new Future<?>[threads];
+         for (int t = 0; t < threads; t++) {
+            futures[t] = executor.submit(() -> {
+               for (int i = 0; i < 1000; i++) {
+                  ProxyStatement[] statements = newStatements(8);
+                  for (ProxyStatement statement : statements) {
+                     registry.add(statement);
+                  }
+                  for (ProxyStatement statement : statements) {
+                     registry.remove(statement);
+                  }
+               }
+               return null;
+            });
+         }
+
+         for (Future<?> future : futures) {
+            future.get(30, SECONDS);
+         }
+
+         assertEquals(0, registry.size());
+         assertEquals(0, registry.removeAll().length);
+      }
+      finally {
+         executor.shutdownNow();
+      }
+   }
+
+   private static ProxyStatement[] newStatements(int count)
+   {
+      ProxyStatement[] statements = new ProxyStatement[count];
+      for (int i = 0; i < count; i++) {
+         statements[i] = ProxyFactory.getProxyStatement(null, new StubStatement(null));
+      }
+      return statements;
+   }
+}
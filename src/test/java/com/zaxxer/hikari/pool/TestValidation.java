@@ -18,11 +18,13 @@ package com.zaxxer.hikari.pool;
 import static com.zaxxer.hikari.pool.TestElf.newHikariConfig;
 import static com.zaxxer.hikari.pool.TestElf.setSlf4jTargetStream;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.Properties;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
@@ -252,4 +254,75 @@ public class TestValidation
          // pass
       }
    }
+
+   @Test
+   public void validateInvalidCreationConcurrency()
+   {
+      try {
+         HikariConfig config = newHikariConfig();
+         config.setConnectionCreationConcurrency(0);
+         fail();
+      }
+      catch (IllegalArgumentException ise) {
+         assertTrue(ise.getMessage().contains("connectionCreationConcurrency cannot be less than 1"));
+      }
+   }
+
+   @Test
+   public void validatePrewarmConnections()
+   {
+      HikariConfig config = newHikariConfig();
+      config.setMaximumPoolSize(5);
+      config.setPrewarmConnections(10);
+      config.setDataSourceClassName("com.zaxxer.hikari.mocks.StubDataSource");
+      config.validate();
+      assertEquals(5, config.getPrewarmConnections());
+   }
+
+   @Test
+   public void validateTagLeaseLimits()
+   {
+      HikariConfig config = newHikariConfig();
+      Properties limits = new Properties();
+      limits.setProperty("reports", "many");
+      try {
+         config.setTagLeaseLimits(limits);
+         fail();
+      }
+      catch (IllegalArgumentException ise) {
+         assertTrue(ise.getMessage().contains("maxLeases of tag reports is not a number"));
+      }
+
+      limits.setProperty("reports", "-1");
+      try {
+         config.setTagLeaseLimits(limits);
+         fail();
+      }
+      catch (IllegalArgumentException ise) {
+         assertTrue(ise.getMessage().contains("maxLeases of tag reports cannot be less than 1"));
+      }
+
+      config.setDataSourceClassName("com.zaxxer.hikari.mocks.StubDataSource");
+      config.getTagLeaseLimits().setProperty("batch", "0");
+      try {
+         config.validate();
+         fail();
+      }
+      catch (IllegalArgumentException ise) {
+         assertTrue(ise.getMessage().contains("maxLeases of tag batch cannot be less than 1"));
+      }
+   }
+
+   @Test
+   public void validateCopiedTagLeaseLimits()
+   {
+      HikariConfig config = newHikariConfig();
+      config.addTagLeaseLimit("reports", 2);
+
+      HikariConfig copy = new HikariConfig();
+      config.copyStateTo(copy);
+      copy.addTagLeaseLimit("batch", 1);
+      assertEquals("2", copy.getTagLeaseLimits().getProperty("reports"));
+      assertNull(config.getTagLeaseLimits().getProperty("batch"));
+   }
 }
@@ -57,4 +57,22 @@ public class ClockSourceTest
       String ds3 = nsSource.elapsedDisplayString0(sTime2, eTime3);
       Assert.assertEquals("1d10h31m5s204ms676µs159ns", ds3);
    }
+
+   @Test
+   public void testCoarseClockSource() throws InterruptedException
+   {
+      ClockSource nsSource = new ClockSource.NanosecondClockSource();
+      ClockSource coarseSource = new ClockSource.CoarseClockSource(nsSource, 5);
+
+      final long start = coarseSource.currentTime0();
+      Assert.assertTrue(start <= nsSource.currentTime0());
+
+      Thread.sleep(100);
+
+      // the coarse time has advanced, but never past the precise time
+      final long now = coarseSource.currentTime0();
+      Assert.assertTrue(coarseSource.elapsedMillis0(start, now) >= 50);
+      Assert.assertTrue(now <= nsSource.currentTime0());
+      Assert.assertEquals(NANOSECONDS, coarseSource.getSourceTimeUnit0());
+   }
 }
@@ -0,0 +1,406 @@
+/*
+ * Copyright (C) 2013 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.util;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry;
+
+/**
+ * Exercises the optional borrowing modes of the {@link ConcurrentBag} with plain
+ * bag entries, independent of a running pool.
+ *
+ * @author Brett Wooldridge
+ */
+public class TestConcurrentBagModes
+{
+   @Test
+   public void testVirtualThreadModeReuse() throws Exception
+   {
+      try (ConcurrentBag<Entry> bag = new ConcurrentBag<>(waiting -> {}, true)) {
+         Entry first = new Entry();
+         Entry second = new Entry();
+         bag.add(first);
+         bag.add(second);
+
+         Entry borrowed = bag.borrow(10, MILLISECONDS);
+         assertSame(first, borrowed);
+         bag.requite(borrowed);
+
+         // the most recently returned entry comes off the shared stack first
+         assertSame(first, bag.borrow(10, MILLISECONDS));
+         assertSame(second, bag.borrow(10, MILLISECONDS));
+         assertNull(bag.borrow(10, MILLISECONDS));
+      }
+   }
+
+   @Test
+   public void testVirtualThreadModeHandoff() throws Exception
+   {
+      final int threads = 8;
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try (ConcurrentBag<Entry> bag = new ConcurrentBag<>(waiting -> {}, true)) {
+         Entry entry = new Entry();
+         bag.add(entry);
+
+         final AtomicInteger borrows = new AtomicInteger();
+         final CountDownLatch start = new CountDownLatch(1);
+         Future<?>[] futures = new Future<?>[threads];
+         for (int i = 0; i < threads; i++) {
+            futures[i] = executor.submit(() -> {
+               start.await();
+               for (int j = 0; j < 100; j++) {
+                  Entry borrowed = bag.borrow(5, SECONDS);
+                  assertSame(entry, borrowed);
+                  assertEquals(IConcurrentBagEntry.STATE_IN_USE, borrowed.getState());
+                  borrows.incrementAndGet();
+                  bag.requite(borrowed);
+               }
+               return null;
+            });
+         }
+
+         start.countDown();
+         for (Future<?> future : futures) {
+            future.get(30, SECONDS);
+         }
+
+         assertEquals(threads * 100, borrows.get());
+         assertEquals(0, bag.getWaitingThreadCount());
+         assertEquals(1, bag.getCount(IConcurrentBagEntry.STATE_NOT_IN_USE));
+      }
+      finally {
+         executor.shutdownNow();
+      }
+   }
+
+   @Test
+   public void testAsyncBorrowHandoff() throws Exception
+   {
+      final AtomicInteger requested = new AtomicInteger();
+      try (ConcurrentBag<Entry> bag = new ConcurrentBag<>(requested::set)) {
+         Entry entry = new Entry();
+         bag.add(entry);
+
+         CompletableFuture<Entry> immediate = bag.borrowAsync();
+         assertTrue(immediate.isDone());
+         assertSame(entry, immediate.get());
+
+         CompletableFuture<Entry> first = bag.borrowAsync();
+         CompletableFuture<Entry> second = bag.borrowAsync();
+         assertFalse(first.isDone());
+         assertEquals(2, requested.get());
+         assertEquals(2, bag.getWaitingThreadCount());
+
+         // requite completes the oldest waiter on the requiting thread
+         bag.requite(entry);
+         assertSame(entry, first.getNow(null));
+         assertFalse(second.isDone());
+         assertEquals(IConcurrentBagEntry.STATE_IN_USE, entry.getState());
+
+         // a timed out waiter is skipped and the entry stays available
+         second.complete(null);
+         assertEquals(0, bag.getWaitingThreadCount());
+         bag.requite(entry);
+         assertEquals(1, bag.getCount(IConcurrentBagEntry.STATE_NOT_IN_USE));
+
+         Entry added = new Entry();
+         CompletableFuture<Entry> third = bag.borrowAsync();
+         assertSame(entry, third.getNow(null));
+         CompletableFuture<Entry> fourth = bag.borrowAsync();
+         bag.add(added);
+         assertSame(added, fourth.getNow(null));
+      }
+   }
+
+   @Test
+   public void testFairHandoffOrder() throws Exception
+   {
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      try (ConcurrentBag<Entry> bag = new ConcurrentBag<>(waiting -> {}, false, true)) {
+         Entry entry = new Entry();
+         bag.add(entry);
+         assertSame(entry, bag.borrow(10, MILLISECONDS));
+
+         Future<Entry> first = executor.submit(() -> bag.borrow(5, SECONDS));
+         while (bag.getWaitingThreadCount() < 1) {
+            Thread.sleep(1);
+         }
+         Future<Entry> second = executor.submit(() -> bag.borrow(5, SECONDS));
+         while (bag.getWaitingThreadCount() < 2) {
+            Thread.sleep(1);
+         }
+
+         bag.requite(entry);
+         assertSame(entry, first.get(5, SECONDS));
+         assertFalse(second.isDone());
+
+         // the entry is assigned inside requite(), so it is never free for a newcomer to barge
+         bag.requite(entry);
+         assertEquals(IConcurrentBagEntry.STATE_IN_USE, entry.getState());
+         assertNull(bag.borrow(10, MILLISECONDS));
+         assertSame(entry, second.get(5, SECONDS));
+         assertEquals(0, bag.getWaitingThreadCount());
+
+         bag.requite(entry);
+         assertSame(entry, bag.borrow(10, MILLISECONDS));
+      }
+      finally {
+         executor.shutdownNow();
+      }
+   }
+
+   @Test
+   public void testPriorityLanes() throws Exception
+   {
+      try (ConcurrentBag<Entry> bag = new ConcurrentBag<>(waiting -> {}, false, true)) {
+         Entry entry = new Entry();
+         bag.add(entry);
+         assertSame(entry, bag.borrow(10, MILLISECONDS));
+
+         CompletableFuture<Entry> low = bag.borrowAsync(ConcurrentBag.PRIORITY_LOW);
+         CompletableFuture<Entry> normal = bag.borrowAsync(ConcurrentBag.PRIORITY_NORMAL);
+         CompletableFuture<Entry> high = bag.borrowAsync(ConcurrentBag.PRIORITY_HIGH);
+
+         // the high lane is served first, and the weighted order still lets the low lane through
+         bag.requite(entry);
+         assertSame(entry, high.getNow(null));
+         bag.requite(entry);
+         assertSame(entry, normal.getNow(null));
+         bag.requite(entry);
+         assertSame(entry, low.getNow(null));
+
+         int highServed = 0;
+         for (int i = 0; i < 8; i++) {
+            high = bag.borrowAsync(ConcurrentBag.PRIORITY_HIGH);
+            low = bag.borrowAsync(ConcurrentBag.PRIORITY_LOW);
+            bag.requite(entry);
+            if (high.isDone()) {
+               highServed++;
+               high = null;
+               assertFalse(low.isDone());
+               assertTrue(low.complete(null));
+            }
+            else {
+               assertSame(entry, low.getNow(null));
+               assertTrue(high.complete(null));
+            }
+         }
+         assertEquals(7, highServed);
+         assertEquals(0, bag.getWaitingThreadCount());
+      }
+   }
+
+   @Test
+   public void testStripedContention() throws Exception
+   {
+      final int threads = 16;
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try (ConcurrentBag<Entry> bag = new ConcurrentBag<>(waiting -> {}, false, false, true)) {
+         for (int i = 0; i < 8; i++) {
+            bag.add(new Entry());
+         }
+
+         final AtomicInteger borrows = new AtomicInteger();
+         final CountDownLatch start = new CountDownLatch(1);
+         Future<?>[] futures = new Future<?>[threads];
+         for (int i = 0; i < threads; i++) {
+            futures[i] = executor.submit(() -> {
+               start.await();
+               for (int j = 0; j < 1000; j++) {
+                  Entry borrowed = bag.borrow(5, SECONDS);
+                  assertEquals(IConcurrentBagEntry.STATE_IN_USE, borrowed.getState());
+                  borrows.incrementAndGet();
+                  bag.requite(borrowed);
+               }
+               return null;
+            });
+         }
+
+         start.countDown();
+         for (Future<?> future : futures) {
+            future.get(30, SECONDS);
+         }
+
+         assertEquals(threads * 1000, borrows.get());
+         assertEquals(8, bag.getCount(IConcurrentBagEntry.STATE_NOT_IN_USE));
+
+         // removed entries drop out of the striped view
+         for (Entry entry : bag.values()) {
+            assertTrue(bag.reserve(entry));
+            assertTrue(bag.remove(entry));
+         }
+         assertNull(bag.borrow(10, MILLISECONDS));
+      }
+      finally {
+         executor.shutdownNow();
+      }
+   }
+
+   @Test
+   public void testCloseFailsQueuedBorrowers() throws Exception
+   {
+      ConcurrentBag<Entry> bag = new ConcurrentBag<>(waiting -> {});
+      CompletableFuture<Entry> normal = bag.borrowAsync();
+      CompletableFuture<Entry> high = bag.borrowAsync(ConcurrentBag.PRIORITY_HIGH);
+
+      bag.close();
+      assertTrue(normal.isCompletedExceptionally());
+      assertTrue(high.isCompletedExceptionally());
+      assertEquals(0, bag.getWaitingThreadCount());
+
+      // nothing is queued on a closed bag
+      assertTrue(bag.borrowAsync().isCompletedExceptionally());
+   }
+
+   @Test
+   public void testWithdrawAfterTimeout() throws Exception
+   {
+      // nothing assigned, the waiter withdraws
+      CompletableFuture<Entry> pending = new CompletableFuture<>();
+      assertNull(ConcurrentBag.assigned(pending));
+      assertTrue(pending.isDone());
+
+      // an entry assigned between the timeout and the withdrawal is kept
+      Entry entry = new Entry();
+      assertSame(entry, ConcurrentBag.assigned(CompletableFuture.completedFuture(entry)));
+
+      // the bag closed between the timeout and the withdrawal, no exception escapes
+      CompletableFuture<Entry> closed = new CompletableFuture<>();
+      closed.completeExceptionally(new IllegalStateException("ConcurrentBag has been closed"));
+      assertNull(ConcurrentBag.assigned(closed));
+   }
+
+   @Test
+   public void testPreferredBorrow() throws Exception
+   {
+      try (ConcurrentBag<Entry> bag = new ConcurrentBag<>(waiting -> {})) {
+         Entry first = new Entry();
+         Entry second = new Entry();
+         bag.add(first);
+         bag.add(second);
+
+         // the preferred entry is taken even though another entry is ahead of it
+         assertSame(second, bag.borrow(10, MILLISECONDS, ConcurrentBag.PRIORITY_NORMAL, e -> e == second));
+
+         // with no idle match the bag falls back to any entry
+         assertSame(first, bag.borrow(10, MILLISECONDS, ConcurrentBag.PRIORITY_NORMAL, e -> e == second));
+         assertNull(bag.borrow(10, MILLISECONDS, ConcurrentBag.PRIORITY_NORMAL, e -> true));
+      }
+   }
+
+   @Test
+   public void testStateCounts() throws Exception
+   {
+      try (ConcurrentBag<Entry> bag = new ConcurrentBag<>(waiting -> {})) {
+         Entry reserved = new Entry();
+         Entry removed = new Entry();
+         bag.add(new Entry());
+         bag.add(new Entry());
+         bag.add(reserved);
+         bag.add(removed);
+         assertTrue(bag.borrow(10, MILLISECONDS) != null);
+
+         bag.reserve(reserved);
+         removed.setState(IConcurrentBagEntry.STATE_REMOVED);   // about to leave the bag
+
+         // not in use, in use, removed, reserved, counted, waiting
+         assertArrayEquals(new int[] { 1, 1, 1, 1, 4, 0 }, bag.getStateCounts());
+      }
+   }
+
+   @Test
+   public void testHandoffWithoutPublishing() throws Exception
+   {
+      try (ConcurrentBag<Entry> bag = new ConcurrentBag<>(waiting -> {})) {
+         Entry entry = new Entry();
+         bag.add(entry);
+         assertSame(entry, bag.borrow(10, MILLISECONDS));
+
+         CompletableFuture<Entry> first = bag.borrowAsync();
+         CompletableFuture<Entry> second = bag.borrowAsync();
+         CompletableFuture<Entry> third = bag.borrowAsync();
+         final int released = entry.released.get();
+
+         // the oldest waiter is served first and the entry is never visible as not in use in between
+         bag.requite(entry);
+         assertSame(entry, first.getNow(null));
+
+         // likewise for an entry coming back from a reservation
+         entry.setState(IConcurrentBagEntry.STATE_RESERVED);
+         bag.unreserve(entry);
+         assertSame(entry, second.getNow(null));
+         assertEquals(released, entry.released.get());
+
+         // an added entry goes straight to the remaining waiter
+         Entry added = new Entry();
+         bag.add(added);
+         assertSame(added, third.getNow(null));
+         assertEquals(0, added.released.get());
+         assertEquals(0, bag.getWaitingThreadCount());
+      }
+   }
+
+   static final class Entry implements IConcurrentBagEntry
+   {
+      private final AtomicInteger state = new AtomicInteger();
+      final AtomicInteger released = new AtomicInteger();
+
+      @Override
+      public boolean compareAndSet(int expectState, int newState)
+      {
+         if (state.compareAndSet(expectState, newState)) {
+            if (newState == STATE_NOT_IN_USE) {
+               released.incrementAndGet();
+            }
+            return true;
+         }
+         return false;
+      }
+
+      @Override
+      public void setState(int newState)
+      {
+         if (newState == STATE_NOT_IN_USE) {
+            released.incrementAndGet();
+         }
+         state.set(newState);
+      }
+
+      @Override
+      public int getState()
+      {
+         return state.get();
+      }
+   }
+}
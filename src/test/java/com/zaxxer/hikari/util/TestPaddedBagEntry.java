@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.util;
+
+import static com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry.STATE_IN_USE;
+import static com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry.STATE_NOT_IN_USE;
+import static com.zaxxer.hikari.util.ConcurrentBag.IConcurrentBagEntry.STATE_RESERVED;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+public class TestPaddedBagEntry
+{
+   @Test
+   public void testStateTransitions() throws Exception
+   {
+      try (ConcurrentBag<Entry> bag = new ConcurrentBag<>(waiting -> {})) {
+         Entry entry = new Entry();
+         bag.add(entry);
+
+         assertSame(entry, bag.borrow(10, MILLISECONDS));
+         assertEquals(STATE_IN_USE, entry.getState());
+         assertFalse(entry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE));
+
+         bag.requite(entry);
+         assertEquals(STATE_NOT_IN_USE, entry.getState());
+         assertTrue(bag.reserve(entry));
+         assertEquals(STATE_RESERVED, entry.getState());
+      }
+   }
+
+   @Test
+   public void testStateIsIsolated() throws Exception
+   {
+      // looked up reflectively, so that the test compiles without proprietary API warnings
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      Object unsafe = theUnsafe.get(null);
+      Method objectFieldOffset = unsafeClass.getMethod("objectFieldOffset", Field.class);
+
+      long state = (Long) objectFieldOffset.invoke(unsafe, PaddedBagEntryState.class.getDeclaredField("state"));
+      long hot = (Long) objectFieldOffset.invoke(unsafe, Entry.class.getDeclaredField("lastAccessed"));
+
+      assertTrue("state too close to object header: " + state, state >= 128);
+      assertTrue("state too close to subclass fields: " + state + " vs " + hot, hot - state >= 128);
+   }
+
+   static final class Entry extends PaddedBagEntry
+   {
+      long lastAccessed;
+   }
+}
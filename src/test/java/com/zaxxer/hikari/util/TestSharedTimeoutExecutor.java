@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2013, 2014 Brett Wooldridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zaxxer.hikari.util;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestSharedTimeoutExecutor
+{
+   @Test
+   public void testScopeAwaitsOwnTasks() throws Exception
+   {
+      final SharedTimeoutExecutor shared = SharedTimeoutExecutor.getInstance(false);
+      final CountDownLatch release = new CountDownLatch(1);
+      final AtomicInteger completed = new AtomicInteger();
+
+      ExecutorService other = shared.newScope();
+      other.execute(() -> {
+         try {
+            release.await();
+         }
+         catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      });
+
+      ExecutorService scope = shared.newScope();
+      for (int i = 0; i < 10; i++) {
+         scope.execute(completed::incrementAndGet);
+      }
+      scope.shutdown();
+
+      // the task blocked in the other scope does not hold up this one
+      assertTrue(scope.awaitTermination(5, SECONDS));
+      assertTrue(scope.isTerminated());
+      assertEquals(10, completed.get());
+
+      other.shutdown();
+      assertFalse(other.awaitTermination(50, MILLISECONDS));
+      release.countDown();
+      assertTrue(other.awaitTermination(5, SECONDS));
+
+      try {
+         scope.execute(completed::incrementAndGet);
+         fail("a shut down scope must reject tasks");
+      }
+      catch (RejectedExecutionException e) {
+         // expected
+      }
+   }
+
+   @Test
+   public void testVirtualThreadsFallBack() throws Exception
+   {
+      final SharedTimeoutExecutor shared = SharedTimeoutExecutor.getInstance(true);
+      final CountDownLatch ran = new CountDownLatch(1);
+      shared.execute(ran::countDown);
+      assertTrue(ran.await(5, SECONDS));
+   }
+}